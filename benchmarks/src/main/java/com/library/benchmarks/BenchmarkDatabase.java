@@ -0,0 +1,135 @@
+package com.library.benchmarks;
+
+import com.library.database.SchemaMigrator;
+import com.library.database.entities.Book;
+import com.library.repositories.BookRepository;
+import com.library.repositories.UserRepository;
+import com.library.repositories.impl.BookRepositoryImpl;
+import com.library.repositories.impl.UserRepositoryImpl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Базы данных для бенчмарков.
+ * Для каждого размера каталога один раз создается файл-образец
+ * (benchmark.dataDir, по умолчанию target/benchmark-data); каждый прогон работает
+ * с его копией на диске или с копией в памяти, поэтому изменения одного прогона
+ * не влияют на следующий, а заполнение миллиона книг выполняется однократно.
+ */
+final class BenchmarkDatabase {
+    // Пользователей на одну книгу каталога
+    static final int BOOKS_PER_USER = 10;
+    // Книг в одной транзакции при заполнении образца
+    private static final int FILL_BATCH = 10_000;
+
+    private final Connection connection;
+    private final Path file; // Временный файл для DISK, иначе null
+    private Connection readConnection; // Соединение для каталога в памяти (null - еще не открыто)
+
+    private BenchmarkDatabase(Connection connection, Path file) {
+        this.connection = connection;
+        this.file = file;
+    }
+
+    /**
+     * Открывает копию каталога из books книг.
+     */
+    static BenchmarkDatabase open(Storage storage, int books) throws IOException, SQLException {
+        Path template = template(books);
+        if (storage == Storage.MEMORY) {
+            Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("restore from " + template.toAbsolutePath());
+            }
+            return new BenchmarkDatabase(connection, null);
+        }
+        Path file = Files.createTempFile("library-benchmark-", ".db");
+        Files.copy(template, file, StandardCopyOption.REPLACE_EXISTING);
+        return new BenchmarkDatabase(DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath()), file);
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Отдельное соединение для каталога в памяти, как в приложении
+     * (см. {@link com.library.database.LibraryDatabase#getReadConnection()}).
+     * У копии в памяти отдельного соединения нет - возвращается общее.
+     */
+    Connection getReadConnection() throws SQLException {
+        if (file == null) {
+            return connection;
+        }
+        if (readConnection == null) {
+            readConnection = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath());
+        }
+        return readConnection;
+    }
+
+    void close() throws IOException, SQLException {
+        if (readConnection != null) {
+            readConnection.close();
+        }
+        connection.close();
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Возвращает файл-образец каталога, создавая его при первом обращении.
+     */
+    private static Path template(int books) throws IOException, SQLException {
+        Path directory = Path.of(System.getProperty("benchmark.dataDir", "target/benchmark-data"));
+        // Версия схемы в имени: образец пересоздается после новой миграции
+        String name = "catalog-" + books + "-v" + SchemaMigrator.LATEST_VERSION;
+        Path template = directory.resolve(name + ".db");
+        if (Files.exists(template)) {
+            return template;
+        }
+        Files.createDirectories(directory);
+        Path partial = directory.resolve(name + ".db.part");
+        Files.deleteIfExists(partial);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + partial.toAbsolutePath())) {
+            fill(connection, books);
+        }
+        Files.move(partial, template, StandardCopyOption.REPLACE_EXISTING);
+        return template;
+    }
+
+    private static void fill(Connection connection, int books) throws SQLException {
+        new SchemaMigrator(connection).migrate();
+        BookRepository bookRepository = new BookRepositoryImpl(connection);
+        UserRepository userRepository = new UserRepositoryImpl(connection);
+
+        List<Book> batch = new ArrayList<>(FILL_BATCH);
+        for (int i = 1; i <= books; i++) {
+            batch.add(CatalogData.book(i));
+            if (batch.size() == FILL_BATCH || i == books) {
+                bookRepository.saveAll(batch);
+                batch.clear();
+            }
+        }
+
+        connection.setAutoCommit(false);
+        for (int i = 1; i <= Math.max(1, books / BOOKS_PER_USER); i++) {
+            userRepository.save(CatalogData.user(i));
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ANALYZE");
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.library.benchmarks;
+
+import com.library.database.entities.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции {@link com.library.repositories.impl.BookRepositoryImpl}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookRepositoryBenchmark {
+    private int inserted; // Счетчик для уникальных ISBN новых книг
+
+    @Benchmark
+    public Book findById(CatalogState catalog) {
+        return catalog.bookRepository.findById(ThreadLocalRandom.current().nextInt(1, catalog.books + 1));
+    }
+
+    @Benchmark
+    public Book save(CatalogState catalog) {
+        Book book = CatalogData.book(catalog.books + 1 + inserted);
+        book.setIsbn("bench-" + inserted++);
+        catalog.bookRepository.save(book);
+        return book;
+    }
+
+    @Benchmark
+    public Book update(CatalogState catalog) {
+        int id = ThreadLocalRandom.current().nextInt(1, catalog.books + 1);
+        Book book = CatalogData.book(id);
+        book.setId(id);
+        book.setTitle(book.getTitle() + " (исправлено)");
+        catalog.bookRepository.update(book);
+        return book;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Book> findAll(CatalogState catalog) {
+        return catalog.bookRepository.findAll();
+    }
+}
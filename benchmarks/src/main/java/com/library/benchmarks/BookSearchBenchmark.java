@@ -0,0 +1,43 @@
+package com.library.benchmarks;
+
+import com.library.database.entities.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск {@link com.library.services.impl.BookServiceImpl}. Поисковый индекс строится
+ * при первом поиске, то есть во время прогрева, и в измерение не входит.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookSearchBenchmark {
+
+    @Benchmark
+    public List<Book> searchByTitle(CatalogState catalog) {
+        return catalog.bookService.searchByTitle(CatalogData.titleWord(ThreadLocalRandom.current().nextInt()));
+    }
+
+    @Benchmark
+    public List<Book> searchByAuthor(CatalogState catalog) {
+        return catalog.bookService.searchByAuthor(
+                CatalogData.author(ThreadLocalRandom.current().nextInt(CatalogData.AUTHORS)));
+    }
+
+    @Benchmark
+    public List<Book> searchByIsbn(CatalogState catalog) {
+        return catalog.bookService.searchByIsbn(
+                CatalogData.isbn(ThreadLocalRandom.current().nextInt(1, catalog.books + 1)));
+    }
+}
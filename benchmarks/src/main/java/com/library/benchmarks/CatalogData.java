@@ -0,0 +1,66 @@
+package com.library.benchmarks;
+
+import com.library.database.entities.Book;
+import com.library.database.entities.User;
+
+import java.util.SplittableRandom;
+
+/**
+ * Детерминированные данные каталога для бенчмарков: одна и та же книга с номером i
+ * получается при каждом запуске, поэтому результаты сравнимы между коммитами,
+ * а бенчмарки могут выбирать существующие значения для поиска.
+ */
+final class CatalogData {
+    private static final String[] TITLE_WORDS = {
+            "война", "мир", "преступление", "наказание", "идиот", "бесы", "отцы", "дети",
+            "мастер", "маргарита", "тихий", "дон", "белая", "гвардия", "мертвые", "души",
+            "shadow", "river", "silent", "garden", "winter", "night", "empire", "stone",
+            "history", "ocean", "light", "forest", "machine", "dream", "city", "glass"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Лев", "Федор", "Антон", "Михаил", "Анна", "Марина", "Иван", "Ольга",
+            "John", "Mary", "Ursula", "George", "Virginia", "Ernest", "Agatha", "Isaac"
+    };
+    private static final String[] LAST_NAMES = {
+            "Толстой", "Достоевский", "Чехов", "Булгаков", "Ахматова", "Цветаева", "Бунин", "Шолохов",
+            "Tolkien", "Shelley", "Le Guin", "Orwell", "Woolf", "Hemingway", "Christie", "Asimov"
+    };
+    // Различных авторов в каталоге
+    static final int AUTHORS = FIRST_NAMES.length * LAST_NAMES.length;
+
+    private CatalogData() {
+    }
+
+    static Book book(int i) {
+        SplittableRandom random = new SplittableRandom(i);
+        String title = word(random) + " " + word(random) + (random.nextBoolean() ? " " + word(random) : "");
+        Book book = new Book(Character.toUpperCase(title.charAt(0)) + title.substring(1), author(random.nextInt(AUTHORS)),
+                isbn(i), 1800 + random.nextInt(225));
+        book.setAvailable(random.nextInt(10) != 0);
+        return book;
+    }
+
+    static User user(int i) {
+        return new User(0, FIRST_NAMES[i % FIRST_NAMES.length] + " " + i, email(i));
+    }
+
+    static String author(int index) {
+        return FIRST_NAMES[index % FIRST_NAMES.length] + " " + LAST_NAMES[index / FIRST_NAMES.length % LAST_NAMES.length];
+    }
+
+    static String titleWord(int index) {
+        return TITLE_WORDS[Math.floorMod(index, TITLE_WORDS.length)];
+    }
+
+    static String isbn(int i) {
+        return String.format("978%010d", i);
+    }
+
+    static String email(int i) {
+        return "reader" + i + "@example.org";
+    }
+
+    private static String word(SplittableRandom random) {
+        return TITLE_WORDS[random.nextInt(TITLE_WORDS.length)];
+    }
+}
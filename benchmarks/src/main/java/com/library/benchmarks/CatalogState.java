@@ -0,0 +1,58 @@
+package com.library.benchmarks;
+
+import com.library.repositories.BookRepository;
+import com.library.repositories.UserRepository;
+import com.library.repositories.impl.BookRepositoryImpl;
+import com.library.repositories.impl.UserRepositoryImpl;
+import com.library.services.BookService;
+import com.library.services.impl.BookServiceImpl;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Каталог прогона: база данных заданного размера и места хранения,
+ * репозитории и сервис книг поверх нее.
+ * <p>
+ * Диагностический вывод репозиториев в System.out на время прогона отключается:
+ * формирование строк остается в измерении, а вывод в консоль - нет.
+ */
+@State(Scope.Benchmark)
+public class CatalogState {
+    @Param({"MEMORY", "DISK"})
+    public Storage storage;
+
+    @Param({"1000", "100000", "1000000"})
+    public int books;
+
+    BenchmarkDatabase database;
+    BookRepository bookRepository;
+    UserRepository userRepository;
+    BookService bookService;
+    int users;
+
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        database = BenchmarkDatabase.open(storage, books);
+        bookRepository = new BookRepositoryImpl(database.getConnection());
+        userRepository = new UserRepositoryImpl(database.getConnection());
+        bookService = new BookServiceImpl(bookRepository);
+        users = Math.max(1, books / BenchmarkDatabase.BOOKS_PER_USER);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        database.close();
+        System.setOut(console);
+    }
+}
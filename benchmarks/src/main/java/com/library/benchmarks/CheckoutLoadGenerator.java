@@ -0,0 +1,304 @@
+package com.library.benchmarks;
+
+import com.library.generator.ZipfSampler;
+import com.library.metrics.LatencyHistogram;
+import com.library.query.BookQuery;
+import com.library.repositories.impl.BookRepositoryImpl;
+import com.library.repositories.impl.UserRepositoryImpl;
+import com.library.search.ParallelSearchExecutor;
+import com.library.services.BookService;
+import com.library.services.UserService;
+import com.library.services.impl.BookServiceImpl;
+import com.library.services.impl.UserServiceImpl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный тест выдачи книг: N виртуальных потоков («терминалов») выполняют
+ * смесь чтений, поисков, выдач и возвратов через {@link BookService} и {@link UserService}
+ * над копией каталога из {@link BenchmarkDatabase}. Популярность книг распределена
+ * по закону Ципфа: книга с меньшим ID запрашивается чаще, так что выдачи и возвраты
+ * конкурируют за одни и те же книги.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.library.benchmarks.CheckoutLoadGenerator \
+ *      --books=100000 --storage=DISK --threads=200 --duration=30 --warmup=5 \
+ *      --mix=read:50,search:20,borrow:15,return:15 --zipf=1.0 --seed=42 --think=0
+ * </pre>
+ * Отчет содержит пропускную способность, перцентили задержки p50/p99/p99.9, доли
+ * конфликтов (выдача выданной книги, возврат невыданной) и ошибок по каждой операции.
+ * <p>
+ * После прогона проверяется инвариант «книга не выдана дважды»: для каждой книги
+ * начальное состояние плюс успешные выдачи минус успешные возвраты должно совпадать
+ * с состоянием в базе и быть 0 или 1. Две успешные выдачи без возврата между ними
+ * нарушают это равенство. При нарушениях процесс завершается с кодом 1.
+ */
+public class CheckoutLoadGenerator {
+    // Найденных книг в одном поисковом запросе
+    private static final int SEARCH_LIMIT = 20;
+    // Нарушений инварианта, выводимых подробно
+    private static final int VIOLATIONS_SHOWN = 10;
+
+    /**
+     * Операция терминала.
+     */
+    enum Operation {
+        READ, SEARCH, BORROW, RETURN
+    }
+
+    /**
+     * Счетчики одной операции.
+     */
+    private static final class OperationStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder succeeded = new LongAdder();
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        void reset() {
+            latency.reset();
+            succeeded.reset();
+            conflicts.reset();
+            errors.reset();
+        }
+    }
+
+    private final BookService bookService;
+    private final UserService userService;
+    private final int books;
+    private final int users;
+    private final Operation[] mix;           // Операции, повторенные по весу
+    private final ZipfSampler popularity;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final AtomicIntegerArray loanBalance;  // Выдачи минус возвраты по ID книги
+    private final LongAdder unexpected = new LongAdder();
+    private volatile Throwable firstError;
+
+    CheckoutLoadGenerator(BookService bookService, UserService userService, int books, int users,
+                          Map<Operation, Integer> weights, double zipfExponent) {
+        this.bookService = bookService;
+        this.userService = userService;
+        this.books = books;
+        this.users = users;
+        this.popularity = new ZipfSampler(books, zipfExponent);
+        this.loanBalance = new AtomicIntegerArray(books + 1);
+        List<Operation> slots = new ArrayList<>();
+        weights.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                slots.add(operation);
+            }
+        });
+        if (slots.isEmpty()) {
+            throw new IllegalArgumentException("Смесь операций пуста");
+        }
+        this.mix = slots.toArray(new Operation[0]);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int books = Integer.parseInt(options.getOrDefault("books", "100000"));
+        Storage storage = Storage.valueOf(options.getOrDefault("storage", "DISK").toUpperCase());
+        int threads = Integer.parseInt(options.getOrDefault("threads", "200"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5")));
+        Map<Operation, Integer> weights = parseMix(options.getOrDefault("mix", "read:50,search:20,borrow:15,return:15"));
+        double zipf = Double.parseDouble(options.getOrDefault("zipf", "1.0"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        long thinkMillis = Long.parseLong(options.getOrDefault("think", "0"));
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Диагностика репозиториев
+        BenchmarkDatabase database = BenchmarkDatabase.open(storage, books);
+        int exitCode = 0;
+        try {
+            BookService bookService = new BookServiceImpl(new BookRepositoryImpl(database.getConnection()),
+                    new BookRepositoryImpl(database.getReadConnection()), new ParallelSearchExecutor());
+            UserService userService = new UserServiceImpl(new UserRepositoryImpl(database.getConnection()));
+            int users = Math.max(1, books / BenchmarkDatabase.BOOKS_PER_USER);
+            CheckoutLoadGenerator generator = new CheckoutLoadGenerator(bookService, userService, books, users, weights, zipf);
+
+            console.printf("Каталог: %d книг, %d пользователей (%s); терминалов: %d; смесь: %s; Ципф s=%.2f%n",
+                    books, users, storage, threads, weights, zipf);
+            BitSet initiallyOnLoan = generator.booksOnLoan();
+            long measuredNanos = generator.run(threads, warmup, duration, seed, thinkMillis);
+            generator.report(console, measuredNanos);
+            int violations = generator.verify(console, initiallyOnLoan);
+            if (violations > 0) {
+                exitCode = 1;
+            }
+        } finally {
+            database.close();
+            System.setOut(console);
+        }
+        // Код завершения - после закрытия базы: System.exit не выполняет блоки finally
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+
+    /**
+     * Выполняет нагрузку: прогрев (результаты отбрасываются), затем измерение.
+     * @return длительность измерения в наносекундах
+     */
+    long run(int threads, Duration warmup, Duration duration, long seed, long thinkMillis) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long deadline = measureFrom + duration.toNanos();
+        SplittableRandom seeds = new SplittableRandom(seed);
+        try (ExecutorService terminals = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < threads; i++) {
+                SplittableRandom random = seeds.split();
+                terminals.execute(() -> terminal(random, deadline, thinkMillis));
+            }
+            Thread.sleep(Duration.ofNanos(Math.max(0, measureFrom - System.nanoTime())));
+            stats.values().forEach(OperationStats::reset);
+        }
+        return deadline - measureFrom;
+    }
+
+    private void terminal(SplittableRandom random, long deadline, long thinkMillis) {
+        while (System.nanoTime() < deadline) {
+            Operation operation = mix[random.nextInt(mix.length)];
+            OperationStats operationStats = stats.get(operation);
+            long started = System.nanoTime();
+            try {
+                execute(operation, random);
+                operationStats.succeeded.increment();
+            } catch (IllegalStateException e) {
+                operationStats.conflicts.increment(); // Книга уже выдана или не выдана
+            } catch (RuntimeException e) {
+                operationStats.errors.increment();
+                if (firstError == null) {
+                    firstError = e;
+                }
+            }
+            operationStats.latency.record(System.nanoTime() - started);
+            if (thinkMillis > 0) {
+                try {
+                    Thread.sleep(thinkMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void execute(Operation operation, SplittableRandom random) {
+        int bookId = (int) popularity.sample(random);
+        switch (operation) {
+            case READ:
+                bookService.getBookById(bookId);
+                break;
+            case SEARCH:
+                if (random.nextBoolean()) {
+                    bookService.searchByTitle(CatalogData.titleWord(random.nextInt()), SEARCH_LIMIT);
+                } else {
+                    bookService.searchByAuthor(CatalogData.author(random.nextInt(CatalogData.AUTHORS)), SEARCH_LIMIT);
+                }
+                break;
+            case BORROW:
+                int userId = 1 + random.nextInt(users);
+                userService.getUserById(userId);
+                bookService.borrowBook(bookId, userId);
+                loanBalance.incrementAndGet(bookId);
+                break;
+            case RETURN:
+                bookService.returnBook(bookId);
+                loanBalance.decrementAndGet(bookId);
+                break;
+        }
+    }
+
+    /**
+     * @return ID книг, находящихся в аренде
+     */
+    BitSet booksOnLoan() {
+        BitSet onLoan = new BitSet(books + 1);
+        bookService.forEachBook(BookQuery.builder().available(false).build(), book -> onLoan.set(book.getId()));
+        return onLoan;
+    }
+
+    void report(PrintStream out, long measuredNanos) {
+        double seconds = measuredNanos / 1e9;
+        long totalOperations = 0;
+        out.printf("%n%-8s %10s %10s %9s %9s %9s %9s %9s %8s %7s%n", "Операция", "Всего", "Оп/с",
+                "p50 мкс", "p99 мкс", "p99.9 мкс", "max мкс", "Ср. мкс", "Конфл.%", "Ошиб.%");
+        for (Operation operation : Operation.values()) {
+            OperationStats s = stats.get(operation);
+            long count = s.latency.getCount();
+            totalOperations += count;
+            if (count == 0) {
+                continue;
+            }
+            out.printf("%-8s %10d %10.0f %9.1f %9.1f %9.1f %9.1f %9.1f %8.2f %7.2f%n", operation, count, count / seconds,
+                    s.latency.getValueAtPercentile(50) / 1e3, s.latency.getValueAtPercentile(99) / 1e3,
+                    s.latency.getValueAtPercentile(99.9) / 1e3, s.latency.getMax() / 1e3, s.latency.getMean() / 1e3,
+                    100.0 * s.conflicts.sum() / count, 100.0 * s.errors.sum() / count);
+        }
+        out.printf("Итого: %d операций за %.1f с, %.0f оп/с%n", totalOperations, seconds, totalOperations / seconds);
+        if (firstError != null) {
+            out.println("Первая ошибка: " + firstError);
+        }
+    }
+
+    /**
+     * Проверяет инвариант «книга не выдана дважды».
+     * @return количество нарушений
+     */
+    int verify(PrintStream out, BitSet initiallyOnLoan) {
+        BitSet onLoan = booksOnLoan();
+        int violations = 0;
+        for (int id = 1; id <= books; id++) {
+            int expected = (initiallyOnLoan.get(id) ? 1 : 0) + loanBalance.get(id);
+            int actual = onLoan.get(id) ? 1 : 0;
+            if (expected != actual) {
+                if (violations++ < VIOLATIONS_SHOWN) {
+                    out.printf("Нарушение: книга %d, ожидаемое число выдач %d, в базе %s%n",
+                            id, expected, actual == 1 ? "выдана" : "доступна");
+                }
+            }
+        }
+        out.println(violations == 0
+                ? "Инвариант соблюден: ни одна книга не выдана дважды"
+                : "Нарушений инварианта: " + violations);
+        return violations;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Ожидался аргумент вида --имя=значение: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] entry = part.split(":");
+            if (entry.length != 2) {
+                throw new IllegalArgumentException("Ожидалось операция:вес в смеси: " + part);
+            }
+            weights.put(Operation.valueOf(entry[0].trim().toUpperCase()), Integer.parseInt(entry[1].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,57 @@
+package com.library.benchmarks;
+
+import com.library.database.entities.Book;
+import com.library.metrics.MetricsRegistry;
+import com.library.repositories.BookRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Издержки учета вызовов {@link MetricsRegistry#instrument}: один и тот же
+ * поиск книги по ID напрямую и через учитывающий прокси.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstrumentationBenchmark {
+    private MetricsRegistry metrics;
+    private BookRepository instrumented;
+
+    @Setup(Level.Trial)
+    public void instrument(CatalogState catalog) {
+        metrics = new MetricsRegistry(ManagementFactory.getPlatformMBeanServer());
+        instrumented = metrics.instrument(BookRepository.class, catalog.bookRepository, "Repository");
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        metrics.close();
+    }
+
+    @Benchmark
+    public Book findByIdDirect(CatalogState catalog) {
+        return catalog.bookRepository.findById(ThreadLocalRandom.current().nextInt(1, catalog.books + 1));
+    }
+
+    @Benchmark
+    public Book findByIdInstrumented(CatalogState catalog) {
+        return instrumented.findById(ThreadLocalRandom.current().nextInt(1, catalog.books + 1));
+    }
+}
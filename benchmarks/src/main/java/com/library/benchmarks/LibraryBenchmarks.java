@@ -0,0 +1,43 @@
+package com.library.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск бенчмарков. Принимает обычные параметры JMH (например, фильтр по имени,
+ * -p books=1000 -p storage=MEMORY) и по умолчанию добавляет:
+ * <ul>
+ *   <li>профилировщик выделения памяти (-prof gc): gc.alloc.rate.norm - байт на операцию;</li>
+ *   <li>запись результатов в JSON (target/jmh-result.json), пригодный для сравнения
+ *       запусков на разных коммитах.</li>
+ * </ul>
+ * Явно указанные -prof, -rf и -rff заменяют значения по умолчанию.
+ */
+public class LibraryBenchmarks {
+    private static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(DEFAULT_RESULT_FILE);
+        }
+        new Runner(options.build()).run();
+    }
+}
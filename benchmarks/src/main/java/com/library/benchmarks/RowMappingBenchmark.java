@@ -0,0 +1,75 @@
+package com.library.benchmarks;
+
+import com.library.query.BookQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование строк результата в объекты. Репозитории читают одну и ту же
+ * страницу из {@value #ROWS} строк; readRawBooks читает те же столбцы без создания
+ * объектов, так что разница с mapBooks - стоимость преобразователя строк.
+ * Для книг время указано на одну строку.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark {
+    // Строк в одной операции (не больше самого маленького каталога)
+    static final int ROWS = 1000;
+
+    private static final BookQuery PAGE = BookQuery.builder()
+            .orderBy(BookQuery.SortField.ID, true)
+            .limit(ROWS)
+            .build();
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapBooks(CatalogState catalog, Blackhole blackhole) {
+        catalog.bookRepository.forEachByQuery(PAGE, blackhole::consume);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void readRawBooks(CatalogState catalog, Blackhole blackhole) throws SQLException {
+        String sql = "SELECT id, title, author, isbn, publication_year, available, loan_count, title_norm, author_norm " +
+                "FROM books ORDER BY id LIMIT " + ROWS;
+        try (PreparedStatement stmt = catalog.database.getConnection().prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                blackhole.consume(rs.getInt(1));
+                blackhole.consume(rs.getString(2));
+                blackhole.consume(rs.getString(3));
+                blackhole.consume(rs.getString(4));
+                blackhole.consume(rs.getInt(5));
+                blackhole.consume(rs.getBoolean(6));
+                blackhole.consume(rs.getInt(7));
+                blackhole.consume(rs.getString(8));
+                blackhole.consume(rs.getString(9));
+            }
+        }
+    }
+
+    /**
+     * Полный проход по таблице пользователей (их в {@link BenchmarkDatabase#BOOKS_PER_USER}
+     * раз меньше, чем книг); время указано на весь проход.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void mapUsers(CatalogState catalog, Blackhole blackhole) {
+        catalog.userRepository.forEach(blackhole::consume);
+    }
+}
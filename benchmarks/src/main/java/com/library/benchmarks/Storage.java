@@ -0,0 +1,11 @@
+package com.library.benchmarks;
+
+/**
+ * Где находится база данных прогона (параметр storage бенчмарков).
+ */
+public enum Storage {
+    // Копия образца в памяти (jdbc:sqlite::memory:)
+    MEMORY,
+    // Копия образца во временном файле
+    DISK
+}
@@ -0,0 +1,30 @@
+package com.library.benchmarks;
+
+import com.library.database.entities.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции {@link com.library.repositories.impl.UserRepositoryImpl}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserRepositoryBenchmark {
+
+    @Benchmark
+    public User findByEmail(CatalogState catalog) {
+        return catalog.userRepository.findByEmail(
+                CatalogData.email(ThreadLocalRandom.current().nextInt(1, catalog.users + 1)));
+    }
+}
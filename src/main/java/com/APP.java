@@ -1,44 +1,228 @@
 package com;
 
+import com.library.batch.BatchProcessor;
+import com.library.batch.BatchSummary;
+import com.library.changelog.ChangeLogReader;
+import com.library.changelog.ChangeRecord;
 import com.library.config.DatabaseConfig;
 import com.library.controllers.BookController;
 import com.library.controllers.UserController;
+import com.library.database.DatabaseBackup;
+import com.library.database.DatabaseMaintenance;
 import com.library.database.LibraryDatabase;
+import com.library.database.MaintenanceReport;
+import com.library.export.CatalogExporter;
+import com.library.export.ExportFormat;
+import com.library.export.ExportSummary;
+import com.library.generator.DatasetGenerator;
+import com.library.generator.GenerationSummary;
+import com.library.generator.SyntheticCatalog;
+import com.library.http.LibraryHttpServer;
+import com.library.importer.ImportFormat;
+import com.library.importer.ImportMetrics;
+import com.library.importer.ImportPipeline;
+import com.library.metrics.MetricsRegistry;
 import com.library.repositories.BookRepository;
 import com.library.repositories.UserRepository;
 import com.library.repositories.impl.BookRepositoryImpl;
 import com.library.repositories.impl.UserRepositoryImpl;
+import com.library.search.ParallelSearchExecutor;
 import com.library.services.BookService;
 import com.library.services.UserService;
+import com.library.services.impl.AsyncBookServiceImpl;
+import com.library.services.impl.AsyncTaskExecutor;
+import com.library.services.impl.AsyncUserServiceImpl;
 import com.library.services.impl.BookServiceImpl;
 import com.library.services.impl.UserServiceImpl;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class APP {
+    // Порт JSON API по умолчанию (аргумент --http без значения)
+    private static final int DEFAULT_HTTP_PORT = 8080;
+    // Период вывода прогресса импорта (секунды)
+    private static final int IMPORT_PROGRESS_SECONDS = 5;
+    // Пауза между проверками новых записей журнала изменений (мс)
+    private static final int CHANGES_POLL_MILLIS = 200;
+
+    /**
+     * Точка входа. Без аргументов запускается консольное меню.
+     * С аргументом --http[=порт] запускается JSON API до нажатия Enter.
+     * С аргументом --batch[=файл] выполняются операции из файла или стандартного ввода
+     * (см. {@link BatchProcessor}); дополнительные аргументы: --out=файл для результатов,
+     * --chunk=N операций в транзакции, --verbose для диагностики репозиториев в stderr.
+     * С аргументами --export=books|users|loans --out=файл [--format=csv|jsonl] данные
+     * выгружаются в файл (со сжатием gzip, если имя файла оканчивается на .gz).
+     * С аргументами --import=файл [--format=csv|marc] [--chunk=N] [--threads=N] книги
+     * импортируются из файла (см. {@link ImportPipeline}); прерванный импорт
+     * продолжается при повторном запуске с теми же аргументами.
+     * С аргументами --generate --books=N --users=N [--seed=N] [--fast] [--threads=N]
+     * [--first-book=N] [--first-user=N] база заполняется синтетическим каталогом
+     * (см. {@link DatasetGenerator}).
+     * С аргументом --maintenance выполняется один проход обслуживания базы
+     * (см. {@link DatabaseMaintenance}), с аргументом --vacuum - полная очистка базы.
+     * С аргументом --backup[=каталог] создается проверенная резервная копия работающей
+     * базы (см. {@link DatabaseBackup}).
+     * С аргументами --changes[=номер] [--follow] записи журнала изменений, начиная
+     * с номера, выводятся строками JSON (с --follow - с ожиданием новых записей).
+     * В режимах меню и JSON API обслуживание и плановое резервное копирование
+     * выполняются в фоне в периоды простоя.
+     */
     public static void main(String[] args) {
-        Connection connection = null;
+        Integer httpPort = httpPort(args);
+        String batchInput = option(args, "--batch", "-");
+        String exportDataset = option(args, "--export", null);
+        String importFile = option(args, "--import", null);
+        boolean generate = hasFlag(args, "--generate");
+        boolean maintain = hasFlag(args, "--maintenance");
+        boolean vacuum = hasFlag(args, "--vacuum");
+        String backupDirectory = option(args, "--backup", "");
+        String changesFrom = option(args, "--changes", "1");
+        PrintStream console = System.out;
+        if (batchInput != null || changesFrom != null) {
+            // Поток результатов не должен смешиваться с диагностикой репозиториев
+            System.setOut(hasFlag(args, "--verbose") ? System.err : new PrintStream(OutputStream.nullOutputStream()));
+        }
+        LibraryDatabase database = null;
         try {
             // 1. Инициализация конфигурации базы данных и подключения
             DatabaseConfig config = new DatabaseConfig();
-            LibraryDatabase database = new LibraryDatabase(config);
+            database = new LibraryDatabase(config);
 
             // 2. Установка соединения с базой данных
-            connection = database.getConnection();
+            Connection connection = database.getConnection();
             if (connection == null || connection.isClosed()) {
                 System.err.println("Не удалось установить соединение с базой данных");
                 return;
             }
 
-            // 3. Создание репозиториев для работы с данными
-            BookRepository bookRepository = new BookRepositoryImpl(connection);
-            UserRepository userRepository = new UserRepositoryImpl(connection);
+            // 3. Создание репозиториев для работы с данными; время и ошибки каждого вызова
+            // репозиториев и сервисов публикуются через JMX (домен com.library)
+            MetricsRegistry metrics = new MetricsRegistry(ManagementFactory.getPlatformMBeanServer());
+            if (database.getSlowQueryLog() != null) {
+                metrics.publish("Database", "SlowQueryLog", database.getSlowQueryLog());
+            }
+            // Зафиксированные изменения репозиториев дописываются в журнал изменений
+            BookRepository bookRepository = metrics.instrument(BookRepository.class,
+                    new BookRepositoryImpl(connection, database.getChangeCapture()), "Repository");
+            UserRepository userRepository = metrics.instrument(UserRepository.class,
+                    new UserRepositoryImpl(connection, database.getChangeCapture()), "Repository");
+
+            // 4. Создание сервисов; статистика полнотекстового перебора каталога публикуется отдельно.
+            // Каталог в памяти читается через отдельное соединение, которое видит только зафиксированные изменения
+            ParallelSearchExecutor searchExecutor = new ParallelSearchExecutor();
+            metrics.publish("Search", "Executor", searchExecutor);
+            BookRepository catalog = metrics.instrument(BookRepository.class,
+                    new BookRepositoryImpl(database.getReadConnection()), "Catalog");
+            BookService bookService = metrics.instrument(BookService.class,
+                    new BookServiceImpl(bookRepository, catalog, searchExecutor), "Service");
+            UserService userService = metrics.instrument(UserService.class,
+                    new UserServiceImpl(userRepository), "Service");
+
+            if (batchInput != null) {
+                String chunk = option(args, "--chunk", null);
+                String output = option(args, "--out", "-");
+                int chunkSize = chunk != null ? Integer.parseInt(chunk) : BatchProcessor.DEFAULT_CHUNK_SIZE;
+                runBatch(new BatchProcessor(connection, bookService, userService, chunkSize),
+                        batchInput, output != null ? output : "-", console);
+                return;
+            }
+
+            if (importFile != null) {
+                String format = option(args, "--format", null);
+                String chunk = option(args, "--chunk", null);
+                String threads = option(args, "--threads", null);
+                int chunkSize = chunk != null ? Integer.parseInt(chunk) : ImportPipeline.DEFAULT_CHUNK_SIZE;
+                ImportPipeline pipeline = threads != null
+                        ? new ImportPipeline(bookRepository, chunkSize, Integer.parseInt(threads))
+                        : new ImportPipeline(bookRepository, chunkSize);
+                runImport(pipeline, Path.of(importFile), format != null ? ImportFormat.parse(format) : ImportFormat.CSV);
+                return;
+            }
+
+            if (generate) {
+                runGenerator(new DatasetGenerator(connection, bookRepository, userRepository,
+                        new SyntheticCatalog(longOption(args, "--seed", 1),
+                                SyntheticCatalog.defaultAuthorCount(longOption(args, "--books", 0))),
+                        (int) longOption(args, "--threads", Runtime.getRuntime().availableProcessors())), args);
+                return;
+            }
+
+            if (vacuum) {
+                long[] pages = database.vacuum();
+                System.out.println("Полная очистка завершена: страниц было " + pages[0] + ", стало " + pages[1]);
+                return;
+            }
+
+            if (changesFrom != null) {
+                if (database.getChangeCapture() == null) {
+                    throw new IllegalStateException("Журнал изменений выключен (library.changeLog.dir)");
+                }
+                runChangeTail(database.getChangeCapture().getLog().getDirectory(), Long.parseLong(changesFrom),
+                        hasFlag(args, "--follow"), console);
+                return;
+            }
+
+            if (backupDirectory != null) {
+                Path directory = Path.of(backupDirectory.isEmpty() ? config.getBackupDirectory() : backupDirectory);
+                try (DatabaseBackup backup = database.createBackup(directory)) {
+                    System.out.println("Резервная копия создана: " + backup.snapshot());
+                }
+                return;
+            }
 
-            // 4. Создание сервисов
-            BookService bookService = new BookServiceImpl(bookRepository);
-            UserService userService = new UserServiceImpl(userRepository);
+            if (maintain) {
+                try (DatabaseMaintenance maintenance = database.createMaintenance()) {
+                    MaintenanceReport report = maintenance.run(true);
+                    System.out.println("Обслуживание базы: " + report);
+                }
+                return;
+            }
+
+            if (exportDataset != null) {
+                String format = option(args, "--format", null);
+                runExport(new CatalogExporter(bookService, userService), CatalogExporter.Dataset.parse(exportDataset),
+                        format != null ? ExportFormat.parse(format) : ExportFormat.CSV, option(args, "--out", null));
+                return;
+            }
+
+            // Долгоживущие режимы: статистика, очистка, контрольные точки WAL и резервные копии в периоды простоя
+            DatabaseMaintenance maintenance = database.startMaintenance();
+            if (maintenance != null) {
+                metrics.publish("Database", "Maintenance", maintenance);
+            }
+            DatabaseBackup backup = database.startBackups();
+            if (backup != null) {
+                metrics.publish("Database", "Backup", backup);
+            }
+
+            if (httpPort != null) {
+                runHttpServer(httpPort, bookService, userService);
+                return;
+            }
 
             // 5. Создание контроллеров для обработки пользовательских запросов
             BookController bookController = new BookController(bookService);
@@ -54,20 +238,170 @@ public class APP {
             System.err.println("Ошибка приложения: " + e.getMessage());
             e.printStackTrace();
         } finally {
-            // 7. Закрытие соединения с базой данных при завершении работы
-            if (connection != null) {
-                try {
-                    if (!connection.isClosed()) {
-                        connection.close();
-                        System.out.println("Соединение с базой данных успешно закрыто");
+            // 7. Закрытие соединения с базой данных при завершении работы: обслуживание
+            // останавливается, статистика обновляется, журнал медленных запросов дополняется итогами
+            if (database != null) {
+                boolean connected = database.isConnected();
+                database.close();
+                if (connected) {
+                    System.out.println("Соединение с базой данных успешно закрыто");
+                }
+            }
+        }
+    }
+
+    /**
+     * Возвращает порт JSON API из аргументов командной строки.
+     * @return порт или null, если аргумент --http не задан
+     */
+    private static Integer httpPort(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--http")) {
+                return DEFAULT_HTTP_PORT;
+            }
+            if (arg.startsWith("--http=")) {
+                return Integer.parseInt(arg.substring("--http=".length()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает значение аргумента вида name=значение.
+     * @param defaultValue значение, если аргумент задан без "="
+     * @return значение или null, если аргумент не задан
+     */
+    private static String option(String[] args, String name, String defaultValue) {
+        for (String arg : args) {
+            if (arg.equals(name)) {
+                return defaultValue;
+            }
+            if (arg.startsWith(name + "=")) {
+                return arg.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasFlag(String[] args, String name) {
+        for (String arg : args) {
+            if (arg.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long longOption(String[] args, String name, long defaultValue) {
+        String value = option(args, name, null);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    /**
+     * Заполняет базу синтетическим каталогом и выводит итоги.
+     */
+    private static void runGenerator(DatasetGenerator generator, String[] args) {
+        DatasetGenerator.Mode mode = hasFlag(args, "--fast") ? DatasetGenerator.Mode.FAST : DatasetGenerator.Mode.REPOSITORY;
+        GenerationSummary summary = generator.generate(
+                longOption(args, "--first-book", 0), longOption(args, "--books", 0),
+                longOption(args, "--first-user", 0), longOption(args, "--users", 0),
+                mode, System.out::println);
+        System.out.println("Генерация завершена: " + summary);
+    }
+
+    /**
+     * Выполняет пакет операций. Результаты пишутся в файл или в исходный stdout ("-"),
+     * итоги выполнения - в stderr.
+     */
+    private static void runBatch(BatchProcessor processor, String inputPath, String outputPath,
+                                 PrintStream console) throws IOException, SQLException {
+        InputStream in = inputPath.equals("-") ? System.in : new FileInputStream(inputPath);
+        OutputStream out = outputPath.equals("-") ? console : new FileOutputStream(outputPath);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            BatchSummary summary = processor.run(reader, writer);
+            System.err.println("Пакет выполнен: " + summary);
+        }
+    }
+
+    /**
+     * Импортирует книги из файла, периодически выводя прогресс.
+     * Контрольная точка хранится в файле "имя.checkpoint", отклоненные записи
+     * дописываются в "имя.rejects.jsonl" рядом с исходным файлом.
+     */
+    private static void runImport(ImportPipeline pipeline, Path source, ImportFormat format)
+            throws IOException, InterruptedException {
+        Path checkpoint = source.resolveSibling(source.getFileName() + ".checkpoint");
+        Path rejects = source.resolveSibling(source.getFileName() + ".rejects.jsonl");
+        if (Files.exists(checkpoint)) {
+            System.out.println("Найдена контрольная точка, импорт будет продолжен: " + checkpoint);
+        }
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().factory());
+        progress.scheduleAtFixedRate(() -> System.out.println("Импорт: " + pipeline.getMetrics()),
+                IMPORT_PROGRESS_SECONDS, IMPORT_PROGRESS_SECONDS, TimeUnit.SECONDS);
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+             Writer rejectLog = Files.newBufferedWriter(rejects, StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            ImportMetrics metrics = pipeline.run(reader, format, checkpoint, rejectLog);
+            System.out.println("Импорт завершен: " + metrics);
+        } finally {
+            progress.shutdownNow();
+        }
+    }
+
+    /**
+     * Выводит записи журнала изменений строками JSON. С follow ожидает новые записи,
+     * пока процесс не будет остановлен.
+     */
+    private static void runChangeTail(Path directory, long fromSequence, boolean follow, PrintStream out)
+            throws IOException, InterruptedException {
+        try (ChangeLogReader reader = new ChangeLogReader(directory, fromSequence)) {
+            while (true) {
+                List<ChangeRecord> records = reader.poll(1000);
+                for (ChangeRecord record : records) {
+                    String payload = record.payloadText();
+                    out.println("{\"seq\":" + record.sequence() + ",\"ts\":" + record.timestampMillis() +
+                            ",\"type\":\"" + record.type() + "\",\"id\":" + record.entityId() +
+                            ",\"data\":" + (payload.isEmpty() ? "null" : payload) + "}");
+                }
+                if (records.isEmpty()) {
+                    if (!follow) {
+                        return;
                     }
-                } catch (SQLException e) {
-                    System.err.println("Не удалось закрыть соединение с базой данных: " + e.getMessage());
+                    Thread.sleep(CHANGES_POLL_MILLIS);
                 }
             }
         }
     }
 
+    /**
+     * Выгружает набор данных в файл и выводит итоги выгрузки.
+     */
+    private static void runExport(CatalogExporter exporter, CatalogExporter.Dataset dataset, ExportFormat format,
+                                  String outputPath) throws IOException {
+        if (outputPath == null || outputPath.equals("-")) {
+            throw new IllegalArgumentException("Для выгрузки укажите файл аргументом --out=файл");
+        }
+        ExportSummary summary = exporter.export(dataset, format, Path.of(outputPath), outputPath.endsWith(".gz"));
+        System.out.println("Выгрузка " + outputPath + " завершена: " + summary);
+    }
+
+    /**
+     * Запускает JSON API и обслуживает запросы, пока в консоли не будет нажат Enter.
+     */
+    private static void runHttpServer(int port, BookService bookService, UserService userService) throws IOException {
+        try (AsyncTaskExecutor executor = new AsyncTaskExecutor();
+             LibraryHttpServer server = new LibraryHttpServer(new InetSocketAddress(port),
+                     new AsyncBookServiceImpl(bookService, executor),
+                     new AsyncUserServiceImpl(userService, executor))) {
+            server.start();
+            System.out.println("JSON API доступен на http://localhost:" + server.getPort() + "/api/books");
+            System.out.println("Нажмите Enter для остановки сервера");
+            new Scanner(System.in).nextLine();
+        }
+    }
+
     private static void showMainMenu(BookController bookController, UserController userController) {
         Scanner scanner = new Scanner(System.in);
 
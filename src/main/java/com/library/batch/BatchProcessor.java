@@ -0,0 +1,279 @@
+package com.library.batch;
+
+import com.library.database.entities.Book;
+import com.library.database.entities.User;
+import com.library.json.JsonReader;
+import com.library.json.JsonWriter;
+import com.library.services.BookService;
+import com.library.services.UserService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетное выполнение операций над каталогом и пользователями.
+ * Операции читаются по одной на строку в формате JSON, например:
+ * <pre>
+ * {"op": "add-book", "title": "Идиот", "author": "Достоевский", "isbn": "978-5-17-090630-7", "publicationYear": 1869}
+ * {"op": "add-user", "name": "Иван", "email": "ivan@example.com"}
+ * {"op": "borrow", "bookId": 15, "userId": 3}
+ * {"op": "return", "bookId": 15}
+ * </pre>
+ * Поддерживаемые операции: add-book, update-book, delete-book, get-book, borrow, return,
+ * add-user, update-user, delete-user, get-user. Пустые строки и строки, начинающиеся с '#', пропускаются.
+ * <p>
+ * Операции выполняются через сервисы блоками по chunkSize в одной транзакции: фиксация
+ * раз в блок вместо фиксации каждой операции дает основной выигрыш в скорости записи.
+ * Ошибка отдельной операции не прерывает блок. Результат каждой операции выводится
+ * строкой JSON после фиксации блока; если фиксация не удалась, все операции блока
+ * выводятся с ошибкой. Структуры каталога в памяти (поиск, фасеты, битовый индекс)
+ * обновляются сервисом книг по журналу изменений базы данных, то есть только
+ * зафиксированными изменениями: откат блока в них не попадает.
+ */
+public class BatchProcessor {
+    // Количество операций в одной транзакции по умолчанию
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final Connection connection;   // Соединение, общее с репозиториями сервисов
+    private final BookService bookService;
+    private final UserService userService;
+    private final int chunkSize;
+
+    /**
+     * Создает обработчик.
+     * @param connection соединение, через которое работают репозитории сервисов
+     * @param bookService сервис книг
+     * @param userService сервис пользователей
+     * @param chunkSize количество операций в одной транзакции
+     * @throws IllegalArgumentException если chunkSize не положителен
+     */
+    public BatchProcessor(Connection connection, BookService bookService, UserService userService, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Размер блока должен быть положительным числом");
+        }
+        this.connection = connection;
+        this.bookService = bookService;
+        this.userService = userService;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Выполняет все операции из входного потока.
+     * @param input операции, по одной JSON-строке
+     * @param output получатель результатов, по одной JSON-строке на операцию
+     * @return итоги выполнения
+     * @throws IOException при ошибках чтения или записи
+     * @throws SQLException если не удалось управлять транзакцией
+     */
+    public BatchSummary run(BufferedReader input, Writer output) throws IOException, SQLException {
+        long started = System.nanoTime();
+        long succeeded = 0;
+        long failed = 0;
+        long chunks = 0;
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            List<String> results = new ArrayList<>(chunkSize);
+            List<Boolean> outcomes = new ArrayList<>(chunkSize);
+            long lineNumber = 0;
+            String line;
+            boolean eof = false;
+            while (!eof) {
+                results.clear();
+                outcomes.clear();
+                while (results.size() < chunkSize) {
+                    line = input.readLine();
+                    if (line == null) {
+                        eof = true;
+                        break;
+                    }
+                    lineNumber++;
+                    if (line.isBlank() || line.startsWith("#")) {
+                        continue;
+                    }
+                    StringWriter result = new StringWriter(64);
+                    outcomes.add(execute(line, lineNumber, new JsonWriter(result)));
+                    results.add(result.toString());
+                }
+                if (results.isEmpty()) {
+                    break;
+                }
+
+                String commitError = commit();
+                chunks++;
+                for (int i = 0; i < results.size(); i++) {
+                    String result = results.get(i);
+                    if (commitError != null) {
+                        result = rejected(result, commitError);
+                    }
+                    output.write(result);
+                    output.write('\n');
+                    if (commitError == null && outcomes.get(i)) {
+                        succeeded++;
+                    } else {
+                        failed++;
+                    }
+                }
+                output.flush();
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return new BatchSummary(succeeded + failed, succeeded, failed, chunks, System.nanoTime() - started);
+    }
+
+    /**
+     * Выполняет одну операцию и записывает ее результат.
+     * @return true, если операция выполнена успешно
+     */
+    private boolean execute(String line, long lineNumber, JsonWriter json) throws IOException {
+        json.beginObject().name("line").value(lineNumber);
+        String op = null;
+        try {
+            Map<String, Object> command = JsonReader.parseObject(line);
+            op = text(command, "op");
+            json.name("op").value(op);
+            dispatch(op, command, json);
+            json.name("status").value("ok").endObject();
+            return true;
+        } catch (RuntimeException e) {
+            if (op == null) {
+                json.name("op").nullValue();
+            }
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            json.name("status").value("error").name("error").value(message).endObject();
+            return false;
+        }
+    }
+
+    private void dispatch(String op, Map<String, Object> command, JsonWriter json) throws IOException {
+        switch (op) {
+            case "add-book": {
+                Book book = new Book(text(command, "title"), text(command, "author"),
+                        text(command, "isbn"), number(command, "publicationYear"));
+                bookService.addBook(book);
+                json.name("id").value(book.getId());
+                break;
+            }
+            case "update-book": {
+                Book book = bookService.getBookById(number(command, "id"));
+                if (command.containsKey("title")) book.setTitle(text(command, "title"));
+                if (command.containsKey("author")) book.setAuthor(text(command, "author"));
+                if (command.containsKey("isbn")) book.setIsbn(text(command, "isbn"));
+                if (command.containsKey("publicationYear")) book.setPublicationYear(number(command, "publicationYear"));
+                bookService.updateBook(book);
+                json.name("id").value(book.getId());
+                break;
+            }
+            case "delete-book":
+                bookService.deleteBook(number(command, "id"));
+                break;
+            case "get-book": {
+                Book book = bookService.getBookById(number(command, "id"));
+                json.name("book").beginObject()
+                        .name("id").value(book.getId())
+                        .name("title").value(book.getTitle())
+                        .name("author").value(book.getAuthor())
+                        .name("isbn").value(book.getIsbn())
+                        .name("publicationYear").value(book.getPublicationYear())
+                        .name("available").value(book.isAvailable())
+                        .endObject();
+                break;
+            }
+            case "borrow": {
+                int userId = number(command, "userId");
+                userService.getUserById(userId); // Читатель должен существовать
+                bookService.borrowBook(number(command, "bookId"), userId);
+                break;
+            }
+            case "return":
+                bookService.returnBook(number(command, "bookId"));
+                break;
+            case "add-user": {
+                User user = new User(0, text(command, "name"), text(command, "email"));
+                userService.addUser(user);
+                json.name("id").value(user.getId());
+                break;
+            }
+            case "update-user": {
+                User user = userService.getUserById(number(command, "id"));
+                if (command.containsKey("name")) user.setName(text(command, "name"));
+                if (command.containsKey("email")) user.setEmail(text(command, "email"));
+                userService.updateUser(user);
+                json.name("id").value(user.getId());
+                break;
+            }
+            case "delete-user":
+                userService.deleteUser(number(command, "id"));
+                break;
+            case "get-user": {
+                User user = userService.getUserById(number(command, "id"));
+                json.name("user").beginObject()
+                        .name("id").value(user.getId())
+                        .name("name").value(user.getName())
+                        .name("email").value(user.getEmail())
+                        .endObject();
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Неизвестная операция: " + op);
+        }
+    }
+
+    /**
+     * Фиксирует транзакцию блока.
+     * @return null при успехе или сообщение об ошибке, если блок отменен
+     */
+    private String commit() {
+        try {
+            connection.commit();
+            return null;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            return "Транзакция блока отменена: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Заменяет результат операции ошибкой отмененной транзакции.
+     */
+    private static String rejected(String result, String error) throws IOException {
+        Map<String, Object> parsed = JsonReader.parseObject(result);
+        StringWriter out = new StringWriter(64);
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject()
+                .name("line").value((Long) parsed.get("line"))
+                .name("op").value((String) parsed.get("op"))
+                .name("status").value("error")
+                .name("error").value(error)
+                .endObject();
+        return out.toString();
+    }
+
+    private static String text(Map<String, Object> command, String name) {
+        Object value = command.get(name);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Поле " + name + " обязательно и должно быть строкой");
+        }
+        return (String) value;
+    }
+
+    private static int number(Map<String, Object> command, String name) {
+        Object value = command.get(name);
+        if (!(value instanceof Long) || (Long) value > Integer.MAX_VALUE || (Long) value < Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Поле " + name + " обязательно и должно быть целым числом");
+        }
+        return ((Long) value).intValue();
+    }
+}
@@ -0,0 +1,25 @@
+package com.library.batch;
+
+/**
+ * Итоги пакетного выполнения операций.
+ * @param operations количество выполненных операций
+ * @param succeeded количество успешных операций
+ * @param failed количество операций с ошибкой
+ * @param transactions количество зафиксированных (или отмененных) блоков
+ * @param elapsedNanos общее время выполнения
+ */
+public record BatchSummary(long operations, long succeeded, long failed, long transactions, long elapsedNanos) {
+
+    /**
+     * @return операций в минуту
+     */
+    public double operationsPerMinute() {
+        return elapsedNanos == 0 ? 0 : operations * 60_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("операций=%d, успешно=%d, с ошибкой=%d, транзакций=%d, время=%.3f с, скорость=%.0f оп/мин",
+                operations, succeeded, failed, transactions, elapsedNanos / 1e9, operationsPerMinute());
+    }
+}
@@ -0,0 +1,10 @@
+package com.library.changelog;
+
+/**
+ * Изменение, ожидающее записи в журнал.
+ * @param type вид изменения
+ * @param entityId идентификатор книги или пользователя
+ * @param payload данные сущности в JSON (UTF-8), пустой массив для удаления
+ */
+public record Change(ChangeType type, int entityId, byte[] payload) {
+}
@@ -0,0 +1,234 @@
+package com.library.changelog;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Передает в журнал изменений ({@link ChangeLog}) только зафиксированные изменения
+ * в порядке их фиксации.
+ * <p>
+ * Режим автофиксации в SQLite общий для всего соединения: пока один поток держит
+ * транзакцию открытой, изменения остальных потоков через то же соединение попадают
+ * в нее и откатываются вместе с ней. Поэтому все записи через соединение выполняются
+ * под одной блокировкой записи:
+ * <ul>
+ *   <li>поток, вызвавший setAutoCommit(false) через обернутое соединение, захватывает
+ *       блокировку и держит ее до setAutoCommit(true) или закрытия соединения; его изменения
+ *       накапливаются до commit() и отбрасываются при rollback();</li>
+ *   <li>отдельное изменение в режиме автофиксации выполняется репозиторием внутри
+ *       {@link #locked}: оператор и запись в журнал идут под блокировкой, поэтому чужая
+ *       транзакция в это время не открыта, а номер записи в журнале соответствует
+ *       порядку фиксации.</li>
+ * </ul>
+ * Остальные писатели ждут окончания транзакции пакета (пакетная обработка, импорт,
+ * генерация), чтение блокировкой не ограничивается.
+ * Частичный откат к точке сохранения не отслеживается - репозитории их не используют.
+ * <p>
+ * Изменение уже зафиксировано в базе, поэтому ошибка записи журнала не отменяет
+ * операцию, а выводится в stderr.
+ */
+public class ChangeCapture implements AutoCloseable {
+    private final ChangeLog log;
+    // Запись через соединение: транзакция потока или одно изменение в режиме автофиксации
+    private final ReentrantLock writes = new ReentrantLock();
+
+    /**
+     * Изменение базы данных, выполняемое под блокировкой записи.
+     * @param <T> результат изменения
+     */
+    @FunctionalInterface
+    public interface Write<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * @param log журнал, в который дописываются зафиксированные изменения
+     */
+    public ChangeCapture(ChangeLog log) {
+        this.log = log;
+    }
+
+    /**
+     * @return журнал изменений
+     */
+    public ChangeLog getLog() {
+        return log;
+    }
+
+    /**
+     * Оборачивает соединение.
+     * @param connection исходное соединение
+     * @return соединение, сообщающее журналу о фиксации и откате транзакций
+     */
+    public Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new TransactionHandler(connection));
+    }
+
+    /**
+     * Выполняет изменение под блокировкой записи журнала. Запись в журнал
+     * ({@link #record}) должна выполняться внутри того же вызова: тогда между фиксацией
+     * изменения и присвоением ему номера в журнале не вклинится другое изменение.
+     * @param changes журнал изменений или null (тогда изменение выполняется без блокировки)
+     * @param write изменение
+     * @return результат изменения
+     * @throws SQLException при ошибках изменения
+     */
+    public static <T> T locked(ChangeCapture changes, Write<T> write) throws SQLException {
+        if (changes == null) {
+            return write.run();
+        }
+        changes.writes.lock();
+        try {
+            return write.run();
+        } finally {
+            changes.writes.unlock();
+        }
+    }
+
+    /**
+     * Записывает изменение, выполненное через соединение (внутри {@link #locked}).
+     * @param connection соединение, через которое выполнено изменение
+     * @param type вид изменения
+     * @param entityId идентификатор книги или пользователя
+     * @param payload данные сущности ({@link ChangePayload})
+     */
+    public void record(Connection connection, ChangeType type, int entityId, byte[] payload) {
+        Change change = new Change(type, entityId, payload);
+        if (!(Proxy.isProxyClass(connection.getClass())
+                && Proxy.getInvocationHandler(connection) instanceof TransactionHandler transaction
+                && transaction.defer(change))) {
+            // Поток не открывал транзакцию (или соединение без прокси): изменение уже зафиксировано
+            write(List.of(change));
+        }
+    }
+
+    private void write(List<Change> changes) {
+        try {
+            log.append(changes);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Журнал изменений: не удалось записать " + changes.size() + " изменений: " +
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Закрывает журнал.
+     */
+    @Override
+    public void close() {
+        try {
+            log.close();
+        } catch (IOException e) {
+            System.err.println("Не удалось закрыть журнал изменений: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Накапливает изменения транзакции, открытой потоком через соединение, и держит
+     * блокировку записи до ее окончания.
+     */
+    private final class TransactionHandler implements InvocationHandler {
+        private final Connection target;
+        // Изменения открытой транзакции потока (null - поток не открывал транзакцию)
+        private final ThreadLocal<List<Change>> pending = new ThreadLocal<>();
+
+        TransactionHandler(Connection target) {
+            this.target = target;
+        }
+
+        /**
+         * Откладывает изменение до фиксации транзакции текущего потока.
+         * @return false, если текущий поток не открывал транзакцию
+         */
+        boolean defer(Change change) {
+            List<Change> changes = pending.get();
+            if (changes == null) {
+                return false;
+            }
+            changes.add(change);
+            return true;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            boolean setAutoCommit = name.equals("setAutoCommit");
+            // Блокировка захватывается до проверки режима: иначе открытая другим потоком
+            // транзакция выглядела бы как уже открытая этим
+            boolean acquired = setAutoCommit && !(Boolean) args[0] && pending.get() == null;
+            if (acquired) {
+                writes.lock();
+            }
+            boolean wasAutoCommit = setAutoCommit && target.getAutoCommit();
+            boolean begin = acquired && wasAutoCommit;
+            if (acquired && !begin) {
+                writes.unlock(); // Транзакция открыта в обход обертки - отслеживать нечего
+            }
+            // setAutoCommit(true) внутри транзакции фиксирует ее
+            boolean finish = setAutoCommit && !wasAutoCommit && (Boolean) args[0];
+            boolean close = name.equals("close");
+            boolean commit = name.equals("commit") || finish;
+            boolean discard = name.equals("rollback") && (args == null || args.length == 0) || close;
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                if (discard) {
+                    take();
+                }
+                if (begin) {
+                    writes.unlock(); // Транзакция не открыта
+                } else if (close) {
+                    end();
+                }
+                throw e.getCause();
+            }
+            if (begin) {
+                pending.set(new ArrayList<>());
+            } else if (commit) {
+                List<Change> committed = take();
+                if (!committed.isEmpty()) {
+                    write(committed);
+                }
+            } else if (discard) {
+                take();
+            }
+            if (finish || close) {
+                end();
+            }
+            return result;
+        }
+
+        /**
+         * Завершает отслеживание транзакции текущего потока и освобождает блокировку записи.
+         */
+        private void end() {
+            if (pending.get() != null) {
+                pending.remove();
+                writes.unlock();
+            }
+        }
+
+        /**
+         * Забирает накопленные изменения транзакции текущего потока.
+         */
+        private List<Change> take() {
+            List<Change> changes = pending.get();
+            if (changes == null || changes.isEmpty()) {
+                return List.of();
+            }
+            List<Change> taken = new ArrayList<>(changes);
+            changes.clear();
+            return taken;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.library.changelog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений: только дописываемая последовательность записей об изменениях
+ * книг и пользователей, разбитая на сегменты changes-НОМЕР.log (НОМЕР - порядковый
+ * номер первой записи сегмента, 20 цифр). Сегмент закрывается, когда следующая запись
+ * превысила бы segmentBytes.
+ * <p>
+ * Формат записи (порядок байтов big-endian):
+ * <pre>
+ * int    длина тела
+ * int    CRC32 тела
+ * тело:  long порядковый номер, long время (мс), byte вид изменения,
+ *        int идентификатор сущности, данные сущности (JSON, UTF-8)
+ * </pre>
+ * Журнал открывается при первой записи: последний сегмент проверяется по контрольным
+ * суммам, недописанный после сбоя хвост отрезается, и нумерация продолжается без
+ * пропусков. Блокировка файла changes.lock в каталоге не дает двум писателям
+ * дописывать журнал одновременно. Записи попадают в кэш ОС сразу, на диск - при закрытии сегмента
+ * и журнала.
+ */
+public class ChangeLog implements AutoCloseable {
+    // Размер сегмента по умолчанию
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    static final String SEGMENT_PREFIX = "changes-";
+    static final String SEGMENT_SUFFIX = ".log";
+    static final int HEADER_BYTES = 8;       // Длина и контрольная сумма
+    static final int FIXED_BODY_BYTES = 21;  // Номер, время, вид, идентификатор
+    private static final String LOCK_FILE = "changes.lock";
+
+    private final Path directory;
+    private final long segmentBytes;
+
+    private FileChannel lockChannel;   // null - журнал еще не открыт
+    private FileLock lock;
+    private FileChannel segment;       // Текущий сегмент (null - сегментов еще нет)
+    private long segmentSize;
+    private long nextSequence = 1;
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * @param directory каталог сегментов (создается при первой записи)
+     * @param segmentBytes наибольший размер сегмента
+     * @throws IllegalArgumentException если размер сегмента не положителен или больше 2 ГБ
+     */
+    public ChangeLog(Path directory, long segmentBytes) {
+        if (segmentBytes <= 0 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Размер сегмента журнала изменений должен быть от 1 байта до 2 ГБ");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * @return каталог сегментов
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Дописывает изменения в журнал одной операцией записи.
+     * @param changes изменения в порядке фиксации
+     * @return порядковый номер последней записи
+     * @throws IOException при ошибках записи или если журнал занят другим процессом
+     */
+    public synchronized long append(List<Change> changes) throws IOException {
+        open();
+        long timestamp = System.currentTimeMillis();
+        buffer.clear();
+        for (Change change : changes) {
+            int size = HEADER_BYTES + FIXED_BODY_BYTES + change.payload().length;
+            long written = segmentSize + buffer.position();
+            if (segment == null || written > 0 && written + size > segmentBytes) {
+                write();
+                roll();
+            }
+            ensureCapacity(size);
+            int start = buffer.position();
+            buffer.putInt(FIXED_BODY_BYTES + change.payload().length).putInt(0)
+                    .putLong(nextSequence++).putLong(timestamp)
+                    .put(change.type().code()).putInt(change.entityId()).put(change.payload());
+            crc.reset();
+            crc.update(buffer.array(), start + HEADER_BYTES, size - HEADER_BYTES);
+            buffer.putInt(start + 4, (int) crc.getValue());
+        }
+        write();
+        return nextSequence - 1;
+    }
+
+    /**
+     * @return порядковый номер последней записи (0 - журнал пуст)
+     * @throws IOException при ошибках открытия журнала
+     */
+    public synchronized long getLastSequence() throws IOException {
+        open();
+        return nextSequence - 1;
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segmentSize += segment.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensureCapacity(int size) {
+        if (buffer.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает новый со следующего номера.
+     */
+    private void roll() throws IOException {
+        if (segment != null) {
+            segment.force(false);
+            segment.close();
+        }
+        segment = FileChannel.open(directory.resolve(segmentName(nextSequence)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segmentSize = segment.size();
+        segment.position(segmentSize);
+    }
+
+    /**
+     * Захватывает каталог и восстанавливает положение записи по последнему сегменту.
+     */
+    private void open() throws IOException {
+        if (lockChannel != null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null; // Журнал уже открыт в этом процессе
+        }
+        if (acquired == null) {
+            channel.close();
+            throw new IOException("Журнал изменений " + directory + " уже открыт для записи");
+        }
+        lockChannel = channel;
+        lock = acquired;
+
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        nextSequence = firstSequence(last);
+        segment = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validEnd = 0;
+        if (segment.size() > 0) {
+            MappedByteBuffer data = segment.map(FileChannel.MapMode.READ_ONLY, 0, segment.size());
+            int position = 0;
+            int length;
+            while ((length = validRecordLength(data, position, crc)) > 0) {
+                nextSequence = data.getLong(position + HEADER_BYTES) + 1;
+                position += length;
+            }
+            validEnd = position;
+        }
+        if (validEnd < segment.size()) {
+            System.err.println("Журнал изменений: отрезан недописанный хвост сегмента " + last.getFileName() +
+                    " (" + (segment.size() - validEnd) + " байт)");
+            segment.truncate(validEnd);
+        }
+        segmentSize = validEnd;
+        segment.position(validEnd);
+    }
+
+    /**
+     * Проверяет запись, начинающуюся в позиции.
+     * @return полная длина записи или 0, если запись отсутствует, недописана или повреждена
+     */
+    static int validRecordLength(ByteBuffer data, int position, CRC32 crc) {
+        if (data.limit() - position < HEADER_BYTES + FIXED_BODY_BYTES) {
+            return 0;
+        }
+        int bodyLength = data.getInt(position);
+        if (bodyLength < FIXED_BODY_BYTES || bodyLength > data.limit() - position - HEADER_BYTES) {
+            return 0;
+        }
+        crc.reset();
+        crc.update(data.slice(position + HEADER_BYTES, bodyLength));
+        if ((int) crc.getValue() != data.getInt(position + 4)) {
+            return 0;
+        }
+        return HEADER_BYTES + bodyLength;
+    }
+
+    static String segmentName(long firstSequence) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX);
+    }
+
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * @return сегменты журнала по возрастанию номера первой записи
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        Collections.sort(segments); // Номер дополнен нулями до 20 цифр
+        return segments;
+    }
+
+    /**
+     * Сбрасывает текущий сегмент на диск и освобождает каталог.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (segment != null) {
+                segment.force(false);
+                segment.close();
+                segment = null;
+            }
+        } finally {
+            if (lockChannel != null) {
+                lock.release();
+                lockChannel.close();
+                lockChannel = null;
+            }
+        }
+    }
+}
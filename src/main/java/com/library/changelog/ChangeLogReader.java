@@ -0,0 +1,147 @@
+package com.library.changelog;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Чтение журнала изменений с заданного порядкового номера, в том числе во время записи.
+ * Сегмент отображается в память, и данные записей отдаются срезами отображения без
+ * копирования; когда писатель дописывает сегмент, отображение расширяется, а когда
+ * открывает следующий - чтение переходит к нему. Недописанная запись (неполная или с
+ * неверной контрольной суммой) не возвращается, пока не будет дописана.
+ * <p>
+ * Последователь хранит номер следующей нужной записи ({@link #getNextSequence()})
+ * и после перезапуска продолжает с него, не перечитывая каталог целиком.
+ */
+public class ChangeLogReader implements AutoCloseable {
+    private final Path directory;
+    private final CRC32 crc = new CRC32();
+
+    private long nextSequence;
+    private Path currentSegment;
+    private FileChannel channel;       // Читаемый сегмент (null - еще не выбран)
+    private MappedByteBuffer mapped;
+    private int position;
+
+    /**
+     * @param directory каталог сегментов журнала
+     * @param fromSequence порядковый номер первой нужной записи (от 1)
+     * @throws IllegalArgumentException если номер меньше 1
+     */
+    public ChangeLogReader(Path directory, long fromSequence) {
+        if (fromSequence < 1) {
+            throw new IllegalArgumentException("Порядковый номер записи начинается с 1");
+        }
+        this.directory = directory;
+        this.nextSequence = fromSequence;
+    }
+
+    /**
+     * @return порядковый номер следующей записи, которую вернет {@link #poll(int)}
+     */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Читает очередные записи.
+     * @param max наибольшее количество записей
+     * @return записи по возрастанию номера; пустой список, если новых записей нет
+     * @throws IOException при ошибках чтения сегментов
+     */
+    public List<ChangeRecord> poll(int max) throws IOException {
+        List<ChangeRecord> records = new ArrayList<>(Math.min(max, 1024));
+        if (channel == null && !openSegment()) {
+            return records;
+        }
+        while (records.size() < max) {
+            int length = ChangeLog.validRecordLength(mapped, position, crc);
+            if (length == 0) {
+                if (remap()) {
+                    continue;
+                }
+                if (nextSegment()) {
+                    continue;
+                }
+                break;
+            }
+            long sequence = mapped.getLong(position + ChangeLog.HEADER_BYTES);
+            if (sequence >= nextSequence) {
+                int body = position + ChangeLog.HEADER_BYTES;
+                records.add(new ChangeRecord(sequence, mapped.getLong(body + 8),
+                        ChangeType.fromCode(mapped.get(body + 16)), mapped.getInt(body + 17),
+                        mapped.slice(body + ChangeLog.FIXED_BODY_BYTES, length - ChangeLog.HEADER_BYTES
+                                - ChangeLog.FIXED_BODY_BYTES).asReadOnlyBuffer()));
+                nextSequence = sequence + 1;
+            }
+            position += length;
+        }
+        return records;
+    }
+
+    /**
+     * Открывает сегмент, содержащий nextSequence (последний сегмент, начинающийся не позже него).
+     * @return false, если сегментов еще нет
+     */
+    private boolean openSegment() throws IOException {
+        List<Path> segments = ChangeLog.segments(directory);
+        if (segments.isEmpty()) {
+            return false;
+        }
+        Path chosen = segments.get(0);
+        for (Path segment : segments) {
+            if (ChangeLog.firstSequence(segment) <= nextSequence) {
+                chosen = segment;
+            }
+        }
+        open(chosen);
+        return true;
+    }
+
+    /**
+     * Переходит к следующему сегменту, если писатель его уже открыл.
+     */
+    private boolean nextSegment() throws IOException {
+        Path next = directory.resolve(ChangeLog.segmentName(nextSequence));
+        if (!Files.exists(next) || next.equals(currentSegment)) {
+            return false;
+        }
+        channel.close();
+        open(next);
+        return true;
+    }
+
+    private void open(Path segment) throws IOException {
+        channel = FileChannel.open(segment, StandardOpenOption.READ);
+        currentSegment = segment;
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        position = 0;
+    }
+
+    /**
+     * Расширяет отображение, если сегмент вырос.
+     */
+    private boolean remap() throws IOException {
+        long size = channel.size();
+        if (size <= mapped.limit()) {
+            return false;
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
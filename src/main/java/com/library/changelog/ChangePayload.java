@@ -0,0 +1,73 @@
+package com.library.changelog;
+
+import com.library.database.entities.Book;
+import com.library.database.entities.User;
+import com.library.json.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Данные сущностей для записей журнала изменений (JSON в UTF-8).
+ */
+public final class ChangePayload {
+    // Данные записи об удалении
+    public static final byte[] EMPTY = new byte[0];
+
+    private ChangePayload() {
+    }
+
+    /**
+     * @return все поля книги
+     */
+    public static byte[] book(Book book) {
+        return book(book, book.getId());
+    }
+
+    /**
+     * @param id идентификатор книги, если он не присвоен объекту (пакетная вставка)
+     * @return все поля книги
+     */
+    public static byte[] book(Book book, int id) {
+        StringWriter out = new StringWriter(128);
+        try {
+            new JsonWriter(out).beginObject()
+                    .name("id").value(id)
+                    .name("title").value(book.getTitle())
+                    .name("author").value(book.getAuthor())
+                    .name("isbn").value(book.getIsbn())
+                    .name("publicationYear").value(book.getPublicationYear())
+                    .name("available").value(book.isAvailable())
+                    .endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter не бросает IOException
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return доступность книги после выдачи или возврата
+     */
+    public static byte[] availability(int bookId, boolean available) {
+        return ("{\"id\":" + bookId + ",\"available\":" + available + "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return все поля пользователя
+     */
+    public static byte[] user(User user) {
+        StringWriter out = new StringWriter(64);
+        try {
+            new JsonWriter(out).beginObject()
+                    .name("id").value(user.getId())
+                    .name("name").value(user.getName())
+                    .name("email").value(user.getEmail())
+                    .endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter не бросает IOException
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,22 @@
+package com.library.changelog;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Запись, прочитанная из журнала изменений.
+ * @param sequence порядковый номер (возрастает без пропусков, начиная с 1)
+ * @param timestampMillis время записи (System.currentTimeMillis)
+ * @param type вид изменения
+ * @param entityId идентификатор книги или пользователя
+ * @param payload данные сущности в JSON (UTF-8) - срез отображенного в память сегмента без копирования
+ */
+public record ChangeRecord(long sequence, long timestampMillis, ChangeType type, int entityId, ByteBuffer payload) {
+
+    /**
+     * @return данные сущности строкой JSON (пустая строка для удаления)
+     */
+    public String payloadText() {
+        return StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+    }
+}
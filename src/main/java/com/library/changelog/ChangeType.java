@@ -0,0 +1,44 @@
+package com.library.changelog;
+
+/**
+ * Вид изменения в журнале изменений. Код хранится в записи журнала одним байтом
+ * и не должен меняться.
+ */
+public enum ChangeType {
+    BOOK_SAVED(1),
+    BOOK_UPDATED(2),
+    BOOK_DELETED(3),
+    BOOK_BORROWED(4),
+    BOOK_RETURNED(5),
+    USER_SAVED(11),
+    USER_UPDATED(12),
+    USER_DELETED(13);
+
+    private final byte code;
+
+    ChangeType(int code) {
+        this.code = (byte) code;
+    }
+
+    /**
+     * @return код вида изменения в записи журнала
+     */
+    public byte code() {
+        return code;
+    }
+
+    /**
+     * Определяет вид изменения по коду из записи журнала.
+     * @param code код
+     * @return вид изменения
+     * @throws IllegalArgumentException если код неизвестен
+     */
+    public static ChangeType fromCode(byte code) {
+        for (ChangeType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный вид изменения: " + code);
+    }
+}
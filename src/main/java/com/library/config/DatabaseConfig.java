@@ -10,6 +10,46 @@ public class DatabaseConfig {
     // Класс драйвера JDBC для SQLite
     private static final String DRIVER = "org.sqlite.JDBC";
 
+    // Порог медленного запроса по умолчанию (мс) и системное свойство для его изменения
+    private static final long SLOW_QUERY_THRESHOLD_MILLIS = 200;
+    private static final String SLOW_QUERY_THRESHOLD_PROPERTY = "library.slowQuery.thresholdMillis";
+
+    // Файл журнала медленных запросов по умолчанию и системное свойство для его изменения
+    private static final String SLOW_QUERY_LOG = "slow-queries.log";
+    private static final String SLOW_QUERY_LOG_PROPERTY = "library.slowQuery.log";
+
+    // Размер файла журнала, после которого он сменяется, и количество хранимых архивов
+    private static final long SLOW_QUERY_LOG_MAX_BYTES = 10L * 1024 * 1024;
+    private static final int SLOW_QUERY_LOG_FILES = 5;
+
+    // Режим журнала SQLite: WAL позволяет читать во время записи и обслуживания
+    private static final String JOURNAL_MODE = "WAL";
+    private static final String JOURNAL_MODE_PROPERTY = "library.journalMode";
+
+    // Период обслуживания базы (секунды) и системное свойство для его изменения
+    private static final long MAINTENANCE_INTERVAL_SECONDS = 300;
+    private static final String MAINTENANCE_INTERVAL_PROPERTY = "library.maintenance.intervalSeconds";
+
+    // Сколько база должна простаивать перед обслуживанием (секунды)
+    private static final long MAINTENANCE_IDLE_SECONDS = 5;
+
+    // Наибольшая длительность одного шага обслуживания (мс), на которую могут задержаться запросы
+    private static final long MAINTENANCE_STEP_BUDGET_MILLIS = 20;
+
+    // Каталог резервных копий, период планового копирования (минуты; 0 - выключено)
+    // и количество хранимых копий, а также системные свойства для их изменения
+    private static final String BACKUP_DIRECTORY = "backups";
+    private static final String BACKUP_DIRECTORY_PROPERTY = "library.backup.dir";
+    private static final long BACKUP_INTERVAL_MINUTES = 0;
+    private static final String BACKUP_INTERVAL_PROPERTY = "library.backup.intervalMinutes";
+    private static final int BACKUP_RETAIN = 7;
+    private static final String BACKUP_RETAIN_PROPERTY = "library.backup.retain";
+
+    // Каталог журнала изменений (пустое значение выключает журнал) и размер его сегмента
+    private static final String CHANGE_LOG_DIRECTORY = "changes";
+    private static final String CHANGE_LOG_DIRECTORY_PROPERTY = "library.changeLog.dir";
+    private static final long CHANGE_LOG_SEGMENT_BYTES = 64L * 1024 * 1024;
+
     /**
      * Возвращает URL для подключения к базе данных
      * @return строка с URL подключения
@@ -26,6 +66,110 @@ public class DatabaseConfig {
         return DRIVER;
     }
 
+    /**
+     * Возвращает порог медленного запроса (системное свойство library.slowQuery.thresholdMillis)
+     * @return порог в миллисекундах; отрицательное значение выключает обнаружение медленных запросов
+     */
+    public long getSlowQueryThresholdMillis() {
+        return Long.getLong(SLOW_QUERY_THRESHOLD_PROPERTY, SLOW_QUERY_THRESHOLD_MILLIS);
+    }
+
+    /**
+     * Возвращает путь к журналу медленных запросов (системное свойство library.slowQuery.log)
+     * @return путь к файлу журнала
+     */
+    public String getSlowQueryLogPath() {
+        return System.getProperty(SLOW_QUERY_LOG_PROPERTY, SLOW_QUERY_LOG);
+    }
+
+    /**
+     * Возвращает размер файла журнала медленных запросов, после которого он сменяется новым
+     * @return размер в байтах
+     */
+    public long getSlowQueryLogMaxBytes() {
+        return SLOW_QUERY_LOG_MAX_BYTES;
+    }
+
+    /**
+     * Возвращает количество хранимых архивных файлов журнала медленных запросов
+     * @return количество архивов
+     */
+    public int getSlowQueryLogFiles() {
+        return SLOW_QUERY_LOG_FILES;
+    }
+
+    /**
+     * Возвращает режим журнала SQLite (системное свойство library.journalMode)
+     * @return режим журнала, например WAL или DELETE
+     */
+    public String getJournalMode() {
+        return System.getProperty(JOURNAL_MODE_PROPERTY, JOURNAL_MODE);
+    }
+
+    /**
+     * Возвращает период фонового обслуживания базы (системное свойство library.maintenance.intervalSeconds)
+     * @return период в секундах; значение не больше нуля выключает обслуживание
+     */
+    public long getMaintenanceIntervalSeconds() {
+        return Long.getLong(MAINTENANCE_INTERVAL_PROPERTY, MAINTENANCE_INTERVAL_SECONDS);
+    }
+
+    /**
+     * Возвращает время простоя базы, после которого можно начинать обслуживание
+     * @return время в секундах
+     */
+    public long getMaintenanceIdleSeconds() {
+        return MAINTENANCE_IDLE_SECONDS;
+    }
+
+    /**
+     * Возвращает наибольшую длительность одного шага обслуживания
+     * @return длительность в миллисекундах
+     */
+    public long getMaintenanceStepBudgetMillis() {
+        return MAINTENANCE_STEP_BUDGET_MILLIS;
+    }
+
+    /**
+     * Возвращает каталог резервных копий (системное свойство library.backup.dir)
+     * @return путь к каталогу
+     */
+    public String getBackupDirectory() {
+        return System.getProperty(BACKUP_DIRECTORY_PROPERTY, BACKUP_DIRECTORY);
+    }
+
+    /**
+     * Возвращает период планового резервного копирования (системное свойство library.backup.intervalMinutes)
+     * @return период в минутах; значение не больше нуля выключает плановое копирование
+     */
+    public long getBackupIntervalMinutes() {
+        return Long.getLong(BACKUP_INTERVAL_PROPERTY, BACKUP_INTERVAL_MINUTES);
+    }
+
+    /**
+     * Возвращает количество хранимых резервных копий (системное свойство library.backup.retain)
+     * @return количество последних копий
+     */
+    public int getBackupRetain() {
+        return Integer.getInteger(BACKUP_RETAIN_PROPERTY, BACKUP_RETAIN);
+    }
+
+    /**
+     * Возвращает каталог журнала изменений (системное свойство library.changeLog.dir)
+     * @return путь к каталогу; пустая строка выключает журнал изменений
+     */
+    public String getChangeLogDirectory() {
+        return System.getProperty(CHANGE_LOG_DIRECTORY_PROPERTY, CHANGE_LOG_DIRECTORY);
+    }
+
+    /**
+     * Возвращает размер сегмента журнала изменений
+     * @return размер в байтах
+     */
+    public long getChangeLogSegmentBytes() {
+        return CHANGE_LOG_SEGMENT_BYTES;
+    }
+
     /**
      * Метод-заглушка для совместимости (SQLite не требует логина)
      * @return пустую строку
@@ -2,8 +2,14 @@ package com.library.controllers;
 
 import com.library.database.entities.Book;
 import com.library.exceptions.DatabaseException;
+import com.library.query.BookQuery;
+import com.library.search.BookScanIndex;
+import com.library.search.Completion;
+import com.library.search.FacetCounts;
+import com.library.search.YearHistogram;
 import com.library.services.BookService;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 /**
@@ -11,6 +17,15 @@ import java.util.Scanner;
  * Обрабатывает пользовательский ввод и взаимодействует с BookService
  */
 public class BookController {
+    // Количество подсказок, выводимых при автодополнении
+    private static final int COMPLETION_LIMIT = 10;
+    // Допустимое число опечаток в слове при нечетком поиске
+    private static final int FUZZY_MAX_EDITS = 2;
+    // Количество авторов в сводке по результатам поиска
+    private static final int FACET_AUTHOR_LIMIT = 5;
+    // Количество лучших результатов поиска по названию и автору
+    private static final int SEARCH_RESULT_LIMIT = 20;
+
     private final BookService bookService;  // Сервис для работы с книгами
     private final Scanner scanner;         // Для чтения пользовательского ввода
 
@@ -305,6 +320,10 @@ public class BookController {
         System.out.println("1. Поиск по названию");
         System.out.println("2. Поиск по автору");
         System.out.println("3. Поиск по ISBN");
+        System.out.println("4. Подсказки по началу названия или автора");
+        System.out.println("5. Поиск с опечатками");
+        System.out.println("6. Расширенный поиск (автор, годы, доступность)");
+        System.out.println("7. Книги по годам публикации");
         System.out.print("Выберите вариант поиска: ");
 
         // Выбор критерия поиска
@@ -324,18 +343,40 @@ public class BookController {
             case 1:
                 System.out.print("Введите название для поиска: ");
                 searchTerm = scanner.nextLine();
-                results = bookService.searchByTitle(searchTerm);
+                results = bookService.searchByTitle(searchTerm, SEARCH_RESULT_LIMIT);
                 break;
             case 2:
                 System.out.print("Введите автора для поиска: ");
                 searchTerm = scanner.nextLine();
-                results = bookService.searchByAuthor(searchTerm);
+                results = bookService.searchByAuthor(searchTerm, SEARCH_RESULT_LIMIT);
                 break;
             case 3:
                 System.out.print("Введите ISBN для поиска: ");
                 searchTerm = scanner.nextLine();
                 results = bookService.searchByIsbn(searchTerm);
                 break;
+            case 4:
+                System.out.print("Введите начало названия или имени автора: ");
+                showCompletions(scanner.nextLine());
+                return;
+            case 5:
+                System.out.print("Введите название или автора (допускаются опечатки): ");
+                searchTerm = scanner.nextLine();
+                results = bookService.fuzzySearch(searchTerm, FUZZY_MAX_EDITS);
+                break;
+            case 6:
+                BookQuery query = readAdvancedQuery();
+                if (query == null) {
+                    return;
+                }
+                results = bookService.findBooks(query);
+                break;
+            case 7:
+                results = readYearRange();
+                if (results == null) {
+                    return;
+                }
+                break;
             default:
                 System.out.println("Неверный вариант поиска.");
                 return;
@@ -358,6 +399,99 @@ public class BookController {
                         book.getPublicationYear(),
                         status);
             });
+            if ((option == 1 || option == 2) && results.size() == SEARCH_RESULT_LIMIT) {
+                System.out.println("Показаны " + SEARCH_RESULT_LIMIT + " лучших совпадений; уточните запрос, чтобы увидеть остальные.");
+            }
+            printFacets(bookService.getFacetCounts(results));
+        }
+    }
+
+    /**
+     * Выводит сводку по результатам поиска: доступность, десятилетия и самые частые авторы
+     * @param facets значения фасетов
+     */
+    private void printFacets(FacetCounts facets) {
+        System.out.printf("%nДоступно: %d | В аренде: %d%n", facets.available(), facets.onLoan());
+        System.out.print("По десятилетиям:");
+        facets.decades().forEach((decade, count) -> System.out.printf(" %d-е: %d;", decade, count));
+        System.out.println();
+        System.out.print("Авторы:");
+        facets.authors().entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(FACET_AUTHOR_LIMIT)
+                .forEach(entry -> System.out.printf(" %s: %d;", entry.getKey(), entry.getValue()));
+        System.out.println();
+    }
+
+    /**
+     * Запрашивает диапазон лет и выводит распределение книг диапазона по десятилетиям.
+     * @return книги, изданные в диапазоне, или null, если ввод некорректен
+     */
+    private List<Book> readYearRange() {
+        int fromYear;
+        int toYear;
+        try {
+            System.out.print("Год публикации от: ");
+            fromYear = Integer.parseInt(scanner.nextLine().trim());
+            System.out.print("Год публикации до: ");
+            toYear = Integer.parseInt(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Неверный формат года.");
+            return null;
+        }
+
+        YearHistogram histogram = bookService.getYearHistogram();
+        System.out.printf("Книг за %d-%d: %d из %d%n", fromYear, toYear,
+                histogram.countBetween(fromYear, toYear), histogram.total());
+        histogram.byDecade().forEach((decade, count) -> {
+            if (decade + 9 >= fromYear && decade <= toYear) {
+                System.out.printf("  %d-е: %d%n", decade, count);
+            }
+        });
+        return bookService.findBooksByYearRange(fromYear, toYear);
+    }
+
+    /**
+     * Запрашивает условия расширенного поиска. Пустой ввод означает, что условие не задано.
+     * @return составной запрос или null, если ввод некорректен
+     */
+    private BookQuery readAdvancedQuery() {
+        BookQuery.Builder builder = BookQuery.builder().orderBy(BookQuery.SortField.YEAR, true);
+        try {
+            System.out.print("Автор содержит (пусто - любой): ");
+            String author = scanner.nextLine();
+            if (!author.isBlank()) builder.authorContains(author);
+
+            System.out.print("Год публикации от (пусто - без ограничения): ");
+            String yearFrom = scanner.nextLine();
+            if (!yearFrom.isBlank()) builder.yearFrom(Integer.parseInt(yearFrom.trim()));
+
+            System.out.print("Год публикации до (пусто - без ограничения): ");
+            String yearTo = scanner.nextLine();
+            if (!yearTo.isBlank()) builder.yearTo(Integer.parseInt(yearTo.trim()));
+
+            System.out.print("Только доступные книги? (yes/no): ");
+            if (scanner.nextLine().equalsIgnoreCase("yes")) builder.available(true);
+        } catch (NumberFormatException e) {
+            System.out.println("Неверный формат года.");
+            return null;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Выводит подсказки автодополнения для введенного начала строки
+     * @param prefix начало названия или имени автора
+     */
+    private void showCompletions(String prefix) {
+        List<Completion> completions = bookService.autocomplete(prefix, COMPLETION_LIMIT);
+        if (completions.isEmpty()) {
+            System.out.println("Подсказок не найдено.");
+            return;
         }
+        System.out.println("\nПодсказки:");
+        completions.forEach(completion -> System.out.printf("%s (%s)%n",
+                completion.text(),
+                completion.field() == BookScanIndex.Field.TITLE ? "название" : "автор"));
     }
 }
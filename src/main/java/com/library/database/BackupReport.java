@@ -0,0 +1,19 @@
+package com.library.database;
+
+import java.nio.file.Path;
+
+/**
+ * Итоги создания одной резервной копии базы данных.
+ * @param file файл резервной копии
+ * @param bytes размер копии
+ * @param copyNanos время копирования страниц
+ * @param verifyNanos время проверки целостности копии
+ */
+public record BackupReport(Path file, long bytes, long copyNanos, long verifyNanos) {
+
+    @Override
+    public String toString() {
+        return String.format("%s: %.1f МБ, копирование=%.1f мс, проверка=%.1f мс",
+                file, bytes / (1024.0 * 1024.0), copyNanos / 1e6, verifyNanos / 1e6);
+    }
+}
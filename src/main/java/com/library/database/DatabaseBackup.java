@@ -0,0 +1,287 @@
+package com.library.database;
+
+import org.sqlite.SQLiteConnection;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Резервное копирование работающей базы данных через SQLite backup API.
+ * <p>
+ * Копия снимается через отдельное соединение, поэтому запросы приложения не ждут
+ * его окончания. В режиме WAL копирование - это одна читающая транзакция: оно видит
+ * согласованный снимок базы и не мешает записи (до окончания копирования лишь
+ * откладывается перенос WAL в файл базы). В режиме журнала отката читатель блокирует
+ * фиксацию записи, поэтому о таком режиме выводится предупреждение.
+ * <p>
+ * Копия пишется во временный файл, проверяется PRAGMA integrity_check и только после
+ * этого переименовывается в library-ГГГГММДД-ЧЧММСС.db; в каталоге хранится не больше
+ * retain последних копий. Плановая копия делается в период простоя приложения; если
+ * простоя нет дольше еще одного периода, копия делается без ожидания.
+ */
+public class DatabaseBackup implements DatabaseBackupMBean, AutoCloseable {
+    private static final String PREFIX = "library-";
+    private static final String SUFFIX = ".db";
+    private static final String PARTIAL_SUFFIX = ".partial";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    // Наибольший период проверки, пора ли делать плановую копию (секунды)
+    private static final long CHECK_SECONDS = 60;
+
+    private final String url;
+    private final Path directory;
+    private final int retain;
+    private final LongSupplier lastActivity; // Время последнего обращения приложения (System.nanoTime)
+    private final long idleNanos;
+
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private volatile BackupReport lastReport;
+    private volatile long lastSnapshotMillis;   // Время последней копии (System.currentTimeMillis)
+    private boolean journalWarningShown;
+
+    private ScheduledExecutorService scheduler; // null - плановое копирование не запущено
+
+    /**
+     * @param url URL базы данных
+     * @param directory каталог резервных копий (создается при первой копии)
+     * @param retain сколько последних копий хранить
+     * @param lastActivity время последнего обращения приложения к базе (System.nanoTime)
+     * @param idleNanos сколько база должна простаивать перед плановой копией
+     * @throws IllegalArgumentException если retain не положителен
+     */
+    public DatabaseBackup(String url, Path directory, int retain, LongSupplier lastActivity, long idleNanos) {
+        if (retain <= 0) {
+            throw new IllegalArgumentException("Количество хранимых копий должно быть положительным числом");
+        }
+        this.url = url;
+        this.directory = directory;
+        this.retain = retain;
+        this.lastActivity = lastActivity;
+        this.idleNanos = idleNanos;
+    }
+
+    /**
+     * Запускает плановое копирование в фоновом потоке. Отсчет периода ведется
+     * от последней копии в каталоге, поэтому перезапуск приложения не порождает лишних копий.
+     * @param intervalMinutes период между копиями
+     * @throws IllegalStateException если копирование уже запущено
+     */
+    public synchronized void start(long intervalMinutes) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Резервное копирование уже запущено");
+        }
+        long intervalMillis = TimeUnit.MINUTES.toMillis(intervalMinutes);
+        try {
+            List<Path> existing = snapshotFiles();
+            if (!existing.isEmpty()) {
+                lastSnapshotMillis = Files.getLastModifiedTime(existing.get(existing.size() - 1)).toMillis();
+            }
+        } catch (IOException e) {
+            System.err.println("Не удалось прочитать каталог резервных копий: " + e.getMessage());
+        }
+        long check = Math.min(CHECK_SECONDS, TimeUnit.MINUTES.toSeconds(intervalMinutes));
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("library-backup").daemon().factory());
+        scheduler.scheduleWithFixedDelay(() -> {
+            long since = System.currentTimeMillis() - lastSnapshotMillis;
+            if (since < intervalMillis) {
+                return;
+            }
+            boolean idle = System.nanoTime() - lastActivity.getAsLong() >= idleNanos;
+            if (!idle && since < 2 * intervalMillis) {
+                deferred.incrementAndGet();
+                return;
+            }
+            try {
+                BackupReport report = snapshot();
+                System.out.println("Резервная копия создана: " + report);
+            } catch (SQLException | IOException | RuntimeException e) {
+                System.err.println("Ошибка резервного копирования: " + e.getMessage());
+            }
+        }, check, check, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Создает резервную копию, проверяет ее целостность и удаляет копии сверх retain.
+     * @return итоги копирования
+     * @throws SQLException при ошибке копирования или если копия не прошла проверку целостности
+     * @throws IOException при ошибках работы с каталогом копий
+     */
+    public synchronized BackupReport snapshot() throws SQLException, IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(PREFIX + LocalDateTime.now().format(TIMESTAMP) + SUFFIX);
+        Path partial = target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+        try {
+            long copyStarted = System.nanoTime();
+            try (Connection source = DriverManager.getConnection(url)) {
+                warnIfNotWal(source);
+                // Копирование целиком в одной читающей транзакции: снимок согласован,
+                // а запись через другие соединения в режиме WAL продолжается
+                ((SQLiteConnection) source).getDatabase().backup("main", partial.toString(), null);
+            }
+            long copyNanos = System.nanoTime() - copyStarted;
+
+            long verifyStarted = System.nanoTime();
+            verify(partial);
+            long verifyNanos = System.nanoTime() - verifyStarted;
+
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+            BackupReport report = new BackupReport(target, Files.size(target), copyNanos, verifyNanos);
+            lastReport = report;
+            lastSnapshotMillis = System.currentTimeMillis();
+            snapshots.incrementAndGet();
+            prune();
+            return report;
+        } catch (SQLException | IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+    }
+
+    /**
+     * Проверяет целостность копии.
+     * @throws SQLException если проверка нашла повреждения
+     */
+    private static void verify(Path file) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        try (Connection copy = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement stmt = copy.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA integrity_check")) {
+            while (rs.next()) {
+                problems.add(rs.getString(1));
+            }
+        }
+        if (!problems.equals(List.of("ok"))) {
+            throw new SQLException("Резервная копия не прошла проверку целостности: " + String.join("; ", problems));
+        }
+    }
+
+    private void warnIfNotWal(Connection source) throws SQLException {
+        if (journalWarningShown) {
+            return;
+        }
+        try (Statement stmt = source.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+            String mode = rs.next() ? rs.getString(1) : "";
+            if (!"wal".equalsIgnoreCase(mode)) {
+                System.err.println("Режим журнала " + mode + ": запись в базу будет ждать окончания резервного копирования");
+                journalWarningShown = true;
+            }
+        }
+    }
+
+    /**
+     * Удаляет самые старые копии сверх retain.
+     */
+    private void prune() throws IOException {
+        List<Path> files = snapshotFiles();
+        for (int i = 0; i < files.size() - retain; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    /**
+     * @return файлы резервных копий от старых к новым (имя содержит время создания)
+     */
+    private List<Path> snapshotFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    @Override
+    public long getSnapshots() {
+        return snapshots.get();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public long getDeferred() {
+        return deferred.get();
+    }
+
+    @Override
+    public String getLastSnapshot() {
+        BackupReport report = lastReport;
+        return report != null ? report.file().toString() : null;
+    }
+
+    @Override
+    public long getLastBytes() {
+        BackupReport report = lastReport;
+        return report != null ? report.bytes() : 0;
+    }
+
+    @Override
+    public double getLastCopyMillis() {
+        BackupReport report = lastReport;
+        return report != null ? report.copyNanos() / 1e6 : 0;
+    }
+
+    @Override
+    public double getLastVerifyMillis() {
+        BackupReport report = lastReport;
+        return report != null ? report.verifyNanos() / 1e6 : 0;
+    }
+
+    @Override
+    public String backupNow() {
+        try {
+            return snapshot().toString();
+        } catch (SQLException | IOException e) {
+            return "Ошибка резервного копирования: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Останавливает плановое копирование, дождавшись окончания текущей копии.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = scheduler;
+            scheduler = null;
+        }
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
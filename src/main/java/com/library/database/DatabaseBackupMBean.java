@@ -0,0 +1,31 @@
+package com.library.database;
+
+/**
+ * Резервное копирование базы данных, публикуемое через JMX.
+ */
+public interface DatabaseBackupMBean {
+
+    // Количество созданных резервных копий
+    long getSnapshots();
+
+    // Количество неудачных попыток (ошибка копирования или проверки целостности)
+    long getFailures();
+
+    // Количество отложенных плановых копий из-за запросов приложения
+    long getDeferred();
+
+    // Файл последней резервной копии
+    String getLastSnapshot();
+
+    // Размер последней резервной копии (байты)
+    long getLastBytes();
+
+    // Время копирования последней резервной копии (мс)
+    double getLastCopyMillis();
+
+    // Время проверки целостности последней резервной копии (мс)
+    double getLastVerifyMillis();
+
+    // Создать резервную копию немедленно
+    String backupNow();
+}
@@ -0,0 +1,395 @@
+package com.library.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Фоновое обслуживание базы данных в периоды простоя:
+ * <ol>
+ *   <li>удаление старых записей журнала изменений каталога (catalog_changes): хранятся последние
+ *       100 000 записей, отставший дальше читатель перечитывает каталог целиком (журнал очищает
+ *       и сам сервис книг при обновлении каталога в памяти, здесь - то, что осталось после
+ *       записи другими процессами);</li>
+ *   <li>пересчет статистики планировщика (ANALYZE с ограничением analysis_limit)
+ *       для таблиц, число строк которых заметно изменилось с прошлого пересчета;</li>
+ *   <li>инкрементальная очистка: возврат свободных страниц файлу
+ *       (PRAGMA incremental_vacuum, только при auto_vacuum=INCREMENTAL);</li>
+ *   <li>пассивная контрольная точка WAL (не ждет читателей и писателей).</li>
+ * </ol>
+ * Обслуживание выполняется через отдельное соединение. Проход начинается, только если
+ * приложение не обращалось к базе не меньше idleNanos. Очистка идет шагами: если шаг
+ * превысил бюджет, следующий шаг вдвое меньше, если занял меньше четверти бюджета -
+ * вдвое больше; между шагами делается пауза длиной в шаг. Как только приложение
+ * обращается к базе, проход прерывается до следующего периода.
+ */
+public class DatabaseMaintenance implements DatabaseMaintenanceMBean, AutoCloseable {
+    // Страниц в первом шаге очистки и пределы размера шага
+    private static final int INITIAL_VACUUM_PAGES = 256;
+    private static final int MIN_VACUUM_PAGES = 16;
+    private static final int MAX_VACUUM_PAGES = 8192;
+    // Строк в выборке индекса для ANALYZE (приближенная статистика за ограниченное время)
+    private static final int ANALYSIS_LIMIT = 1000;
+    // Относительное изменение числа строк, после которого статистика считается устаревшей
+    private static final double STALE_STATISTICS_RATIO = 0.1;
+    // Последних записей журнала изменений каталога, которые не удаляются
+    private static final long CHANGE_FEED_RETAIN = 100_000;
+    // Записей журнала изменений, удаляемых за один шаг
+    private static final long CHANGE_FEED_PRUNE_STEP = 10_000;
+    // Таблицы, статистика которых поддерживается
+    private static final List<String> TABLES = List.of("books", "users");
+
+    private final String url;
+    private final LongSupplier lastActivity; // Время последнего обращения приложения (System.nanoTime)
+    private final long idleNanos;
+    private final long stepBudgetNanos;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+    private final AtomicLong checkpointed = new AtomicLong();
+    private final AtomicLong analyzed = new AtomicLong();
+    private final AtomicLong maxStepNanos = new AtomicLong();
+    private volatile long freelist;
+    private volatile MaintenanceReport lastReport;
+
+    private Connection connection;               // Соединение обслуживания (открывается при первом проходе)
+    private ScheduledExecutorService scheduler; // null - периодическое обслуживание не запущено
+    private int vacuumPages = INITIAL_VACUUM_PAGES;
+    // Наибольший rowid таблицы на момент последнего ANALYZE в этом процессе
+    private final Map<String, Long> analyzedRowids = new HashMap<>();
+
+    /**
+     * @param url URL базы данных
+     * @param lastActivity время последнего обращения приложения к базе (System.nanoTime)
+     * @param idleNanos сколько база должна простаивать перед проходом
+     * @param stepBudgetNanos желаемая наибольшая длительность одного шага
+     */
+    public DatabaseMaintenance(String url, LongSupplier lastActivity, long idleNanos, long stepBudgetNanos) {
+        this.url = url;
+        this.lastActivity = lastActivity;
+        this.idleNanos = idleNanos;
+        this.stepBudgetNanos = stepBudgetNanos;
+    }
+
+    /**
+     * Запускает периодическое обслуживание в фоновом потоке.
+     * @param intervalSeconds период проверки простоя и проходов
+     * @throws IllegalStateException если обслуживание уже запущено
+     */
+    public synchronized void start(long intervalSeconds) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Обслуживание базы данных уже запущено");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("library-maintenance").daemon().factory());
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                run(false);
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Ошибка обслуживания базы данных: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Выполняет один проход обслуживания.
+     * @param force true - не проверять простой и не прерываться
+     * @return итоги прохода или null, если база не простаивает
+     * @throws SQLException при ошибках обслуживания
+     */
+    public synchronized MaintenanceReport run(boolean force) throws SQLException {
+        long started = System.nanoTime();
+        if (!force && started - lastActivity.getAsLong() < idleNanos) {
+            deferred.incrementAndGet();
+            return null;
+        }
+        Connection db = connection();
+        long stepMax = 0;
+
+        if (exists(db, "catalog_changes")) {
+            long deleted = CHANGE_FEED_PRUNE_STEP;
+            while (deleted == CHANGE_FEED_PRUNE_STEP) {
+                if (!force && busySince(started)) {
+                    return finish(false, 0, 0, 0, -1, 0, 0, 0, stepMax);
+                }
+                long step = System.nanoTime();
+                try (Statement stmt = db.createStatement()) {
+                    deleted = stmt.executeUpdate("DELETE FROM catalog_changes WHERE seq <= MIN(" +
+                            "(SELECT MAX(seq) FROM catalog_changes) - " + CHANGE_FEED_RETAIN + ", " +
+                            "(SELECT MIN(seq) FROM catalog_changes) + " + (CHANGE_FEED_PRUNE_STEP - 1) + ")");
+                }
+                stepMax = Math.max(stepMax, System.nanoTime() - step);
+            }
+        }
+
+        long analyzeStarted = System.nanoTime();
+        int tables = 0;
+        for (Map.Entry<String, Long> table : staleTables(db).entrySet()) {
+            if (!force && busySince(started)) {
+                return finish(false, tables, System.nanoTime() - analyzeStarted, 0, -1, 0, 0, 0, stepMax);
+            }
+            long step = System.nanoTime();
+            try (Statement stmt = db.createStatement()) {
+                stmt.execute("PRAGMA analysis_limit = " + ANALYSIS_LIMIT);
+                stmt.execute("ANALYZE " + table.getKey());
+            }
+            analyzedRowids.put(table.getKey(), table.getValue());
+            stepMax = Math.max(stepMax, System.nanoTime() - step);
+            tables++;
+        }
+        long analyzeNanos = System.nanoTime() - analyzeStarted;
+
+        long vacuumStarted = System.nanoTime();
+        long freeBefore = pragma(db, "freelist_count");
+        long free = freeBefore;
+        boolean completed = true;
+        if (pragma(db, "auto_vacuum") == 2) { // INCREMENTAL
+            while (free > 0) {
+                if (!force && busySince(started)) {
+                    completed = false;
+                    break;
+                }
+                long step = System.nanoTime();
+                try (Statement stmt = db.createStatement()) {
+                    // executeUpdate выполняет прагму до конца; execute освобождает одну страницу
+                    stmt.executeUpdate("PRAGMA incremental_vacuum(" + vacuumPages + ")");
+                }
+                long elapsed = System.nanoTime() - step;
+                stepMax = Math.max(stepMax, elapsed);
+                adaptVacuumStep(elapsed);
+                free = pragma(db, "freelist_count");
+                pause(elapsed);
+            }
+        }
+        long vacuumNanos = System.nanoTime() - vacuumStarted;
+        if (!completed) {
+            return finish(false, tables, analyzeNanos, freeBefore - free, free, vacuumNanos, 0, 0, stepMax);
+        }
+
+        long checkpointStarted = System.nanoTime();
+        long frames = 0;
+        if ("wal".equalsIgnoreCase(pragmaText(db, "journal_mode"))) {
+            try (Statement stmt = db.createStatement();
+                 ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(PASSIVE)")) {
+                if (rs.next()) {
+                    frames = Math.max(0, rs.getLong(3)); // busy, log, checkpointed
+                }
+            }
+        }
+        long checkpointNanos = System.nanoTime() - checkpointStarted;
+        stepMax = Math.max(stepMax, checkpointNanos);
+        return finish(true, tables, analyzeNanos, freeBefore - free, free, vacuumNanos, frames, checkpointNanos,
+                stepMax);
+    }
+
+    private MaintenanceReport finish(boolean completed, int tables, long analyzeNanos, long reclaimedPages,
+                                     long freelistPages, long vacuumNanos, long frames, long checkpointNanos,
+                                     long stepMax) {
+        MaintenanceReport report = new MaintenanceReport(completed, tables, analyzeNanos, reclaimedPages,
+                freelistPages, vacuumNanos, frames, checkpointNanos, stepMax);
+        if (completed) {
+            runs.incrementAndGet();
+        } else {
+            deferred.incrementAndGet();
+        }
+        analyzed.addAndGet(tables);
+        reclaimed.addAndGet(reclaimedPages);
+        checkpointed.addAndGet(frames);
+        maxStepNanos.accumulateAndGet(stepMax, Math::max);
+        if (freelistPages >= 0) {
+            freelist = freelistPages;
+        }
+        lastReport = report;
+        return report;
+    }
+
+    /**
+     * Таблицы, для которых нет статистики или число строк изменилось больше чем на
+     * {@link #STALE_STATISTICS_RATIO}. Число строк оценивается по наибольшему rowid
+     * (за логарифмическое время, без просмотра таблицы). После удалений эта оценка
+     * завышена, поэтому после первого ANALYZE сравнивается с наибольшим rowid на момент
+     * пересчета, а не с числом строк из sqlite_stat1.
+     * @return таблица - ее наибольший rowid
+     */
+    private Map<String, Long> staleTables(Connection db) throws SQLException {
+        Map<String, Long> stale = new LinkedHashMap<>();
+        boolean statistics = exists(db, "sqlite_stat1");
+        for (String table : TABLES) {
+            if (!exists(db, table)) {
+                continue;
+            }
+            long rows;
+            try (Statement stmt = db.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(rowid), 0) FROM " + table)) {
+                rows = rs.next() ? rs.getLong(1) : 0;
+            }
+            long analyzedRows = analyzedRowids.getOrDefault(table, -1L);
+            if (analyzedRows < 0 && statistics) {
+                try (Statement stmt = db.createStatement();
+                     ResultSet rs = stmt.executeQuery(
+                             "SELECT stat FROM sqlite_stat1 WHERE tbl = '" + table + "' AND idx IS NULL " +
+                                     "UNION ALL SELECT stat FROM sqlite_stat1 WHERE tbl = '" + table + "' LIMIT 1")) {
+                    if (rs.next()) {
+                        analyzedRows = Long.parseLong(rs.getString(1).split(" ")[0]);
+                    }
+                }
+            }
+            if (analyzedRows < 0 ? rows > 0
+                    : Math.abs(rows - analyzedRows) > STALE_STATISTICS_RATIO * Math.max(analyzedRows, 1)) {
+                stale.put(table, rows);
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Меняет размер шага очистки так, чтобы шаг укладывался в бюджет.
+     */
+    private void adaptVacuumStep(long elapsed) {
+        if (elapsed > stepBudgetNanos) {
+            vacuumPages = Math.max(MIN_VACUUM_PAGES, vacuumPages / 2);
+        } else if (elapsed < stepBudgetNanos / 4) {
+            vacuumPages = Math.min(MAX_VACUUM_PAGES, vacuumPages * 2);
+        }
+    }
+
+    /**
+     * Пауза длиной в шаг: запросы приложения получают не меньше половины времени.
+     */
+    private static void pause(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean busySince(long started) {
+        return lastActivity.getAsLong() - started > 0 || Thread.currentThread().isInterrupted();
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = DriverManager.getConnection(url);
+        }
+        return connection;
+    }
+
+    private static boolean exists(Connection db, String table) throws SQLException {
+        try (Statement stmt = db.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = '" +
+                     table + "'")) {
+            return rs.next();
+        }
+    }
+
+    private static long pragma(Connection db, String name) throws SQLException {
+        String value = pragmaText(db, name);
+        return value != null ? Long.parseLong(value) : 0;
+    }
+
+    private static String pragmaText(Connection db, String name) throws SQLException {
+        try (Statement stmt = db.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA " + name)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    @Override
+    public long getRuns() {
+        return runs.get();
+    }
+
+    @Override
+    public long getDeferredRuns() {
+        return deferred.get();
+    }
+
+    @Override
+    public long getReclaimedPages() {
+        return reclaimed.get();
+    }
+
+    @Override
+    public long getFreelistPages() {
+        return freelist;
+    }
+
+    @Override
+    public long getCheckpointedFrames() {
+        return checkpointed.get();
+    }
+
+    @Override
+    public long getAnalyzedTables() {
+        return analyzed.get();
+    }
+
+    @Override
+    public double getLastRunMillis() {
+        MaintenanceReport report = lastReport;
+        return report != null ? report.totalNanos() / 1e6 : 0;
+    }
+
+    @Override
+    public double getMaxStepMillis() {
+        return maxStepNanos.get() / 1e6;
+    }
+
+    @Override
+    public String getLastReport() {
+        MaintenanceReport report = lastReport;
+        return report != null ? report.toString() : null;
+    }
+
+    @Override
+    public String runNow() {
+        try {
+            return run(true).toString();
+        } catch (SQLException e) {
+            return "Ошибка обслуживания: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Останавливает периодическое обслуживание и закрывает соединение обслуживания.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = scheduler;
+            scheduler = null;
+        }
+        if (running != null) {
+            running.shutdownNow();
+            try {
+                running.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    System.err.println("Не удалось закрыть соединение обслуживания: " + e.getMessage());
+                }
+                connection = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.library.database;
+
+/**
+ * Фоновое обслуживание базы данных, публикуемое через JMX.
+ */
+public interface DatabaseMaintenanceMBean {
+
+    // Количество выполненных проходов обслуживания
+    long getRuns();
+
+    // Количество проходов, пропущенных или прерванных из-за запросов приложения
+    long getDeferredRuns();
+
+    // Всего возвращено страниц из списка свободных
+    long getReclaimedPages();
+
+    // Свободных страниц в файле базы после последнего прохода
+    long getFreelistPages();
+
+    // Всего перенесено кадров WAL в файл базы
+    long getCheckpointedFrames();
+
+    // Количество таблиц, для которых пересчитана статистика планировщика
+    long getAnalyzedTables();
+
+    // Длительность последнего прохода (мс)
+    double getLastRunMillis();
+
+    // Наибольшая длительность одного шага (мс) - наибольшая задержка запросов из-за обслуживания
+    double getMaxStepMillis();
+
+    // Итоги последнего прохода
+    String getLastReport();
+
+    // Выполнить проход немедленно, не дожидаясь простоя
+    String runNow();
+}
@@ -1,11 +1,19 @@
 package com.library.database;
 
+import com.library.changelog.ChangeCapture;
+import com.library.changelog.ChangeLog;
 import com.library.config.DatabaseConfig;
+import com.library.metrics.ConnectionAcquisitionEvent;
+import com.library.metrics.SlowQueryLog;
 
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Класс для работы с подключением к базе данных библиотеки.
@@ -18,6 +26,21 @@ public class LibraryDatabase implements AutoCloseable {
     // JDBC-соединение с базой данных
     private Connection connection;
 
+    // Соединение только для чтения зафиксированного состояния (null - еще не открыто)
+    private Connection readConnection;
+
+    // Отслеживание запросов: медленные запросы и время последнего обращения
+    private final SlowQueryDetector slowQueries;
+
+    // Передача зафиксированных изменений в журнал изменений (null - журнал выключен)
+    private final ChangeCapture changes;
+
+    // Фоновое обслуживание (null - не запущено)
+    private DatabaseMaintenance maintenance;
+
+    // Плановое резервное копирование (null - не запущено)
+    private DatabaseBackup backup;
+
     /**
      * Конструктор инициализирует подключение к БД
      * @param config конфигурация базы данных (не может быть null)
@@ -26,19 +49,39 @@ public class LibraryDatabase implements AutoCloseable {
     public LibraryDatabase(DatabaseConfig config) throws SQLException {
         // Проверяем что конфиг не null
         this.config = Objects.requireNonNull(config, "DatabaseConfig не может быть null");
+        // Медленные запросы записываются, если порог не отрицательный
+        this.slowQueries = new SlowQueryDetector(config.getSlowQueryThresholdMillis() < 0 ? null
+                : new SlowQueryLog(Path.of(config.getSlowQueryLogPath()),
+                        config.getSlowQueryLogMaxBytes(), config.getSlowQueryLogFiles(),
+                        config.getSlowQueryThresholdMillis()));
+        String changeLog = config.getChangeLogDirectory();
+        this.changes = changeLog.isEmpty() ? null
+                : new ChangeCapture(new ChangeLog(Path.of(changeLog), config.getChangeLogSegmentBytes()));
         // Инициализируем БД
         initializeDatabase();
     }
 
     /**
-     * Инициализирует подключение к базе данных
-     * @throws SQLException если возникли проблемы с подключением
+     * Инициализирует подключение к базе данных, задает режим журнала и приводит схему
+     * к последней версии (см. {@link SchemaMigrator}). В новой базе включается
+     * инкрементальная очистка (auto_vacuum=INCREMENTAL): существующую базу в этот режим
+     * переводит только полная очистка ({@link #vacuum()}).
+     * @throws SQLException если возникли проблемы с подключением или миграцией схемы
      */
     private void initializeDatabase() throws SQLException {
         try {
 
             Class.forName(config.getDriver());
-            this.connection = DriverManager.getConnection(config.getUrl());
+            Connection raw = DriverManager.getConnection(config.getUrl());
+            try (Statement stmt = raw.createStatement()) {
+                if (isEmpty(raw)) {
+                    stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                }
+                stmt.execute("PRAGMA journal_mode = " + config.getJournalMode());
+            }
+            new SchemaMigrator(raw).migrate();
+            Connection tracked = slowQueries.wrap(raw);
+            this.connection = changes != null ? changes.wrap(tracked) : tracked;
 
         } catch (ClassNotFoundException e) {
             throw new SQLException("Драйвер базы данных не найден: " + config.getDriver(), e);
@@ -51,22 +94,180 @@ public class LibraryDatabase implements AutoCloseable {
      * @throws SQLException если не удалось установить соединение
      */
     public Connection getConnection() throws SQLException {
+        ConnectionAcquisitionEvent event = new ConnectionAcquisitionEvent();
+        event.begin();
         // Если соединение null или закрыто - переподключаемся
-        if (connection == null || connection.isClosed()) {
+        boolean reconnect = connection == null || connection.isClosed();
+        if (reconnect) {
             initializeDatabase();
         }
+        if (event.shouldCommit()) {
+            event.url = config.getUrl();
+            event.reconnected = reconnect;
+            event.commit();
+        }
         return connection;
     }
 
+    /**
+     * Возвращает отдельное соединение только для чтения. Через общее соединение видны
+     * незафиксированные изменения транзакции, открытой любым потоком; отдельное соединение
+     * видит только зафиксированные изменения, поэтому через него загружаются данные,
+     * которые должны пережить откат транзакции (индексы каталога в памяти).
+     * @return соединение только для чтения (закрывается вместе с базой)
+     * @throws SQLException если не удалось установить соединение
+     */
+    public synchronized Connection getReadConnection() throws SQLException {
+        if (readConnection == null || readConnection.isClosed()) {
+            Connection raw = DriverManager.getConnection(config.getUrl());
+            try (Statement stmt = raw.createStatement()) {
+                stmt.execute("PRAGMA query_only = ON");
+            }
+            readConnection = slowQueries.wrap(raw);
+        }
+        return readConnection;
+    }
+
+    private static boolean isEmpty(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master LIMIT 1")) {
+            return !rs.next();
+        }
+    }
+
+    /**
+     * Возвращает журнал медленных запросов
+     * @return журнал или null, если обнаружение медленных запросов выключено
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueries.getLog();
+    }
+
+    /**
+     * Возвращает передачу изменений в журнал изменений для репозиториев
+     * @return передача изменений или null, если журнал изменений выключен
+     */
+    public ChangeCapture getChangeCapture() {
+        return changes;
+    }
+
+    /**
+     * Запускает фоновое обслуживание базы (см. {@link DatabaseMaintenance}) с периодом из конфигурации.
+     * @return обслуживание или null, если оно выключено в конфигурации
+     * @throws IllegalStateException если обслуживание уже запущено
+     */
+    public synchronized DatabaseMaintenance startMaintenance() {
+        if (maintenance != null) {
+            throw new IllegalStateException("Обслуживание базы данных уже запущено");
+        }
+        long interval = config.getMaintenanceIntervalSeconds();
+        if (interval <= 0) {
+            return null;
+        }
+        maintenance = createMaintenance();
+        maintenance.start(interval);
+        return maintenance;
+    }
+
+    /**
+     * Создает обслуживание базы без запуска по расписанию (для однократного прохода).
+     * @return обслуживание; закрывается вызывающей стороной
+     */
+    public DatabaseMaintenance createMaintenance() {
+        return new DatabaseMaintenance(config.getUrl(), slowQueries::getLastActivityNanos,
+                TimeUnit.SECONDS.toNanos(config.getMaintenanceIdleSeconds()),
+                TimeUnit.MILLISECONDS.toNanos(config.getMaintenanceStepBudgetMillis()));
+    }
+
+    /**
+     * Запускает плановое резервное копирование (см. {@link DatabaseBackup}) с параметрами из конфигурации.
+     * @return резервное копирование или null, если оно выключено в конфигурации
+     * @throws IllegalStateException если копирование уже запущено
+     */
+    public synchronized DatabaseBackup startBackups() {
+        if (backup != null) {
+            throw new IllegalStateException("Резервное копирование уже запущено");
+        }
+        long interval = config.getBackupIntervalMinutes();
+        if (interval <= 0) {
+            return null;
+        }
+        backup = createBackup(Path.of(config.getBackupDirectory()));
+        backup.start(interval);
+        return backup;
+    }
+
+    /**
+     * Создает резервное копирование в каталог без запуска по расписанию (для однократной копии).
+     * @param directory каталог резервных копий
+     * @return резервное копирование; закрывается вызывающей стороной
+     */
+    public DatabaseBackup createBackup(Path directory) {
+        return new DatabaseBackup(config.getUrl(), directory, config.getBackupRetain(),
+                slowQueries::getLastActivityNanos, TimeUnit.SECONDS.toNanos(config.getMaintenanceIdleSeconds()));
+    }
+
+    /**
+     * Полная очистка базы (VACUUM): перестраивает файл и переводит его в режим
+     * инкрементальной очистки. Блокирует базу на время выполнения.
+     * @return размер файла в страницах до и после очистки
+     * @throws SQLException при ошибке очистки
+     */
+    public long[] vacuum() throws SQLException {
+        Connection db = getConnection();
+        try (Statement stmt = db.createStatement()) {
+            long before = pageCount(stmt);
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            stmt.execute("VACUUM");
+            return new long[]{before, pageCount(stmt)};
+        }
+    }
+
+    private static long pageCount(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA page_count")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
     /**
      * Закрывает соединение с БД. Реализация AutoCloseable.
+     * Фоновое обслуживание и резервное копирование останавливаются, соединение для чтения закрывается;
+     * перед закрытием выполняется PRAGMA optimize,
+     * чтобы статистика таблиц, запрошенных за время работы, осталась актуальной.
+     * Журнал медленных запросов дополняется итогами по отпечаткам запросов,
+     * журнал изменений сбрасывается на диск.
      * Гарантирует освобождение ресурсов даже при возникновении ошибки.
      */
     @Override
     public void close() {
+        synchronized (this) {
+            if (maintenance != null) {
+                maintenance.close();
+                maintenance = null;
+            }
+            if (backup != null) {
+                backup.close();
+                backup = null;
+            }
+        }
+        synchronized (this) {
+            if (readConnection != null) {
+                try {
+                    readConnection.close();
+                } catch (SQLException e) {
+                    System.err.println("Ошибка при закрытии соединения для чтения: " + e.getMessage());
+                }
+                readConnection = null;
+            }
+        }
         try {
             // Если соединение существует и не закрыто - закрываем его
             if (connection != null && !connection.isClosed()) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("PRAGMA optimize");
+                } catch (SQLException e) {
+                    System.err.println("Не удалось обновить статистику перед закрытием: " + e.getMessage());
+                }
                 connection.close();
             }
         } catch (SQLException e) {
@@ -75,6 +276,12 @@ public class LibraryDatabase implements AutoCloseable {
         } finally {
             // Гарантируем что connection будет null после закрытия
             connection = null;
+            if (slowQueries.getLog() != null) {
+                slowQueries.getLog().close();
+            }
+            if (changes != null) {
+                changes.close();
+            }
         }
     }
 
@@ -0,0 +1,34 @@
+package com.library.database;
+
+/**
+ * Итоги одного прохода обслуживания базы данных.
+ * @param completed true - проход выполнен целиком, false - прерван запросами приложения
+ * @param analyzedTables таблиц с пересчитанной статистикой планировщика
+ * @param analyzeNanos время пересчета статистики
+ * @param reclaimedPages страниц возвращено из списка свободных (инкрементальная очистка)
+ * @param freelistPages свободных страниц осталось
+ * @param vacuumNanos время инкрементальной очистки
+ * @param checkpointedFrames кадров WAL перенесено в файл базы
+ * @param checkpointNanos время контрольной точки WAL
+ * @param maxStepNanos наибольшая длительность одного шага
+ */
+public record MaintenanceReport(boolean completed, int analyzedTables, long analyzeNanos,
+                                long reclaimedPages, long freelistPages, long vacuumNanos,
+                                long checkpointedFrames, long checkpointNanos, long maxStepNanos) {
+
+    /**
+     * @return общее время прохода
+     */
+    public long totalNanos() {
+        return analyzeNanos + vacuumNanos + checkpointNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: статистика=%d табл. (%.1f мс), очистка=%d стр. (%.1f мс, свободно %d), " +
+                        "контрольная точка=%d кадров (%.1f мс), наибольший шаг=%.1f мс",
+                completed ? "выполнено" : "прервано",
+                analyzedTables, analyzeNanos / 1e6, reclaimedPages, vacuumNanos / 1e6, freelistPages,
+                checkpointedFrames, checkpointNanos / 1e6, maxStepNanos / 1e6);
+    }
+}
@@ -0,0 +1,326 @@
+package com.library.database;
+
+import com.library.search.SearchNormalizer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Версионированные миграции схемы базы данных.
+ * <p>
+ * Номер версии схемы хранится в таблице schema_version (одна строка на примененную
+ * миграцию). При запуске применяются все миграции с номером больше текущей версии,
+ * каждая в отдельной транзакции вместе с записью о ней, поэтому прерванная миграция
+ * будет применена заново целиком.
+ * <p>
+ * Миграции написаны так, что их можно применить к базе, созданной до появления
+ * schema_version: существующие таблицы, столбцы и индексы не создаются повторно.
+ * Новые изменения схемы добавляются только новой миграцией в конец {@link #MIGRATIONS}.
+ */
+public class SchemaMigrator {
+    // Вторичные индексы книг для поиска по ключам, году и доступности
+    public static final List<String> BOOK_SECONDARY_INDEXES = List.of(
+            "CREATE INDEX IF NOT EXISTS idx_books_title_norm ON books (title_norm)",
+            "CREATE INDEX IF NOT EXISTS idx_books_author_norm ON books (author_norm)",
+            "CREATE INDEX IF NOT EXISTS idx_books_publication_year ON books (publication_year)",
+            "CREATE INDEX IF NOT EXISTS idx_books_available_year ON books (available, publication_year)");
+
+    // Имена вторичных индексов книг (в порядке BOOK_SECONDARY_INDEXES)
+    public static final List<String> BOOK_SECONDARY_INDEX_NAMES = List.of(
+            "idx_books_title_norm", "idx_books_author_norm", "idx_books_publication_year", "idx_books_available_year");
+
+    // Триггеры таблицы books, которые ведут журнал изменений каталога (catalog_changes)
+    public static final List<String> CHANGE_FEED_TRIGGERS = List.of(
+            "CREATE TRIGGER IF NOT EXISTS trg_books_insert_change AFTER INSERT ON books BEGIN " +
+                    "INSERT INTO catalog_changes (book_id) VALUES (NEW.id); END",
+            "CREATE TRIGGER IF NOT EXISTS trg_books_update_change AFTER UPDATE ON books BEGIN " +
+                    "INSERT INTO catalog_changes (book_id) VALUES (NEW.id); END",
+            "CREATE TRIGGER IF NOT EXISTS trg_books_delete_change AFTER DELETE ON books BEGIN " +
+                    "INSERT INTO catalog_changes (book_id) VALUES (OLD.id); END");
+
+    // Имена триггеров журнала изменений (в порядке CHANGE_FEED_TRIGGERS)
+    public static final List<String> CHANGE_FEED_TRIGGER_NAMES = List.of(
+            "trg_books_insert_change", "trg_books_update_change", "trg_books_delete_change");
+
+    /**
+     * Одна миграция схемы.
+     * @param version номер версии схемы после миграции
+     * @param description описание изменения
+     * @param step изменение схемы (выполняется внутри транзакции)
+     */
+    public record Migration(int version, String description, Step step) {
+    }
+
+    /**
+     * Изменение схемы.
+     */
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    // Все миграции по возрастанию версии
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Таблицы книг и пользователей", sql(
+                    "CREATE TABLE IF NOT EXISTS books (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "title TEXT NOT NULL," +
+                            "author TEXT NOT NULL," +
+                            "isbn TEXT UNIQUE NOT NULL," +
+                            "publication_year INTEGER," +
+                            "available BOOLEAN DEFAULT TRUE)",
+                    "CREATE TABLE IF NOT EXISTS users (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "name TEXT NOT NULL," +
+                            "email TEXT NOT NULL UNIQUE)")),
+            new Migration(2, "Поисковые ключи названия и автора книги", SchemaMigrator::addSearchKeys),
+            new Migration(3, "Индексы по ISBN, email, поисковым ключам, году и доступности",
+                    SchemaMigrator::createIndexes),
+            new Migration(4, "Счетчик выдач книги", SchemaMigrator::addLoanCount),
+            new Migration(5, "Журнал изменений каталога для индексов в памяти", SchemaMigrator::createChangeFeed));
+
+    // Версия схемы, которую ожидает приложение
+    public static final int LATEST_VERSION = MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+
+    private final Connection connection;
+
+    /**
+     * @param connection соединение с базой данных
+     */
+    public SchemaMigrator(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Приводит схему к последней версии.
+     * @return количество примененных миграций
+     * @throws SQLException при ошибке миграции (схема остается в версии последней успешной миграции)
+     * @throws IllegalStateException если схема базы новее, чем известно приложению
+     */
+    public int migrate() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INTEGER PRIMARY KEY," +
+                    "description TEXT NOT NULL," +
+                    "applied_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+                    "duration_ms INTEGER NOT NULL)");
+        }
+        int current = currentVersion();
+        if (current > LATEST_VERSION) {
+            throw new IllegalStateException("Версия схемы базы данных (" + current +
+                    ") новее поддерживаемой приложением (" + LATEST_VERSION + ")");
+        }
+
+        int applied = 0;
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            connection.setAutoCommit(false);
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version() <= current) {
+                    continue;
+                }
+                long started = System.nanoTime();
+                try {
+                    migration.step().apply(connection);
+                    try (PreparedStatement stmt = connection.prepareStatement(
+                            "INSERT INTO schema_version (version, description, duration_ms) VALUES (?, ?, ?)")) {
+                        stmt.setInt(1, migration.version());
+                        stmt.setString(2, migration.description());
+                        stmt.setLong(3, (System.nanoTime() - started) / 1_000_000);
+                        stmt.executeUpdate();
+                    }
+                    connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw new SQLException("Ошибка миграции схемы до версии " + migration.version() +
+                            " (" + migration.description() + "): " + e.getMessage(), e);
+                }
+                applied++;
+                System.out.println("Применена миграция схемы " + migration.version() + ": " + migration.description());
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return applied;
+    }
+
+    /**
+     * @return текущая версия схемы (0 - миграции не применялись)
+     * @throws SQLException при ошибках чтения
+     */
+    public int currentVersion() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Создает вторичные индексы книг, если их нет.
+     * @param connection соединение с базой данных
+     * @throws SQLException при ошибках создания индексов
+     */
+    public static void createBookIndexes(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : BOOK_SECONDARY_INDEXES) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Создает триггеры журнала изменений каталога, если их нет.
+     * @param connection соединение с базой данных
+     * @throws SQLException при ошибках создания триггеров
+     */
+    public static void createChangeFeedTriggers(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : CHANGE_FEED_TRIGGERS) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает журнал изменений каталога после записи в обход триггеров (например,
+     * массовой загрузки): все записи удаляются, кроме одной новой, номер которой на 2 больше
+     * последнего выданного. Разрыв в номерах означает для любого читателя журнала, что
+     * изменения пропущены, и каталог в памяти перечитывается целиком.
+     * @param connection соединение с базой данных (в режиме автофиксации)
+     * @throws SQLException при ошибках записи
+     */
+    public static void resetChangeFeed(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            // sqlite_sequence хранит наибольший выданный номер и после удаления записей
+            stmt.execute("INSERT INTO catalog_changes (seq, book_id) SELECT " +
+                    "COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'catalog_changes'), 0) + 2, " +
+                    "COALESCE((SELECT MAX(id) FROM books), 0)");
+            stmt.execute("DELETE FROM catalog_changes WHERE seq < (SELECT MAX(seq) FROM catalog_changes)");
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static Step sql(String... statements) {
+        return connection -> {
+            try (Statement stmt = connection.createStatement()) {
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+            }
+        };
+    }
+
+    /**
+     * Добавляет столбцы поисковых ключей (если база создана до их появления)
+     * и вычисляет ключи для книг, у которых их нет.
+     */
+    private static void addSearchKeys(Connection connection) throws SQLException {
+        Set<String> columns = columns(connection, "books");
+        try (Statement stmt = connection.createStatement()) {
+            if (!columns.contains("title_norm")) {
+                stmt.execute("ALTER TABLE books ADD COLUMN title_norm TEXT");
+            }
+            if (!columns.contains("author_norm")) {
+                stmt.execute("ALTER TABLE books ADD COLUMN author_norm TEXT");
+            }
+        }
+
+        String select = "SELECT id, title, author FROM books WHERE title_norm IS NULL OR author_norm IS NULL";
+        String update = "UPDATE books SET title_norm = ?, author_norm = ? WHERE id = ?";
+        try (Statement selectStmt = connection.createStatement();
+             ResultSet rs = selectStmt.executeQuery(select);
+             PreparedStatement updateStmt = connection.prepareStatement(update)) {
+            int pending = 0;
+            while (rs.next()) {
+                updateStmt.setString(1, SearchNormalizer.normalize(rs.getString("title")));
+                updateStmt.setString(2, SearchNormalizer.normalize(rs.getString("author")));
+                updateStmt.setInt(3, rs.getInt("id"));
+                updateStmt.addBatch();
+                pending++;
+            }
+            if (pending > 0) {
+                updateStmt.executeBatch();
+                System.out.println("Заполнены поисковые ключи для " + pending + " книг(и)");
+            }
+        }
+    }
+
+    /**
+     * Добавляет счетчик выдач книги - сигнал популярности для ранжирования поиска и подсказок.
+     */
+    private static void addLoanCount(Connection connection) throws SQLException {
+        if (!columns(connection, "books").contains("loan_count")) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("ALTER TABLE books ADD COLUMN loan_count INTEGER NOT NULL DEFAULT 0");
+            }
+        }
+    }
+
+    /**
+     * Создает индексы путей запросов. Уникальные индексы ISBN и email создаются, только
+     * если ограничение UNIQUE таблицы их еще не дает.
+     */
+    private static void createChangeFeed(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            // AUTOINCREMENT: номера не используются повторно после очистки журнала
+            stmt.execute("CREATE TABLE IF NOT EXISTS catalog_changes (" +
+                    "seq INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "book_id INTEGER NOT NULL)");
+        }
+        createChangeFeedTriggers(connection);
+    }
+
+    private static void createIndexes(Connection connection) throws SQLException {
+        ensureUniqueIndex(connection, "books", "isbn", "idx_books_isbn");
+        ensureUniqueIndex(connection, "users", "email", "idx_users_email");
+        createBookIndexes(connection);
+    }
+
+    private static void ensureUniqueIndex(Connection connection, String table, String column, String name)
+            throws SQLException {
+        List<String> unique = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA index_list(" + table + ")")) {
+            while (rs.next()) {
+                if (rs.getBoolean("unique")) {
+                    unique.add(rs.getString("name"));
+                }
+            }
+        }
+        for (String index : unique) {
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("PRAGMA index_info(" + index + ")")) {
+                if (rs.next() && column.equals(rs.getString("name")) && !rs.next()) {
+                    return; // Уже есть уникальный индекс ровно по этому столбцу
+                }
+            }
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + name + " ON " + table + " (" + column + ")");
+        }
+    }
+
+    private static Set<String> columns(Connection connection, String table) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                columns.add(rs.getString("name"));
+            }
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,225 @@
+package com.library.database;
+
+import com.library.metrics.SlowQueryLog;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Обнаружение медленных запросов на уровне JDBC. Соединение оборачивается в прокси,
+ * который отслеживает все создаваемые через него Statement и PreparedStatement.
+ * <p>
+ * Длительность изменения (executeUpdate, execute, executeBatch) - время вызова.
+ * SQLite выполняет выборку по мере чтения строк, поэтому время одного executeQuery
+ * не отражает стоимость полного просмотра: длительность выборки - суммарное время
+ * executeQuery и всех вызовов ResultSet.next(). Время, которое вызывающий код тратит
+ * на обработку строк между вызовами next(), не учитывается. Выборка считается
+ * завершенной, когда next() вернул false или закрыт ResultSet, оператор либо
+ * оператор выполняется снова.
+ * <p>
+ * Для запроса дольше порога {@link SlowQueryLog} через исходное соединение получается
+ * план EXPLAIN QUERY PLAN (без значений параметров; не чаще раза в минуту для одной
+ * формы запроса), и случай записывается в журнал.
+ * <p>
+ * Кроме того, запоминается время последнего обращения к базе через соединение:
+ * по нему фоновое обслуживание ({@link DatabaseMaintenance}) определяет простой.
+ */
+public class SlowQueryDetector {
+    private final SlowQueryLog log; // null - медленные запросы не записываются
+    private volatile long lastActivity = System.nanoTime();
+
+    /**
+     * @param log журнал, в который записываются медленные запросы (порог задается в нем),
+     *            или null, если отслеживается только время последнего обращения
+     */
+    public SlowQueryDetector(SlowQueryLog log) {
+        this.log = log;
+    }
+
+    /**
+     * @return журнал медленных запросов или null
+     */
+    public SlowQueryLog getLog() {
+        return log;
+    }
+
+    /**
+     * @return время последнего выполнения или завершения запроса (System.nanoTime)
+     */
+    public long getLastActivityNanos() {
+        return lastActivity;
+    }
+
+    /**
+     * Оборачивает соединение.
+     * @param connection исходное соединение
+     * @return соединение, отслеживающее длительность запросов
+     */
+    public Connection wrap(Connection connection) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Object result = invoke(method, connection, args);
+            String name = method.getName();
+            if (result instanceof PreparedStatement statement && name.equals("prepareStatement")) {
+                return track(PreparedStatement.class, statement, connection, (String) args[0]);
+            }
+            if (result instanceof Statement statement && name.equals("createStatement")) {
+                return track(Statement.class, statement, connection, null);
+            }
+            return result;
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    private <T extends Statement> T track(Class<T> type, T statement, Connection connection, String sql) {
+        StatementHandler handler = new StatementHandler(statement, connection, sql);
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Отслеживает выполнения одного оператора.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final Connection connection;
+        private final String preparedSql;
+        private String querySql;   // Текст выполняемой выборки (null - выборка не выполняется)
+        private long queryNanos;   // Время выборки внутри executeQuery и ResultSet.next()
+
+        StatementHandler(Statement target, Connection connection, String preparedSql) {
+            this.target = target;
+            this.connection = connection;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("executeQuery")) {
+                finishQuery();
+                String sql = args != null && args.length > 0 ? (String) args[0] : preparedSql;
+                long started = System.nanoTime();
+                lastActivity = started;
+                ResultSet resultSet = (ResultSet) SlowQueryDetector.invoke(method, target, args);
+                querySql = sql;
+                queryNanos = System.nanoTime() - started;
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                        new ResultSetHandler(resultSet, (Statement) proxy));
+            }
+            if (name.equals("close")) {
+                finishQuery();
+                return SlowQueryDetector.invoke(method, target, args);
+            }
+            if (name.startsWith("execute")) {
+                finishQuery();
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+                long started = System.nanoTime();
+                lastActivity = started;
+                try {
+                    return SlowQueryDetector.invoke(method, target, args);
+                } finally {
+                    long finished = System.nanoTime();
+                    lastActivity = finished;
+                    check(sql, finished - started);
+                }
+            }
+            if (name.equals("getConnection")) {
+                return connection;
+            }
+            return SlowQueryDetector.invoke(method, target, args);
+        }
+
+        private void finishQuery() {
+            if (querySql != null) {
+                String sql = querySql;
+                querySql = null;
+                lastActivity = System.nanoTime();
+                check(sql, queryNanos);
+            }
+        }
+
+        private void check(String sql, long nanos) {
+            if (sql != null && log != null && log.isSlow(nanos)) {
+                SlowQueryLog.Fingerprint fingerprint = log.fingerprint(sql);
+                log.record(fingerprint, nanos, fingerprint.needsPlan() ? explain(connection, sql) : null);
+            }
+        }
+    }
+
+    /**
+     * Учитывает время чтения строк выборки и ее завершение.
+     */
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final Statement statement;     // Прокси оператора, создавшего выборку
+        private final StatementHandler owner;
+
+        ResultSetHandler(ResultSet target, Statement statement) {
+            this.target = target;
+            this.statement = statement;
+            this.owner = (StatementHandler) Proxy.getInvocationHandler(statement);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next": {
+                    long started = System.nanoTime();
+                    boolean hasRow = (Boolean) SlowQueryDetector.invoke(method, target, args);
+                    owner.queryNanos += System.nanoTime() - started;
+                    if (!hasRow) {
+                        owner.finishQuery();
+                    }
+                    return hasRow;
+                }
+                case "close":
+                    owner.finishQuery();
+                    return SlowQueryDetector.invoke(method, target, args);
+                case "getStatement":
+                    return statement;
+                default:
+                    return SlowQueryDetector.invoke(method, target, args);
+            }
+        }
+    }
+
+    /**
+     * Получает план выполнения запроса через исходное соединение.
+     * @return строки плана или null для операторов без плана (DDL, PRAGMA) и при ошибке
+     */
+    private static List<String> explain(Connection connection, String sql) {
+        String head = sql.stripLeading().toUpperCase(Locale.ROOT);
+        if (!(head.startsWith("SELECT") || head.startsWith("WITH") || head.startsWith("INSERT")
+                || head.startsWith("UPDATE") || head.startsWith("DELETE"))) {
+            return null;
+        }
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                plan.add(rs.getString("detail"));
+            }
+        } catch (SQLException e) {
+            return null;
+        }
+        return plan;
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
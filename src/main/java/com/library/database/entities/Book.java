@@ -11,6 +11,9 @@ public class Book {
     private String isbn;            // ISBN книги
     private int publicationYear;    // Год публикации
     private boolean available;      // Флаг доступности книги (true - доступна)
+    private int loanCount;          // Сколько раз книга выдавалась
+    private String normalizedTitle;  // Поисковый ключ названия (вычисляется при сохранении)
+    private String normalizedAuthor; // Поисковый ключ автора (вычисляется при сохранении)
 
     /**
      * Конструктор книги с обязательными параметрами.
@@ -46,6 +49,7 @@ public class Book {
             throw new IllegalArgumentException("Название не может быть пустым");
         }
         this.title = title.trim();  // Удаляем лишние пробелы
+        this.normalizedTitle = null; // Ключ устарел и будет пересчитан при сохранении
     }
 
     /**
@@ -58,6 +62,7 @@ public class Book {
             throw new IllegalArgumentException("Автор не может быть пустым");
         }
         this.author = author.trim();  // Удаляем лишние пробелы
+        this.normalizedAuthor = null; // Ключ устарел и будет пересчитан при сохранении
     }
 
     /**
@@ -129,6 +134,52 @@ public class Book {
     public void setAvailable(boolean available) {
         this.available = available;
     }
-}
 
+    /**
+     * Возвращает количество выдач книги за все время.
+     * @return счетчик выдач (увеличивается при каждой выдаче)
+     */
+    public int getLoanCount() {
+        return loanCount;
+    }
+
+    /**
+     * Устанавливает количество выдач книги (используется репозиторием).
+     * @param loanCount счетчик выдач
+     */
+    public void setLoanCount(int loanCount) {
+        this.loanCount = loanCount;
+    }
+
+    /**
+     * Возвращает поисковый ключ названия, сохраненный вместе с книгой.
+     * @return нормализованное название или null, если книга еще не сохранялась
+     */
+    public String getNormalizedTitle() {
+        return normalizedTitle;
+    }
+
+    /**
+     * Устанавливает поисковый ключ названия (используется репозиторием).
+     * @param normalizedTitle нормализованное название
+     */
+    public void setNormalizedTitle(String normalizedTitle) {
+        this.normalizedTitle = normalizedTitle;
+    }
+
+    /**
+     * Возвращает поисковый ключ автора, сохраненный вместе с книгой.
+     * @return нормализованное имя автора или null, если книга еще не сохранялась
+     */
+    public String getNormalizedAuthor() {
+        return normalizedAuthor;
+    }
 
+    /**
+     * Устанавливает поисковый ключ автора (используется репозиторием).
+     * @param normalizedAuthor нормализованное имя автора
+     */
+    public void setNormalizedAuthor(String normalizedAuthor) {
+        this.normalizedAuthor = normalizedAuthor;
+    }
+}
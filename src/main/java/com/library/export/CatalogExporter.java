@@ -0,0 +1,297 @@
+package com.library.export;
+
+import com.library.database.entities.Book;
+import com.library.database.entities.User;
+import com.library.json.JsonWriter;
+import com.library.query.BookQuery;
+import com.library.services.BookService;
+import com.library.services.UserService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Потоковая выгрузка книг, пользователей и выданных книг в CSV или JSON Lines.
+ * <p>
+ * Записи читаются курсором через {@link BookService#forEachBook} и
+ * {@link UserService#forEachUser} и сразу кодируются в прямой буфер, который
+ * сбрасывается в {@link FileChannel}; в памяти одновременно находится одна запись
+ * и один буфер, поэтому потребление памяти не зависит от размера каталога.
+ * Выгрузка пишется во временный файл рядом с целевым и переносится на его место
+ * только после успешного завершения, так что прерванная выгрузка не оставляет
+ * неполный файл.
+ */
+public class CatalogExporter {
+    // Размер прямого буфера записи по умолчанию
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    // Размер буфера сжатия
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Выгружаемый набор данных.
+     */
+    public enum Dataset {
+        // Все книги каталога
+        BOOKS,
+        // Все пользователи
+        USERS,
+        // Книги, находящиеся в аренде
+        LOANS;
+
+        /**
+         * Определяет набор по имени ("books", "users", "loans") без учета регистра.
+         * @throws IllegalArgumentException если набор неизвестен
+         */
+        public static Dataset parse(String name) {
+            for (Dataset dataset : values()) {
+                if (dataset.name().equalsIgnoreCase(name)) {
+                    return dataset;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестный набор данных для выгрузки: " + name);
+        }
+    }
+
+    private final BookService bookService;
+    private final UserService userService;
+    private final int bufferSize;
+
+    /**
+     * Создает выгрузку с буфером размера {@link #DEFAULT_BUFFER_SIZE}.
+     */
+    public CatalogExporter(BookService bookService, UserService userService) {
+        this(bookService, userService, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bookService сервис книг
+     * @param userService сервис пользователей
+     * @param bufferSize размер прямого буфера записи в байтах
+     * @throws IllegalArgumentException если размер буфера не положителен
+     */
+    public CatalogExporter(BookService bookService, UserService userService, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Размер буфера должен быть положительным числом");
+        }
+        this.bookService = bookService;
+        this.userService = userService;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Выгружает набор данных в файл.
+     * @param dataset выгружаемые данные
+     * @param format формат записей
+     * @param target файл выгрузки (перезаписывается)
+     * @param gzip сжимать ли выгрузку gzip
+     * @return итоги выгрузки
+     * @throws IOException при ошибках записи файла
+     * @throws com.library.exceptions.DatabaseException при ошибках чтения из базы данных
+     */
+    public ExportSummary export(Dataset dataset, ExportFormat format, Path target, boolean gzip) throws IOException {
+        long started = System.nanoTime();
+        Path temporary = target.resolveSibling(target.getFileName() + ".part");
+        long rows;
+        try (ChannelWriter writer = new ChannelWriter(open(temporary, gzip), bufferSize)) {
+            rows = write(dataset, format, writer);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new ExportSummary(rows, Files.size(target), System.nanoTime() - started);
+    }
+
+    private WritableByteChannel open(Path path, boolean gzip) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        if (!gzip) {
+            return file;
+        }
+        OutputStream compressed = new GZIPOutputStream(Channels.newOutputStream(file), GZIP_BUFFER_SIZE);
+        return Channels.newChannel(compressed);
+    }
+
+    private long write(Dataset dataset, ExportFormat format, Writer out) throws IOException {
+        RecordSink sink = format == ExportFormat.CSV ? new CsvSink(out) : new JsonLinesSink(out);
+        long[] rows = new long[1];
+        try {
+            switch (dataset) {
+                case BOOKS:
+                    sink.bookHeader();
+                    bookService.forEachBook(allBooks(null), book -> {
+                        sink.book(book, true);
+                        rows[0]++;
+                    });
+                    break;
+                case LOANS:
+                    sink.loanHeader();
+                    bookService.forEachBook(allBooks(false), book -> {
+                        sink.book(book, false);
+                        rows[0]++;
+                    });
+                    break;
+                case USERS:
+                    sink.userHeader();
+                    userService.forEachUser(user -> {
+                        sink.user(user);
+                        rows[0]++;
+                    });
+                    break;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+
+    /**
+     * Книги по возрастанию ID; available - фильтр доступности или null.
+     */
+    private static BookQuery allBooks(Boolean available) {
+        BookQuery.Builder query = BookQuery.builder().orderBy(BookQuery.SortField.ID, true);
+        if (available != null) {
+            query.available(available);
+        }
+        return query.build();
+    }
+
+    /**
+     * Запись отдельных записей в выбранном формате. Ошибки ввода-вывода
+     * передаются как {@link UncheckedIOException}, чтобы проходить через потребителей курсора.
+     */
+    private interface RecordSink {
+        void bookHeader();
+
+        void loanHeader();
+
+        void userHeader();
+
+        void book(Book book, boolean withAvailability);
+
+        void user(User user);
+    }
+
+    private static final class CsvSink implements RecordSink {
+        private final CsvWriter csv;
+
+        CsvSink(Writer out) {
+            this.csv = new CsvWriter(out);
+        }
+
+        @Override
+        public void bookHeader() {
+            header("id", "title", "author", "isbn", "publication_year", "available");
+        }
+
+        @Override
+        public void loanHeader() {
+            header("id", "title", "author", "isbn", "publication_year");
+        }
+
+        @Override
+        public void userHeader() {
+            header("id", "name", "email");
+        }
+
+        @Override
+        public void book(Book book, boolean withAvailability) {
+            try {
+                csv.field(book.getId()).field(book.getTitle()).field(book.getAuthor())
+                        .field(book.getIsbn()).field(book.getPublicationYear());
+                if (withAvailability) {
+                    csv.field(book.isAvailable());
+                }
+                csv.endRow();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void user(User user) {
+            try {
+                csv.field(user.getId()).field(user.getName()).field(user.getEmail()).endRow();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void header(String... names) {
+            try {
+                for (String name : names) {
+                    csv.field(name);
+                }
+                csv.endRow();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static final class JsonLinesSink implements RecordSink {
+        private final Writer out;
+        private final JsonWriter json;
+
+        JsonLinesSink(Writer out) {
+            this.out = out;
+            this.json = new JsonWriter(out);
+        }
+
+        @Override
+        public void bookHeader() {
+            // В JSON Lines заголовка нет
+        }
+
+        @Override
+        public void loanHeader() {
+        }
+
+        @Override
+        public void userHeader() {
+        }
+
+        @Override
+        public void book(Book book, boolean withAvailability) {
+            try {
+                json.beginObject()
+                        .name("id").value(book.getId())
+                        .name("title").value(book.getTitle())
+                        .name("author").value(book.getAuthor())
+                        .name("isbn").value(book.getIsbn())
+                        .name("publicationYear").value(book.getPublicationYear());
+                if (withAvailability) {
+                    json.name("available").value(book.isAvailable());
+                }
+                json.endObject();
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void user(User user) {
+            try {
+                json.beginObject()
+                        .name("id").value(user.getId())
+                        .name("name").value(user.getName())
+                        .name("email").value(user.getEmail())
+                        .endObject();
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
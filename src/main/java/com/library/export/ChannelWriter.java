@@ -0,0 +1,135 @@
+package com.library.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link Writer}, кодирующий текст в UTF-8 в прямой буфер и записывающий его в канал
+ * крупными блоками. Прямой буфер передается в {@link java.nio.channels.FileChannel}
+ * без промежуточного копирования, а запись блоками по мегабайту сводит число
+ * системных вызовов к минимуму. Не потокобезопасен.
+ */
+class ChannelWriter extends Writer {
+    // Размер промежуточного буфера символов
+    private static final int CHAR_BUFFER_SIZE = 8192;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer bytes;  // Прямой буфер закодированного текста
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private long bytesWritten;
+    private boolean closed;
+
+    /**
+     * @param channel получатель байтов (закрывается вместе с writer)
+     * @param bufferSize размер прямого буфера в байтах
+     */
+    ChannelWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.bytes = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put((char) c);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int n = Math.min(len, chars.remaining());
+            str.getChars(off, off + n, chars.array(), chars.position());
+            chars.position(chars.position() + n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int n = Math.min(len, chars.remaining());
+            chars.put(cbuf, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * @return количество байтов, переданных в канал
+     */
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Передает накопленный текст в канал. Незавершенная суррогатная пара
+     * остается в буфере до следующей записи.
+     */
+    @Override
+    public void flush() throws IOException {
+        encode(false);
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Кодирует накопленные символы в байтовый буфер, освобождая его по мере заполнения.
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        chars.compact();
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            bytesWritten += channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
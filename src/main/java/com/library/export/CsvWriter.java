@@ -0,0 +1,72 @@
+package com.library.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Запись строк CSV по RFC 4180: поля, содержащие запятую, кавычку или перевод строки,
+ * заключаются в кавычки, кавычки внутри поля удваиваются. Строки завершаются CRLF.
+ */
+class CsvWriter {
+    private final Writer out;
+    private boolean rowStarted; // В текущей строке уже есть поля
+
+    CsvWriter(Writer out) {
+        this.out = out;
+    }
+
+    CsvWriter field(String value) throws IOException {
+        separate();
+        if (value == null) {
+            return this;
+        }
+        if (!needsQuotes(value)) {
+            out.write(value);
+            return this;
+        }
+        out.write('"');
+        int start = 0;
+        for (int i = value.indexOf('"'); i >= 0; i = value.indexOf('"', i + 1)) {
+            out.write(value, start, i + 1 - start);
+            out.write('"');
+            start = i + 1;
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+        return this;
+    }
+
+    CsvWriter field(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    CsvWriter field(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    void endRow() throws IOException {
+        out.write("\r\n");
+        rowStarted = false;
+    }
+
+    private void separate() throws IOException {
+        if (rowStarted) {
+            out.write(',');
+        }
+        rowStarted = true;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,24 @@
+package com.library.export;
+
+/**
+ * Формат файла выгрузки.
+ */
+public enum ExportFormat {
+    // Строка заголовка и значения через запятую (RFC 4180)
+    CSV,
+    // Один объект JSON на строку (JSON Lines)
+    JSONL;
+
+    /**
+     * Определяет формат по имени ("csv", "jsonl") без учета регистра.
+     * @throws IllegalArgumentException если формат неизвестен
+     */
+    public static ExportFormat parse(String name) {
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный формат выгрузки: " + name);
+    }
+}
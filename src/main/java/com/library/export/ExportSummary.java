@@ -0,0 +1,17 @@
+package com.library.export;
+
+/**
+ * Итоги выгрузки.
+ * @param rows количество выгруженных записей
+ * @param bytes размер файла выгрузки
+ * @param elapsedNanos общее время выгрузки
+ */
+public record ExportSummary(long rows, long bytes, long elapsedNanos) {
+
+    @Override
+    public String toString() {
+        double seconds = elapsedNanos / 1e9;
+        return String.format("записей=%d, размер=%d байт, время=%.3f с, скорость=%.0f записей/с",
+                rows, bytes, seconds, seconds == 0 ? 0 : rows / seconds);
+    }
+}
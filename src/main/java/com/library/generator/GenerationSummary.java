@@ -0,0 +1,17 @@
+package com.library.generator;
+
+/**
+ * Итоги генерации набора данных.
+ * @param books добавлено книг
+ * @param users добавлено пользователей
+ * @param elapsedNanos общее время, включая построение индексов
+ */
+public record GenerationSummary(long books, long users, long elapsedNanos) {
+
+    @Override
+    public String toString() {
+        double seconds = elapsedNanos / 1e9;
+        return String.format("книг=%d, пользователей=%d, время=%.1f с, скорость=%.0f записей/с",
+                books, users, seconds, seconds == 0 ? 0 : (books + users) / seconds);
+    }
+}
@@ -0,0 +1,69 @@
+package com.library.generator;
+
+/**
+ * Построение и проверка ISBN-13.
+ */
+public final class Isbn {
+    // Наибольший номер, помещающийся в 9 цифр после префикса
+    public static final long MAX_NUMBER = 999_999_999L;
+
+    private Isbn() {
+    }
+
+    /**
+     * Строит ISBN-13 с префиксом 978 и контрольной цифрой.
+     * Номера по возрастанию дают ISBN по возрастанию (в том числе как строки).
+     * @param number номер издания от 0 до {@link #MAX_NUMBER}
+     * @return 13 цифр без дефисов
+     * @throws IllegalArgumentException если номер вне диапазона
+     */
+    public static String isbn13(long number) {
+        if (number < 0 || number > MAX_NUMBER) {
+            throw new IllegalArgumentException("Номер ISBN вне диапазона: " + number);
+        }
+        char[] digits = new char[13];
+        digits[0] = '9';
+        digits[1] = '7';
+        digits[2] = '8';
+        long rest = number;
+        for (int i = 11; i >= 3; i--) {
+            digits[i] = (char) ('0' + rest % 10);
+            rest /= 10;
+        }
+        digits[12] = (char) ('0' + checkDigit(digits));
+        return new String(digits);
+    }
+
+    /**
+     * Проверяет формат и контрольную цифру ISBN-13 (дефисы и пробелы допускаются).
+     */
+    public static boolean isValidIsbn13(String isbn) {
+        if (isbn == null) {
+            return false;
+        }
+        char[] digits = new char[13];
+        int count = 0;
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (c < '0' || c > '9' || count == 13) {
+                return false;
+            }
+            digits[count++] = c;
+        }
+        return count == 13 && digits[12] - '0' == checkDigit(digits);
+    }
+
+    /**
+     * Контрольная цифра по первым 12 цифрам: веса 1 и 3 попеременно.
+     */
+    private static int checkDigit(char[] digits) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits[i] - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,184 @@
+package com.library.generator;
+
+import com.library.database.entities.Book;
+import com.library.database.entities.User;
+
+import java.util.SplittableRandom;
+
+/**
+ * Детерминированный синтетический каталог: книга и пользователь с номером i
+ * зависят только от зерна и i, поэтому любой диапазон записей можно строить
+ * независимо и параллельно, а повторная генерация дает ту же базу.
+ * <ul>
+ *   <li>Авторы выбираются по закону Ципфа: немногие авторы написали большую часть книг.</li>
+ *   <li>Около 60% авторов русскоязычные; названия их книг составлены из русских слов,
+ *       остальных - из английских.</li>
+ *   <li>Годы публикации смещены к современности (экспоненциально убывают в прошлое).</li>
+ *   <li>ISBN-13 с корректной контрольной цифрой, уникальны и возрастают с номером книги.</li>
+ * </ul>
+ */
+public class SyntheticCatalog {
+    // Показатель распределения книг по авторам
+    public static final double AUTHOR_ZIPF_EXPONENT = 1.1;
+    // Доля книг, находящихся в аренде
+    private static final int ON_LOAN_PERCENT = 10;
+    // Последний год публикации и средний «возраст» книги в годах
+    private static final int LATEST_YEAR = 2025;
+    private static final double MEAN_AGE_YEARS = 25;
+    private static final int EARLIEST_YEAR = 1450;
+
+    private static final String[] RUSSIAN_WORDS = {
+            "война", "мир", "преступление", "наказание", "тихий", "дон", "мастер", "маргарита",
+            "белая", "гвардия", "мертвые", "души", "отцы", "дети", "герой", "нашего", "времени",
+            "вишневый", "сад", "горе", "от", "ума", "капитанская", "дочка", "темные", "аллеи",
+            "жизнь", "судьба", "дорога", "река", "город", "ночь", "зима", "лето", "степь", "море",
+            "звезды", "тайна", "история", "сказки", "письма", "записки", "воспоминания", "повести"
+    };
+    private static final String[] ENGLISH_WORDS = {
+            "shadow", "river", "silent", "garden", "winter", "night", "empire", "stone", "history",
+            "ocean", "light", "forest", "machine", "dream", "city", "glass", "fire", "kingdom",
+            "secret", "journey", "last", "first", "house", "children", "time", "war", "peace",
+            "letters", "tales", "island", "storm", "north", "memory", "world", "road", "song"
+    };
+    private static final String[] RUSSIAN_FIRST_NAMES = {
+            "Александр", "Анна", "Борис", "Вера", "Дмитрий", "Екатерина", "Иван", "Ирина",
+            "Лев", "Марина", "Михаил", "Наталья", "Николай", "Ольга", "Сергей", "Татьяна"
+    };
+    private static final String[] RUSSIAN_LAST_NAMES = {
+            "Иванов", "Смирнов", "Кузнецов", "Попов", "Васильев", "Петров", "Соколов", "Михайлов",
+            "Новиков", "Федоров", "Морозов", "Волков", "Алексеев", "Лебедев", "Семенов", "Егоров",
+            "Павлов", "Козлов", "Степанов", "Николаев"
+    };
+    private static final String[] ENGLISH_FIRST_NAMES = {
+            "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda",
+            "William", "Elizabeth", "David", "Susan", "Richard", "Margaret", "Thomas", "Ursula"
+    };
+    private static final String[] ENGLISH_LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Miller", "Davis", "Wilson",
+            "Anderson", "Taylor", "Thomas", "Moore", "Martin", "Jackson", "White", "Harris",
+            "Clark", "Lewis", "Walker", "Hall"
+    };
+    private static final String[] EMAIL_DOMAINS = {
+            "example.org", "example.com", "mail.example.ru", "library.example.net"
+    };
+
+    private final long seed;
+    private final int authorCount;
+    private final ZipfSampler authors;
+
+    /**
+     * @param seed зерно генерации
+     * @param authorCount количество различных авторов
+     * @throws IllegalArgumentException если authorCount не положителен
+     */
+    public SyntheticCatalog(long seed, int authorCount) {
+        this.seed = seed;
+        this.authorCount = authorCount;
+        this.authors = new ZipfSampler(authorCount, AUTHOR_ZIPF_EXPONENT);
+    }
+
+    /**
+     * Количество авторов по умолчанию для каталога заданного размера (в среднем 20 книг на автора).
+     */
+    public static int defaultAuthorCount(long books) {
+        return (int) Math.max(100, Math.min(Integer.MAX_VALUE, books / 20));
+    }
+
+    /**
+     * @param i номер книги (с 0)
+     * @return новая книга (без ID)
+     */
+    public Book book(long i) {
+        SplittableRandom random = random(i, 0x42);
+        int author = (int) authors.sample(random);
+        boolean russian = isRussian(author);
+        String[] words = russian ? RUSSIAN_WORDS : ENGLISH_WORDS;
+
+        StringBuilder title = new StringBuilder();
+        int wordCount = 1 + random.nextInt(4);
+        for (int w = 0; w < wordCount; w++) {
+            if (w > 0) {
+                title.append(' ');
+            }
+            title.append(words[random.nextInt(words.length)]);
+        }
+        title.setCharAt(0, Character.toUpperCase(title.charAt(0)));
+        if (random.nextInt(20) == 0) {
+            title.append(russian ? ". Том " : ", volume ").append(2 + random.nextInt(5));
+        }
+
+        int age = (int) (-Math.log(1 - random.nextDouble()) * MEAN_AGE_YEARS);
+        Book book = new Book(title.toString(), authorName(author), Isbn.isbn13(i),
+                Math.max(EARLIEST_YEAR, LATEST_YEAR - age));
+        book.setAvailable(random.nextInt(100) >= ON_LOAN_PERCENT);
+        return book;
+    }
+
+    /**
+     * @param i номер пользователя (с 0)
+     * @return новый пользователь (без ID) с уникальным email
+     */
+    public User user(long i) {
+        SplittableRandom random = random(i, 0x75);
+        boolean russian = random.nextInt(10) < 6;
+        String first = pick(random, russian ? RUSSIAN_FIRST_NAMES : ENGLISH_FIRST_NAMES);
+        String last = pick(random, russian ? RUSSIAN_LAST_NAMES : ENGLISH_LAST_NAMES);
+        if (russian) {
+            last = russianLastName(first, last);
+        }
+        String email = "reader" + i + "@" + EMAIL_DOMAINS[(int) (i % EMAIL_DOMAINS.length)];
+        return new User(0, first + " " + last, email);
+    }
+
+    /**
+     * Имя автора с рангом популярности rank (1 - самый плодовитый).
+     * Разным рангам соответствуют разные имена: после исчерпания сочетаний
+     * имени и фамилии к имени добавляется номер.
+     */
+    public String authorName(int rank) {
+        boolean russian = isRussian(rank);
+        String[] firstNames = russian ? RUSSIAN_FIRST_NAMES : ENGLISH_FIRST_NAMES;
+        String[] lastNames = russian ? RUSSIAN_LAST_NAMES : ENGLISH_LAST_NAMES;
+        int combinations = firstNames.length * lastNames.length;
+        int index = rank - 1;
+        String first = firstNames[index % firstNames.length];
+        String last = lastNames[index / firstNames.length % lastNames.length];
+        if (russian) {
+            last = russianLastName(first, last);
+        }
+        int namesake = index / combinations;
+        return namesake == 0 ? first + " " + last : first + " " + last + " " + (namesake + 1);
+    }
+
+    public int getAuthorCount() {
+        return authorCount;
+    }
+
+    private boolean isRussian(int author) {
+        return random(author, 0x6C).nextInt(10) < 6;
+    }
+
+    /**
+     * Фамилия в роде имени: Иванов - Анна Иванова.
+     */
+    private static String russianLastName(String first, String last) {
+        return first.endsWith("а") || first.endsWith("я") ? last + "а" : last;
+    }
+
+    private SplittableRandom random(long i, long stream) {
+        return new SplittableRandom(mix(seed ^ mix(i * 31 + stream)));
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Перемешивание битов (функция финализации SplitMix64).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,72 @@
+package com.library.generator;
+
+import java.util.SplittableRandom;
+
+/**
+ * Выборка рангов 1..n по закону Ципфа: вероятность ранга k пропорциональна 1/k^s.
+ * Используется метод отбраковки с обращением (W. Hörmann, G. Derflinger, "Rejection-inversion
+ * to generate variates from monotone discrete distributions", 1996): память и время
+ * выборки не зависят от n, поэтому подходит для каталога из миллионов книг.
+ * Объект неизменяем; источник случайности передается в каждый вызов.
+ */
+public final class ZipfSampler {
+    private final long n;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double threshold;
+
+    /**
+     * @param n количество рангов
+     * @param exponent показатель s (больше 0; около 1 для популярности книг)
+     * @throws IllegalArgumentException если параметры не положительны
+     */
+    public ZipfSampler(long n, double exponent) {
+        if (n <= 0 || exponent <= 0) {
+            throw new IllegalArgumentException("Количество рангов и показатель должны быть положительными");
+        }
+        this.n = n;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralN = hIntegral(n + 0.5);
+        this.threshold = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    /**
+     * @return ранг от 1 до n (1 - самый популярный)
+     */
+    public long sample(SplittableRandom random) {
+        while (true) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            double x = hIntegralInverse(u);
+            long k = Math.max(1, Math.min(n, (long) (x + 0.5)));
+            if (k - x <= threshold || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1 - exponent) * logX) * logX;
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = Math.max(x * (1 - exponent), -1);
+        return Math.exp(helper1(t) * x);
+    }
+
+    // log(1 + x) / x с точным пределом около нуля
+    private static double helper1(double x) {
+        return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    // (exp(x) - 1) / x с точным пределом около нуля
+    private static double helper2(double x) {
+        return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
@@ -0,0 +1,27 @@
+package com.library.http;
+
+/**
+ * Ошибка обработки HTTP-запроса с кодом ответа, который нужно вернуть клиенту
+ * (например, 400 при некорректном параметре или 405 при неподдерживаемом методе).
+ */
+public class ApiException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int status; // Код ответа HTTP
+
+    /**
+     * @param status код ответа HTTP
+     * @param message сообщение для клиента
+     */
+    public ApiException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * @return код ответа HTTP
+     */
+    public int getStatus() {
+        return status;
+    }
+}
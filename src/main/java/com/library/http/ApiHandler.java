@@ -0,0 +1,348 @@
+package com.library.http;
+
+import com.library.exceptions.BookNotFoundException;
+import com.library.exceptions.DatabaseException;
+import com.library.exceptions.UserNotFoundException;
+import com.library.json.JsonReader;
+import com.library.json.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Основа обработчиков JSON API: разбор пути и параметров, чтение тела запроса,
+ * запись ответов и преобразование исключений сервисов в коды HTTP.
+ * Соединение остается открытым для следующих запросов (keep-alive): каждый ответ
+ * имеет известную длину или передается частями (chunked), а обмен всегда закрывается.
+ */
+abstract class ApiHandler implements HttpHandler {
+    // Размер страницы по умолчанию и наибольший допустимый размер
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    // Количество элементов потокового ответа между отправками очередного фрагмента клиенту
+    private static final int STREAM_FLUSH_EVERY = 256;
+
+    // Наибольший размер тела запроса: тело читается в память целиком
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    // Код ошибки SQLite при нарушении ограничения (UNIQUE, NOT NULL)
+    private static final int SQLITE_CONSTRAINT = 19;
+
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+
+    /**
+     * Тело JSON-ответа.
+     */
+    @FunctionalInterface
+    interface JsonBody {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    /**
+     * Элементы потокового ответа: записывает элементы массива по одному.
+     */
+    @FunctionalInterface
+    interface JsonStream {
+        void write(JsonWriter json, Runnable elementWritten) throws IOException;
+    }
+
+    @Override
+    public final void handle(HttpExchange exchange) {
+        try (exchange) {
+            try {
+                handle(exchange, pathSegments(exchange), queryParameters(exchange));
+            } catch (Throwable error) {
+                sendError(exchange, error);
+            }
+        }
+    }
+
+    /**
+     * Обрабатывает запрос.
+     * @param exchange обмен HTTP
+     * @param path сегменты пути после пути обработчика (например, ["15", "borrow"])
+     * @param query параметры строки запроса
+     */
+    protected abstract void handle(HttpExchange exchange, List<String> path, Map<String, String> query)
+            throws IOException;
+
+    /**
+     * Отправляет JSON-ответ известной длины.
+     */
+    protected static void sendJson(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+        Writer writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8);
+        body.write(new JsonWriter(writer));
+        writer.flush();
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, buffer.size());
+        buffer.writeTo(exchange.getResponseBody());
+    }
+
+    /**
+     * Отправляет JSON-массив частями по мере получения элементов (Transfer-Encoding: chunked).
+     * Ответ не накапливается в памяти, клиент начинает получать данные до окончания выборки.
+     */
+    protected static void streamJsonArray(HttpExchange exchange, JsonStream elements) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(200, 0);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 16 * 1024);
+        JsonWriter json = new JsonWriter(writer);
+        int[] pending = {0};
+        json.beginArray();
+        elements.write(json, () -> {
+            if (++pending[0] == STREAM_FLUSH_EVERY) {
+                pending[0] = 0;
+                try {
+                    json.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        json.endArray();
+        json.flush();
+    }
+
+    /**
+     * Отправляет пустой ответ (например, 204 после удаления).
+     */
+    protected static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    /**
+     * Читает тело запроса как JSON-объект.
+     * Размер тела проверяется и по заголовку Content-Length, и по фактически прочитанным
+     * байтам (при Transfer-Encoding: chunked заголовка нет).
+     * @throws ApiException 413, если тело больше {@value #MAX_BODY_BYTES} байт;
+     *                      400, если тело не является JSON-объектом
+     */
+    protected static Map<String, Object> readJsonObject(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            long declared;
+            try {
+                declared = Long.parseLong(length.trim());
+            } catch (NumberFormatException e) {
+                throw new ApiException(400, "Некорректный заголовок Content-Length: " + length);
+            }
+            if (declared > MAX_BODY_BYTES) {
+                throw bodyTooLarge();
+            }
+        }
+        byte[] bytes = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw bodyTooLarge();
+        }
+        String body = new String(bytes, StandardCharsets.UTF_8);
+        if (body.isBlank()) {
+            return new HashMap<>();
+        }
+        try {
+            return JsonReader.parseObject(body);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, e.getMessage());
+        }
+    }
+
+    private static ApiException bodyTooLarge() {
+        return new ApiException(413, "Тело запроса больше " + MAX_BODY_BYTES + " байт");
+    }
+
+    /**
+     * @return ошибка 405 для метода, не поддерживаемого по этому пути
+     */
+    protected static ApiException methodNotAllowed(HttpExchange exchange) {
+        return new ApiException(405, "Метод " + exchange.getRequestMethod() + " не поддерживается для "
+                + exchange.getRequestURI().getPath());
+    }
+
+    /**
+     * @return ошибка 404 для неизвестного пути
+     */
+    protected static ApiException notFound(HttpExchange exchange) {
+        return new ApiException(404, "Ресурс не найден: " + exchange.getRequestURI().getPath());
+    }
+
+    /**
+     * Разбирает целочисленный идентификатор из сегмента пути.
+     * @throws ApiException 400, если сегмент не является числом
+     */
+    protected static int parseId(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Некорректный идентификатор: " + segment);
+        }
+    }
+
+    /**
+     * Возвращает целочисленный параметр строки запроса.
+     * @return значение параметра или null, если параметр не задан
+     * @throws ApiException 400, если значение не является числом
+     */
+    protected static Integer intParameter(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Параметр " + name + " должен быть целым числом: " + value);
+        }
+    }
+
+    /**
+     * Возвращает размер страницы из параметра limit (по умолчанию {@link #DEFAULT_PAGE_SIZE}).
+     * @throws ApiException 400, если limit вне диапазона 1..{@link #MAX_PAGE_SIZE}
+     */
+    protected static int pageSize(Map<String, String> query) {
+        Integer limit = intParameter(query, "limit");
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ApiException(400, "Параметр limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    /**
+     * Возвращает смещение страницы из параметра offset (по умолчанию 0).
+     * @throws ApiException 400, если offset отрицателен
+     */
+    protected static int pageOffset(Map<String, String> query) {
+        Integer offset = intParameter(query, "offset");
+        if (offset == null) {
+            return 0;
+        }
+        if (offset < 0) {
+            throw new ApiException(400, "Параметр offset не может быть отрицательным");
+        }
+        return offset;
+    }
+
+    /**
+     * Ожидает результат асинхронной операции в потоке обработчика (виртуальном).
+     */
+    protected static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(503, "Обработка запроса прервана");
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, Throwable error) {
+        Throwable cause = unwrap(error);
+        int status = statusOf(cause);
+        if (status == 500) {
+            System.err.println("Ошибка обработки " + exchange.getRequestMethod() + " "
+                    + exchange.getRequestURI() + ": " + cause);
+        }
+        if (exchange.getResponseCode() != -1) {
+            return; // Заголовки уже отправлены (потоковый ответ): остается только закрыть соединение
+        }
+        try {
+            String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+            sendJson(exchange, status, json -> json.beginObject()
+                    .name("status").value(status)
+                    .name("error").value(message)
+                    .endObject());
+        } catch (IOException e) {
+            // Клиент закрыл соединение - ответ отправить некому
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable current = error;
+        while ((current instanceof CompletionException || current instanceof ExecutionException
+                || current instanceof UncheckedIOException) && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    /**
+     * Код ответа для исключения сервиса.
+     */
+    private static int statusOf(Throwable error) {
+        if (error instanceof ApiException) {
+            return ((ApiException) error).getStatus();
+        }
+        if (error instanceof BookNotFoundException || error instanceof UserNotFoundException
+                || error.getCause() instanceof BookNotFoundException
+                || error.getCause() instanceof UserNotFoundException) {
+            return 404;
+        }
+        if (error instanceof IllegalArgumentException) {
+            return 400;
+        }
+        if (error instanceof IllegalStateException) {
+            return 409;
+        }
+        if (error instanceof DatabaseException) {
+            // Ошибка без причины - отказ сервиса (например, повторный ISBN); причина SQLITE_CONSTRAINT - дубликат
+            if (error.getCause() == null) {
+                return 409;
+            }
+            if (error.getCause() instanceof SQLException
+                    && ((SQLException) error.getCause()).getErrorCode() == SQLITE_CONSTRAINT) {
+                return 409;
+            }
+        }
+        return 500;
+    }
+
+    private static List<String> pathSegments(HttpExchange exchange) {
+        String context = exchange.getHttpContext().getPath();
+        String path = exchange.getRequestURI().getPath();
+        String rest = path.length() > context.length() ? path.substring(context.length()) : "";
+        List<String> segments = new ArrayList<>();
+        for (String segment : rest.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(URLDecoder.decode(segment, StandardCharsets.UTF_8));
+            }
+        }
+        return segments;
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> parameters = new HashMap<>();
+        Arrays.stream(raw.split("&")).filter(pair -> !pair.isEmpty()).forEach(pair -> {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            parameters.putIfAbsent(name, value);
+        });
+        return parameters;
+    }
+}
@@ -0,0 +1,270 @@
+package com.library.http;
+
+import com.library.database.entities.Book;
+import com.library.json.JsonWriter;
+import com.library.query.BookQuery;
+import com.library.services.AsyncBookService;
+import com.library.services.AsyncUserService;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON API книг.
+ * <pre>
+ * GET    /api/books                 страница книг (offset, limit, фильтры, sort, order)
+ * GET    /api/books/stream          все книги по фильтрам одним потоковым массивом в порядке ID
+ * GET    /api/books/search?q=...    лучшие совпадения по названию или автору (field, limit)
+ * GET    /api/books/{id}            книга
+ * POST   /api/books                 добавить книгу
+ * PUT    /api/books/{id}            изменить поля книги
+ * DELETE /api/books/{id}            удалить книгу
+ * POST   /api/books/{id}/borrow     выдать книгу ({"userId": ...})
+ * POST   /api/books/{id}/return     вернуть книгу
+ * </pre>
+ * Фильтры: title, author (вхождение строки), isbn, yearFrom, yearTo, available (true/false).
+ */
+class BookApiHandler extends ApiHandler {
+    private static final int STREAM_PAGE_SIZE = 1000;  // Книг в одной странице потоковой выдачи
+
+    private final AsyncBookService bookService;
+    private final AsyncUserService userService;
+
+    BookApiHandler(AsyncBookService bookService, AsyncUserService userService) {
+        this.bookService = bookService;
+        this.userService = userService;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, List<String> path, Map<String, String> query) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (path.isEmpty()) {
+            switch (method) {
+                case "GET":
+                    listBooks(exchange, query);
+                    return;
+                case "POST":
+                    addBook(exchange);
+                    return;
+                default:
+                    throw methodNotAllowed(exchange);
+            }
+        }
+        if (path.size() == 1 && path.get(0).equals("stream")) {
+            requireMethod(exchange, "GET");
+            streamBooks(exchange, query);
+            return;
+        }
+        if (path.size() == 1 && path.get(0).equals("search")) {
+            requireMethod(exchange, "GET");
+            searchBooks(exchange, query);
+            return;
+        }
+
+        int id = parseId(path.get(0));
+        if (path.size() == 1) {
+            switch (method) {
+                case "GET":
+                    Book book = await(bookService.getBookById(id));
+                    sendJson(exchange, 200, json -> writeBook(json, book));
+                    return;
+                case "PUT":
+                    updateBook(exchange, id);
+                    return;
+                case "DELETE":
+                    await(bookService.deleteBook(id));
+                    sendEmpty(exchange, 204);
+                    return;
+                default:
+                    throw methodNotAllowed(exchange);
+            }
+        }
+        if (path.size() == 2 && path.get(1).equals("borrow")) {
+            requireMethod(exchange, "POST");
+            Object userId = readJsonObject(exchange).get("userId");
+            if (!(userId instanceof Long)) {
+                throw new ApiException(400, "Поле userId обязательно и должно быть целым числом");
+            }
+            await(userService.getUserById(((Long) userId).intValue())); // 404, если читателя нет
+            await(bookService.borrowBook(id, ((Long) userId).intValue()));
+            sendBook(exchange, id);
+            return;
+        }
+        if (path.size() == 2 && path.get(1).equals("return")) {
+            requireMethod(exchange, "POST");
+            await(bookService.returnBook(id));
+            sendBook(exchange, id);
+            return;
+        }
+        throw notFound(exchange);
+    }
+
+    private void listBooks(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int offset = pageOffset(query);
+        int limit = pageSize(query);
+        List<Book> books = await(bookService.findBooks(filters(query).offset(offset).limit(limit).build()));
+        sendJson(exchange, 200, json -> {
+            json.beginObject()
+                    .name("offset").value(offset)
+                    .name("limit").value(limit)
+                    .name("items").beginArray();
+            for (Book book : books) {
+                writeBook(json, book);
+            }
+            json.endArray().name("nextOffset");
+            if (books.size() == limit) {
+                json.value(offset + limit);
+            } else {
+                json.nullValue(); // Последняя страница
+            }
+            json.endObject();
+        });
+    }
+
+    private void streamBooks(HttpExchange exchange, Map<String, String> query) throws IOException {
+        if (query.containsKey("sort")) {
+            throw new ApiException(400, "Потоковая выдача упорядочена по ID и не поддерживает параметр sort");
+        }
+        BookQuery.Builder filters = filters(query).orderBy(BookQuery.SortField.ID, true).limit(STREAM_PAGE_SIZE);
+        streamJsonArray(exchange, (json, elementWritten) -> {
+            // Страница читается под разрешением исполнителя, а пишется клиенту уже после его
+            // освобождения: медленный клиент не занимает исполнитель и не держит курсор SQLite
+            Integer lastId = null;
+            List<Book> page;
+            do {
+                if (lastId != null) {
+                    filters.idAfter(lastId);
+                }
+                page = await(bookService.findBooks(filters.build()));
+                for (Book book : page) {
+                    writeBook(json, book);
+                    elementWritten.run();
+                }
+                if (!page.isEmpty()) {
+                    lastId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == STREAM_PAGE_SIZE);
+        });
+    }
+
+    private void searchBooks(HttpExchange exchange, Map<String, String> query) throws IOException {
+        String text = query.get("q");
+        if (text == null || text.isBlank()) {
+            throw new ApiException(400, "Параметр q обязателен");
+        }
+        int limit = pageSize(query);
+        String field = query.getOrDefault("field", "title");
+        List<Book> books;
+        switch (field) {
+            case "title":
+                books = await(bookService.searchByTitle(text, limit));
+                break;
+            case "author":
+                books = await(bookService.searchByAuthor(text, limit));
+                break;
+            default:
+                throw new ApiException(400, "Параметр field должен быть title или author");
+        }
+        sendJson(exchange, 200, json -> {
+            json.beginArray();
+            for (Book book : books) {
+                writeBook(json, book);
+            }
+            json.endArray();
+        });
+    }
+
+    private void addBook(HttpExchange exchange) throws IOException {
+        Map<String, Object> body = readJsonObject(exchange);
+        Book book = new Book(requiredString(body, "title"), requiredString(body, "author"),
+                requiredString(body, "isbn"), requiredInt(body, "publicationYear"));
+        await(bookService.addBook(book));
+        exchange.getResponseHeaders().set("Location", "/api/books/" + book.getId());
+        sendJson(exchange, 201, json -> writeBook(json, book));
+    }
+
+    private void updateBook(HttpExchange exchange, int id) throws IOException {
+        Map<String, Object> body = readJsonObject(exchange);
+        Book book = await(bookService.getBookById(id));
+        // Изменяются только переданные поля; доступность обновление не меняет (см. BookRepository.update),
+        // в ответе - ее текущее значение из базы данных
+        if (body.containsKey("title")) book.setTitle(requiredString(body, "title"));
+        if (body.containsKey("author")) book.setAuthor(requiredString(body, "author"));
+        if (body.containsKey("isbn")) book.setIsbn(requiredString(body, "isbn"));
+        if (body.containsKey("publicationYear")) book.setPublicationYear(requiredInt(body, "publicationYear"));
+        await(bookService.updateBook(book));
+        sendJson(exchange, 200, json -> writeBook(json, book));
+    }
+
+    private void sendBook(HttpExchange exchange, int id) throws IOException {
+        Book book = await(bookService.getBookById(id));
+        sendJson(exchange, 200, json -> writeBook(json, book));
+    }
+
+    /**
+     * Составляет запрос из параметров фильтрации и сортировки.
+     */
+    private static BookQuery.Builder filters(Map<String, String> query) {
+        BookQuery.Builder builder = BookQuery.builder();
+        if (query.containsKey("title")) builder.titleContains(query.get("title"));
+        if (query.containsKey("author")) builder.authorContains(query.get("author"));
+        if (query.containsKey("isbn")) builder.isbn(query.get("isbn"));
+        Integer yearFrom = intParameter(query, "yearFrom");
+        if (yearFrom != null) builder.yearFrom(yearFrom);
+        Integer yearTo = intParameter(query, "yearTo");
+        if (yearTo != null) builder.yearTo(yearTo);
+        String available = query.get("available");
+        if (available != null) {
+            if (!available.equals("true") && !available.equals("false")) {
+                throw new ApiException(400, "Параметр available должен быть true или false");
+            }
+            builder.available(Boolean.parseBoolean(available));
+        }
+        String sort = query.get("sort");
+        if (sort != null) {
+            BookQuery.SortField field;
+            try {
+                field = BookQuery.SortField.valueOf(sort.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ApiException(400, "Неизвестное поле сортировки: " + sort);
+            }
+            builder.orderBy(field, !"desc".equalsIgnoreCase(query.get("order")));
+        }
+        return builder;
+    }
+
+    static void writeBook(JsonWriter json, Book book) throws IOException {
+        json.beginObject()
+                .name("id").value(book.getId())
+                .name("title").value(book.getTitle())
+                .name("author").value(book.getAuthor())
+                .name("isbn").value(book.getIsbn())
+                .name("publicationYear").value(book.getPublicationYear())
+                .name("available").value(book.isAvailable())
+                .endObject();
+    }
+
+    static String requiredString(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (!(value instanceof String)) {
+            throw new ApiException(400, "Поле " + name + " обязательно и должно быть строкой");
+        }
+        return (String) value;
+    }
+
+    private static int requiredInt(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (!(value instanceof Long) || (Long) value > Integer.MAX_VALUE || (Long) value < Integer.MIN_VALUE) {
+            throw new ApiException(400, "Поле " + name + " обязательно и должно быть целым числом");
+        }
+        return ((Long) value).intValue();
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equals(method)) {
+            throw methodNotAllowed(exchange);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.library.http;
+
+import com.library.services.AsyncBookService;
+import com.library.services.AsyncUserService;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP-сервер JSON API библиотеки на основе {@link HttpServer} из JDK.
+ * Каждый запрос обрабатывается в отдельном виртуальном потоке, поэтому медленный
+ * клиент не занимает поток ОС; число одновременных обращений к базе данных
+ * ограничивает исполнитель асинхронных сервисов.
+ * Пути: /api/books (см. {@link BookApiHandler}) и /api/users (см. {@link UserApiHandler}).
+ */
+public class LibraryHttpServer implements AutoCloseable {
+    // Время ожидания завершения текущих запросов при остановке (секунды)
+    private static final int STOP_DELAY_SECONDS = 2;
+
+    private final HttpServer server;
+    private final ExecutorService executor; // Виртуальный поток на каждый запрос
+
+    /**
+     * Создает сервер (без запуска).
+     * @param address адрес и порт (порт 0 - любой свободный)
+     * @param bookService асинхронный сервис книг
+     * @param userService асинхронный сервис пользователей
+     * @throws IOException если не удалось занять порт
+     */
+    public LibraryHttpServer(InetSocketAddress address, AsyncBookService bookService,
+                             AsyncUserService userService) throws IOException {
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("library-http-", 0).factory());
+        server.setExecutor(executor);
+        server.createContext("/api/books", new BookApiHandler(bookService, userService));
+        server.createContext("/api/users", new UserApiHandler(userService));
+    }
+
+    /**
+     * Запускает прием запросов.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return порт, на котором принимаются запросы
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Останавливает сервер, дождавшись завершения текущих запросов.
+     */
+    @Override
+    public void close() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.close();
+    }
+}
@@ -0,0 +1,122 @@
+package com.library.http;
+
+import com.library.database.entities.User;
+import com.library.json.JsonWriter;
+import com.library.services.AsyncUserService;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON API пользователей.
+ * <pre>
+ * GET    /api/users          страница пользователей (offset, limit)
+ * GET    /api/users/{id}     пользователь
+ * POST   /api/users          добавить пользователя ({"name": ..., "email": ...})
+ * PUT    /api/users/{id}     изменить поля пользователя
+ * DELETE /api/users/{id}     удалить пользователя
+ * </pre>
+ */
+class UserApiHandler extends ApiHandler {
+    private final AsyncUserService userService;
+
+    UserApiHandler(AsyncUserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, List<String> path, Map<String, String> query) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (path.isEmpty()) {
+            switch (method) {
+                case "GET":
+                    listUsers(exchange, query);
+                    return;
+                case "POST":
+                    addUser(exchange);
+                    return;
+                default:
+                    throw methodNotAllowed(exchange);
+            }
+        }
+        if (path.size() != 1) {
+            throw notFound(exchange);
+        }
+
+        int id = parseId(path.get(0));
+        switch (method) {
+            case "GET":
+                User user = await(userService.getUserById(id));
+                sendJson(exchange, 200, json -> writeUser(json, user));
+                return;
+            case "PUT":
+                updateUser(exchange, id);
+                return;
+            case "DELETE":
+                await(userService.deleteUser(id));
+                sendEmpty(exchange, 204);
+                return;
+            default:
+                throw methodNotAllowed(exchange);
+        }
+    }
+
+    private void listUsers(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int offset = pageOffset(query);
+        int limit = pageSize(query);
+        List<User> users = await(userService.getAllUsers());
+        List<User> page = users.subList(Math.min(offset, users.size()), Math.min(offset + limit, users.size()));
+        sendJson(exchange, 200, json -> {
+            json.beginObject()
+                    .name("offset").value(offset)
+                    .name("limit").value(limit)
+                    .name("total").value(users.size())
+                    .name("items").beginArray();
+            for (User user : page) {
+                writeUser(json, user);
+            }
+            json.endArray().name("nextOffset");
+            if (offset + limit < users.size()) {
+                json.value(offset + limit);
+            } else {
+                json.nullValue(); // Последняя страница
+            }
+            json.endObject();
+        });
+    }
+
+    private void addUser(HttpExchange exchange) throws IOException {
+        Map<String, Object> body = readJsonObject(exchange);
+        User user = new User(0, requiredText(body, "name"), requiredText(body, "email"));
+        await(userService.addUser(user));
+        exchange.getResponseHeaders().set("Location", "/api/users/" + user.getId());
+        sendJson(exchange, 201, json -> writeUser(json, user));
+    }
+
+    private void updateUser(HttpExchange exchange, int id) throws IOException {
+        Map<String, Object> body = readJsonObject(exchange);
+        User user = await(userService.getUserById(id));
+        if (body.containsKey("name")) user.setName(requiredText(body, "name"));
+        if (body.containsKey("email")) user.setEmail(requiredText(body, "email"));
+        await(userService.updateUser(user));
+        sendJson(exchange, 200, json -> writeUser(json, user));
+    }
+
+    private static String requiredText(Map<String, Object> body, String name) {
+        String value = BookApiHandler.requiredString(body, name).trim();
+        if (value.isEmpty()) {
+            throw new ApiException(400, "Поле " + name + " не может быть пустым");
+        }
+        return value;
+    }
+
+    private static void writeUser(JsonWriter json, User user) throws IOException {
+        json.beginObject()
+                .name("id").value(user.getId())
+                .name("name").value(user.getName())
+                .name("email").value(user.getEmail())
+                .endObject();
+    }
+}
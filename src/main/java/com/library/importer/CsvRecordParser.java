@@ -0,0 +1,119 @@
+package com.library.importer;
+
+import com.library.database.entities.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Разбор записей CSV по столбцам, найденным в строке заголовка.
+ */
+class CsvRecordParser implements RecordParser {
+    private final int titleColumn;
+    private final int authorColumn;
+    private final int isbnColumn;
+    private final int yearColumn;
+    private final int availableColumn; // -1, если столбца нет
+
+    /**
+     * @param header строка заголовка
+     * @throws IllegalArgumentException если в заголовке нет обязательных столбцов
+     */
+    CsvRecordParser(String header) {
+        List<String> names = fields(header);
+        int title = -1, author = -1, isbn = -1, year = -1, available = -1;
+        for (int i = 0; i < names.size(); i++) {
+            switch (names.get(i).trim().toLowerCase(Locale.ROOT)) {
+                case "title":
+                    title = i;
+                    break;
+                case "author":
+                    author = i;
+                    break;
+                case "isbn":
+                    isbn = i;
+                    break;
+                case "publication_year":
+                case "publicationyear":
+                case "year":
+                    year = i;
+                    break;
+                case "available":
+                    available = i;
+                    break;
+                default:
+                    break; // Посторонние столбцы пропускаются
+            }
+        }
+        if (title < 0 || author < 0 || isbn < 0 || year < 0) {
+            throw new IllegalArgumentException(
+                    "В заголовке CSV должны быть столбцы title, author, isbn и publication_year: " + header);
+        }
+        this.titleColumn = title;
+        this.authorColumn = author;
+        this.isbnColumn = isbn;
+        this.yearColumn = year;
+        this.availableColumn = available;
+    }
+
+    @Override
+    public Book parse(String record) {
+        List<String> values = fields(record);
+        Book book = new Book(column(values, titleColumn), column(values, authorColumn),
+                column(values, isbnColumn), parseYear(column(values, yearColumn)));
+        if (availableColumn >= 0 && availableColumn < values.size()) {
+            book.setAvailable(!values.get(availableColumn).trim().equalsIgnoreCase("false"));
+        }
+        return book;
+    }
+
+    private static String column(List<String> values, int index) {
+        return index < values.size() ? values.get(index) : null;
+    }
+
+    private static int parseYear(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Год публикации не указан");
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректный год публикации: " + value);
+        }
+    }
+
+    /**
+     * Разбивает запись CSV на поля с учетом кавычек и удвоенных кавычек внутри полей.
+     */
+    static List<String> fields(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Незакрытая кавычка в записи CSV");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,69 @@
+package com.library.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Контрольная точка импорта: сколько записей входного файла уже обработано
+ * (сохранено, отклонено или пропущено как дубликат) и итоговые счетчики на этот момент.
+ * Сохраняется после фиксации каждой транзакции; при повторном запуске импорт
+ * продолжается со следующей записи.
+ *
+ * @param records количество обработанных записей от начала файла (без заголовка CSV)
+ * @param imported сохранено книг
+ * @param rejected отклонено записей
+ * @param duplicates пропущено дубликатов
+ */
+public record ImportCheckpoint(long records, long imported, long rejected, long duplicates) {
+    // Контрольная точка нового импорта
+    public static final ImportCheckpoint START = new ImportCheckpoint(0, 0, 0, 0);
+
+    /**
+     * Читает контрольную точку из файла.
+     * @return сохраненная точка или {@link #START}, если файла нет
+     * @throws IOException при ошибках чтения
+     * @throws IllegalArgumentException если файл поврежден
+     */
+    public static ImportCheckpoint load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return START;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            return new ImportCheckpoint(
+                    Long.parseLong(properties.getProperty("records")),
+                    Long.parseLong(properties.getProperty("imported")),
+                    Long.parseLong(properties.getProperty("rejected")),
+                    Long.parseLong(properties.getProperty("duplicates")));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Поврежденная контрольная точка импорта: " + file, e);
+        }
+    }
+
+    /**
+     * Атомарно записывает контрольную точку: сначала во временный файл, затем переносит его
+     * на место прежнего, так что при сбое остается либо старая, либо новая точка.
+     * @throws IOException при ошибках записи
+     */
+    public void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("records", Long.toString(records));
+        properties.setProperty("imported", Long.toString(imported));
+        properties.setProperty("rejected", Long.toString(rejected));
+        properties.setProperty("duplicates", Long.toString(duplicates));
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,32 @@
+package com.library.importer;
+
+/**
+ * Формат файла импорта каталога.
+ */
+public enum ImportFormat {
+    /**
+     * CSV по RFC 4180 со строкой заголовка. Распознаются столбцы title, author, isbn,
+     * publication_year (или publicationYear, year) и необязательный available;
+     * остальные столбцы (например, id из выгрузки) пропускаются.
+     */
+    CSV,
+    /**
+     * Текстовое представление MARC (формат MarcEdit): запись начинается строкой =LDR
+     * или отделяется пустой строкой, поля имеют вид {@code =245  10$aНазвание}.
+     * Используются поля 020$a (ISBN), 100$a (автор), 245$a$b (название) и 260$c/264$c (год).
+     */
+    MARC;
+
+    /**
+     * Определяет формат по имени ("csv", "marc") без учета регистра.
+     * @throws IllegalArgumentException если формат неизвестен
+     */
+    public static ImportFormat parse(String name) {
+        for (ImportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный формат импорта: " + name);
+    }
+}
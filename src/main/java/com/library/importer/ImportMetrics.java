@@ -0,0 +1,119 @@
+package com.library.importer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики хода импорта. Обновляются этапами конвейера и могут читаться
+ * из любого потока во время импорта (например, для вывода прогресса).
+ */
+public class ImportMetrics {
+    private final LongAdder recordsRead = new LongAdder();
+    private final LongAdder recordsParsed = new LongAdder();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong chunksWritten = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final long startedNanos = System.nanoTime();
+    private volatile long resumedFrom;   // Записей, пропущенных по контрольной точке
+    private volatile int parseBacklog;   // Блоков в очереди на разбор
+    private volatile int writeBacklog;   // Блоков в очереди на запись
+
+    void recordRead() {
+        recordsRead.increment();
+    }
+
+    void recordsParsed(int count) {
+        recordsParsed.add(count);
+    }
+
+    void chunkWritten(int imported, int rejected, int duplicates, long nanos) {
+        this.imported.addAndGet(imported);
+        this.rejected.addAndGet(rejected);
+        this.duplicates.addAndGet(duplicates);
+        this.writeNanos.addAndGet(nanos);
+        this.chunksWritten.incrementAndGet();
+    }
+
+    void resume(ImportCheckpoint checkpoint) {
+        resumedFrom = checkpoint.records();
+        imported.set(checkpoint.imported());
+        rejected.set(checkpoint.rejected());
+        duplicates.set(checkpoint.duplicates());
+    }
+
+    void backlog(int parse, int write) {
+        parseBacklog = parse;
+        writeBacklog = write;
+    }
+
+    // Прочитано записей в текущем запуске
+    public long getRecordsRead() {
+        return recordsRead.sum();
+    }
+
+    // Разобрано записей в текущем запуске
+    public long getRecordsParsed() {
+        return recordsParsed.sum();
+    }
+
+    // Записей, пропущенных при возобновлении по контрольной точке
+    public long getResumedFrom() {
+        return resumedFrom;
+    }
+
+    // Сохранено книг (с учетом предыдущих запусков)
+    public long getImported() {
+        return imported.get();
+    }
+
+    // Отклонено некорректных записей (с учетом предыдущих запусков)
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    // Пропущено записей с уже существующим ISBN (с учетом предыдущих запусков)
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    // Зафиксировано транзакций в текущем запуске
+    public long getChunksWritten() {
+        return chunksWritten.get();
+    }
+
+    // Суммарное время записи в базу данных в текущем запуске
+    public long getWriteNanos() {
+        return writeNanos.get();
+    }
+
+    public int getParseBacklog() {
+        return parseBacklog;
+    }
+
+    public int getWriteBacklog() {
+        return writeBacklog;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startedNanos;
+    }
+
+    /**
+     * @return записей в секунду в текущем запуске
+     */
+    public double getRecordsPerSecond() {
+        long elapsed = getElapsedNanos();
+        return elapsed == 0 ? 0 : getRecordsRead() * 1e9 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("прочитано=%d, сохранено=%d, отклонено=%d, дубликатов=%d, транзакций=%d, "
+                        + "очереди=%d/%d, время=%.1f с, скорость=%.0f записей/с",
+                getResumedFrom() + getRecordsRead(), getImported(), getRejected(), getDuplicates(),
+                getChunksWritten(), getParseBacklog(), getWriteBacklog(), getElapsedNanos() / 1e9,
+                getRecordsPerSecond());
+    }
+}
@@ -0,0 +1,340 @@
+package com.library.importer;
+
+import com.library.database.entities.Book;
+import com.library.json.JsonWriter;
+import com.library.repositories.BookRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Конвейер массового импорта каталога.
+ * <pre>
+ * чтение записей -> [очередь] -> разбор и проверка (N потоков) -> [очередь] -> запись в БД (1 поток)
+ * </pre>
+ * <ul>
+ *   <li>Чтение выделяет границы записей и собирает их в блоки по chunkSize.</li>
+ *   <li>Разбор выполняется параллельно; записи проверяются сеттерами {@link Book},
+ *       некорректные отклоняются с указанием причины.</li>
+ *   <li>Запись выполняется блоками в исходном порядке: дубликаты ISBN отсеиваются
+ *       внутри блока и по уникальному индексу базы, остальные книги сохраняются
+ *       одной транзакцией через {@link BookRepository#saveAll}.</li>
+ * </ul>
+ * Число блоков, находящихся одновременно между чтением и записью, ограничено:
+ * когда запись не успевает, чтение останавливается, и потребление памяти не зависит
+ * от размера файла. После каждой транзакции сохраняется контрольная точка; если импорт
+ * прерван, повторный запуск с той же точкой продолжит его со следующей записи.
+ * Книги, уже сохраненные перед сбоем, но не попавшие в точку, при повторе будут
+ * распознаны как дубликаты, поэтому повторный запуск не создает копий.
+ * <p>
+ * Импорт пишет в базу напрямую через репозиторий. Каждая сохраненная книга добавляет
+ * запись в журнал изменений каталога (catalog_changes), по которому
+ * {@link com.library.services.BookService} дочитывает изменения в каталог в памяти;
+ * после большого импорта каталог перечитывается целиком. Сам импорт журнал не очищает:
+ * записи старше последних 100 000 удаляет следующее обновление каталога в памяти
+ * (в любом режиме, читающем каталог через сервис) или обслуживание базы.
+ */
+public class ImportPipeline {
+    // Записей в одной транзакции по умолчанию
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+    // Период проверки ошибок других этапов при ожидании блока (мс)
+    private static final long POLL_MILLIS = 100;
+
+    private final BookRepository bookRepository;
+    private final int chunkSize;
+    private final int parserThreads;
+    private final int maxChunksInFlight;  // Блоков между чтением и записью
+    private volatile ImportMetrics metrics = new ImportMetrics();
+
+    /**
+     * Создает конвейер с разбором в числе потоков, равном числу процессоров.
+     */
+    public ImportPipeline(BookRepository bookRepository, int chunkSize) {
+        this(bookRepository, chunkSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param bookRepository репозиторий, в который сохраняются книги
+     * @param chunkSize записей в одной транзакции
+     * @param parserThreads потоков разбора
+     * @throws IllegalArgumentException если параметры не положительны
+     */
+    public ImportPipeline(BookRepository bookRepository, int chunkSize, int parserThreads) {
+        if (chunkSize <= 0 || parserThreads <= 0) {
+            throw new IllegalArgumentException("Размер блока и число потоков должны быть положительными");
+        }
+        this.bookRepository = bookRepository;
+        this.chunkSize = chunkSize;
+        this.parserThreads = parserThreads;
+        this.maxChunksInFlight = 2 * parserThreads + 2;
+    }
+
+    /**
+     * @return счетчики текущего (или последнего) импорта
+     */
+    public ImportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Импортирует книги из входного потока.
+     * @param input записи в формате format
+     * @param format формат записей
+     * @param checkpointFile файл контрольной точки или null, если возобновление не нужно;
+     *                       после успешного завершения файл удаляется
+     * @param rejects получатель отклоненных записей (по строке JSON на запись) или null
+     * @return итоговые счетчики
+     * @throws IOException при ошибках чтения входных данных или записи точки
+     * @throws IllegalArgumentException если заголовок CSV некорректен
+     * @throws com.library.exceptions.DatabaseException при ошибках записи в базу данных
+     * @throws InterruptedException если поток прерван
+     */
+    public ImportMetrics run(BufferedReader input, ImportFormat format, Path checkpointFile, Writer rejects)
+            throws IOException, InterruptedException {
+        ImportCheckpoint checkpoint = checkpointFile != null ? ImportCheckpoint.load(checkpointFile) : ImportCheckpoint.START;
+        ImportMetrics metrics = new ImportMetrics();
+        metrics.resume(checkpoint);
+        this.metrics = metrics;
+
+        RecordReader reader = RecordReader.of(format, input);
+        RecordParser parser = reader.parser();
+        for (long skipped = 0; skipped < checkpoint.records(); skipped++) {
+            if (reader.next() == null) {
+                break;
+            }
+        }
+
+        BlockingQueue<Chunk> toParse = new LinkedBlockingQueue<>();
+        BlockingQueue<Chunk> toWrite = new LinkedBlockingQueue<>();
+        Semaphore inFlight = new Semaphore(maxChunksInFlight);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService stages = Executors.newFixedThreadPool(parserThreads + 1,
+                Thread.ofPlatform().name("library-import-", 0).daemon().factory());
+        try {
+            stages.execute(stage(failure, () -> read(reader, checkpoint.records(), toParse, inFlight, metrics)));
+            for (int i = 0; i < parserThreads; i++) {
+                stages.execute(stage(failure, () -> parse(parser, toParse, toWrite, metrics)));
+            }
+            write(toParse, toWrite, inFlight, failure, checkpoint, checkpointFile, rejects, metrics);
+        } finally {
+            stages.shutdownNow();
+            stages.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        if (checkpointFile != null) {
+            Files.deleteIfExists(checkpointFile); // Импорт завершен, возобновлять нечего
+        }
+        return metrics;
+    }
+
+    /**
+     * Этап чтения: собирает записи в блоки, ожидая, пока число блоков в работе не станет меньше предела.
+     */
+    private void read(RecordReader reader, long skipped, BlockingQueue<Chunk> toParse, Semaphore inFlight,
+                      ImportMetrics metrics) throws IOException, InterruptedException {
+        long nextRecord = skipped + 1;
+        for (long sequence = 0; ; sequence++) {
+            inFlight.acquire();
+            List<String> records = new ArrayList<>(chunkSize);
+            String record;
+            while (records.size() < chunkSize && (record = reader.next()) != null) {
+                records.add(record);
+                metrics.recordRead();
+            }
+            if (records.isEmpty()) {
+                toParse.put(new Chunk(sequence, nextRecord, null)); // Конец входных данных
+                for (int i = 0; i < parserThreads; i++) {
+                    toParse.put(Chunk.STOP);
+                }
+                return;
+            }
+            toParse.put(new Chunk(sequence, nextRecord, records));
+            nextRecord += records.size();
+        }
+    }
+
+    /**
+     * Этап разбора: преобразует записи блока в книги или причины отклонения.
+     */
+    private static void parse(RecordParser parser, BlockingQueue<Chunk> toParse, BlockingQueue<Chunk> toWrite,
+                              ImportMetrics metrics) throws InterruptedException {
+        while (true) {
+            Chunk chunk = toParse.take();
+            if (chunk == Chunk.STOP) {
+                return;
+            }
+            if (!chunk.isLast()) {
+                int size = chunk.records.size();
+                chunk.books = new Book[size];
+                chunk.errors = new String[size];
+                for (int i = 0; i < size; i++) {
+                    try {
+                        chunk.books[i] = parser.parse(chunk.records.get(i));
+                    } catch (RuntimeException e) {
+                        chunk.errors[i] = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                    }
+                }
+                chunk.records = null; // Текст записей больше не нужен
+                metrics.recordsParsed(size);
+            }
+            toWrite.put(chunk);
+        }
+    }
+
+    /**
+     * Этап записи: выполняется в вызывающем потоке и сохраняет блоки в исходном порядке.
+     */
+    private void write(BlockingQueue<Chunk> toParse, BlockingQueue<Chunk> toWrite, Semaphore inFlight,
+                       AtomicReference<Throwable> failure, ImportCheckpoint checkpoint, Path checkpointFile,
+                       Writer rejects, ImportMetrics metrics) throws IOException, InterruptedException {
+        Map<Long, Chunk> outOfOrder = new HashMap<>();
+        JsonWriter rejectLog = rejects != null ? new JsonWriter(rejects) : null;
+        long next = 0;
+        while (true) {
+            Chunk chunk = outOfOrder.remove(next);
+            if (chunk == null) {
+                Chunk received = toWrite.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                rethrow(failure.get());
+                if (received != null) {
+                    outOfOrder.put(received.sequence, received);
+                }
+                metrics.backlog(toParse.size(), toWrite.size() + outOfOrder.size());
+                continue;
+            }
+            if (chunk.isLast()) {
+                metrics.backlog(0, 0);
+                return;
+            }
+            checkpoint = writeChunk(chunk, checkpoint, rejects, rejectLog, metrics);
+            if (rejects != null) {
+                rejects.flush(); // Отклоненные записи должны быть сохранены раньше контрольной точки
+            }
+            if (checkpointFile != null) {
+                checkpoint.save(checkpointFile);
+            }
+            inFlight.release();
+            next++;
+        }
+    }
+
+    /**
+     * Отсеивает некорректные записи и дубликаты ISBN и сохраняет остальные книги одной транзакцией.
+     * @return контрольная точка после блока
+     */
+    private ImportCheckpoint writeChunk(Chunk chunk, ImportCheckpoint checkpoint, Writer rejects,
+                                        JsonWriter rejectLog, ImportMetrics metrics) throws IOException {
+        long started = System.nanoTime();
+        int size = chunk.books.length;
+        Set<String> isbns = new HashSet<>();
+        for (Book book : chunk.books) {
+            if (book != null) {
+                isbns.add(book.getIsbn());
+            }
+        }
+        Set<String> taken = bookRepository.findExistingIsbns(isbns);
+
+        List<Book> fresh = new ArrayList<>(size);
+        int rejected = 0;
+        int duplicates = 0;
+        for (int i = 0; i < size; i++) {
+            Book book = chunk.books[i];
+            String error = chunk.errors[i];
+            if (book != null && !taken.add(book.getIsbn())) {
+                error = "Книга с ISBN " + book.getIsbn() + " уже существует";
+                duplicates++;
+            } else if (book == null) {
+                rejected++;
+            } else {
+                fresh.add(book);
+                continue;
+            }
+            if (rejectLog != null) {
+                rejectLog.beginObject()
+                        .name("record").value(chunk.firstRecord + i)
+                        .name("error").value(error)
+                        .endObject();
+                rejects.write('\n');
+            }
+        }
+        bookRepository.saveAll(fresh);
+
+        metrics.chunkWritten(fresh.size(), rejected, duplicates, System.nanoTime() - started);
+        return new ImportCheckpoint(checkpoint.records() + size, checkpoint.imported() + fresh.size(),
+                checkpoint.rejected() + rejected, checkpoint.duplicates() + duplicates);
+    }
+
+    private static Runnable stage(AtomicReference<Throwable> failure, Stage stage) {
+        return () -> {
+            try {
+                stage.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // Конвейер остановлен
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        };
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IllegalStateException("Ошибка этапа импорта", failure);
+    }
+
+    /**
+     * Этап конвейера, выполняемый в отдельном потоке.
+     */
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    /**
+     * Блок записей, передаваемый между этапами.
+     */
+    private static final class Chunk {
+        // Сигнал завершения для потоков разбора
+        static final Chunk STOP = new Chunk(-1, -1, null);
+
+        final long sequence;     // Порядковый номер блока
+        final long firstRecord;  // Номер первой записи блока в файле (с 1)
+        List<String> records;    // Текст записей; null в завершающем блоке
+        Book[] books;            // Разобранные книги (null для отклоненных записей)
+        String[] errors;         // Причины отклонения
+
+        Chunk(long sequence, long firstRecord, List<String> records) {
+            this.sequence = sequence;
+            this.firstRecord = firstRecord;
+            this.records = records;
+        }
+
+        boolean isLast() {
+            return records == null && books == null;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.library.importer;
+
+import com.library.database.entities.Book;
+
+/**
+ * Разбор записей в текстовом представлении MARC (см. {@link ImportFormat#MARC}).
+ */
+class MarcRecordParser implements RecordParser {
+    // Знаки препинания ISBD в конце подполей ("Название /", "Автор,")
+    private static final String TRAILING_PUNCTUATION = " /:;,.=";
+
+    @Override
+    public Book parse(String record) {
+        String isbn = null, author = null, title = null, year = null;
+        for (String line : record.split("\n")) {
+            if (line.length() < 5 || line.charAt(0) != '=') {
+                continue;
+            }
+            String tag = line.substring(1, 4);
+            switch (tag) {
+                case "020":
+                    if (isbn == null) {
+                        String value = subfield(line, 'a');
+                        // "9785170906307 (в пер.)" -> "9785170906307"
+                        isbn = value == null ? null : value.trim().split("\\s+")[0];
+                    }
+                    break;
+                case "100":
+                case "110":
+                    if (author == null) {
+                        author = subfield(line, 'a');
+                    }
+                    break;
+                case "245":
+                    title = subfield(line, 'a');
+                    String remainder = subfield(line, 'b');
+                    if (title != null && remainder != null) {
+                        title = title + ": " + remainder;
+                    }
+                    break;
+                case "260":
+                case "264":
+                    if (year == null) {
+                        year = subfield(line, 'c');
+                    }
+                    break;
+                default:
+                    break; // Остальные поля не используются
+            }
+        }
+        return new Book(title, author, isbn, parseYear(year));
+    }
+
+    /**
+     * Возвращает значение подполя без завершающих знаков ISBD или null, если подполя нет.
+     */
+    private static String subfield(String line, char code) {
+        int start = line.indexOf("$" + code);
+        if (start < 0) {
+            return null;
+        }
+        start += 2;
+        int end = line.indexOf('$', start);
+        String value = line.substring(start, end < 0 ? line.length() : end);
+        int length = value.length();
+        while (length > 0 && TRAILING_PUNCTUATION.indexOf(value.charAt(length - 1)) >= 0) {
+            length--;
+        }
+        return value.substring(0, length);
+    }
+
+    /**
+     * Извлекает первое четырехзначное число ("c2019.", "[1869]", "cop. 2001").
+     */
+    private static int parseYear(String value) {
+        if (value != null) {
+            for (int i = 0; i + 4 <= value.length(); i++) {
+                if (isDigits(value, i, i + 4) && (i + 4 == value.length() || !Character.isDigit(value.charAt(i + 4)))) {
+                    return Integer.parseInt(value.substring(i, i + 4));
+                }
+            }
+        }
+        throw new IllegalArgumentException("Год публикации не найден в полях 260/264: " + value);
+    }
+
+    private static boolean isDigits(String value, int from, int to) {
+        if (from > 0 && Character.isDigit(value.charAt(from - 1))) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
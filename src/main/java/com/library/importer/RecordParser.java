@@ -0,0 +1,16 @@
+package com.library.importer;
+
+import com.library.database.entities.Book;
+
+/**
+ * Разбор одной записи файла импорта в книгу.
+ * Реализации не хранят изменяемого состояния и вызываются из нескольких потоков.
+ */
+interface RecordParser {
+    /**
+     * @param record текст записи
+     * @return книга, прошедшая проверки сеттеров {@link Book}
+     * @throws IllegalArgumentException если запись некорректна
+     */
+    Book parse(String record);
+}
@@ -0,0 +1,133 @@
+package com.library.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * Выделение границ записей во входном тексте без их разбора.
+ * Выполняется в одном потоке; разбор записей выполняется параллельно.
+ */
+abstract class RecordReader {
+    protected final BufferedReader input;
+
+    RecordReader(BufferedReader input) {
+        this.input = input;
+    }
+
+    /**
+     * @return текст следующей записи или null в конце входных данных
+     */
+    abstract String next() throws IOException;
+
+    /**
+     * Создает парсер для записей этого файла (для CSV читает строку заголовка).
+     */
+    abstract RecordParser parser() throws IOException;
+
+    static RecordReader of(ImportFormat format, BufferedReader input) {
+        return format == ImportFormat.CSV ? new Csv(input) : new Marc(input);
+    }
+
+    /**
+     * Записи CSV: строка, продолженная следующими строками, пока кавычки не закрыты.
+     */
+    private static final class Csv extends RecordReader {
+        Csv(BufferedReader input) {
+            super(input);
+        }
+
+        @Override
+        RecordParser parser() throws IOException {
+            String header = next();
+            if (header == null) {
+                throw new IllegalArgumentException("Файл CSV пуст: нет строки заголовка");
+            }
+            if (!header.isEmpty() && header.charAt(0) == '\uFEFF') {
+                header = header.substring(1); // Метка порядка байтов
+            }
+            return new CsvRecordParser(header);
+        }
+
+        @Override
+        String next() throws IOException {
+            String line;
+            do {
+                line = input.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+
+            if (!hasOpenQuote(line, false)) {
+                return line;
+            }
+            StringBuilder record = new StringBuilder(line);
+            boolean open = true;
+            while (open) {
+                String continuation = input.readLine();
+                if (continuation == null) {
+                    break; // Незакрытую кавычку отклонит парсер
+                }
+                record.append('\n').append(continuation);
+                open = hasOpenQuote(continuation, true);
+            }
+            return record.toString();
+        }
+
+        /**
+         * @param open открыта ли кавычка в начале строки
+         * @return открыта ли кавычка в конце строки
+         */
+        private static boolean hasOpenQuote(String line, boolean open) {
+            for (int i = 0; i < line.length(); i++) {
+                if (line.charAt(i) == '"') {
+                    open = !open;
+                }
+            }
+            return open;
+        }
+    }
+
+    /**
+     * Записи MARC: группы строк, разделенные пустой строкой или начинающиеся с =LDR.
+     */
+    private static final class Marc extends RecordReader {
+        private String pending; // Строка =LDR, начинающая следующую запись
+
+        Marc(BufferedReader input) {
+            super(input);
+        }
+
+        @Override
+        RecordParser parser() {
+            return new MarcRecordParser();
+        }
+
+        @Override
+        String next() throws IOException {
+            StringBuilder record = new StringBuilder();
+            if (pending != null) {
+                record.append(pending);
+                pending = null;
+            }
+            String line;
+            while ((line = input.readLine()) != null) {
+                if (line.isBlank()) {
+                    if (record.length() > 0) {
+                        return record.toString();
+                    }
+                    continue;
+                }
+                if (line.startsWith("=LDR") && record.length() > 0) {
+                    pending = line;
+                    return record.toString();
+                }
+                if (record.length() > 0) {
+                    record.append('\n');
+                }
+                record.append(line);
+            }
+            return record.length() > 0 ? record.toString() : null;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.library.json;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Разбор JSON-документа из строки (тела запроса API, строки пакетного файла и т.п.).
+ * Объекты возвращаются как {@link Map}, массивы - как {@link List}, числа - как
+ * {@link Long} или {@link Double}, строки, логические значения и null - как есть.
+ * Документы небольшие (одна книга, пользователь или операция), поэтому документ
+ * разбирается целиком из строки.
+ */
+public final class JsonReader {
+    private static final int MAX_DEPTH = 64;
+
+    private final String text;
+    private int pos;
+    private int depth;
+
+    private JsonReader(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Разбирает JSON-документ.
+     * @param text текст документа
+     * @return значение верхнего уровня
+     * @throws IllegalArgumentException если текст не является корректным JSON
+     */
+    public static Object parse(String text) {
+        JsonReader reader = new JsonReader(text);
+        Object value = reader.readValue();
+        reader.skipWhitespace();
+        if (reader.pos != text.length()) {
+            throw reader.error("Лишние символы после конца документа");
+        }
+        return value;
+    }
+
+    /**
+     * Разбирает JSON-документ, который должен быть объектом.
+     * @param text текст документа
+     * @return поля объекта
+     * @throws IllegalArgumentException если текст не является JSON-объектом
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(String text) {
+        Object value = parse(text);
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Ожидался JSON-объект");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private Object readValue() {
+        skipWhitespace();
+        if (pos >= text.length()) {
+            throw error("Неожиданный конец документа");
+        }
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true", Boolean.TRUE);
+            case 'f':
+                return readLiteral("false", Boolean.FALSE);
+            case 'n':
+                return readLiteral("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber();
+                }
+                throw error("Неожиданный символ '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        enter();
+        pos++; // {
+        Map<String, Object> object = new LinkedHashMap<>();
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            depth--;
+            return object;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Ожидалось имя поля");
+            }
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            object.put(name, readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == '}') {
+                depth--;
+                return object;
+            }
+            if (c != ',') {
+                throw error("Ожидалась ',' или '}'");
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        enter();
+        pos++; // [
+        List<Object> array = new ArrayList<>();
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            depth--;
+            return array;
+        }
+        while (true) {
+            array.add(readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == ']') {
+                depth--;
+                return array;
+            }
+            if (c != ',') {
+                throw error("Ожидалась ',' или ']'");
+            }
+        }
+    }
+
+    private String readString() {
+        pos++; // "
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c == '\\') {
+                char e = next();
+                switch (e) {
+                    case '"': sb.append('"'); break;
+                    case '\\': sb.append('\\'); break;
+                    case '/': sb.append('/'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("Неполная escape-последовательность");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("Некорректная escape-последовательность");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("Некорректная escape-последовательность");
+                }
+            } else if (c < 0x20) {
+                throw error("Управляющий символ в строке");
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    private Object readNumber() {
+        int start = pos;
+        boolean fraction = false;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E') {
+                fraction = true;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            pos++;
+        }
+        String number = text.substring(start, pos);
+        try {
+            return fraction ? (Object) Double.parseDouble(number) : (Object) Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            throw error("Некорректное число: " + number);
+        }
+    }
+
+    private Object readLiteral(String literal, Object value) {
+        if (!text.startsWith(literal, pos)) {
+            throw error("Ожидалось " + literal);
+        }
+        pos += literal.length();
+        return value;
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            throw error("Слишком глубокая вложенность");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        return pos < text.length() ? text.charAt(pos) : '\0';
+    }
+
+    private char next() {
+        if (pos >= text.length()) {
+            throw error("Неожиданный конец документа");
+        }
+        return text.charAt(pos++);
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            throw error("Ожидался символ '" + c + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Некорректный JSON (позиция " + pos + "): " + message);
+    }
+}
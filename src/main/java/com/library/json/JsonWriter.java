@@ -0,0 +1,152 @@
+package com.library.json;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Потоковая запись JSON в {@link Writer}.
+ * Значения записываются сразу по мере вызова методов, поэтому большой массив
+ * можно передавать клиенту по частям, не строя весь документ в памяти.
+ * Запятые между элементами расставляются автоматически.
+ * <pre>
+ * json.beginObject().name("id").value(1).name("title").value("Идиот").endObject();
+ * </pre>
+ */
+public class JsonWriter {
+    private static final int MAX_DEPTH = 64;
+
+    private final Writer out;
+    private final boolean[] hasElements = new boolean[MAX_DEPTH]; // В текущем контейнере уже есть элементы
+    private int depth;
+    private boolean afterName; // Записано имя поля, ожидается его значение
+
+    /**
+     * @param out получатель текста JSON
+     */
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Записывает имя поля объекта; следующим вызовом должно быть значение.
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            out.write("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        separate();
+        out.write("null");
+        return this;
+    }
+
+    /**
+     * Передает накопленный текст получателю (например, очередной фрагмент ответа клиенту).
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+        separate();
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("Слишком глубокая вложенность JSON");
+        }
+        out.write(bracket);
+        hasElements[depth++] = false;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("Нет открытого объекта или массива");
+        }
+        depth--;
+        out.write(bracket);
+        return this;
+    }
+
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasElements[depth - 1]) {
+                out.write(',');
+            }
+            hasElements[depth - 1] = true;
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escape = null;
+            if (c == '"') {
+                escape = "\\\"";
+            } else if (c == '\\') {
+                escape = "\\\\";
+            } else if (c == '\n') {
+                escape = "\\n";
+            } else if (c == '\r') {
+                escape = "\\r";
+            } else if (c == '\t') {
+                escape = "\\t";
+            } else if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                escape = String.format("\\u%04x", (int) c);
+            }
+            if (escape != null) {
+                out.write(value, start, i - start);
+                out.write(escape);
+                start = i + 1;
+            }
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+    }
+}
@@ -0,0 +1,74 @@
+package com.library.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR об обращении к кэшу или индексу в памяти. При промахе длительность
+ * события включает построение значения (например, загрузку каталога для индекса поиска).
+ * Выключено по умолчанию (включается настройкой +com.library.CacheAccess#enabled=true).
+ * <pre>
+ * CacheAccessEvent event = CacheAccessEvent.start("searchIndex");
+ * if (index != null) { event.hit(index.size()); } else { ... построение; event.miss(index.size()); }
+ * </pre>
+ */
+@Name("com.library.CacheAccess")
+@Label("Cache Access")
+@Category({"Library", "Cache"})
+@Description("Обращение к кэшу или индексу в памяти")
+@Enabled(false)
+@StackTrace(false)
+public class CacheAccessEvent extends Event {
+
+    @Label("Cache")
+    public String cache;
+
+    @Label("Hit")
+    public boolean hit;
+
+    @Label("Entries")
+    @Description("Размер кэша или индекса после обращения (0, если не учитывается)")
+    public long entries;
+
+    /**
+     * Начинает событие обращения к кэшу.
+     * @param cache имя кэша
+     */
+    public static CacheAccessEvent start(String cache) {
+        CacheAccessEvent event = new CacheAccessEvent();
+        if (event.isEnabled()) {
+            event.cache = cache;
+            event.begin();
+        }
+        return event;
+    }
+
+    /**
+     * Завершает событие попаданием.
+     * @param entries размер кэша
+     */
+    public void hit(long entries) {
+        end(true, entries);
+    }
+
+    /**
+     * Завершает событие промахом после построения значения.
+     * @param entries размер кэша после построения
+     */
+    public void miss(long entries) {
+        end(false, entries);
+    }
+
+    private void end(boolean hit, long entries) {
+        if (shouldCommit()) {
+            this.hit = hit;
+            this.entries = entries;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.library.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR о получении соединения с базой данных. Длительность события -
+ * время получения, включая повторное подключение, если соединение было закрыто.
+ * Выключено по умолчанию (включается настройкой +com.library.ConnectionAcquisition#enabled=true).
+ */
+@Name("com.library.ConnectionAcquisition")
+@Label("Connection Acquisition")
+@Category({"Library", "Database"})
+@Description("Получение соединения с базой данных")
+@Enabled(false)
+@StackTrace(false)
+public class ConnectionAcquisitionEvent extends Event {
+
+    @Label("URL")
+    public String url;
+
+    @Label("Reconnected")
+    @Description("Соединение было закрыто и установлено заново")
+    public boolean reconnected;
+}
@@ -0,0 +1,144 @@
+package com.library.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек с логарифмически-линейными интервалами (как в HdrHistogram):
+ * значения до {@value #SUB_BUCKETS} нс хранятся точно, далее каждый интервал степени
+ * двойки делится на {@value #HALF_SUB_BUCKETS} равных частей, поэтому относительная
+ * погрешность перцентилей не превышает 1/{@value #HALF_SUB_BUCKETS} (около 1,6%) во всем
+ * диапазоне от наносекунд до {@link #MAX_TRACKABLE_NANOS}.
+ * <p>
+ * Запись выполняется без блокировок (одно атомарное увеличение счетчика интервала)
+ * и может вызываться из любого числа потоков. Чтение во время записи дает
+ * согласованную в пределах погрешности, но не мгновенную картину.
+ */
+public class LatencyHistogram {
+    // Точно хранимые значения и число частей первого логарифмического интервала
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    // Наибольшее различимое значение (около 18 минут); большие значения учитываются как оно
+    public static final long MAX_TRACKABLE_NANOS = (1L << 40) - 1;
+
+    private static final int BUCKETS = index(MAX_TRACKABLE_NANOS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Учитывает одно значение.
+     * @param nanos задержка в наносекундах (отрицательные считаются нулем)
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_TRACKABLE_NANOS);
+        counts.incrementAndGet(index(value));
+        total.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Повтор, если максимум одновременно изменил другой поток
+        }
+    }
+
+    /**
+     * @return количество учтенных значений
+     */
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * @return наибольшее учтенное значение (нс) или 0
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return среднее значение (нс) или 0, если значений нет
+     */
+    public double getMean() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Значение, не превышаемое заданной долей учтенных значений.
+     * @param percentile перцентиль от 0 до 100 (например, 99.9)
+     * @return верхняя граница интервала, содержащего перцентиль (нс), но не больше максимума; 0, если значений нет
+     * @throws IllegalArgumentException если перцентиль вне диапазона
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Перцентиль должен быть от 0 до 100: " + percentile);
+        }
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Обнуляет гистограмму (например, после прогрева). Значения, записываемые
+     * одновременно со сбросом, могут быть учтены частично.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Номер интервала для значения: значения меньше SUB_BUCKETS - сами себе номер,
+     * большие - по старшим SUB_BUCKET_BITS битам.
+     */
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int mantissa = (int) (value >>> shift); // От HALF_SUB_BUCKETS до SUB_BUCKETS - 1
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (mantissa - HALF_SUB_BUCKETS);
+    }
+
+    /**
+     * Наибольшее значение, попадающее в интервал.
+     */
+    private static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long mantissa = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("количество=%d, среднее=%.1f мкс, p50=%.1f мкс, p99=%.1f мкс, p99.9=%.1f мкс, максимум=%.1f мкс",
+                getCount(), getMean() / 1000, getValueAtPercentile(50) / 1000.0, getValueAtPercentile(99) / 1000.0,
+                getValueAtPercentile(99.9) / 1000.0, getMax() / 1000.0);
+    }
+}
@@ -0,0 +1,188 @@
+package com.library.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Реестр статистики операций. Каждая операция публикуется как MBean с именем
+ * {@code com.library:type=<слой>,name=<интерфейс>,operation=<метод>} и доступна
+ * в jconsole или JMC.
+ * <p>
+ * Метод {@link #instrument} оборачивает реализацию интерфейса (репозиторий, сервис)
+ * в прокси, который учитывает время и исключения каждого вызова. Статистика всех
+ * методов создается заранее, поэтому на пути вызова нет ни блокировок, ни выделения памяти,
+ * кроме обычных для рефлексивного вызова.
+ */
+public class MetricsRegistry implements AutoCloseable {
+    // Домен имен MBean
+    public static final String DOMAIN = "com.library";
+
+    private final MBeanServer server;
+    private final Map<ObjectName, OperationStats> operations = new ConcurrentHashMap<>();
+    private final Set<ObjectName> published = ConcurrentHashMap.newKeySet(); // Прочие MBean реестра
+
+    /**
+     * @param server сервер MBean, обычно {@code ManagementFactory.getPlatformMBeanServer()};
+     *               null - статистика ведется без публикации
+     */
+    public MetricsRegistry(MBeanServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Возвращает статистику операции, создавая и публикуя ее при первом обращении.
+     * @param type слой приложения, например Repository или Service
+     * @param name имя компонента
+     * @param operation имя операции
+     * @return статистика операции
+     */
+    public OperationStats operation(String type, String name, String operation) {
+        ObjectName objectName = objectName(type, name, operation);
+        return operations.computeIfAbsent(objectName, key -> {
+            OperationStats stats = new OperationStats();
+            register(key, stats);
+            return stats;
+        });
+    }
+
+    /**
+     * Публикует произвольный MBean с именем {@code com.library:type=<слой>,name=<имя>}.
+     * @param type слой приложения, например Database
+     * @param name имя компонента
+     * @param mbean стандартный MBean (реализует интерфейс с суффиксом MBean)
+     */
+    public void publish(String type, String name, Object mbean) {
+        ObjectName objectName;
+        try {
+            objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + name);
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException("Недопустимое имя MBean: " + name, e);
+        }
+        register(objectName, mbean);
+        published.add(objectName);
+    }
+
+    /**
+     * @return вся статистика реестра по именам MBean
+     */
+    public Map<ObjectName, OperationStats> getOperations() {
+        return Collections.unmodifiableMap(operations);
+    }
+
+    /**
+     * Оборачивает реализацию интерфейса в прокси, учитывающий каждый вызов.
+     * Перегруженные методы учитываются раздельно: имя операции содержит типы параметров.
+     * @param type интерфейс, через который будет использоваться объект
+     * @param target оборачиваемая реализация
+     * @param layer слой приложения для имени MBean (Repository, Service)
+     * @return прокси, реализующий type
+     */
+    public <T> T instrument(Class<T> type, T target, String layer) {
+        Map<Method, OperationStats> stats = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                stats.put(method, operation(layer, type.getSimpleName(), operationName(type, method)));
+            }
+        }
+        InvocationHandler handler = (proxy, method, args) -> {
+            OperationStats operation = stats.get(method);
+            if (operation == null) {
+                // Методы Object (equals, hashCode, toString)
+                return invoke(method, target, args);
+            }
+            long started = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = invoke(method, target, args);
+                failed = false;
+                return result;
+            } finally {
+                operation.record(System.nanoTime() - started, failed);
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Снимает с публикации все MBean реестра.
+     */
+    @Override
+    public void close() {
+        if (server == null) {
+            return;
+        }
+        Set<ObjectName> names = new HashSet<>(operations.keySet());
+        names.addAll(published);
+        for (ObjectName name : names) {
+            try {
+                server.unregisterMBean(name);
+            } catch (InstanceNotFoundException | MBeanRegistrationException e) {
+                // MBean уже снят с публикации
+            }
+        }
+    }
+
+    private void register(ObjectName name, Object mbean) {
+        if (server == null) {
+            return;
+        }
+        try {
+            if (server.isRegistered(name)) {
+                // Остался от предыдущего реестра в той же JVM
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+        } catch (InstanceAlreadyExistsException | MBeanRegistrationException | NotCompliantMBeanException
+                 | InstanceNotFoundException e) {
+            throw new IllegalStateException("Не удалось опубликовать MBean " + name, e);
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Имя операции: имя метода, для перегруженных методов - с типами параметров.
+     */
+    private static String operationName(Class<?> type, Method method) {
+        long overloads = Arrays.stream(type.getMethods()).filter(m -> m.getName().equals(method.getName())).count();
+        if (overloads == 1) {
+            return method.getName();
+        }
+        return method.getName() + Arrays.stream(method.getParameterTypes())
+                .map(Class::getSimpleName)
+                .collect(Collectors.joining(",", "(", ")"));
+    }
+
+    private static ObjectName objectName(String type, String name, String operation) {
+        try {
+            return new ObjectName(DOMAIN + ":type=" + type + ",name=" + name
+                    + ",operation=" + (operation.matches("[\\w()]+") ? operation : ObjectName.quote(operation)));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException("Недопустимое имя операции: " + operation, e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.library.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики и гистограмма задержек одной операции.
+ * Учет вызова не требует блокировок (см. {@link LatencyHistogram}).
+ */
+public class OperationStats implements OperationStatsMBean {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Учитывает завершенный вызов.
+     * @param nanos длительность вызова
+     * @param failed true, если вызов завершился исключением
+     */
+    public void record(long nanos, boolean failed) {
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * @return гистограмма задержек (нс)
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.getMean() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.getValueAtPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return latency.getValueAtPercentile(90) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.getValueAtPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.getValueAtPercentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.getMax() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        errors.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("вызовов=%d, ошибок=%d, среднее=%.1f мкс, p50=%.1f мкс, p99=%.1f мкс, макс=%.1f мкс",
+                getCount(), getErrorCount(), getMeanMicros(), getP50Micros(), getP99Micros(), getMaxMicros());
+    }
+}
@@ -0,0 +1,35 @@
+package com.library.metrics;
+
+/**
+ * Статистика вызовов одной операции, публикуемая через JMX.
+ * Задержки приводятся в микросекундах.
+ */
+public interface OperationStatsMBean {
+
+    // Количество завершенных вызовов (успешных и с ошибкой)
+    long getCount();
+
+    // Количество вызовов, завершившихся исключением
+    long getErrorCount();
+
+    // Средняя задержка
+    double getMeanMicros();
+
+    // Медиана задержки
+    double getP50Micros();
+
+    // 90-й перцентиль задержки
+    double getP90Micros();
+
+    // 99-й перцентиль задержки
+    double getP99Micros();
+
+    // 99,9-й перцентиль задержки
+    double getP999Micros();
+
+    // Наибольшая задержка
+    double getMaxMicros();
+
+    // Сбросить счетчики и гистограмму
+    void reset();
+}
@@ -0,0 +1,95 @@
+package com.library.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Событие JFR об одном переборе каталога в памяти исполнителем поиска
+ * ({@link com.library.search.ParallelSearchExecutor}): способ выполнения, число блоков
+ * и потоков, суммарное время работы потоков. Длительность события - время перебора.
+ * В отличие от сводной статистики исполнителя, описывает каждый запрос отдельно.
+ * <p>
+ * Выключено по умолчанию (включается настройкой +com.library.SearchExecution#enabled=true).
+ * <pre>
+ * SearchExecutionEvent event = SearchExecutionEvent.start(rowCount, estimatedNanos);
+ * ... перебор
+ * event.end(parallel, chunks, workers, busyNanos, hits);
+ * </pre>
+ */
+@Name("com.library.SearchExecution")
+@Label("Search Execution")
+@Category({"Library", "Search"})
+@Description("Перебор каталога в памяти исполнителем поиска")
+@Enabled(false)
+@StackTrace(false)
+public class SearchExecutionEvent extends Event {
+    @Label("Mode")
+    @Description("parallel или sequential")
+    public String mode;
+
+    @Label("Rows")
+    @Description("Просмотрено строк каталога")
+    public int rows;
+
+    @Label("Hits")
+    @Description("Найдено строк")
+    public int hits;
+
+    @Label("Chunks")
+    @Description("Блоков перебора (1 при последовательном выполнении)")
+    public int chunks;
+
+    @Label("Workers")
+    @Description("Потоков пула, между которыми распределялись блоки (не больше числа блоков)")
+    public int workers;
+
+    @Label("Estimated Time")
+    @Description("Оценка времени последовательного перебора, по которой выбран способ выполнения")
+    @Timespan(Timespan.NANOSECONDS)
+    public long estimatedTime;
+
+    @Label("Busy Time")
+    @Description("Суммарное время работы потоков над блоками")
+    @Timespan(Timespan.NANOSECONDS)
+    public long busyTime;
+
+    /**
+     * Начинает событие перебора.
+     * @param rows количество строк каталога
+     * @param estimatedNanos оценка времени последовательного перебора
+     */
+    public static SearchExecutionEvent start(int rows, long estimatedNanos) {
+        SearchExecutionEvent event = new SearchExecutionEvent();
+        if (event.isEnabled()) {
+            event.rows = rows;
+            event.estimatedTime = estimatedNanos;
+            event.begin();
+        }
+        return event;
+    }
+
+    /**
+     * Завершает событие.
+     * @param parallel перебор выполнен параллельно
+     * @param chunks количество блоков
+     * @param workers количество потоков
+     * @param busyNanos суммарное время работы потоков
+     * @param hits количество найденных строк
+     */
+    public void end(boolean parallel, int chunks, int workers, long busyNanos, int hits) {
+        if (isEnabled()) {
+            mode = parallel ? "parallel" : "sequential";
+            this.chunks = chunks;
+            this.workers = workers;
+            this.busyTime = busyNanos;
+            this.hits = hits;
+            commit();
+        }
+    }
+}
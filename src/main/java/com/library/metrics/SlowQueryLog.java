@@ -0,0 +1,337 @@
+package com.library.metrics;
+
+import com.library.json.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Журнал медленных запросов. Каждый запрос дольше порога записывается строкой JSON
+ * вместе с планом выполнения (EXPLAIN QUERY PLAN); запросы группируются по отпечатку
+ * формы ({@link SqlFingerprint}), и для каждого отпечатка ведутся количество,
+ * суммарное и наибольшее время.
+ * <p>
+ * Файл журнала открывается при первой записи. Когда его размер превышает maxBytes,
+ * он переименовывается в "имя.1" (прежние архивы сдвигаются до "имя.N"), и запись
+ * продолжается в новый файл. При закрытии в журнал дописываются итоги по отпечаткам.
+ * <pre>
+ * {"time":"...","fingerprint":"3f2a9c01","micros":184220,"sql":"SELECT ... WHERE email = ?",
+ *  "scan":true,"plan":["SCAN users"],"occurrences":12}
+ * </pre>
+ */
+public class SlowQueryLog implements SlowQueryLogMBean, AutoCloseable {
+    // Сколько отпечатков возвращает getTopFingerprints
+    private static final int TOP_FINGERPRINTS = 20;
+    // Через сколько план запроса получается заново (после ANALYZE или новых индексов он меняется)
+    private static final long PLAN_REFRESH_NANOS = 60_000_000_000L;
+
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final LongAdder slowQueries = new LongAdder();
+    private final LongAdder scans = new LongAdder();
+    private volatile long thresholdNanos;
+
+    private Writer out;   // Текущий файл (null - еще не открыт)
+    private long written; // Размер текущего файла
+
+    /**
+     * Статистика одной формы запроса.
+     */
+    public static final class Fingerprint {
+        private final String id;
+        private final String shape;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private volatile List<String> plan = List.of();
+        private volatile boolean scan;
+        private volatile long planCapturedNanos; // Когда получен план (System.nanoTime)
+
+        private Fingerprint(String id, String shape) {
+            this.id = id;
+            this.shape = shape;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public List<String> getPlan() {
+            return plan;
+        }
+
+        public boolean isScan() {
+            return scan;
+        }
+
+        /**
+         * @return true, если план еще не получен или устарел
+         */
+        public boolean needsPlan() {
+            return plan.isEmpty() || System.nanoTime() - planCapturedNanos > PLAN_REFRESH_NANOS;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: вызовов=%d, всего=%.1f мс, макс=%.1f мс%s, %s",
+                    id, getCount(), getTotalNanos() / 1e6, getMaxNanos() / 1e6, scan ? ", ПРОСМОТР" : "", shape);
+        }
+    }
+
+    /**
+     * @param file файл журнала
+     * @param maxBytes размер файла, после которого он сменяется новым
+     * @param maxFiles количество хранимых архивных файлов
+     * @param thresholdMillis порог длительности (мс); отрицательное значение выключает журнал
+     */
+    public SlowQueryLog(Path file, long maxBytes, int maxFiles, long thresholdMillis) {
+        if (maxBytes <= 0 || maxFiles < 0) {
+            throw new IllegalArgumentException("Размер журнала должен быть положительным, число архивов - неотрицательным");
+        }
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        this.thresholdNanos = toNanos(thresholdMillis);
+    }
+
+    /**
+     * @return порог в наносекундах или отрицательное значение, если журнал выключен
+     */
+    public long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    /**
+     * @return true, если запрос такой длительности нужно записать в журнал
+     */
+    public boolean isSlow(long nanos) {
+        long threshold = thresholdNanos;
+        return threshold >= 0 && nanos >= threshold;
+    }
+
+    /**
+     * Возвращает статистику отпечатка запроса, создавая ее при первом обращении.
+     * @param sql текст запроса
+     */
+    public Fingerprint fingerprint(String sql) {
+        String shape = SqlFingerprint.shape(sql);
+        return fingerprints.computeIfAbsent(shape, key -> new Fingerprint(SqlFingerprint.of(key), key));
+    }
+
+    /**
+     * Учитывает медленный запрос и записывает его в журнал.
+     * @param fingerprint отпечаток запроса ({@link #fingerprint})
+     * @param nanos длительность
+     * @param plan строки плана выполнения или null, если план не получен (тогда используется прежний)
+     */
+    public void record(Fingerprint fingerprint, long nanos, List<String> plan) {
+        if (plan != null) {
+            fingerprint.plan = List.copyOf(plan);
+            fingerprint.planCapturedNanos = System.nanoTime();
+            fingerprint.scan = plan.stream().anyMatch(SlowQueryLog::isScan);
+        }
+        fingerprint.count.increment();
+        fingerprint.totalNanos.add(nanos);
+        fingerprint.maxNanos.accumulateAndGet(nanos, Math::max);
+        slowQueries.increment();
+        if (fingerprint.scan) {
+            scans.increment();
+        }
+
+        StringWriter line = new StringWriter(256);
+        try {
+            JsonWriter json = new JsonWriter(line);
+            json.beginObject()
+                    .name("time").value(Instant.now().toString())
+                    .name("fingerprint").value(fingerprint.id)
+                    .name("micros").value(nanos / 1000)
+                    .name("sql").value(fingerprint.shape)
+                    .name("scan").value(fingerprint.scan)
+                    .name("plan").beginArray();
+            for (String step : fingerprint.plan) {
+                json.value(step);
+            }
+            json.endArray()
+                    .name("occurrences").value(fingerprint.getCount())
+                    .endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringWriter не бросает IOException
+        }
+        write(line.toString());
+    }
+
+    /**
+     * Признак полного просмотра в строке плана SQLite: "SCAN books",
+     * "SCAN books USING INDEX ..." (но не "SCAN CONSTANT ROW").
+     * @param step строка плана
+     * @return true, если шаг просматривает таблицу или индекс целиком
+     */
+    public static boolean isScan(String step) {
+        return step.startsWith("SCAN ") && !step.startsWith("SCAN CONSTANT ROW");
+    }
+
+    /**
+     * @return отпечатки по убыванию суммарного времени
+     */
+    public List<Fingerprint> getFingerprints() {
+        return fingerprints.values().stream()
+                .filter(fingerprint -> fingerprint.getCount() > 0)
+                .sorted(Comparator.comparingLong(Fingerprint::getTotalNanos).reversed())
+                .toList();
+    }
+
+    @Override
+    public long getThresholdMillis() {
+        long threshold = thresholdNanos;
+        return threshold < 0 ? -1 : threshold / 1_000_000;
+    }
+
+    @Override
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdNanos = toNanos(thresholdMillis);
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueries.sum();
+    }
+
+    @Override
+    public long getScanCount() {
+        return scans.sum();
+    }
+
+    @Override
+    public String[] getTopFingerprints() {
+        return getFingerprints().stream().limit(TOP_FINGERPRINTS).map(Fingerprint::toString).toArray(String[]::new);
+    }
+
+    @Override
+    public void reset() {
+        fingerprints.clear();
+        slowQueries.reset();
+        scans.reset();
+    }
+
+    /**
+     * Дописывает итоги по отпечаткам и закрывает файл журнала.
+     */
+    @Override
+    public synchronized void close() {
+        List<Fingerprint> summary = getFingerprints();
+        if (!summary.isEmpty()) {
+            for (Fingerprint fingerprint : summary) {
+                StringWriter line = new StringWriter(256);
+                try {
+                    new JsonWriter(line).beginObject()
+                            .name("summary").value(fingerprint.id)
+                            .name("count").value(fingerprint.getCount())
+                            .name("totalMicros").value(fingerprint.getTotalNanos() / 1000)
+                            .name("maxMicros").value(fingerprint.getMaxNanos() / 1000)
+                            .name("scan").value(fingerprint.scan)
+                            .name("sql").value(fingerprint.shape)
+                            .endObject();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                write(line.toString());
+            }
+        }
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Не удалось закрыть журнал медленных запросов: " + e.getMessage());
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Записывает строку в журнал, при необходимости сменяя файл.
+     * Ошибки записи выводятся в stderr и не прерывают запрос.
+     */
+    private synchronized void write(String line) {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            if (out != null && written + bytes.length > maxBytes) {
+                out.close();
+                out = null;
+                rotate();
+            }
+            if (out == null) {
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                written = Files.size(file);
+            }
+            out.write(line);
+            out.write('\n');
+            out.flush();
+            written += bytes.length;
+        } catch (IOException e) {
+            System.err.println("Ошибка записи журнала медленных запросов: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Сдвигает архивы: имя.(N-1) -> имя.N, ..., имя -> имя.1. Самый старый архив удаляется.
+     */
+    private void rotate() throws IOException {
+        if (maxFiles == 0) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Files.deleteIfExists(archive(maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            if (Files.exists(archive(i))) {
+                Files.move(archive(i), archive(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, archive(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path archive(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    /**
+     * Переводит порог в наносекунды; отрицательный порог выключает журнал.
+     */
+    private static long toNanos(long thresholdMillis) {
+        return thresholdMillis < 0 ? -1 : thresholdMillis * 1_000_000;
+    }
+}
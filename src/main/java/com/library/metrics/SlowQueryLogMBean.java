@@ -0,0 +1,25 @@
+package com.library.metrics;
+
+/**
+ * Журнал медленных запросов, публикуемый через JMX.
+ */
+public interface SlowQueryLogMBean {
+
+    // Порог длительности запроса (мс); отрицательное значение выключает журнал
+    long getThresholdMillis();
+
+    // Изменить порог без перезапуска
+    void setThresholdMillis(long thresholdMillis);
+
+    // Количество медленных запросов с момента запуска или сброса
+    long getSlowQueryCount();
+
+    // Количество медленных запросов, план которых содержит полный просмотр
+    long getScanCount();
+
+    // Отпечатки запросов по убыванию суммарного времени
+    String[] getTopFingerprints();
+
+    // Сбросить агрегаты по отпечаткам
+    void reset();
+}
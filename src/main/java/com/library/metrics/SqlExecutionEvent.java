@@ -0,0 +1,124 @@
+package com.library.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Событие JFR о выполнении одного SQL-запроса репозиторием.
+ * Длительность события делится на выполнение запроса (executeQuery/executeUpdate)
+ * и отображение строк результата в объекты.
+ * <p>
+ * Событие выключено по умолчанию; включается настройкой записи, например
+ * {@code -XX:StartFlightRecording:+com.library.SqlExecution#enabled=true}.
+ * Пока событие выключено, все методы сводятся к проверке {@link #isEnabled()},
+ * а сам объект исключается JIT-компилятором.
+ * <pre>
+ * SqlExecutionEvent event = SqlExecutionEvent.start("findById", sql, 1);
+ * ... executeQuery()
+ * event.executed();
+ * ... чтение строк
+ * event.end(rows);
+ * </pre>
+ */
+@Name("com.library.SqlExecution")
+@Label("SQL Execution")
+@Category({"Library", "Database"})
+@Description("Выполнение SQL-запроса репозиторием")
+@Enabled(false)
+@StackTrace(false)
+public class SqlExecutionEvent extends Event {
+    @Label("Operation")
+    @Description("Метод репозитория")
+    public String operation;
+
+    @Label("SQL Shape")
+    @Description("Текст запроса без значений параметров")
+    public String sql;
+
+    @Label("Bind Count")
+    public int bindCount;
+
+    @Label("Rows")
+    @Description("Прочитано строк для выборки, изменено строк для изменения")
+    public long rows;
+
+    @Label("Execute Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long executeTime;
+
+    @Label("Mapping Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long mappingTime;
+
+    @Label("Failed")
+    public boolean failed;
+
+    private transient long mark;        // Начало текущей фазы (нс)
+    private transient boolean mapping;  // Запрос выполнен, идет чтение результата
+    private transient boolean ended;    // Событие уже завершено
+
+    /**
+     * Начинает событие.
+     * @param operation метод репозитория
+     * @param sql текст запроса с параметрами "?"
+     * @param bindCount количество привязанных параметров
+     */
+    public static SqlExecutionEvent start(String operation, String sql, int bindCount) {
+        SqlExecutionEvent event = new SqlExecutionEvent();
+        if (event.isEnabled()) {
+            event.operation = operation;
+            event.sql = SqlFingerprint.shape(sql);
+            event.bindCount = bindCount;
+            event.mark = System.nanoTime();
+            event.begin();
+        }
+        return event;
+    }
+
+    /**
+     * Отмечает окончание выполнения запроса и начало чтения результата.
+     */
+    public void executed() {
+        if (isEnabled()) {
+            long now = System.nanoTime();
+            executeTime = now - mark;
+            mark = now;
+            mapping = true;
+        }
+    }
+
+    /**
+     * Завершает событие после чтения результата.
+     * @param rows прочитано или изменено строк
+     */
+    public void end(long rows) {
+        if (isEnabled() && !ended) {
+            ended = true;
+            long now = System.nanoTime();
+            if (mapping) {
+                mappingTime = now - mark;
+            } else {
+                executeTime = now - mark;
+            }
+            this.rows = rows;
+            commit();
+        }
+    }
+
+    /**
+     * Завершает событие запроса, выполнение которого закончилось ошибкой.
+     * Если событие уже завершено (ошибка возникла после выполнения запроса), ничего не делает.
+     */
+    public void fail() {
+        if (isEnabled() && !ended) {
+            failed = true;
+            end(rows);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.library.metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Приведение текста SQL-запроса к форме, общей для всех его выполнений,
+ * и короткий отпечаток этой формы для группировки.
+ */
+public final class SqlFingerprint {
+    // Списки параметров IN (?, ?, ...) разной длины сводятся к одной форме
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // Строковые и числовые литералы (для запросов, собранных без параметров)
+    private static final Pattern LITERAL = Pattern.compile("'(?:[^']|'')*'|\\b\\d+\\b");
+
+    private SqlFingerprint() {
+    }
+
+    /**
+     * Форма запроса: пробелы схлопнуты, литералы заменены на "?",
+     * списки параметров - на один "?, ...".
+     * @param sql текст запроса
+     * @return форма запроса
+     */
+    public static String shape(String sql) {
+        String compact = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        compact = LITERAL.matcher(compact).replaceAll("?");
+        return PARAMETER_LIST.matcher(compact).replaceAll("?, ...");
+    }
+
+    /**
+     * Отпечаток формы запроса: 8 шестнадцатеричных цифр CRC32.
+     * @param shape форма запроса ({@link #shape})
+     * @return отпечаток
+     */
+    public static String of(String shape) {
+        CRC32 crc = new CRC32();
+        crc.update(shape.getBytes(StandardCharsets.UTF_8));
+        return String.format("%08x", crc.getValue());
+    }
+}
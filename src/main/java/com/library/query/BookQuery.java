@@ -0,0 +1,398 @@
+package com.library.query;
+
+/**
+ * Составной запрос к каталогу книг.
+ * Объединяет условия по любым полям книги, сортировку и ограничение количества строк.
+ * Создается через {@link #builder()} и компилируется в один параметризованный SQL-запрос
+ * классом {@link BookQueryCompiler}. Объект неизменяем.
+ * <pre>
+ * BookQuery query = BookQuery.builder()
+ *         .authorContains("толстой")
+ *         .yearBetween(1850, 1900)
+ *         .available(true)
+ *         .orderBy(BookQuery.SortField.YEAR, false)
+ *         .limit(20)
+ *         .build();
+ * </pre>
+ */
+public final class BookQuery {
+    /**
+     * Способ сравнения текстового поля.
+     */
+    public enum TextMatch {
+        EQUALS,     // Полное совпадение
+        PREFIX,     // Значение начинается со строки
+        CONTAINS    // Значение содержит строку
+    }
+
+    /**
+     * Поле сортировки результатов.
+     */
+    public enum SortField {
+        ID,
+        TITLE,
+        AUTHOR,
+        ISBN,
+        YEAR
+    }
+
+    private final Integer id;
+    private final int[] ids;
+    private final Integer idAfter;
+    private final String title;
+    private final TextMatch titleMatch;
+    private final String author;
+    private final TextMatch authorMatch;
+    private final String isbn;
+    private final Integer yearFrom;
+    private final Integer yearTo;
+    private final Boolean available;
+    private final SortField sortField;
+    private final boolean ascending;
+    private final Integer limit;
+    private final Integer offset;
+
+    private BookQuery(Builder builder) {
+        this.id = builder.id;
+        this.ids = builder.ids;
+        this.idAfter = builder.idAfter;
+        this.title = builder.title;
+        this.titleMatch = builder.titleMatch;
+        this.author = builder.author;
+        this.authorMatch = builder.authorMatch;
+        this.isbn = builder.isbn;
+        this.yearFrom = builder.yearFrom;
+        this.yearTo = builder.yearTo;
+        this.available = builder.available;
+        this.sortField = builder.sortField;
+        this.ascending = builder.ascending;
+        this.limit = builder.limit;
+        this.offset = builder.offset;
+    }
+
+    /**
+     * @return новый построитель запроса без условий
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return построитель, заполненный условиями этого запроса
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.id = id;
+        builder.ids = ids;
+        builder.idAfter = idAfter;
+        builder.title = title;
+        builder.titleMatch = titleMatch;
+        builder.author = author;
+        builder.authorMatch = authorMatch;
+        builder.isbn = isbn;
+        builder.yearFrom = yearFrom;
+        builder.yearTo = yearTo;
+        builder.available = available;
+        builder.sortField = sortField;
+        builder.ascending = ascending;
+        builder.limit = limit;
+        builder.offset = offset;
+        return builder;
+    }
+
+    /**
+     * Возвращает описание формы запроса: какие условия заданы и как, без самих значений.
+     * Запросы одной формы компилируются в один и тот же SQL.
+     * @return строка-ключ формы запроса
+     */
+    public String shape() {
+        StringBuilder shape = new StringBuilder();
+        if (id != null) shape.append("id;");
+        if (ids != null) shape.append("ids;");
+        if (idAfter != null) shape.append("idAfter;");
+        if (title != null) shape.append("title:").append(titleMatch).append(';');
+        if (author != null) shape.append("author:").append(authorMatch).append(';');
+        if (isbn != null) shape.append("isbn;");
+        if (yearFrom != null) shape.append("yearFrom;");
+        if (yearTo != null) shape.append("yearTo;");
+        if (available != null) shape.append("available;");
+        if (sortField != null) shape.append("sort:").append(sortField).append(ascending ? ":asc;" : ":desc;");
+        if (limit != null) shape.append("limit;");
+        if (offset != null) shape.append("offset;");
+        return shape.toString();
+    }
+
+    // Геттеры условий (null - условие не задано)
+
+    public Integer getId() {
+        return id;
+    }
+
+    /**
+     * @return копия множества допустимых идентификаторов или null
+     */
+    public int[] getIds() {
+        return ids == null ? null : ids.clone();
+    }
+
+    public Integer getIdAfter() {
+        return idAfter;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public TextMatch getTitleMatch() {
+        return titleMatch;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public TextMatch getAuthorMatch() {
+        return authorMatch;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public Integer getYearFrom() {
+        return yearFrom;
+    }
+
+    public Integer getYearTo() {
+        return yearTo;
+    }
+
+    public Boolean getAvailable() {
+        return available;
+    }
+
+    public SortField getSortField() {
+        return sortField;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public Integer getOffset() {
+        return offset;
+    }
+
+    /**
+     * Построитель запроса. Каждый метод задает одно условие; повторный вызов заменяет значение.
+     */
+    public static final class Builder {
+        private Integer id;
+        private int[] ids;
+        private Integer idAfter;
+        private String title;
+        private TextMatch titleMatch;
+        private String author;
+        private TextMatch authorMatch;
+        private String isbn;
+        private Integer yearFrom;
+        private Integer yearTo;
+        private Boolean available;
+        private SortField sortField;
+        private boolean ascending = true;
+        private Integer limit;
+        private Integer offset;
+
+        private Builder() {
+        }
+
+        /**
+         * Книга с указанным идентификатором.
+         */
+        public Builder id(int id) {
+            this.id = id;
+            return this;
+        }
+
+        /**
+         * Книга с одним из перечисленных идентификаторов. Список передается одним параметром,
+         * поэтому форма запроса не зависит от количества идентификаторов.
+         * @param ids допустимые идентификаторы (не может быть null)
+         * @throws IllegalArgumentException если ids равен null
+         */
+        public Builder idIn(int... ids) {
+            if (ids == null) {
+                throw new IllegalArgumentException("Список идентификаторов не может быть null");
+            }
+            this.ids = ids.clone();
+            return this;
+        }
+
+        /**
+         * Книги с идентификатором больше указанного. Вместе с сортировкой по ID и лимитом
+         * позволяет читать каталог страницами, продолжая с последнего прочитанного ID.
+         */
+        public Builder idAfter(int id) {
+            this.idAfter = id;
+            return this;
+        }
+
+        /**
+         * Условие на название книги (сравнение без учета регистра, «ё»/«е» и лишних пробелов).
+         * @param value строка для сравнения (не может быть null)
+         * @param match способ сравнения (не может быть null)
+         * @throws IllegalArgumentException если аргументы равны null
+         */
+        public Builder title(String value, TextMatch match) {
+            this.title = requireText(value, "Название");
+            this.titleMatch = requireMatch(match);
+            return this;
+        }
+
+        public Builder titleEquals(String value) {
+            return title(value, TextMatch.EQUALS);
+        }
+
+        public Builder titleStartsWith(String value) {
+            return title(value, TextMatch.PREFIX);
+        }
+
+        public Builder titleContains(String value) {
+            return title(value, TextMatch.CONTAINS);
+        }
+
+        /**
+         * Условие на автора книги (сравнение без учета регистра, «ё»/«е» и лишних пробелов).
+         * @param value строка для сравнения (не может быть null)
+         * @param match способ сравнения (не может быть null)
+         * @throws IllegalArgumentException если аргументы равны null
+         */
+        public Builder author(String value, TextMatch match) {
+            this.author = requireText(value, "Автор");
+            this.authorMatch = requireMatch(match);
+            return this;
+        }
+
+        public Builder authorEquals(String value) {
+            return author(value, TextMatch.EQUALS);
+        }
+
+        public Builder authorStartsWith(String value) {
+            return author(value, TextMatch.PREFIX);
+        }
+
+        public Builder authorContains(String value) {
+            return author(value, TextMatch.CONTAINS);
+        }
+
+        /**
+         * Книга с указанным ISBN (точное совпадение).
+         * @throws IllegalArgumentException если ISBN равен null
+         */
+        public Builder isbn(String isbn) {
+            this.isbn = requireText(isbn, "ISBN").trim();
+            return this;
+        }
+
+        /**
+         * Год публикации не раньше указанного.
+         */
+        public Builder yearFrom(int year) {
+            this.yearFrom = year;
+            return this;
+        }
+
+        /**
+         * Год публикации не позже указанного.
+         */
+        public Builder yearTo(int year) {
+            this.yearTo = year;
+            return this;
+        }
+
+        /**
+         * Год публикации в диапазоне [from, to].
+         * @throws IllegalArgumentException если from больше to
+         */
+        public Builder yearBetween(int from, int to) {
+            if (from > to) {
+                throw new IllegalArgumentException("Начало диапазона лет больше конца: " + from + " > " + to);
+            }
+            this.yearFrom = from;
+            this.yearTo = to;
+            return this;
+        }
+
+        /**
+         * Условие на доступность книги.
+         * @param available true - только доступные, false - только выданные
+         */
+        public Builder available(boolean available) {
+            this.available = available;
+            return this;
+        }
+
+        /**
+         * Порядок сортировки результатов. Без сортировки книги возвращаются в порядке идентификаторов.
+         * @param field поле сортировки (не может быть null)
+         * @param ascending true - по возрастанию, false - по убыванию
+         */
+        public Builder orderBy(SortField field, boolean ascending) {
+            if (field == null) {
+                throw new IllegalArgumentException("Поле сортировки не может быть null");
+            }
+            this.sortField = field;
+            this.ascending = ascending;
+            return this;
+        }
+
+        /**
+         * Максимальное количество возвращаемых книг.
+         * @throws IllegalArgumentException если limit не положителен
+         */
+        public Builder limit(int limit) {
+            if (limit <= 0) {
+                throw new IllegalArgumentException("Лимит должен быть положительным числом");
+            }
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * Количество книг, пропускаемых от начала результата.
+         * @throws IllegalArgumentException если offset отрицателен
+         */
+        public Builder offset(int offset) {
+            if (offset < 0) {
+                throw new IllegalArgumentException("Смещение не может быть отрицательным");
+            }
+            this.offset = offset;
+            return this;
+        }
+
+        /**
+         * @return неизменяемый запрос
+         */
+        public BookQuery build() {
+            return new BookQuery(this);
+        }
+
+        private static String requireText(String value, String name) {
+            if (value == null) {
+                throw new IllegalArgumentException(name + " для поиска не может быть null");
+            }
+            return value;
+        }
+
+        private static TextMatch requireMatch(TextMatch match) {
+            if (match == null) {
+                throw new IllegalArgumentException("Способ сравнения не может быть null");
+            }
+            return match;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.library.query;
+
+import com.library.metrics.CacheAccessEvent;
+import com.library.search.SearchNormalizer;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Компилятор {@link BookQuery} в один параметризованный SQL-запрос.
+ * Текстовые условия сравниваются по столбцам поисковых ключей (title_norm, author_norm),
+ * префиксные условия записываются как диапазон, чтобы использовать индекс.
+ * Результат компиляции кэшируется по форме запроса: запросы с одинаковым набором
+ * условий и сортировкой отличаются только значениями параметров.
+ */
+public class BookQueryCompiler {
+    // Символ, больший любого символа ключа: верхняя граница диапазона для префиксного поиска
+    private static final String MAX_CHAR = new String(Character.toChars(Character.MAX_CODE_POINT));
+
+    private final String selectClause;                          // Начало запроса: SELECT ... FROM books
+    private final Map<String, CompiledQuery> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Создает компилятор.
+     * @param selectClause начало запроса вида "SELECT столбцы FROM books"
+     * @throws IllegalArgumentException если selectClause пустой
+     */
+    public BookQueryCompiler(String selectClause) {
+        if (selectClause == null || selectClause.isBlank()) {
+            throw new IllegalArgumentException("Начало SQL-запроса не может быть пустым");
+        }
+        this.selectClause = selectClause;
+    }
+
+    /**
+     * Возвращает скомпилированный запрос для формы query, компилируя его при первом обращении.
+     * @param query запрос (не может быть null)
+     * @return скомпилированный запрос
+     */
+    public CompiledQuery compile(BookQuery query) {
+        CacheAccessEvent event = CacheAccessEvent.start("queryShapes");
+        String shape = query.shape();
+        CompiledQuery compiled = cache.get(shape);
+        if (compiled != null) {
+            event.hit(cache.size());
+            return compiled;
+        }
+        compiled = cache.computeIfAbsent(shape, key -> doCompile(query));
+        event.miss(cache.size());
+        return compiled;
+    }
+
+    /**
+     * @return количество различных форм запросов в кэше
+     */
+    public int cachedShapes() {
+        return cache.size();
+    }
+
+    private CompiledQuery doCompile(BookQuery query) {
+        List<String> conditions = new ArrayList<>();
+        List<Function<BookQuery, Object>> parameters = new ArrayList<>();
+
+        if (query.getId() != null) {
+            conditions.add("id = ?");
+            parameters.add(BookQuery::getId);
+        }
+        if (query.getIds() != null) {
+            // Список передается JSON-массивом: одна форма SQL для любого количества идентификаторов
+            conditions.add("id IN (SELECT value FROM json_each(?))");
+            parameters.add(q -> Arrays.toString(q.getIds()));
+        }
+        if (query.getIdAfter() != null) {
+            conditions.add("id > ?");
+            parameters.add(BookQuery::getIdAfter);
+        }
+        if (query.getTitle() != null) {
+            addTextCondition("title_norm", query.getTitleMatch(), BookQuery::getTitle, conditions, parameters);
+        }
+        if (query.getAuthor() != null) {
+            addTextCondition("author_norm", query.getAuthorMatch(), BookQuery::getAuthor, conditions, parameters);
+        }
+        if (query.getIsbn() != null) {
+            conditions.add("isbn = ?");
+            parameters.add(BookQuery::getIsbn);
+        }
+        if (query.getYearFrom() != null) {
+            conditions.add("publication_year >= ?");
+            parameters.add(BookQuery::getYearFrom);
+        }
+        if (query.getYearTo() != null) {
+            conditions.add("publication_year <= ?");
+            parameters.add(BookQuery::getYearTo);
+        }
+        if (query.getAvailable() != null) {
+            conditions.add("available = ?");
+            parameters.add(BookQuery::getAvailable);
+        }
+
+        StringBuilder sql = new StringBuilder(selectClause);
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY ");
+        if (query.getSortField() != null) {
+            sql.append(sortColumn(query.getSortField())).append(query.isAscending() ? " ASC" : " DESC").append(", ");
+        }
+        sql.append("id");
+        if (query.getLimit() != null) {
+            sql.append(" LIMIT ?");
+            parameters.add(BookQuery::getLimit);
+        } else if (query.getOffset() != null) {
+            sql.append(" LIMIT -1"); // SQLite допускает OFFSET только вместе с LIMIT
+        }
+        if (query.getOffset() != null) {
+            sql.append(" OFFSET ?");
+            parameters.add(BookQuery::getOffset);
+        }
+        return new CompiledQuery(sql.toString(), List.copyOf(parameters));
+    }
+
+    /**
+     * Добавляет условие на текстовое поле по его поисковому ключу.
+     */
+    private static void addTextCondition(String column, BookQuery.TextMatch match,
+                                         Function<BookQuery, String> value,
+                                         List<String> conditions, List<Function<BookQuery, Object>> parameters) {
+        switch (match) {
+            case EQUALS:
+                conditions.add(column + " = ?");
+                parameters.add(q -> SearchNormalizer.normalize(value.apply(q)));
+                break;
+            case PREFIX:
+                // Диапазон [prefix, prefix + MAX_CHAR) использует индекс по столбцу
+                conditions.add(column + " >= ? AND " + column + " < ?");
+                parameters.add(q -> SearchNormalizer.normalize(value.apply(q)));
+                parameters.add(q -> SearchNormalizer.normalize(value.apply(q)) + MAX_CHAR);
+                break;
+            case CONTAINS:
+                conditions.add(column + " LIKE ? ESCAPE '\\'");
+                parameters.add(q -> "%" + escapeLike(SearchNormalizer.normalize(value.apply(q))) + "%");
+                break;
+            default:
+                throw new IllegalArgumentException("Неизвестный способ сравнения: " + match);
+        }
+    }
+
+    private static String sortColumn(BookQuery.SortField field) {
+        switch (field) {
+            case ID:
+                return "id";
+            case TITLE:
+                return "title_norm";
+            case AUTHOR:
+                return "author_norm";
+            case ISBN:
+                return "isbn";
+            case YEAR:
+                return "publication_year";
+            default:
+                throw new IllegalArgumentException("Неизвестное поле сортировки: " + field);
+        }
+    }
+
+    /**
+     * Экранирует служебные символы шаблона LIKE.
+     */
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Скомпилированный запрос: текст SQL и порядок извлечения параметров из BookQuery.
+     */
+    public static final class CompiledQuery {
+        private final String sql;
+        private final List<Function<BookQuery, Object>> parameters;
+
+        private CompiledQuery(String sql, List<Function<BookQuery, Object>> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        /**
+         * @return текст SQL-запроса с параметрами "?"
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return количество параметров запроса
+         */
+        public int getParameterCount() {
+            return parameters.size();
+        }
+
+        /**
+         * Устанавливает параметры подготовленного запроса значениями из query.
+         * @param stmt запрос, подготовленный по {@link #getSql()}
+         * @param query запрос той же формы, что и скомпилированный
+         * @throws SQLException при ошибках установки параметров
+         */
+        public void bind(PreparedStatement stmt, BookQuery query) throws SQLException {
+            for (int i = 0; i < parameters.size(); i++) {
+                stmt.setObject(i + 1, parameters.get(i).apply(query));
+            }
+        }
+    }
+}
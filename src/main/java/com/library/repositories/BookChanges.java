@@ -0,0 +1,23 @@
+package com.library.repositories;
+
+import com.library.database.entities.Book;
+
+import java.util.List;
+
+/**
+ * Изменения книг из журнала изменений каталога (таблица catalog_changes).
+ * Каждая книга входит в изменения один раз в своем текущем состоянии,
+ * сколько бы раз она ни менялась.
+ * @param lastChangeId номер последнего учтенного изменения журнала
+ * @param changed добавленные и измененные книги по возрастанию ID
+ * @param deleted идентификаторы удаленных книг по возрастанию
+ */
+public record BookChanges(long lastChangeId, List<Book> changed, int[] deleted) {
+
+    /**
+     * @return true, если книги не менялись
+     */
+    public boolean isEmpty() {
+        return changed.isEmpty() && deleted.length == 0;
+    }
+}
@@ -2,8 +2,13 @@ package com.library.repositories;
 
 import com.library.database.entities.Book;
 import com.library.exceptions.BookNotFoundException;
+import com.library.query.BookQuery;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Интерфейс репозитория для работы с книгами в библиотеке.
@@ -32,16 +37,93 @@ public interface BookRepository {
     void save(Book book);
 
     /**
-     * Обновить информацию о существующей книге.
+     * Сохранить несколько новых книг одной транзакцией: либо все, либо ни одной.
+     * @param books книги для сохранения
+     */
+    void saveAll(List<Book> books);
+
+    /**
+     * Определить, какие из указанных ISBN уже есть в хранилище.
+     * @param isbns проверяемые ISBN
+     * @return подмножество isbns, занятое сохраненными книгами
+     */
+    Set<String> findExistingIsbns(Collection<String> isbns);
+
+    /**
+     * Обновить информацию о существующей книге. Доступность не изменяется (ее меняют
+     * выдача и возврат), в объект книги записывается ее текущее значение.
      * @param book объект Book с обновленными данными
      * @throws BookNotFoundException если книга для обновления не найдена
      */
     void update(Book book) throws BookNotFoundException;
 
+    /**
+     * Атомарно изменить доступность книги, если она совпадает с ожидаемой.
+     * @param id идентификатор книги
+     * @param expected ожидаемое текущее значение доступности
+     * @param available новое значение доступности
+     * @return true, если значение изменено; false, если книги нет или значение не совпало
+     */
+    boolean compareAndSetAvailable(int id, boolean expected, boolean available);
+
     /**
      * Удалить книгу из хранилища.
      * @param id идентификатор удаляемой книги
      * @throws BookNotFoundException если книга с указанным ID не найдена
      */
     void delete(int id) throws BookNotFoundException;
+
+    /**
+     * Найти книги, удовлетворяющие составному запросу.
+     * Все условия, сортировка и лимит выполняются одним запросом к хранилищу.
+     * @param query составной запрос
+     * @return список найденных книг (может быть пустым)
+     */
+    List<Book> findByQuery(BookQuery query);
+
+    /**
+     * Передать потребителю книги, удовлетворяющие составному запросу, не накапливая их в памяти.
+     * @param query составной запрос
+     * @param consumer получатель книг (вызывается в порядке результата)
+     */
+    void forEachByQuery(BookQuery query, Consumer<Book> consumer);
+
+    /**
+     * Найти книги, изданные в диапазоне лет.
+     * @param fromYear первый год (включительно)
+     * @param toYear последний год (включительно)
+     * @return список книг по возрастанию года (может быть пустым)
+     */
+    List<Book> findByPublicationYearBetween(int fromYear, int toYear);
+
+    /**
+     * Подсчитать книги по годам публикации.
+     * @return год публикации -> количество книг
+     */
+    Map<Integer, Integer> countByPublicationYear();
+
+    /**
+     * Номер последнего изменения книг в журнале изменений каталога.
+     * Журнал ведет сама база данных, поэтому в нем учтены изменения из любого источника:
+     * сервисов, импорта, генератора данных и других процессов.
+     * @return номер последнего изменения (0 - изменений не было)
+     */
+    long getLastChangeId();
+
+    /**
+     * Найти книги, измененные после изменения с номером afterChangeId.
+     * @param afterChangeId номер последнего уже учтенного изменения
+     * @param limit наибольшее число изменений, которые имеет смысл читать по книгам
+     * @return изменения или null, если изменений больше limit или часть журнала уже удалена
+     *         (тогда каталог нужно перечитать целиком)
+     */
+    BookChanges findChangesSince(long afterChangeId, int limit);
+
+    /**
+     * Удалить самые старые записи журнала изменений каталога с номером меньше beforeChangeId.
+     * @param beforeChangeId первый номер изменения, который нужно сохранить
+     * @param limit наибольшее число удаляемых записей (удаление идет короткими шагами)
+     * @return количество удаленных записей
+     */
+    int deleteChangesBefore(long beforeChangeId, int limit);
 }
@@ -3,6 +3,7 @@ package com.library.repositories;
 import com.library.database.entities.User;
 import com.library.exceptions.UserNotFoundException;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Интерфейс репозитория для работы с пользователями библиотеки.
@@ -17,6 +18,12 @@ public interface UserRepository {
      */
     List<User> findAll();
 
+    /**
+     * Передает всех пользователей потребителю по мере чтения, в порядке ID.
+     * @param consumer получатель пользователей
+     */
+    void forEach(Consumer<User> consumer);
+
     /**
      * Находит пользователя по уникальному идентификатору.
      * @param id числовой идентификатор пользователя
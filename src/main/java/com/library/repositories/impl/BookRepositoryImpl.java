@@ -1,28 +1,74 @@
 package com.library.repositories.impl;
 
+import com.library.changelog.ChangeCapture;
+import com.library.changelog.ChangePayload;
+import com.library.changelog.ChangeType;
 import com.library.database.entities.Book;
 import com.library.exceptions.BookNotFoundException;
 import com.library.exceptions.DatabaseException;
+import com.library.metrics.SqlExecutionEvent;
+import com.library.query.BookQuery;
+import com.library.query.BookQueryCompiler;
+import com.library.repositories.BookChanges;
 import com.library.repositories.BookRepository;
+import com.library.search.SearchNormalizer;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 /**
  * Реализация репозитория для работы с книгами в базе данных.
  * Обеспечивает CRUD-операции для сущности Book.
+ * Схему базы данных создает {@link com.library.database.SchemaMigrator}.
+ * Изменения книг передаются в журнал изменений ({@link ChangeCapture}), если он задан.
  */
 public class BookRepositoryImpl implements BookRepository {
+    // Столбцы, читаемые при загрузке книги
+    private static final String BOOK_COLUMNS =
+            "id, title, author, isbn, publication_year, available, loan_count, title_norm, author_norm";
+
+    // Книги, измененные в диапазоне журнала изменений каталога; у удаленных книг столбцы books равны NULL
+    private static final String CHANGED_BOOKS_SQL = "SELECT c.book_id AS changed_id, b." +
+            BOOK_COLUMNS.replace(", ", ", b.") + " FROM (SELECT DISTINCT book_id FROM catalog_changes " +
+            "WHERE seq > ? AND seq <= ?) c LEFT JOIN books b ON b.id = c.book_id ORDER BY c.book_id";
+
+    // Максимум параметров в одном запросе проверки ISBN (предел SQLite - 999)
+    private static final int ISBN_LOOKUP_BATCH = 500;
+
+    // Компилятор составных запросов (общий кэш форм запросов для всех экземпляров)
+    private static final BookQueryCompiler QUERY_COMPILER =
+            new BookQueryCompiler("SELECT " + BOOK_COLUMNS + " FROM books");
+
     private final Connection connection; // Соединение с базой данных
+    private final ChangeCapture changes; // Журнал изменений (null - изменения не записываются)
 
     /**
-     * Конструктор репозитория.
+     * Конструктор репозитория без журнала изменений.
      * @param connection активное соединение с базой данных
      * @throws IllegalArgumentException если connection равен null
      * @throws IllegalStateException если соединение закрыто или недоступно
      */
     public BookRepositoryImpl(Connection connection) {
+        this(connection, null);
+    }
+
+    /**
+     * Конструктор репозитория.
+     * @param connection активное соединение с базой данных
+     * @param changes журнал изменений, в который записываются зафиксированные изменения книг
+     *                (null - изменения не записываются)
+     * @throws IllegalArgumentException если connection равен null
+     * @throws IllegalStateException если соединение закрыто или недоступно
+     */
+    public BookRepositoryImpl(Connection connection, ChangeCapture changes) {
         if (connection == null) {
             throw new IllegalArgumentException("Подключение к базе данных не может быть null");
         }
@@ -31,6 +77,7 @@ public class BookRepositoryImpl implements BookRepository {
                 throw new IllegalStateException("Подключение уже закрыто");
             }
             this.connection = connection;
+            this.changes = changes;
 
             // Проверка работоспособности соединения
             try (Statement stmt = connection.createStatement()) {
@@ -48,16 +95,20 @@ public class BookRepositoryImpl implements BookRepository {
      */
     @Override
     public List<Book> findAll() {
-        String sql = "SELECT id, title, author, isbn, publication_year, available FROM books";
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books";
         List<Book> books = new ArrayList<>();
 
+        SqlExecutionEvent event = SqlExecutionEvent.start("findAll", sql, 0);
         try (Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
+            event.executed();
             while (rs.next()) {
                 books.add(mapRowToBook(rs));
             }
+            event.end(books.size());
             System.out.println("Найдено " + books.size() + " книг в базе данных");
         } catch (SQLException e) {
+            event.fail();
             throw new DatabaseException("Ошибка при поиске всех книг", e);
         }
         return books;
@@ -72,26 +123,203 @@ public class BookRepositoryImpl implements BookRepository {
      */
     @Override
     public Book findById(int id) throws BookNotFoundException {
-        String sql = "SELECT id, title, author, isbn, publication_year, available FROM books WHERE id = ?";
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books WHERE id = ?";
 
+        SqlExecutionEvent event = SqlExecutionEvent.start("findById", sql, 1);
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
             System.out.println("Выполнение запроса: " + stmt);
 
             try (ResultSet rs = stmt.executeQuery()) {
+                event.executed();
                 if (rs.next()) {
                     Book book = mapRowToBook(rs);
+                    event.end(1);
                     System.out.println("Найдена книга: " + book);
                     return book;
                 } else {
+                    event.end(0);
                     throw new BookNotFoundException(id);
                 }
             }
         } catch (SQLException e) {
+            event.fail();
             throw new DatabaseException("Ошибка при поиске книги по ID: " + id, e);
         }
     }
 
+    /**
+     * Найти книги по составному запросу.
+     * @param query составной запрос
+     * @return список найденных книг
+     * @throws DatabaseException при ошибках работы с базой данных
+     */
+    @Override
+    public List<Book> findByQuery(BookQuery query) {
+        List<Book> books = new ArrayList<>();
+        forEachByQuery(query, books::add);
+        return books;
+    }
+
+    /**
+     * Передать потребителю книги, найденные по составному запросу, по мере чтения строк.
+     * Результат не накапливается в памяти, поэтому подходит для выгрузки всего каталога.
+     * @param query составной запрос
+     * @param consumer получатель книг (вызывается в порядке результата)
+     * @throws DatabaseException при ошибках работы с базой данных
+     */
+    @Override
+    public void forEachByQuery(BookQuery query, Consumer<Book> consumer) {
+        BookQueryCompiler.CompiledQuery compiled = QUERY_COMPILER.compile(query);
+
+        // Время чтения результата включает обработку книг потребителем
+        SqlExecutionEvent event = SqlExecutionEvent.start("forEachByQuery", compiled.getSql(),
+                compiled.getParameterCount());
+        try (PreparedStatement stmt = connection.prepareStatement(compiled.getSql())) {
+            compiled.bind(stmt, query);
+            try (ResultSet rs = stmt.executeQuery()) {
+                event.executed();
+                long rows = 0;
+                while (rs.next()) {
+                    consumer.accept(mapRowToBook(rs));
+                    rows++;
+                }
+                event.end(rows);
+            }
+        } catch (SQLException e) {
+            event.fail();
+            throw new DatabaseException("Ошибка при поиске книг по запросу: " + query.shape(), e);
+        }
+    }
+
+    /**
+     * Найти книги, изданные в диапазоне лет. Выполняется по индексу idx_books_publication_year.
+     * @param fromYear первый год (включительно)
+     * @param toYear последний год (включительно)
+     * @return книги по возрастанию года, при равенстве - по ID
+     * @throws DatabaseException при ошибках работы с базой данных
+     */
+    @Override
+    public List<Book> findByPublicationYearBetween(int fromYear, int toYear) {
+        if (fromYear > toYear) {
+            return new ArrayList<>();
+        }
+        return findByQuery(BookQuery.builder()
+                .yearBetween(fromYear, toYear)
+                .orderBy(BookQuery.SortField.YEAR, true)
+                .build());
+    }
+
+    /**
+     * Подсчитать книги по годам публикации.
+     * Подсчет выполняется по индексу года без чтения строк таблицы.
+     * @return год публикации -> количество книг, по возрастанию года
+     * @throws DatabaseException при ошибках работы с базой данных
+     */
+    @Override
+    public Map<Integer, Integer> countByPublicationYear() {
+        String sql = "SELECT publication_year, COUNT(*) FROM books GROUP BY publication_year";
+        Map<Integer, Integer> counts = new TreeMap<>();
+
+        SqlExecutionEvent event = SqlExecutionEvent.start("countByPublicationYear", sql, 0);
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            event.executed();
+            while (rs.next()) {
+                counts.put(rs.getInt(1), rs.getInt(2));
+            }
+            event.end(counts.size());
+        } catch (SQLException e) {
+            event.fail();
+            throw new DatabaseException("Ошибка при подсчете книг по годам публикации", e);
+        }
+        return counts;
+    }
+
+    /**
+     * Номер последнего изменения книг в журнале изменений каталога.
+     * Журнал заполняют триггеры таблицы books (см. {@link com.library.database.SchemaMigrator}).
+     * @return номер последнего изменения (0 - изменений не было)
+     * @throws DatabaseException при ошибках работы с базой данных
+     */
+    @Override
+    public long getLastChangeId() {
+        String sql = "SELECT COALESCE(MAX(seq), 0) FROM catalog_changes";
+
+        SqlExecutionEvent event = SqlExecutionEvent.start("getLastChangeId", sql, 0);
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            event.executed();
+            long last = rs.next() ? rs.getLong(1) : 0;
+            event.end(1);
+            return last;
+        } catch (SQLException e) {
+            event.fail();
+            throw new DatabaseException("Ошибка при чтении журнала изменений каталога", e);
+        }
+    }
+
+    /**
+     * Найти книги, измененные после изменения с номером afterChangeId.
+     * Книги читаются в текущем состоянии, которое может включать и более поздние изменения;
+     * они попадут и в следующую выборку, поэтому изменения нужно применять как замену книги целиком.
+     * @param afterChangeId номер последнего уже учтенного изменения
+     * @param limit наибольшее число изменений, которые имеет смысл читать по книгам
+     * @return изменения или null, если изменений больше limit, часть журнала уже удалена
+     *         или журнал короче afterChangeId (база заменена)
+     * @throws DatabaseException при ошибках работы с базой данных
+     */
+    @Override
+    public BookChanges findChangesSince(long afterChangeId, int limit) {
+        // Каждый подзапрос - отдельный поиск по первичному ключу (MIN и MAX в одном SELECT читают всю таблицу)
+        String range = "SELECT (SELECT COALESCE(MIN(seq), 0) FROM catalog_changes), " +
+                "(SELECT COALESCE(MAX(seq), 0) FROM catalog_changes)";
+
+        SqlExecutionEvent event = SqlExecutionEvent.start("findChangesSince", CHANGED_BOOKS_SQL, 2);
+        try {
+            long first;
+            long last;
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(range)) {
+                rs.next();
+                first = rs.getLong(1);
+                last = rs.getLong(2);
+            }
+            if (last == afterChangeId) {
+                event.end(0);
+                return new BookChanges(last, List.of(), new int[0]);
+            }
+            if (last < afterChangeId || first > afterChangeId + 1 || last - afterChangeId > limit) {
+                event.end(0);
+                return null;
+            }
+
+            List<Book> changed = new ArrayList<>();
+            List<Integer> deleted = new ArrayList<>();
+            try (PreparedStatement stmt = connection.prepareStatement(CHANGED_BOOKS_SQL)) {
+                stmt.setLong(1, afterChangeId);
+                stmt.setLong(2, last);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    event.executed();
+                    while (rs.next()) {
+                        int id = rs.getInt("changed_id");
+                        rs.getInt("id");
+                        if (rs.wasNull()) {
+                            deleted.add(id);
+                        } else {
+                            changed.add(mapRowToBook(rs));
+                        }
+                    }
+                }
+            }
+            event.end(changed.size() + deleted.size());
+            return new BookChanges(last, changed, deleted.stream().mapToInt(Integer::intValue).toArray());
+        } catch (SQLException e) {
+            event.fail();
+            throw new DatabaseException("Ошибка при чтении изменений каталога после " + afterChangeId, e);
+        }
+    }
+
     /**
      * Удалить книгу из базы данных.
      * @param id идентификатор удаляемой книги
@@ -102,16 +330,26 @@ public class BookRepositoryImpl implements BookRepository {
     public void delete(int id) throws BookNotFoundException {
         String sql = "DELETE FROM books WHERE id = ?";
 
+        SqlExecutionEvent event = SqlExecutionEvent.start("delete", sql, 1);
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
             System.out.println("Выполнение удаления: " + stmt);
 
-            int affectedRows = stmt.executeUpdate();
+            // Удаление и запись в журнал - под одной блокировкой, чтобы порядок журнала совпал с порядком фиксации
+            int affectedRows = ChangeCapture.locked(changes, () -> {
+                int rows = stmt.executeUpdate();
+                if (rows > 0 && changes != null) {
+                    changes.record(connection, ChangeType.BOOK_DELETED, id, ChangePayload.EMPTY);
+                }
+                return rows;
+            });
+            event.end(affectedRows);
             if (affectedRows == 0) {
                 throw new BookNotFoundException(id);
             }
             System.out.println("Удалено " + affectedRows + " книг(а)");
         } catch (SQLException e) {
+            event.fail();
             throw new DatabaseException("Ошибка при удалении книги с ID: " + id, e);
         }
     }
@@ -123,73 +361,289 @@ public class BookRepositoryImpl implements BookRepository {
      */
     @Override
     public void save(Book book) {
-        String sql = "INSERT INTO books (title, author, isbn, publication_year, available) VALUES (?, ?, ?, ?, ?)";
+        // ID возвращает сама вставка (RETURNING): getGeneratedKeys драйвера читает last_insert_rowid()
+        // соединения, который при общем соединении может относиться к вставке другого потока
+        String sql = "INSERT INTO books (title, author, isbn, publication_year, available, title_norm, author_norm) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?) RETURNING id";
 
         System.out.println("Попытка сохранения книги: " + book);
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        SqlExecutionEvent event = SqlExecutionEvent.start("save", sql, 7);
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, book.getTitle());
             stmt.setString(2, book.getAuthor());
             stmt.setString(3, book.getIsbn());
             stmt.setInt(4, book.getPublicationYear());
             stmt.setBoolean(5, book.isAvailable());
+            bindSearchKeys(stmt, 6, book);
 
             System.out.println("Выполнение SQL: " + stmt);
 
-            int affectedRows = stmt.executeUpdate();
-            System.out.println("Затронуто строк: " + affectedRows);
-
-            if (affectedRows == 0) {
-                throw new DatabaseException("Не удалось сохранить книгу, ни одна строка не изменена");
-            }
-
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
+            ChangeCapture.locked(changes, () -> {
+                try (ResultSet generatedKeys = stmt.executeQuery()) {
+                    if (!generatedKeys.next()) {
+                        throw new DatabaseException("Не удалось сохранить книгу, ни одна строка не изменена");
+                    }
                     book.setId(generatedKeys.getInt(1));
-                    System.out.println("Сгенерированный ID: " + book.getId());
-                } else {
-                    System.out.println("Предупреждение: Не получен ID для сохраненной книги");
                 }
-            }
+                if (changes != null) {
+                    changes.record(connection, ChangeType.BOOK_SAVED, book.getId(), ChangePayload.book(book));
+                }
+                return null;
+            });
+            event.end(1);
+            System.out.println("Сгенерированный ID: " + book.getId());
         } catch (SQLException e) {
+            event.fail();
             System.err.println("SQL State: " + e.getSQLState());
             System.err.println("Код ошибки: " + e.getErrorCode());
             throw new DatabaseException("Ошибка при сохранении книги: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Сохранить несколько новых книг пакетной вставкой в одной транзакции.
+     * Если соединение уже находится в транзакции, вставка выполняется в ней,
+     * а фиксацию выполняет владелец транзакции.
+     * ID сохраненным книгам не присваиваются.
+     * @param books книги для сохранения
+     * @throws DatabaseException при ошибках работы с базой данных (ни одна книга не сохраняется)
+     */
+    @Override
+    public void saveAll(List<Book> books) {
+        if (books.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO books (title, author, isbn, publication_year, available, title_norm, author_norm) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+        SqlExecutionEvent event = SqlExecutionEvent.start("saveAll", sql, 7 * books.size());
+        try {
+            boolean ownTransaction = connection.getAutoCommit();
+            if (ownTransaction) {
+                connection.setAutoCommit(false);
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(changes != null ? sql + " RETURNING id" : sql)) {
+                for (Book book : books) {
+                    stmt.setString(1, book.getTitle());
+                    stmt.setString(2, book.getAuthor());
+                    stmt.setString(3, book.getIsbn());
+                    stmt.setInt(4, book.getPublicationYear());
+                    stmt.setBoolean(5, book.isAvailable());
+                    bindSearchKeys(stmt, 6, book);
+                    if (changes != null) {
+                        recordSaved(stmt, book);
+                    } else {
+                        stmt.addBatch();
+                    }
+                }
+                if (changes == null) {
+                    stmt.executeBatch();
+                }
+                if (ownTransaction) {
+                    connection.commit();
+                }
+                event.end(books.size());
+            } catch (SQLException e) {
+                if (ownTransaction) {
+                    connection.rollback();
+                }
+                throw e;
+            } finally {
+                if (ownTransaction) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            event.fail();
+            throw new DatabaseException("Ошибка при пакетном сохранении " + books.size() + " книг: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Определить, какие ISBN уже заняты. Проверка выполняется по уникальному индексу ISBN
+     * запросами по {@value #ISBN_LOOKUP_BATCH} значений.
+     * @param isbns проверяемые ISBN
+     * @return найденные в базе ISBN
+     * @throws DatabaseException при ошибках работы с базой данных
+     */
+    @Override
+    public Set<String> findExistingIsbns(Collection<String> isbns) {
+        Set<String> existing = new HashSet<>();
+        List<String> pending = new ArrayList<>(isbns);
+        for (int from = 0; from < pending.size(); from += ISBN_LOOKUP_BATCH) {
+            List<String> batch = pending.subList(from, Math.min(from + ISBN_LOOKUP_BATCH, pending.size()));
+            String sql = "SELECT isbn FROM books WHERE isbn IN (" +
+                    String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+
+            SqlExecutionEvent event = SqlExecutionEvent.start("findExistingIsbns", sql, batch.size());
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    stmt.setString(i + 1, batch.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    event.executed();
+                    long rows = 0;
+                    while (rs.next()) {
+                        existing.add(rs.getString(1));
+                        rows++;
+                    }
+                    event.end(rows);
+                }
+            } catch (SQLException e) {
+                event.fail();
+                throw new DatabaseException("Ошибка при проверке существования ISBN", e);
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Удалить самые старые записи журнала изменений каталога с номером меньше beforeChangeId.
+     * За один вызов удаляется не больше limit записей, чтобы не задерживать других писателей.
+     * @param beforeChangeId первый номер изменения, который нужно сохранить
+     * @param limit наибольшее число удаляемых записей
+     * @return количество удаленных записей
+     * @throws DatabaseException при ошибках работы с базой данных
+     */
+    @Override
+    public int deleteChangesBefore(long beforeChangeId, int limit) {
+        String sql = "DELETE FROM catalog_changes WHERE seq < MIN(?, " +
+                "(SELECT COALESCE(MIN(seq), 0) FROM catalog_changes) + ?)";
+
+        SqlExecutionEvent event = SqlExecutionEvent.start("deleteChangesBefore", sql, 2);
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, beforeChangeId);
+            stmt.setInt(2, limit);
+            int deleted = ChangeCapture.locked(changes, stmt::executeUpdate);
+            event.end(deleted);
+            return deleted;
+        } catch (SQLException e) {
+            event.fail();
+            throw new DatabaseException("Ошибка при очистке журнала изменений каталога до " + beforeChangeId, e);
+        }
+    }
+
     /**
      * Обновить информацию о книге в базе данных.
+     * Доступность не перезаписывается: ее меняют только выдача и возврат
+     * ({@link #compareAndSetAvailable}), иначе обновление по ранее прочитанной книге
+     * могло бы отменить выдачу или возврат, сделанные после чтения. Поле available
+     * объекта книги заполняется текущим значением из базы данных.
      * @param book книга с обновленными данными
      * @throws BookNotFoundException если книга не найдена
      * @throws DatabaseException при ошибках работы с базой данных
      */
     @Override
     public void update(Book book) throws BookNotFoundException {
-        String sql = "UPDATE books SET title = ?, author = ?, isbn = ?, publication_year = ?, available = ? WHERE id = ?";
+        String sql = "UPDATE books SET title = ?, author = ?, isbn = ?, publication_year = ?, " +
+                "title_norm = ?, author_norm = ? WHERE id = ? RETURNING available";
 
         System.out.println("Попытка обновления книги: " + book);
 
+        SqlExecutionEvent event = SqlExecutionEvent.start("update", sql, 7);
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, book.getTitle());
             stmt.setString(2, book.getAuthor());
             stmt.setString(3, book.getIsbn());
             stmt.setInt(4, book.getPublicationYear());
-            stmt.setBoolean(5, book.isAvailable());
-            stmt.setInt(6, book.getId());
+            bindSearchKeys(stmt, 5, book);
+            stmt.setInt(7, book.getId());
 
             System.out.println("Выполнение обновления: " + stmt);
 
-            int affectedRows = stmt.executeUpdate();
+            int affectedRows = ChangeCapture.locked(changes, () -> {
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return 0;
+                    }
+                    book.setAvailable(rs.getBoolean(1));
+                }
+                if (changes != null) {
+                    changes.record(connection, ChangeType.BOOK_UPDATED, book.getId(), ChangePayload.book(book));
+                }
+                return 1;
+            });
+            event.end(affectedRows);
             if (affectedRows == 0) {
                 throw new BookNotFoundException(book.getId());
             }
             System.out.println("Обновлено " + affectedRows + " книг(а)");
         } catch (SQLException e) {
+            event.fail();
             throw new DatabaseException("Ошибка при обновлении книги с ID: " + book.getId(), e);
         }
     }
 
+    /**
+     * Атомарно меняет доступность книги, если текущее значение совпадает с ожидаемым.
+     * Проверка и изменение выполняются одним оператором UPDATE, поэтому две одновременные
+     * выдачи одной книги не могут обе завершиться успешно. Выдача (available = false)
+     * увеличивает счетчик выдач книги тем же оператором.
+     * @param id идентификатор книги
+     * @param expected ожидаемое текущее значение доступности
+     * @param available новое значение доступности
+     * @return true, если значение изменено; false, если книги нет или значение не совпало
+     * @throws DatabaseException при ошибках работы с базой данных
+     */
+    @Override
+    public boolean compareAndSetAvailable(int id, boolean expected, boolean available) {
+        String sql = "UPDATE books SET available = ?, loan_count = loan_count + ? WHERE id = ? AND available = ?";
+
+        SqlExecutionEvent event = SqlExecutionEvent.start("compareAndSetAvailable", sql, 4);
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setBoolean(1, available);
+            stmt.setInt(2, available ? 0 : 1);
+            stmt.setInt(3, id);
+            stmt.setBoolean(4, expected);
+            int affectedRows = ChangeCapture.locked(changes, () -> {
+                int rows = stmt.executeUpdate();
+                if (rows == 1 && changes != null) {
+                    changes.record(connection, available ? ChangeType.BOOK_RETURNED : ChangeType.BOOK_BORROWED, id,
+                            ChangePayload.availability(id, available));
+                }
+                return rows;
+            });
+            event.end(affectedRows);
+            return affectedRows == 1;
+        } catch (SQLException e) {
+            event.fail();
+            throw new DatabaseException("Ошибка при изменении доступности книги с ID: " + id, e);
+        }
+    }
+
+    /**
+     * Вставляет одну книгу пакета и записывает ее в журнал изменений. ID берется из самой
+     * вставки (RETURNING), а не из last_insert_rowid(): общее соединение может
+     * одновременно использоваться другими потоками.
+     */
+    private void recordSaved(PreparedStatement stmt, Book book) throws SQLException {
+        int id;
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("Вставка книги не вернула ID");
+            }
+            id = rs.getInt(1);
+        }
+        // ID самой книге не присваивается (см. saveAll), только записи журнала
+        changes.record(connection, ChangeType.BOOK_SAVED, id, ChangePayload.book(book, id));
+    }
+
+    /**
+     * Вычисляет поисковые ключи книги и привязывает их к двум параметрам запроса подряд.
+     * Ключи также сохраняются в объекте книги.
+     * @param stmt подготовленный запрос
+     * @param index номер параметра для ключа названия (ключ автора - следующий)
+     * @param book сохраняемая книга
+     * @throws SQLException при ошибках установки параметров
+     */
+    private void bindSearchKeys(PreparedStatement stmt, int index, Book book) throws SQLException {
+        book.setNormalizedTitle(SearchNormalizer.normalize(book.getTitle()));
+        book.setNormalizedAuthor(SearchNormalizer.normalize(book.getAuthor()));
+        stmt.setString(index, book.getNormalizedTitle());
+        stmt.setString(index + 1, book.getNormalizedAuthor());
+    }
+
     /**
      * Преобразует строку результата запроса в объект Book.
      * @param rs ResultSet с данными книги
@@ -199,11 +653,15 @@ public class BookRepositoryImpl implements BookRepository {
     private Book mapRowToBook(ResultSet rs) throws SQLException {
         Book book = new Book();
         book.setId(rs.getInt("id"));
-        book.setTitle(rs.getString("Название"));
-        book.setAuthor(rs.getString("Автор"));
-        book.setIsbn(rs.getString("ISBN"));
-        book.setPublicationYear(rs.getInt("Год публикации"));
-        book.setAvailable(rs.getBoolean("Доступность"));
+        book.setTitle(rs.getString("title"));
+        book.setAuthor(rs.getString("author"));
+        book.setIsbn(rs.getString("isbn"));
+        book.setPublicationYear(rs.getInt("publication_year"));
+        book.setAvailable(rs.getBoolean("available"));
+        book.setLoanCount(rs.getInt("loan_count"));
+        // Ключи устанавливаются после названия и автора, так как сеттеры сбрасывают их
+        book.setNormalizedTitle(rs.getString("title_norm"));
+        book.setNormalizedAuthor(rs.getString("author_norm"));
         return book;
     }
 
@@ -1,55 +1,56 @@
 package com.library.repositories.impl;
 
+import com.library.changelog.ChangeCapture;
+import com.library.changelog.ChangePayload;
+import com.library.changelog.ChangeType;
 import com.library.database.LibraryDatabase;
 import com.library.database.entities.User;
 import com.library.exceptions.DatabaseException;
 import com.library.exceptions.UserNotFoundException;
+import com.library.metrics.SqlExecutionEvent;
 import com.library.repositories.UserRepository;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Реализация репозитория для работы с пользователями в базе данных.
  * Обеспечивает CRUD-операции для сущности User.
+ * Схему базы данных создает {@link com.library.database.SchemaMigrator}.
+ * Изменения пользователей передаются в журнал изменений ({@link ChangeCapture}), если он задан.
  */
 public class UserRepositoryImpl implements UserRepository {
     private final Connection connection; // Соединение с базой данных
+    private final ChangeCapture changes; // Журнал изменений (null - изменения не записываются)
 
     /**
      * Основной конструктор репозитория.
      * @param connection активное соединение с базой данных
      */
     public UserRepositoryImpl(Connection connection) {
-        this.connection = connection;
-        createTableIfNotExists(); // Создание таблицы при инициализации
+        this(connection, (ChangeCapture) null);
     }
 
     /**
-     * Альтернативный конструктор для совместимости.
-     * @param database экземпляр базы данных
+     * Конструктор репозитория с журналом изменений.
      * @param connection активное соединение с базой данных
+     * @param changes журнал изменений, в который записываются зафиксированные изменения
+     *                пользователей (null - изменения не записываются)
      */
-    public UserRepositoryImpl(LibraryDatabase database, Connection connection) {
+    public UserRepositoryImpl(Connection connection, ChangeCapture changes) {
         this.connection = connection;
+        this.changes = changes;
     }
 
     /**
-     * Создает таблицу пользователей, если она не существует.
-     * @throws DatabaseException если не удалось создать таблицу
+     * Альтернативный конструктор для совместимости.
+     * @param database экземпляр базы данных
+     * @param connection активное соединение с базой данных
      */
-    private void createTableIfNotExists() {
-        String sql = "CREATE TABLE IF NOT EXISTS users (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "name TEXT NOT NULL," +
-                "email TEXT NOT NULL UNIQUE)";
-
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(sql);
-        } catch (SQLException e) {
-            throw new DatabaseException("Не удалось создать таблицу пользователей", e);
-        }
+    public UserRepositoryImpl(LibraryDatabase database, Connection connection) {
+        this(connection, database.getChangeCapture());
     }
 
     /**
@@ -62,18 +63,48 @@ public class UserRepositoryImpl implements UserRepository {
         String sql = "SELECT * FROM users";
         List<User> users = new ArrayList<>();
 
+        SqlExecutionEvent event = SqlExecutionEvent.start("findAll", sql, 0);
         try (Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
-
+            event.executed();
             while (rs.next()) {
                 users.add(mapRowToUser(rs));
             }
+            event.end(users.size());
             return users;
         } catch (SQLException e) {
+            event.fail();
             throw new DatabaseException("Ошибка при получении списка пользователей", e);
         }
     }
 
+    /**
+     * Передать всех пользователей потребителю по мере чтения строк.
+     * Результат не накапливается в памяти, поэтому подходит для выгрузки всех пользователей.
+     * @param consumer получатель пользователей (вызывается в порядке ID)
+     * @throws DatabaseException при ошибках работы с базой данных
+     */
+    @Override
+    public void forEach(Consumer<User> consumer) {
+        String sql = "SELECT * FROM users ORDER BY id";
+
+        // Время чтения результата включает обработку пользователей потребителем
+        SqlExecutionEvent event = SqlExecutionEvent.start("forEach", sql, 0);
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            event.executed();
+            long rows = 0;
+            while (rs.next()) {
+                consumer.accept(mapRowToUser(rs));
+                rows++;
+            }
+            event.end(rows);
+        } catch (SQLException e) {
+            event.fail();
+            throw new DatabaseException("Ошибка при чтении списка пользователей", e);
+        }
+    }
+
     /**
      * Найти пользователя по идентификатору.
      * @param id идентификатор пользователя
@@ -85,16 +116,22 @@ public class UserRepositoryImpl implements UserRepository {
     public User findById(int id) throws UserNotFoundException {
         String sql = "SELECT * FROM users WHERE id = ?";
 
+        SqlExecutionEvent event = SqlExecutionEvent.start("findById", sql, 1);
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
+            event.executed();
 
             if (rs.next()) {
-                return mapRowToUser(rs);
+                User user = mapRowToUser(rs);
+                event.end(1);
+                return user;
             } else {
+                event.end(0);
                 throw new UserNotFoundException(id);
             }
         } catch (SQLException e) {
+            event.fail();
             throw new DatabaseException("Ошибка при поиске пользователя по ID: " + id, e);
         }
     }
@@ -110,16 +147,22 @@ public class UserRepositoryImpl implements UserRepository {
     public User findByEmail(String email) throws UserNotFoundException {
         String sql = "SELECT * FROM users WHERE email = ?";
 
+        SqlExecutionEvent event = SqlExecutionEvent.start("findByEmail", sql, 1);
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, email);
             ResultSet rs = stmt.executeQuery();
+            event.executed();
 
             if (rs.next()) {
-                return mapRowToUser(rs);
+                User user = mapRowToUser(rs);
+                event.end(1);
+                return user;
             } else {
+                event.end(0);
                 throw new UserNotFoundException("Пользователь с email " + email + " не найден");
             }
         } catch (SQLException e) {
+            event.fail();
             throw new DatabaseException("Ошибка при поиске пользователя по email: " + email, e);
         }
     }
@@ -131,25 +174,30 @@ public class UserRepositoryImpl implements UserRepository {
      */
     @Override
     public void save(User user) {
-        String sql = "INSERT INTO users (name, email) VALUES (?, ?)";
+        // ID возвращает сама вставка (RETURNING), а не last_insert_rowid() общего соединения
+        String sql = "INSERT INTO users (name, email) VALUES (?, ?) RETURNING id";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        SqlExecutionEvent event = SqlExecutionEvent.start("save", sql, 2);
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, user.getName());
             stmt.setString(2, user.getEmail());
 
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new DatabaseException("Не удалось создать пользователя, ни одна строка не изменена");
-            }
-
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
+            // Вставка и запись в журнал - под одной блокировкой, чтобы порядок журнала совпал с порядком фиксации
+            ChangeCapture.locked(changes, () -> {
+                try (ResultSet generatedKeys = stmt.executeQuery()) {
+                    if (!generatedKeys.next()) {
+                        throw new DatabaseException("Не удалось создать пользователя, ID не получен");
+                    }
                     user.setId(generatedKeys.getInt(1));
-                } else {
-                    throw new DatabaseException("Не удалось создать пользователя, ID не получен");
                 }
-            }
+                if (changes != null) {
+                    changes.record(connection, ChangeType.USER_SAVED, user.getId(), ChangePayload.user(user));
+                }
+                return null;
+            });
+            event.end(1);
         } catch (SQLException e) {
+            event.fail();
             throw new DatabaseException("Ошибка при сохранении пользователя", e);
         }
     }
@@ -164,16 +212,25 @@ public class UserRepositoryImpl implements UserRepository {
     public void update(User user) throws UserNotFoundException {
         String sql = "UPDATE users SET name = ?, email = ? WHERE id = ?";
 
+        SqlExecutionEvent event = SqlExecutionEvent.start("update", sql, 3);
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, user.getName());
             stmt.setString(2, user.getEmail());
             stmt.setInt(3, user.getId());
 
-            int affectedRows = stmt.executeUpdate();
+            int affectedRows = ChangeCapture.locked(changes, () -> {
+                int rows = stmt.executeUpdate();
+                if (rows > 0 && changes != null) {
+                    changes.record(connection, ChangeType.USER_UPDATED, user.getId(), ChangePayload.user(user));
+                }
+                return rows;
+            });
+            event.end(affectedRows);
             if (affectedRows == 0) {
                 throw new UserNotFoundException(user.getId());
             }
         } catch (SQLException e) {
+            event.fail();
             throw new DatabaseException("Ошибка при обновлении пользователя с ID: " + user.getId(), e);
         }
     }
@@ -188,14 +245,23 @@ public class UserRepositoryImpl implements UserRepository {
     public void delete(int id) throws UserNotFoundException {
         String sql = "DELETE FROM users WHERE id = ?";
 
+        SqlExecutionEvent event = SqlExecutionEvent.start("delete", sql, 1);
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
 
-            int affectedRows = stmt.executeUpdate();
+            int affectedRows = ChangeCapture.locked(changes, () -> {
+                int rows = stmt.executeUpdate();
+                if (rows > 0 && changes != null) {
+                    changes.record(connection, ChangeType.USER_DELETED, id, ChangePayload.EMPTY);
+                }
+                return rows;
+            });
+            event.end(affectedRows);
             if (affectedRows == 0) {
                 throw new UserNotFoundException(id);
             }
         } catch (SQLException e) {
+            event.fail();
             throw new DatabaseException("Ошибка при удалении пользователя с ID: " + id, e);
         }
     }
@@ -0,0 +1,242 @@
+package com.library.search;
+
+import com.library.database.entities.Book;
+import com.library.services.CatalogListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Подсистема автодополнения для киосков.
+ * Ведет собственную таблицу терминов (названия и авторы с весами) и держит построенный
+ * по ней {@link AutocompleteIndex}. Таблица загружается один раз из каталога, а затем
+ * обновляется по уведомлениям {@link CatalogListener}. Выдача книги увеличивает вес
+ * ее названия и автора прямо в индексе; изменения названий, авторов и состава каталога
+ * перестраивают индекс по таблице терминов в фоновом потоке. Пока идет перестроение,
+ * запросы обслуживает предыдущая версия индекса; несколько изменений подряд приводят
+ * к одному перестроению.
+ */
+public class AutocompleteEngine implements CatalogListener, AutoCloseable {
+    private final Map<Integer, Entry> books = new HashMap<>();          // ID книги -> ее вклад в термины
+    private final Map<String, AutocompleteIndex.Term> terms = new HashMap<>(); // Поле и ключ -> термин
+    private final ExecutorService rebuilder;           // Фоновый поток перестроения
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private List<WeightChange> changedDuringRebuild;   // Прибавки веса, не вошедшие в строящийся индекс
+    private boolean loaded;                            // Таблица терминов загружена из каталога
+    private int generation;                            // Номер загрузки таблицы терминов
+    private volatile AutocompleteIndex index = AutocompleteIndex.empty(); // Текущий индекс
+
+    /**
+     * Создает подсистему автодополнения. До загрузки каталога подсказок нет.
+     */
+    public AutocompleteEngine() {
+        this.rebuilder = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "autocomplete-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Загружает таблицу терминов по всему каталогу, заменяя текущую, и строит индекс.
+     * @param catalog все книги каталога
+     */
+    public synchronized void load(List<Book> catalog) {
+        books.clear();
+        terms.clear();
+        for (Book book : catalog) {
+            add(book.getId(), Entry.of(book));
+        }
+        index = AutocompleteIndex.fromTerms(terms.values());
+        generation++;  // Индекс, строящийся по прежней таблице, не будет опубликован
+        loaded = true;
+    }
+
+    /**
+     * @return true, если таблица терминов загружена и поддерживается в актуальном состоянии
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Возвращает самые популярные варианты, начинающиеся с префикса.
+     * @param prefix введенное начало названия или автора
+     * @param limit максимальное количество вариантов
+     * @return варианты в порядке убывания популярности
+     */
+    public List<Completion> complete(String prefix, int limit) {
+        return index.complete(prefix, limit);
+    }
+
+    @Override
+    public synchronized void bookAdded(Book book) {
+        bookUpdated(book);
+    }
+
+    @Override
+    public synchronized void bookUpdated(Book book) {
+        if (!loaded) {
+            return;
+        }
+        Entry now = Entry.of(book);
+        Entry before = books.get(book.getId());
+        if (before != null && before.sameTerms(now)) {
+            int delta = now.weight - before.weight;
+            if (delta != 0) {
+                books.put(book.getId(), now);
+                AutocompleteIndex.addTerm(terms, now.titleKey, now.title, BookScanIndex.Field.TITLE, delta);
+                AutocompleteIndex.addTerm(terms, now.authorKey, now.author, BookScanIndex.Field.AUTHOR, delta);
+                addWeight(now, delta);
+            }
+            return;
+        }
+        if (before != null) {
+            remove(book.getId());
+        }
+        add(book.getId(), now);
+        scheduleRebuild();
+    }
+
+    @Override
+    public synchronized void bookDeleted(int bookId) {
+        if (loaded && remove(bookId)) {
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * Останавливает фоновый поток перестроения.
+     */
+    @Override
+    public void close() {
+        rebuilder.shutdownNow();
+    }
+
+    /**
+     * Прибавляет вес названию и автору книги в текущем индексе. Если прибавить на месте
+     * нельзя (например, вес уменьшился), индекс перестраивается по таблице терминов.
+     */
+    private void addWeight(Entry entry, int delta) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(new WeightChange(entry, delta));
+        }
+        if (!addWeight(index, entry, delta)) {
+            scheduleRebuild();
+        }
+    }
+
+    private static boolean addWeight(AutocompleteIndex target, Entry entry, int delta) {
+        // Пустые ключи в индекс не попадают, прибавлять к ним нечего
+        boolean applied = entry.titleKey.isEmpty()
+                || target.addWeight(entry.titleKey, BookScanIndex.Field.TITLE, delta);
+        return (entry.authorKey.isEmpty() || target.addWeight(entry.authorKey, BookScanIndex.Field.AUTHOR, delta))
+                && applied;
+    }
+
+    /**
+     * Планирует фоновое перестроение индекса по таблице терминов.
+     * Если перестроение уже запланировано, повторный вызов ничего не делает.
+     */
+    private void scheduleRebuild() {
+        if (!rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        rebuilder.execute(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка перестроения индекса автодополнения: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Строит индекс по копии таблицы терминов вне блокировки. Прибавки веса, сделанные
+     * во время построения, переносятся в новый индекс перед его публикацией.
+     */
+    private void rebuild() {
+        List<AutocompleteIndex.Term> snapshot;
+        int snapshotGeneration;
+        synchronized (this) {
+            // Флаг снимается до копирования, чтобы не потерять изменения, сделанные во время построения
+            rebuildScheduled.set(false);
+            snapshot = new ArrayList<>(terms.size());
+            for (AutocompleteIndex.Term term : terms.values()) {
+                snapshot.add(term.copy());
+            }
+            changedDuringRebuild = new ArrayList<>();
+            snapshotGeneration = generation;
+        }
+        AutocompleteIndex built = AutocompleteIndex.fromTerms(snapshot);
+        synchronized (this) {
+            List<WeightChange> changes = changedDuringRebuild;
+            changedDuringRebuild = null;
+            if (snapshotGeneration != generation) {
+                return;
+            }
+            for (WeightChange change : changes) {
+                if (!addWeight(built, change.entry(), change.delta())) {
+                    scheduleRebuild();
+                }
+            }
+            index = built;
+        }
+    }
+
+    private void add(int bookId, Entry entry) {
+        books.put(bookId, entry);
+        AutocompleteIndex.addTerm(terms, entry.titleKey, entry.title, BookScanIndex.Field.TITLE, entry.weight);
+        AutocompleteIndex.addTerm(terms, entry.authorKey, entry.author, BookScanIndex.Field.AUTHOR, entry.weight);
+    }
+
+    private boolean remove(int bookId) {
+        Entry entry = books.remove(bookId);
+        if (entry == null) {
+            return false;
+        }
+        AutocompleteIndex.removeTerm(terms, entry.titleKey, BookScanIndex.Field.TITLE, entry.weight);
+        AutocompleteIndex.removeTerm(terms, entry.authorKey, BookScanIndex.Field.AUTHOR, entry.weight);
+        return true;
+    }
+
+    /**
+     * Вклад одной книги в термины: ключи и тексты названия и автора и вес.
+     */
+    private static final class Entry {
+        private final String titleKey;
+        private final String title;
+        private final String authorKey;
+        private final String author;
+        private final int weight;
+
+        private Entry(String titleKey, String title, String authorKey, String author, int weight) {
+            this.titleKey = titleKey;
+            this.title = title;
+            this.authorKey = authorKey;
+            this.author = author;
+            this.weight = weight;
+        }
+
+        static Entry of(Book book) {
+            return new Entry(AutocompleteIndex.keyOf(book.getNormalizedTitle(), book.getTitle()), book.getTitle(),
+                    AutocompleteIndex.keyOf(book.getNormalizedAuthor(), book.getAuthor()), book.getAuthor(),
+                    AutocompleteIndex.weightOf(book));
+        }
+
+        boolean sameTerms(Entry other) {
+            return titleKey.equals(other.titleKey) && authorKey.equals(other.authorKey);
+        }
+    }
+
+    /**
+     * Прибавка веса книги, сделанная во время фонового перестроения.
+     */
+    private record WeightChange(Entry entry, int delta) {
+    }
+}
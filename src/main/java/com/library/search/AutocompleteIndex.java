@@ -0,0 +1,372 @@
+package com.library.search;
+
+import com.library.database.entities.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Неизменяемое префиксное дерево для автодополнения названий и авторов.
+ * Узлы хранятся в плоских массивах: дети каждого узла лежат подряд и отсортированы
+ * по символу, а для каждого узла известен максимальный вес в его поддереве.
+ * Поиск лучших K вариантов начинается с узла префикса и раскрывает поддеревья
+ * в порядке убывания максимального веса, не обходя все дерево.
+ * <p>
+ * Состав терминов после построения не меняется, но вес существующего термина можно
+ * увеличить на месте ({@link #addWeight}), не прерывая поиск в других потоках.
+ */
+public final class AutocompleteIndex {
+    private static final AutocompleteIndex EMPTY = build(List.of());
+
+    // Узлы дерева (узел 0 - корень)
+    private final char[] labels;        // Символ на ребре, ведущем в узел
+    private final int[] firstChild;     // Индекс первого ребенка
+    private final int[] childCount;     // Количество детей
+    private final AtomicIntegerArray maxWeight; // Максимальный вес термина в поддереве
+    private final int[] termFrom;       // Первый термин, заканчивающийся в узле
+    private final int[] termCount;      // Количество терминов, заканчивающихся в узле
+
+    // Термины
+    private final String[] display;                // Отображаемый текст термина
+    private final BookScanIndex.Field[] fields;    // Поле, из которого взят термин
+    private final AtomicIntegerArray weights;      // Вес термина
+
+    private AutocompleteIndex(char[] labels, int[] firstChild, int[] childCount, AtomicIntegerArray maxWeight,
+                              int[] termFrom, int[] termCount,
+                              String[] display, BookScanIndex.Field[] fields, AtomicIntegerArray weights) {
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.maxWeight = maxWeight;
+        this.termFrom = termFrom;
+        this.termCount = termCount;
+        this.display = display;
+        this.fields = fields;
+        this.weights = weights;
+    }
+
+    /**
+     * @return пустой индекс
+     */
+    public static AutocompleteIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Строит индекс по книгам каталога.
+     * Терминами служат поисковые ключи названий и авторов. Вес термина - число книг с этим ключом
+     * плюс общее число их выдач ({@link Book#getLoanCount()}): из одинаково распространенных
+     * названий и авторов выше те, которые чаще берут.
+     * @param books книги каталога
+     * @return построенный индекс
+     */
+    public static AutocompleteIndex build(List<Book> books) {
+        Map<String, Term> terms = new HashMap<>();
+        for (Book book : books) {
+            int weight = weightOf(book);
+            addTerm(terms, keyOf(book.getNormalizedTitle(), book.getTitle()), book.getTitle(),
+                    BookScanIndex.Field.TITLE, weight);
+            addTerm(terms, keyOf(book.getNormalizedAuthor(), book.getAuthor()), book.getAuthor(),
+                    BookScanIndex.Field.AUTHOR, weight);
+        }
+        return fromTerms(terms.values());
+    }
+
+    /**
+     * Строит индекс по готовым терминам. Термины не изменяются и могут использоваться дальше.
+     * @param terms термины с весами
+     * @return построенный индекс
+     */
+    static AutocompleteIndex fromTerms(Collection<Term> terms) {
+        // После сортировки термины любого узла образуют непрерывный диапазон, а дети упорядочены по символу
+        Term[] sorted = terms.toArray(new Term[0]);
+        Arrays.sort(sorted, (a, b) -> a.key.compareTo(b.key));
+        return new Builder(sorted).build();
+    }
+
+    /**
+     * Вклад книги в вес ее названия и автора: сама книга плюс число ее выдач.
+     */
+    static int weightOf(Book book) {
+        return 1 + book.getLoanCount();
+    }
+
+    /**
+     * Возвращает до limit самых популярных вариантов, начинающихся с префикса.
+     * Префикс нормализуется так же, как поисковые ключи.
+     * @param prefix введенное начало названия или имени автора
+     * @param limit максимальное количество вариантов
+     * @return варианты в порядке убывания веса
+     */
+    public List<Completion> complete(String prefix, int limit) {
+        String key = SearchNormalizer.normalize(prefix);
+        if (limit <= 0 || key.isEmpty()) {
+            return List.of();
+        }
+        int node = findNode(key);
+        if (node < 0) {
+            return List.of();
+        }
+
+        // Очередь содержит узлы (приоритет - максимум поддерева) и термины (приоритет - их вес)
+        List<Completion> result = new ArrayList<>(limit);
+        PriorityQueue<long[]> queue = new PriorityQueue<>(
+                (a, b) -> Long.compare(b[0], a[0]));
+        queue.add(new long[]{maxWeight.get(node), node, 0});
+        while (!queue.isEmpty() && result.size() < limit) {
+            long[] entry = queue.poll();
+            int id = (int) entry[1];
+            if (entry[2] == 1) {
+                result.add(new Completion(display[id], fields[id], weights.get(id)));
+                continue;
+            }
+            for (int term = termFrom[id]; term < termFrom[id] + termCount[id]; term++) {
+                queue.add(new long[]{weights.get(term), term, 1});
+            }
+            int from = firstChild[id];
+            for (int child = from; child < from + childCount[id]; child++) {
+                queue.add(new long[]{maxWeight.get(child), child, 0});
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return количество терминов в индексе
+     */
+    public int size() {
+        return display.length;
+    }
+
+    /**
+     * Увеличивает вес существующего термина на месте. Максимумы поддеревьев на пути
+     * к термину поднимаются до изменения самого веса, поэтому параллельный поиск
+     * не пропускает термин, а лишь может на мгновение увидеть его со старым весом.
+     * Изменения веса должны выполняться одним потоком.
+     * @param key поисковый ключ термина
+     * @param field поле, из которого взят термин
+     * @param delta положительная прибавка к весу
+     * @return true, если вес изменен; false, если термина нет или delta не положительна
+     *         (тогда индекс нужно перестроить)
+     */
+    boolean addWeight(String key, BookScanIndex.Field field, int delta) {
+        if (delta <= 0 || key.isEmpty()) {
+            return false;
+        }
+        int[] path = new int[key.length() + 1];
+        int node = findNode(key, path);
+        if (node < 0) {
+            return false;
+        }
+        for (int term = termFrom[node]; term < termFrom[node] + termCount[node]; term++) {
+            if (fields[term] == field) {
+                int weight = weights.get(term) + delta;
+                for (int pathNode : path) {
+                    if (maxWeight.get(pathNode) < weight) {
+                        maxWeight.set(pathNode, weight);
+                    }
+                }
+                weights.set(term, weight);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int findNode(String key) {
+        return findNode(key, null);
+    }
+
+    /**
+     * Спускается по дереву вдоль ключа.
+     * @param path массив для пройденных узлов (от корня) или null
+     * @return номер узла или -1, если такого префикса нет
+     */
+    private int findNode(String key, int[] path) {
+        int node = 0;
+        if (path != null) {
+            path[0] = node;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            int low = firstChild[node];
+            int high = low + childCount[node] - 1;
+            char c = key.charAt(i);
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (labels[mid] < c) {
+                    low = mid + 1;
+                } else if (labels[mid] > c) {
+                    high = mid - 1;
+                } else {
+                    found = mid;
+                    break;
+                }
+            }
+            if (found < 0) {
+                return -1;
+            }
+            node = found;
+            if (path != null) {
+                path[i + 1] = node;
+            }
+        }
+        return node;
+    }
+
+    static void addTerm(Map<String, Term> terms, String key, String text,
+                        BookScanIndex.Field field, int weight) {
+        if (key.isEmpty()) {
+            return;
+        }
+        // Одинаковый ключ у названия и автора дает два разных термина в одном узле
+        Term term = terms.computeIfAbsent(field + ":" + key, k -> new Term(key, text, field));
+        term.weight += weight;
+    }
+
+    /**
+     * Вычитает вклад книги из веса термина; термин без книг удаляется.
+     */
+    static void removeTerm(Map<String, Term> terms, String key, BookScanIndex.Field field, int weight) {
+        String id = field + ":" + key;
+        Term term = terms.get(id);
+        if (term != null) {
+            term.weight -= weight;
+            if (term.weight <= 0) {
+                terms.remove(id);
+            }
+        }
+    }
+
+    static String keyOf(String storedKey, String value) {
+        return storedKey != null ? storedKey : SearchNormalizer.normalize(value);
+    }
+
+    /**
+     * Термин до построения дерева.
+     */
+    static final class Term {
+        final String key;
+        final String text;
+        final BookScanIndex.Field field;
+        int weight;
+
+        Term(String key, String text, BookScanIndex.Field field) {
+            this.key = key;
+            this.text = text;
+            this.field = field;
+        }
+
+        Term copy() {
+            Term copy = new Term(key, text, field);
+            copy.weight = weight;
+            return copy;
+        }
+    }
+
+    /**
+     * Построение плоского дерева из отсортированных терминов.
+     * Узлы создаются уровнями: дети узла добавляются подряд в момент его раскрытия.
+     */
+    private static final class Builder {
+        private final Term[] terms;
+        private char[] labels = new char[16];
+        private int[] firstChild = new int[16];
+        private int[] childCount = new int[16];
+        private int[] maxWeight = new int[16];
+        private int[] termFrom = new int[16];
+        private int[] termCount = new int[16];
+        private int[] rangeFrom = new int[16]; // Диапазон терминов, проходящих через узел
+        private int[] rangeTo = new int[16];
+        private int[] depth = new int[16];
+        private int size;
+
+        Builder(Term[] terms) {
+            this.terms = terms;
+        }
+
+        AutocompleteIndex build() {
+            addNode('\u0000', 0, terms.length, 0);
+            for (int node = 0; node < size; node++) {
+                expand(node);
+            }
+
+            String[] display = new String[terms.length];
+            BookScanIndex.Field[] fields = new BookScanIndex.Field[terms.length];
+            AtomicIntegerArray weights = new AtomicIntegerArray(terms.length);
+            for (int i = 0; i < terms.length; i++) {
+                display[i] = terms[i].text;
+                fields[i] = terms[i].field;
+                weights.set(i, terms[i].weight);
+            }
+            // Максимумы поддеревьев: дети всегда имеют больший номер, чем родитель
+            for (int node = size - 1; node >= 0; node--) {
+                int max = 0;
+                for (int term = termFrom[node]; term < termFrom[node] + termCount[node]; term++) {
+                    max = Math.max(max, weights.get(term));
+                }
+                for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+                    max = Math.max(max, maxWeight[child]);
+                }
+                maxWeight[node] = max;
+            }
+            return new AutocompleteIndex(Arrays.copyOf(labels, size), Arrays.copyOf(firstChild, size),
+                    Arrays.copyOf(childCount, size), new AtomicIntegerArray(Arrays.copyOf(maxWeight, size)),
+                    Arrays.copyOf(termFrom, size), Arrays.copyOf(termCount, size),
+                    display, fields, weights);
+        }
+
+        /**
+         * Создает детей узла, группируя его термины по следующему символу.
+         * Термины, которые заканчиваются в узле, в отсортированном массиве идут первыми.
+         */
+        private void expand(int node) {
+            int from = rangeFrom[node];
+            int to = rangeTo[node];
+            int d = depth[node];
+            int i = from;
+            while (i < to && terms[i].key.length() == d) {
+                i++;
+            }
+            termFrom[node] = from;
+            termCount[node] = i - from;
+            firstChild[node] = size;
+            while (i < to) {
+                char c = terms[i].key.charAt(d);
+                int j = i + 1;
+                while (j < to && terms[j].key.charAt(d) == c) {
+                    j++;
+                }
+                addNode(c, i, j, d + 1);
+                i = j;
+            }
+            childCount[node] = size - firstChild[node];
+        }
+
+        private void addNode(char label, int from, int to, int nodeDepth) {
+            if (size == labels.length) {
+                int capacity = size * 2;
+                labels = Arrays.copyOf(labels, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                childCount = Arrays.copyOf(childCount, capacity);
+                maxWeight = Arrays.copyOf(maxWeight, capacity);
+                termFrom = Arrays.copyOf(termFrom, capacity);
+                termCount = Arrays.copyOf(termCount, capacity);
+                rangeFrom = Arrays.copyOf(rangeFrom, capacity);
+                rangeTo = Arrays.copyOf(rangeTo, capacity);
+                depth = Arrays.copyOf(depth, capacity);
+            }
+            labels[size] = label;
+            rangeFrom[size] = from;
+            rangeTo[size] = to;
+            depth[size] = nodeDepth;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.library.search;
+
+import com.library.database.entities.Book;
+import com.library.services.CatalogListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Битовый индекс каталога по признакам с небольшим числом значений:
+ * доступность книги и год публикации. Для каждого значения хранится сжатое множество
+ * идентификаторов книг ({@link RoaringBitmap}), поэтому условие вида
+ * «доступные книги 1850-1900 годов» вычисляется пересечением и объединением множеств
+ * до чтения строк из базы данных.
+ * Индекс загружается один раз из каталога и затем обновляется по уведомлениям
+ * {@link CatalogListener}; выдача и возврат книги переставляют бит доступности
+ * в обоих множествах за одну операцию под блокировкой индекса.
+ */
+public class BitmapIndex implements CatalogListener {
+    private final RoaringBitmap all = new RoaringBitmap();             // Все книги каталога
+    private final RoaringBitmap available = new RoaringBitmap();       // Доступные книги
+    private final RoaringBitmap onLoan = new RoaringBitmap();          // Книги в аренде
+    private final NavigableMap<Integer, RoaringBitmap> years = new TreeMap<>(); // Год -> книги
+    private final Map<Integer, Integer> yearOf = new HashMap<>();      // ID книги -> учтенный год
+    private boolean loaded;                                            // Индекс загружен из каталога
+
+    /**
+     * Загружает индекс по всему каталогу, заменяя текущее содержимое.
+     * @param catalog все книги каталога
+     */
+    public synchronized void load(List<Book> catalog) {
+        all.clear();
+        available.clear();
+        onLoan.clear();
+        years.clear();
+        yearOf.clear();
+        for (Book book : catalog) {
+            add(book);
+        }
+        loaded = true;
+    }
+
+    /**
+     * @return true, если индекс загружен и поддерживается в актуальном состоянии
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Возвращает множество книг, удовлетворяющих условиям. Незаданное условие (null) не ограничивает выборку.
+     * @param availableOnly true - только доступные, false - только выданные, null - любые
+     * @param yearFrom минимальный год публикации или null
+     * @param yearTo максимальный год публикации или null
+     * @return новое множество идентификаторов книг (можно изменять)
+     */
+    public synchronized RoaringBitmap select(Boolean availableOnly, Integer yearFrom, Integer yearTo) {
+        RoaringBitmap result;
+        if (yearFrom == null && yearTo == null) {
+            result = all.copy();
+        } else {
+            result = new RoaringBitmap();
+            for (RoaringBitmap bucket : yearRange(yearFrom, yearTo).values()) {
+                result.addAll(bucket);
+            }
+        }
+        if (availableOnly != null) {
+            result = RoaringBitmap.and(result, availableOnly ? available : onLoan);
+        }
+        return result;
+    }
+
+    /**
+     * Переставляет бит доступности книги в обоих множествах за одну операцию.
+     * @param bookId идентификатор книги
+     * @param isAvailable новое состояние доступности
+     * @return true, если состояние изменилось; false, если книга уже была в этом состоянии или не учтена
+     */
+    public synchronized boolean setAvailable(int bookId, boolean isAvailable) {
+        if (!all.contains(bookId) || available.contains(bookId) == isAvailable) {
+            return false;
+        }
+        (isAvailable ? onLoan : available).remove(bookId);
+        (isAvailable ? available : onLoan).add(bookId);
+        return true;
+    }
+
+    @Override
+    public synchronized void bookAdded(Book book) {
+        if (loaded) {
+            remove(book.getId());
+            add(book);
+        }
+    }
+
+    @Override
+    public synchronized void bookUpdated(Book book) {
+        if (!loaded) {
+            return;
+        }
+        Integer year = yearOf.get(book.getId());
+        if (year != null && year == book.getPublicationYear()) {
+            setAvailable(book.getId(), book.isAvailable()); // Выдача и возврат меняют только доступность
+        } else {
+            remove(book.getId());
+            add(book);
+        }
+    }
+
+    @Override
+    public synchronized void bookDeleted(int bookId) {
+        if (loaded) {
+            remove(bookId);
+        }
+    }
+
+    private NavigableMap<Integer, RoaringBitmap> yearRange(Integer yearFrom, Integer yearTo) {
+        int from = yearFrom != null ? yearFrom : Integer.MIN_VALUE;
+        int to = yearTo != null ? yearTo : Integer.MAX_VALUE;
+        if (from > to) {
+            return new TreeMap<>();
+        }
+        return years.subMap(from, true, to, true);
+    }
+
+    private void add(Book book) {
+        int id = book.getId();
+        all.add(id);
+        (book.isAvailable() ? available : onLoan).add(id);
+        years.computeIfAbsent(book.getPublicationYear(), year -> new RoaringBitmap()).add(id);
+        yearOf.put(id, book.getPublicationYear());
+    }
+
+    private void remove(int bookId) {
+        Integer year = yearOf.remove(bookId);
+        if (year == null) {
+            return;
+        }
+        all.remove(bookId);
+        available.remove(bookId);
+        onLoan.remove(bookId);
+        RoaringBitmap bucket = years.get(year);
+        bucket.remove(bookId);
+        if (bucket.isEmpty()) {
+            years.remove(year);
+        }
+    }
+}
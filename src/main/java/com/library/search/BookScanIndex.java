@@ -0,0 +1,453 @@
+package com.library.search;
+
+import com.library.database.entities.Book;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Компактное представление каталога для полнотекстового перебора.
+ * Поисковые ключи названий и авторов всех книг (см. {@link SearchNormalizer})
+ * хранятся в двух непрерывных массивах байт UTF-8, разделенных нулевым байтом.
+ * Поиск по подстроке выполняется одним проходом по массиву без создания
+ * строк для каждой книги.
+ * <p>
+ * Индекс каталога, книги которого идут по возрастанию ID, поддерживает поиск строки по ID
+ * и применение изменений каталога без полного перестроения (см. {@link #apply(List, int[])}).
+ */
+public final class BookScanIndex {
+    /**
+     * Поле книги, по которому выполняется поиск.
+     */
+    public enum Field {
+        TITLE,
+        AUTHOR
+    }
+
+    // Разделитель записей: не встречается в тексте, поэтому вхождение образца не может пересечь границу книг
+    private static final byte SEPARATOR = 0;
+
+    // Уровни совпадения для ранжирования (старшие биты оценки)
+    private static final int MATCH_SUBSTRING = 1;   // Подстрока внутри слова
+    private static final int MATCH_WORD = 2;        // Начало одного из слов
+    private static final int MATCH_PREFIX = 3;      // Начало значения
+    private static final int MATCH_EXACT = 4;       // Полное совпадение
+
+    private final AtomicReferenceArray<Book> books; // Книги по строкам (заменяются на месте, см. apply)
+    private final int[] ids;          // ID книги по строкам
+    private final boolean sortedById; // Строки идут по строгому возрастанию ID
+    private final Column titles;      // Поисковые ключи названий
+    private final Column authors;     // Поисковые ключи авторов
+    private final AtomicIntegerArray popularity; // Популярность (число выдач) книги по строкам
+
+    private BookScanIndex(Book[] books, Column titles, Column authors, int[] popularity) {
+        this.books = new AtomicReferenceArray<>(books);
+        this.titles = titles;
+        this.authors = authors;
+        this.popularity = new AtomicIntegerArray(popularity);
+        this.ids = new int[books.length];
+        boolean sorted = true;
+        for (int i = 0; i < books.length; i++) {
+            ids[i] = books[i].getId();
+            sorted &= i == 0 || ids[i] > ids[i - 1];
+        }
+        this.sortedById = sorted;
+    }
+
+    /**
+     * Строит индекс по списку книг. Порядок книг сохраняется.
+     * Популярность книги - число ее выдач ({@link Book#getLoanCount()}); тот же счетчик
+     * определяет вес подсказок {@link AutocompleteIndex}.
+     * @param books список книг (не может быть null)
+     * @return построенный индекс
+     */
+    public static BookScanIndex build(List<Book> books) {
+        Book[] array = books.toArray(new Book[0]);
+        Column.Builder titles = new Column.Builder(array.length);
+        Column.Builder authors = new Column.Builder(array.length);
+        int[] popularity = new int[array.length];
+        for (int i = 0; i < array.length; i++) {
+            Book book = array[i];
+            titles.add(keyOf(book.getNormalizedTitle(), book.getTitle()));
+            authors.add(keyOf(book.getNormalizedAuthor(), book.getAuthor()));
+            popularity[i] = book.getLoanCount();
+        }
+        return new BookScanIndex(array, titles.build(), authors.build(), popularity);
+    }
+
+    /**
+     * Приводит поисковый запрос к тому же виду, что и данные индекса.
+     * @param query исходный запрос
+     * @return байты запроса в UTF-8
+     */
+    public static byte[] encodeQuery(String query) {
+        return SearchNormalizer.normalize(query).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return количество книг в индексе
+     */
+    public int size() {
+        return books.length();
+    }
+
+    /**
+     * Возвращает книгу по номеру строки индекса.
+     * @param row номер строки (0 <= row < size())
+     * @return книга
+     */
+    public Book bookAt(int row) {
+        return books.get(row);
+    }
+
+    /**
+     * Находит строку книги по ID.
+     * @param id идентификатор книги
+     * @return номер строки или -1, если книги нет в индексе
+     * @throws IllegalStateException если строки индекса не упорядочены по ID
+     */
+    public int rowOf(int id) {
+        requireSortedById();
+        int row = Arrays.binarySearch(ids, id);
+        return row >= 0 ? row : -1;
+    }
+
+    /**
+     * Применяет изменения каталога. Изменения применяются как замена книги целиком,
+     * поэтому повторное применение тех же изменений ничего не меняет.
+     * <p>
+     * Если у всех измененных книг прежние поисковые ключи (выдача, возврат, изменение ISBN
+     * или года), а книги не добавлялись и не удалялись, книги и их популярность заменяются
+     * на месте и возвращается этот же индекс: одновременный перебор видит каждую книгу
+     * в прежнем или в новом состоянии. Иначе этот индекс не изменяется, а строится новый:
+     * ключи неизмененных строк копируются байтами, без повторной нормализации, строки
+     * по-прежнему идут по возрастанию ID.
+     * @param changed добавленные и измененные книги
+     * @param deleted идентификаторы удаленных книг
+     * @return этот индекс или новый индекс с изменениями
+     * @throws IllegalStateException если строки индекса не упорядочены по ID
+     */
+    public BookScanIndex apply(List<Book> changed, int[] deleted) {
+        if (!canApplyInPlace(changed, deleted)) {
+            return merge(changed, deleted);
+        }
+        for (Book book : changed) {
+            int row = rowOf(book.getId());
+            books.set(row, book);
+            popularity.set(row, book.getLoanCount());
+        }
+        return this;
+    }
+
+    /**
+     * @return книги индекса в порядке строк на момент вызова
+     */
+    public List<Book> books() {
+        List<Book> result = new ArrayList<>(books.length());
+        for (int row = 0; row < books.length(); row++) {
+            result.add(books.get(row));
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает книги по списку номеров строк.
+     * @param rows номера строк
+     * @return список книг в порядке номеров
+     */
+    public List<Book> booksAt(int[] rows) {
+        List<Book> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(books.get(row));
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает объем данных поля в байтах - оценку стоимости полного перебора.
+     * @param field поле книги
+     * @return размер данных столбца в байтах
+     */
+    public long columnBytes(Field field) {
+        return column(field).data.length;
+    }
+
+    /**
+     * Находит все книги, у которых указанное поле содержит подстроку (после нормализации).
+     * @param field поле для поиска
+     * @param query искомая подстрока
+     * @return список найденных книг в порядке индекса
+     */
+    public List<Book> search(Field field, String query) {
+        List<Book> result = new ArrayList<>();
+        scan(field, encodeQuery(query), 0, books.length(), row -> result.add(books.get(row)));
+        return result;
+    }
+
+    /**
+     * Перебирает строки диапазона [fromRow, toRow), поле которых содержит образец.
+     * Номера строк передаются потребителю в порядке возрастания, каждая строка не более одного раза.
+     * @param field поле для поиска
+     * @param needle образец, подготовленный методом {@link #encodeQuery(String)}
+     * @param fromRow первая строка диапазона (включительно)
+     * @param toRow последняя строка диапазона (не включительно)
+     * @param consumer получатель номеров найденных строк
+     */
+    public void scan(Field field, byte[] needle, int fromRow, int toRow, IntConsumer consumer) {
+        if (fromRow >= toRow) {
+            return;
+        }
+        // Пустой запрос совпадает с любой строкой (как String.contains(""))
+        if (needle.length == 0) {
+            for (int row = fromRow; row < toRow; row++) {
+                consumer.accept(row);
+            }
+            return;
+        }
+
+        Column column = column(field);
+        int[] offsets = column.offsets;
+        byte[] data = column.data;
+        int end = offsets[toRow];
+        int row = fromRow;
+        int pos = offsets[fromRow];
+
+        while (pos < end) {
+            int hit = Utf8SubstringScanner.indexOf(data, pos, end, needle);
+            if (hit < 0) {
+                return;
+            }
+            // Совпадения идут по возрастанию, поэтому курсор строки только продвигается вперед
+            while (offsets[row + 1] <= hit) {
+                row++;
+            }
+            consumer.accept(row);
+            // В строке достаточно одного совпадения - переходим к следующей
+            row++;
+            pos = offsets[row];
+        }
+    }
+
+    /**
+     * Оценивает совпадение поля строки с образцом для ранжирования.
+     * Сравниваются по порядку: уровень совпадения (полное, начало значения, начало слова, подстрока),
+     * популярность книги и длина поля (короткие значения точнее соответствуют запросу).
+     * @param field поле книги
+     * @param needle образец, подготовленный методом {@link #encodeQuery(String)}
+     * @param row номер строки
+     * @return неотрицательная оценка (больше - лучше) или -1, если поле не содержит образец
+     */
+    public int score(Field field, byte[] needle, int row) {
+        Column column = column(field);
+        byte[] data = column.data;
+        int start = column.offsets[row];
+        int end = column.offsets[row + 1] - 1; // Без разделителя
+        int length = end - start;
+
+        int match;
+        if (needle.length == 0) {
+            match = MATCH_SUBSTRING;
+        } else if (!regionMatches(data, start, end, needle)) {
+            match = 0;
+            for (int hit = Utf8SubstringScanner.indexOf(data, start, end, needle); hit >= 0;
+                 hit = Utf8SubstringScanner.indexOf(data, hit + 1, end, needle)) {
+                if (data[hit - 1] == ' ') {
+                    match = MATCH_WORD;
+                    break;
+                }
+                match = MATCH_SUBSTRING;
+            }
+            if (match == 0) {
+                return -1;
+            }
+        } else {
+            match = length == needle.length ? MATCH_EXACT : MATCH_PREFIX;
+        }
+        // 3 бита уровня, 16 бит популярности, 12 бит краткости
+        return match << 28 | Math.min(popularity.get(row), 0xFFFF) << 12 | (0xFFF - Math.min(length, 0xFFF));
+    }
+
+    private static boolean regionMatches(byte[] data, int start, int end, byte[] needle) {
+        if (end - start < needle.length) {
+            return false;
+        }
+        for (int i = 0; i < needle.length; i++) {
+            if (data[start + i] != needle[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Сливает строки индекса с изменениями по возрастанию ID. Подряд идущие неизмененные
+     * строки копируются одним блоком.
+     */
+    private BookScanIndex merge(List<Book> changed, int[] deleted) {
+        Book[] updates = changed.toArray(new Book[0]);
+        Arrays.sort(updates, (a, b) -> Integer.compare(a.getId(), b.getId()));
+        int[] removed = deleted.clone();
+        Arrays.sort(removed);
+
+        int capacity = books.length() + updates.length;
+        Book[] mergedBooks = new Book[capacity];
+        int[] mergedPopularity = new int[capacity];
+        Column.Builder mergedTitles = new Column.Builder(capacity, titles.data.length);
+        Column.Builder mergedAuthors = new Column.Builder(capacity, authors.data.length);
+        int count = 0;
+        int runStart = 0;
+        int row = 0;
+        int next = 0;
+        while (row < books.length() || next < updates.length) {
+            int oldId = row < books.length() ? ids[row] : Integer.MAX_VALUE;
+            int newId = next < updates.length ? updates[next].getId() : Integer.MAX_VALUE;
+            if (newId > oldId && Arrays.binarySearch(removed, oldId) < 0) {
+                row++; // Строка без изменений - продолжает текущий блок
+                continue;
+            }
+            count = copyRows(runStart, row, mergedBooks, mergedPopularity, mergedTitles, mergedAuthors, count);
+            if (newId <= oldId) {
+                Book book = updates[next++];
+                mergedBooks[count] = book;
+                mergedPopularity[count++] = book.getLoanCount();
+                mergedTitles.add(keyOf(book.getNormalizedTitle(), book.getTitle()));
+                mergedAuthors.add(keyOf(book.getNormalizedAuthor(), book.getAuthor()));
+                if (newId == oldId) {
+                    row++;
+                }
+            } else {
+                row++; // Удаленная книга
+            }
+            runStart = row;
+        }
+        count = copyRows(runStart, row, mergedBooks, mergedPopularity, mergedTitles, mergedAuthors, count);
+        return new BookScanIndex(Arrays.copyOf(mergedBooks, count), mergedTitles.build(), mergedAuthors.build(),
+                Arrays.copyOf(mergedPopularity, count));
+    }
+
+    private int copyRows(int fromRow, int toRow, Book[] toBooks, int[] toPopularity,
+                         Column.Builder toTitles, Column.Builder toAuthors, int count) {
+        if (fromRow < toRow) {
+            for (int row = fromRow; row < toRow; row++) {
+                toBooks[count + row - fromRow] = books.get(row);
+                toPopularity[count + row - fromRow] = popularity.get(row);
+            }
+            toTitles.addRows(titles, fromRow, toRow);
+            toAuthors.addRows(authors, fromRow, toRow);
+        }
+        return count + toRow - fromRow;
+    }
+
+    private boolean canApplyInPlace(List<Book> changed, int[] deleted) {
+        for (int id : deleted) {
+            if (rowOf(id) >= 0) {
+                return false;
+            }
+        }
+        for (Book book : changed) {
+            int row = rowOf(book.getId());
+            if (row < 0 || !sameKeys(books.get(row), book)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameKeys(Book before, Book after) {
+        return keyOf(before.getNormalizedTitle(), before.getTitle())
+                .equals(keyOf(after.getNormalizedTitle(), after.getTitle()))
+                && keyOf(before.getNormalizedAuthor(), before.getAuthor())
+                .equals(keyOf(after.getNormalizedAuthor(), after.getAuthor()));
+    }
+
+    private void requireSortedById() {
+        if (!sortedById) {
+            throw new IllegalStateException("Строки индекса не упорядочены по ID книг");
+        }
+    }
+
+    private Column column(Field field) {
+        return field == Field.TITLE ? titles : authors;
+    }
+
+    /**
+     * Возвращает сохраненный поисковый ключ или вычисляет его для книг, еще не записанных в БД.
+     */
+    private static String keyOf(String storedKey, String value) {
+        return storedKey != null ? storedKey : SearchNormalizer.normalize(value);
+    }
+
+    /**
+     * Столбец индекса: байты всех значений подряд и смещения начала каждого значения.
+     * Значение строки i занимает диапазон [offsets[i], offsets[i + 1]) вместе с разделителем.
+     */
+    private static final class Column {
+        private final byte[] data;
+        private final int[] offsets;
+
+        private Column(byte[] data, int[] offsets) {
+            this.data = data;
+            this.offsets = offsets;
+        }
+
+        /**
+         * Накопитель для построения столбца.
+         */
+        private static final class Builder {
+            private byte[] data = new byte[64];
+            private final int[] offsets;
+            private int length;
+            private int count;
+
+            Builder(int capacity) {
+                this.offsets = new int[capacity + 1];
+            }
+
+            Builder(int capacity, int dataCapacity) {
+                this(capacity);
+                this.data = new byte[Math.max(dataCapacity, 64)];
+            }
+
+            void add(String value) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                ensureCapacity(length + bytes.length + 1);
+                for (byte b : bytes) {
+                    // Нулевой байт зарезервирован под разделитель
+                    data[length++] = b == SEPARATOR ? (byte) ' ' : b;
+                }
+                data[length++] = SEPARATOR;
+                offsets[++count] = length;
+            }
+
+            /**
+             * Добавляет строки [fromRow, toRow) другого столбца одним копированием байт.
+             */
+            void addRows(Column source, int fromRow, int toRow) {
+                int from = source.offsets[fromRow];
+                int bytes = source.offsets[toRow] - from;
+                ensureCapacity(length + bytes);
+                System.arraycopy(source.data, from, data, length, bytes);
+                for (int row = fromRow + 1; row <= toRow; row++) {
+                    offsets[++count] = length + source.offsets[row] - from;
+                }
+                length += bytes;
+            }
+
+            Column build() {
+                return new Column(Arrays.copyOf(data, length),
+                        count + 1 == offsets.length ? offsets : Arrays.copyOf(offsets, count + 1));
+            }
+
+            private void ensureCapacity(int required) {
+                if (required > data.length) {
+                    data = Arrays.copyOf(data, Math.max(required, data.length * 2));
+                }
+            }
+        }
+    }
+}
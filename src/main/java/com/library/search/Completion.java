@@ -0,0 +1,11 @@
+package com.library.search;
+
+/**
+ * Вариант автодополнения.
+ * @param text отображаемый текст (название или автор в исходном написании)
+ * @param field поле книги, из которого взят вариант
+ * @param weight вес варианта: число книг с этим названием или автором плюс число их выдач
+ *               (чем больше, тем выше в списке)
+ */
+public record Completion(String text, BookScanIndex.Field field, int weight) {
+}
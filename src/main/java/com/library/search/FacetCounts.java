@@ -0,0 +1,22 @@
+package com.library.search;
+
+import java.util.Map;
+
+/**
+ * Значения фасетов каталога: количество книг по авторам, десятилетиям публикации
+ * и по доступности.
+ * @param authors автор (в исходном написании) -> количество книг
+ * @param decades первый год десятилетия (например, 1860) -> количество книг
+ * @param available количество доступных книг
+ * @param onLoan количество книг в аренде
+ */
+public record FacetCounts(Map<String, Integer> authors, Map<Integer, Integer> decades,
+                          int available, int onLoan) {
+
+    /**
+     * @return общее количество книг, по которым посчитаны фасеты
+     */
+    public int total() {
+        return available + onLoan;
+    }
+}
@@ -0,0 +1,216 @@
+package com.library.search;
+
+import com.library.database.entities.Book;
+import com.library.services.CatalogListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Фасеты каталога: количество книг по авторам, десятилетиям и доступности.
+ * Счетчики загружаются один раз из каталога, а затем обновляются по уведомлениям
+ * {@link CatalogListener} при добавлении, изменении, удалении, выдаче и возврате книг,
+ * поэтому получение фасетов не требует чтения каталога.
+ * Для каждого значения фасета хранится также набор идентификаторов книг ({@link RoaringBitmap}),
+ * что позволяет посчитать фасеты для результата поиска пересечением множеств.
+ */
+public class FacetEngine implements CatalogListener {
+    private final Map<Integer, Entry> books = new HashMap<>();     // ID книги -> учтенные значения фасетов
+    private final Map<String, Facet> authors = new HashMap<>();    // Поисковый ключ автора -> фасет
+    private final Map<Integer, Facet> decades = new HashMap<>();   // Десятилетие -> фасет
+    private final Facet available = new Facet("available");         // Доступные книги
+    private final Facet onLoan = new Facet("onLoan");               // Книги в аренде
+    private boolean loaded;                                          // Счетчики загружены из каталога
+
+    /**
+     * Загружает счетчики по всему каталогу, заменяя текущие.
+     * @param catalog все книги каталога
+     */
+    public synchronized void load(List<Book> catalog) {
+        books.clear();
+        authors.clear();
+        decades.clear();
+        available.clear();
+        onLoan.clear();
+        for (Book book : catalog) {
+            add(book);
+        }
+        loaded = true;
+    }
+
+    /**
+     * @return true, если счетчики загружены и поддерживаются в актуальном состоянии
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Возвращает фасеты по всему каталогу. Значения берутся из счетчиков без перебора книг.
+     * @return значения фасетов
+     */
+    public synchronized FacetCounts counts() {
+        Map<String, Integer> authorCounts = new TreeMap<>();
+        authors.values().forEach(facet -> authorCounts.merge(facet.display, facet.count, Integer::sum));
+        Map<Integer, Integer> decadeCounts = new TreeMap<>();
+        decades.forEach((decade, facet) -> decadeCounts.put(decade, facet.count));
+        return new FacetCounts(authorCounts, decadeCounts, available.count, onLoan.count);
+    }
+
+    /**
+     * Возвращает фасеты, ограниченные набором книг (например, результатом поиска).
+     * Для десятилетий и доступности используется пересечение битовых карт с набором;
+     * для авторов, если книг в наборе меньше, чем авторов, выгоднее пройти по книгам набора.
+     * @param subset книги, по которым считаются фасеты
+     * @return значения фасетов
+     */
+    public synchronized FacetCounts counts(Collection<Book> subset) {
+        RoaringBitmap ids = new RoaringBitmap();
+        for (Book book : subset) {
+            if (books.containsKey(book.getId())) {
+                ids.add(book.getId());
+            }
+        }
+
+        Map<String, Integer> authorCounts = new TreeMap<>();
+        if (ids.cardinality() < authors.size()) {
+            ids.forEach(id -> {
+                Facet facet = authors.get(books.get(id).authorKey);
+                authorCounts.merge(facet.display, 1, Integer::sum);
+            });
+        } else {
+            authors.values().forEach(facet -> {
+                int count = facet.intersectionCount(ids);
+                if (count > 0) {
+                    authorCounts.merge(facet.display, count, Integer::sum);
+                }
+            });
+        }
+
+        Map<Integer, Integer> decadeCounts = new TreeMap<>();
+        decades.forEach((decade, facet) -> {
+            int count = facet.intersectionCount(ids);
+            if (count > 0) {
+                decadeCounts.put(decade, count);
+            }
+        });
+        return new FacetCounts(authorCounts, decadeCounts,
+                available.intersectionCount(ids), onLoan.intersectionCount(ids));
+    }
+
+    @Override
+    public synchronized void bookAdded(Book book) {
+        if (loaded) {
+            remove(book.getId());
+            add(book);
+        }
+    }
+
+    @Override
+    public synchronized void bookUpdated(Book book) {
+        if (loaded) {
+            remove(book.getId());
+            add(book);
+        }
+    }
+
+    @Override
+    public synchronized void bookDeleted(int bookId) {
+        if (loaded) {
+            remove(bookId);
+        }
+    }
+
+    /**
+     * Возвращает первый год десятилетия.
+     * @param year год публикации
+     * @return год, кратный 10
+     */
+    public static int decadeOf(int year) {
+        return year - year % 10;
+    }
+
+    private void add(Book book) {
+        String authorKey = book.getNormalizedAuthor() != null
+                ? book.getNormalizedAuthor()
+                : SearchNormalizer.normalize(book.getAuthor());
+        Entry entry = new Entry(authorKey, decadeOf(book.getPublicationYear()), book.isAvailable());
+        books.put(book.getId(), entry);
+
+        authors.computeIfAbsent(entry.authorKey, key -> new Facet(book.getAuthor())).add(book.getId());
+        decades.computeIfAbsent(entry.decade, decade -> new Facet(String.valueOf(decade))).add(book.getId());
+        (entry.available ? available : onLoan).add(book.getId());
+    }
+
+    private void remove(int bookId) {
+        Entry entry = books.remove(bookId);
+        if (entry == null) {
+            return;
+        }
+        removeFrom(authors, entry.authorKey, bookId);
+        removeFrom(decades, entry.decade, bookId);
+        (entry.available ? available : onLoan).remove(bookId);
+    }
+
+    private static <K> void removeFrom(Map<K, Facet> facets, K key, int bookId) {
+        Facet facet = facets.get(key);
+        if (facet != null && facet.remove(bookId) == 0) {
+            facets.remove(key); // Пустые значения фасета не показываются
+        }
+    }
+
+    /**
+     * Значения фасетов, учтенные для одной книги (нужны, чтобы уменьшить счетчики при изменении).
+     */
+    private static final class Entry {
+        private final String authorKey;
+        private final int decade;
+        private final boolean available;
+
+        Entry(String authorKey, int decade, boolean available) {
+            this.authorKey = authorKey;
+            this.decade = decade;
+            this.available = available;
+        }
+    }
+
+    /**
+     * Одно значение фасета: отображаемое имя, счетчик и множество ID книг.
+     */
+    private static final class Facet {
+        private final String display;
+        private final RoaringBitmap ids = new RoaringBitmap();
+        private int count;
+
+        Facet(String display) {
+            this.display = display;
+        }
+
+        void add(int bookId) {
+            if (!ids.contains(bookId)) {
+                ids.add(bookId);
+                count++;
+            }
+        }
+
+        int remove(int bookId) {
+            if (ids.contains(bookId)) {
+                ids.remove(bookId);
+                count--;
+            }
+            return count;
+        }
+
+        void clear() {
+            ids.clear();
+            count = 0;
+        }
+
+        int intersectionCount(RoaringBitmap other) {
+            return RoaringBitmap.andCardinality(ids, other);
+        }
+    }
+}
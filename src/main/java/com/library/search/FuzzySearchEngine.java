@@ -0,0 +1,100 @@
+package com.library.search;
+
+import com.library.database.entities.Book;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Подсистема поиска с опечатками.
+ * Держит готовый {@link FuzzySearchIndex} и перестраивает его в фоновом потоке после
+ * изменения названий, авторов или состава каталога. Пока идет перестроение, запросы
+ * обслуживает предыдущая версия индекса; несколько изменений подряд приводят к одному
+ * перестроению. Индекс возвращает идентификаторы книг, поэтому изменения, не касающиеся
+ * текста (выдача и возврат), перестроения не требуют.
+ */
+public class FuzzySearchEngine implements AutoCloseable {
+    private final Supplier<List<Book>> catalog;        // Источник книг для построения индекса
+    private final ExecutorService rebuilder;           // Фоновый поток перестроения
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private volatile FuzzySearchIndex index;           // Текущий индекс (null - еще не построен)
+
+    /**
+     * Создает подсистему поиска с опечатками.
+     * @param catalog источник книг каталога (вызывается в фоновом потоке)
+     * @throws IllegalArgumentException если catalog равен null
+     */
+    public FuzzySearchEngine(Supplier<List<Book>> catalog) {
+        if (catalog == null) {
+            throw new IllegalArgumentException("Источник каталога не может быть null");
+        }
+        this.catalog = catalog;
+        this.rebuilder = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "fuzzy-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Ищет книги по запросу с опечатками (см. {@link FuzzySearchIndex#search}).
+     * При первом обращении индекс строится синхронно, одним потоком.
+     * @param query поисковый запрос
+     * @param maxEdits максимальное число правок на одно слово запроса
+     * @param limit максимальное количество результатов
+     * @param budgetNanos бюджет времени на поиск в наносекундах
+     * @return ID книг, начиная с наиболее близких к запросу
+     */
+    public int[] search(String query, int maxEdits, int limit, long budgetNanos) {
+        FuzzySearchIndex current = index;
+        if (current == null) {
+            current = firstBuild();
+        }
+        return current.search(query, maxEdits, limit, budgetNanos);
+    }
+
+    /**
+     * @return true, если индекс уже построен
+     */
+    public boolean isBuilt() {
+        return index != null;
+    }
+
+    /**
+     * Планирует фоновое перестроение индекса после изменения текста или состава каталога.
+     * Если перестроение уже запланировано, повторный вызов ничего не делает.
+     */
+    public void scheduleRebuild() {
+        // Пока индекс не нужен, строить его незачем - он будет построен при первом запросе
+        if (index == null || !rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        rebuilder.execute(() -> {
+            // Флаг снимается до чтения каталога, чтобы не потерять изменения, сделанные во время построения
+            rebuildScheduled.set(false);
+            try {
+                index = FuzzySearchIndex.build(catalog.get());
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка перестроения индекса нечеткого поиска: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Останавливает фоновый поток перестроения.
+     */
+    @Override
+    public void close() {
+        rebuilder.shutdownNow();
+    }
+
+    private synchronized FuzzySearchIndex firstBuild() {
+        if (index == null) {
+            index = FuzzySearchIndex.build(catalog.get());
+        }
+        return index;
+    }
+}
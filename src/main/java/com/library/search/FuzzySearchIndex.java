@@ -0,0 +1,340 @@
+package com.library.search;
+
+import com.library.database.entities.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индекс для нечеткого поиска по словам названий и авторов (поиск с опечатками).
+ * <p>
+ * Словарь содержит все различные слова поисковых ключей. Для каждого слова запроса
+ * кандидаты отбираются по общим триграммам (слово на расстоянии k правок теряет не более
+ * 3k своих триграмм), после чего расстояние Левенштейна проверяется только для кандидатов
+ * и с ранним выходом при превышении границы. Если слово слишком короткое для фильтра
+ * по триграммам, проверяются слова словаря близкой длины. Строки каталога напрямую
+ * не перебираются.
+ * <p>
+ * Индекс хранит только идентификаторы книг, а не сами книги: результат сопоставляется
+ * с актуальным каталогом при выдаче, поэтому выдача и возврат книг индекс не затрагивают.
+ * <p>
+ * Поиск ограничен бюджетом времени: по его исчерпании возвращаются лучшие результаты,
+ * найденные к этому моменту.
+ */
+public final class FuzzySearchIndex {
+    // Длина n-граммы
+    private static final int Q = 3;
+    // Символы дополнения слова слева и справа
+    private static final char PAD_START = '\u0001';
+    private static final char PAD_END = '\u0002';
+    // Проверка бюджета времени выполняется раз в 256 проверенных слов
+    private static final int DEADLINE_CHECK_MASK = 0xFF;
+    private static final int[] EMPTY = new int[0];
+
+    private final String[] words;               // Словарь слов
+    private final int[][] postings;             // Для каждого слова - ID книг, где оно встречается
+    private final Map<Long, int[]> trigrams;    // Триграмма -> номера слов словаря
+    private final int[][] wordsByLength;        // Длина слова -> номера слов словаря
+
+    private FuzzySearchIndex(String[] words, int[][] postings,
+                             Map<Long, int[]> trigrams, int[][] wordsByLength) {
+        this.words = words;
+        this.postings = postings;
+        this.trigrams = trigrams;
+        this.wordsByLength = wordsByLength;
+    }
+
+    /**
+     * Строит индекс по книгам каталога.
+     * @param catalog книги каталога
+     * @return построенный индекс
+     */
+    public static FuzzySearchIndex build(List<Book> catalog) {
+        Map<String, IntList> wordBooks = new HashMap<>();
+        for (Book book : catalog) {
+            for (String field : new String[]{keyOf(book.getNormalizedTitle(), book.getTitle()),
+                    keyOf(book.getNormalizedAuthor(), book.getAuthor())}) {
+                for (String word : tokenize(field)) {
+                    IntList ids = wordBooks.computeIfAbsent(word, w -> new IntList());
+                    // Слова книги обрабатываются подряд, повтор слова в той же книге пропускается
+                    if (ids.size == 0 || ids.values[ids.size - 1] != book.getId()) {
+                        ids.add(book.getId());
+                    }
+                }
+            }
+        }
+
+        String[] words = wordBooks.keySet().toArray(new String[0]);
+        Arrays.sort(words);
+        int[][] postings = new int[words.length][];
+        Map<Long, IntList> trigramWords = new HashMap<>();
+        int maxLength = 0;
+        for (int id = 0; id < words.length; id++) {
+            postings[id] = wordBooks.get(words[id]).toArray();
+            maxLength = Math.max(maxLength, words[id].length());
+            for (long trigram : distinctTrigrams(words[id])) {
+                trigramWords.computeIfAbsent(trigram, t -> new IntList()).add(id);
+            }
+        }
+
+        Map<Long, int[]> trigrams = new HashMap<>(trigramWords.size() * 2);
+        trigramWords.forEach((trigram, ids) -> trigrams.put(trigram, ids.toArray()));
+
+        IntList[] byLength = new IntList[maxLength + 1];
+        for (int id = 0; id < words.length; id++) {
+            int length = words[id].length();
+            if (byLength[length] == null) {
+                byLength[length] = new IntList();
+            }
+            byLength[length].add(id);
+        }
+        int[][] wordsByLength = new int[maxLength + 1][];
+        for (int length = 0; length <= maxLength; length++) {
+            wordsByLength[length] = byLength[length] == null ? new int[0] : byLength[length].toArray();
+        }
+        return new FuzzySearchIndex(words, postings, trigrams, wordsByLength);
+    }
+
+    /**
+     * Ищет книги, в названии или авторе которых для каждого слова запроса есть слово
+     * на расстоянии Левенштейна не больше maxEdits (для коротких слов граница уменьшается).
+     * @param query поисковый запрос (может содержать опечатки)
+     * @param maxEdits максимальное число правок на одно слово запроса
+     * @param limit максимальное количество результатов
+     * @param budgetNanos бюджет времени на поиск в наносекундах
+     * @return ID книг в порядке возрастания суммарного числа правок
+     */
+    public int[] search(String query, int maxEdits, int limit, long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        List<String> tokens = tokenize(SearchNormalizer.normalize(query));
+        if (tokens.isEmpty() || limit <= 0 || maxEdits < 0) {
+            return EMPTY;
+        }
+
+        // ID книги -> суммарное число правок по уже обработанным словам запроса
+        Map<Integer, Integer> scores = null;
+        for (String token : tokens) {
+            Map<Integer, Integer> tokenScores = matchBooks(token, effectiveEdits(token, maxEdits), deadline);
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                // Книга должна подходить под каждое слово запроса
+                Map<Integer, Integer> merged = new HashMap<>();
+                for (Map.Entry<Integer, Integer> entry : scores.entrySet()) {
+                    Integer distance = tokenScores.get(entry.getKey());
+                    if (distance != null) {
+                        merged.put(entry.getKey(), entry.getValue() + distance);
+                    }
+                }
+                scores = merged;
+            }
+            if (scores.isEmpty()) {
+                return EMPTY;
+            }
+        }
+
+        List<Map.Entry<Integer, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Integer, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        int[] result = new int[Math.min(limit, ranked.size())];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ranked.get(i).getKey();
+        }
+        return result;
+    }
+
+    /**
+     * @return количество различных слов в словаре
+     */
+    public int dictionarySize() {
+        return words.length;
+    }
+
+    /**
+     * Ограничивает число правок длиной слова: в словах до 2 символов опечатки не допускаются,
+     * в словах до 5 символов - не более одной. Иначе короткое слово совпадает почти с любым.
+     */
+    private static int effectiveEdits(String token, int maxEdits) {
+        int allowed = token.length() <= 2 ? 0 : token.length() <= 5 ? 1 : maxEdits;
+        return Math.min(maxEdits, allowed);
+    }
+
+    /**
+     * Находит книги, содержащие слово на расстоянии не больше maxEdits от token.
+     * @return ID книги -> минимальное число правок
+     */
+    private Map<Integer, Integer> matchBooks(String token, int maxEdits, long deadline) {
+        Map<Integer, Integer> books = new HashMap<>();
+        int checked = 0;
+        for (int[] candidate : candidates(token, maxEdits)) {
+            for (int id : candidate) {
+                // Время проверяется не на каждом слове, чтобы не тратить бюджет на System.nanoTime()
+                if ((++checked & DEADLINE_CHECK_MASK) == 0 && System.nanoTime() > deadline) {
+                    return books; // Бюджет исчерпан - используем то, что успели проверить
+                }
+                int distance = boundedDistance(token, words[id], maxEdits);
+                if (distance > maxEdits) {
+                    continue;
+                }
+                for (int bookId : postings[id]) {
+                    books.merge(bookId, distance, Math::min);
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Отбирает слова словаря, которые могут находиться на расстоянии не больше maxEdits.
+     * @return группы номеров слов для проверки
+     */
+    private List<int[]> candidates(String token, int maxEdits) {
+        long[] tokenTrigrams = distinctTrigrams(token);
+        int required = tokenTrigrams.length - Q * maxEdits;
+        List<int[]> groups = new ArrayList<>();
+
+        if (required <= 0) {
+            // Фильтр по триграммам ничего не отсекает - проверяем слова близкой длины,
+            // начиная с длины самого слова (при исчерпании бюджета проверены самые вероятные)
+            groups.add(wordsAtLength(token.length()));
+            for (int delta = 1; delta <= maxEdits; delta++) {
+                groups.add(wordsAtLength(token.length() - delta));
+                groups.add(wordsAtLength(token.length() + delta));
+            }
+            return groups;
+        }
+
+        // Списки слов по триграммам сливаются в один массив; после сортировки
+        // длина серии одинаковых номеров равна числу общих триграмм
+        int total = 0;
+        int[][] lists = new int[tokenTrigrams.length][];
+        for (int i = 0; i < tokenTrigrams.length; i++) {
+            lists[i] = trigrams.getOrDefault(tokenTrigrams[i], EMPTY);
+            total += lists[i].length;
+        }
+        int[] all = new int[total];
+        int pos = 0;
+        for (int[] ids : lists) {
+            System.arraycopy(ids, 0, all, pos, ids.length);
+            pos += ids.length;
+        }
+        Arrays.sort(all);
+
+        // Кандидаты группируются по числу общих триграмм: больше общих - выше шанс совпадения,
+        // поэтому при ограниченном бюджете они проверяются первыми
+        IntList[] byShared = new IntList[tokenTrigrams.length + 1];
+        for (int i = 0; i < all.length; ) {
+            int id = all[i];
+            int run = i + 1;
+            while (run < all.length && all[run] == id) {
+                run++;
+            }
+            int shared = run - i;
+            if (shared >= required && Math.abs(words[id].length() - token.length()) <= maxEdits) {
+                if (byShared[shared] == null) {
+                    byShared[shared] = new IntList();
+                }
+                byShared[shared].add(id);
+            }
+            i = run;
+        }
+        for (int shared = byShared.length - 1; shared >= required; shared--) {
+            if (byShared[shared] != null) {
+                groups.add(byShared[shared].toArray());
+            }
+        }
+        return groups;
+    }
+
+    private int[] wordsAtLength(int length) {
+        return length >= 0 && length < wordsByLength.length ? wordsByLength[length] : EMPTY;
+    }
+
+    /**
+     * Расстояние Левенштейна с ранним выходом.
+     * @return расстояние или limit + 1, если оно больше limit
+     */
+    static int boundedDistance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return limit + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            // Значения в следующих строках не меньше минимума текущей
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], limit + 1);
+    }
+
+    /**
+     * Разбивает нормализованную строку на слова (последовательности букв и цифр).
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Различные триграммы слова, дополненного служебными символами с обеих сторон.
+     */
+    private static long[] distinctTrigrams(String word) {
+        String padded = "" + PAD_START + PAD_START + word + PAD_END + PAD_END;
+        long[] result = new long[padded.length() - Q + 1];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        return Arrays.stream(result).distinct().toArray();
+    }
+
+    private static String keyOf(String storedKey, String value) {
+        return storedKey != null ? storedKey : SearchNormalizer.normalize(value);
+    }
+
+    /**
+     * Растущий массив int без упаковки.
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
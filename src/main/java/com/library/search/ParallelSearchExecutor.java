@@ -0,0 +1,270 @@
+package com.library.search;
+
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.SearchExecutionEvent;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Исполнитель поиска по каталогу, разбивающий перебор строк на блоки.
+ * Блоки обрабатываются в пуле ForkJoinPool, результаты объединяются в порядке блоков,
+ * поэтому порядок найденных строк совпадает с последовательным перебором.
+ * Небольшие или дешевые запросы выполняются последовательно: решение принимается
+ * по размеру каталога и оценке стоимости, которая уточняется по фактическому времени
+ * предыдущих запросов.
+ * <p>
+ * Статистика выполнения накапливается по всем запросам и публикуется через JMX
+ * ({@link ParallelSearchExecutorMBean}); каждый перебор, кроме того, записывается
+ * событием JFR {@link SearchExecutionEvent}.
+ */
+public class ParallelSearchExecutor implements ParallelSearchExecutorMBean {
+    /**
+     * Перебор диапазона строк каталога.
+     */
+    @FunctionalInterface
+    public interface RangeScan {
+        /**
+         * Передает потребителю номера подходящих строк диапазона [fromRow, toRow) в порядке возрастания.
+         */
+        void scan(int fromRow, int toRow, IntConsumer hits);
+    }
+
+    // Строк в одном блоке: данные блока помещаются в кэш второго уровня ядра
+    public static final int DEFAULT_CHUNK_ROWS = 4096;
+
+    // Ожидаемое время последовательного выполнения, начиная с которого выгодно распараллеливание
+    public static final long DEFAULT_PARALLEL_THRESHOLD_NANOS = 200_000;
+
+    // Начальная оценка стоимости единицы работы (байта данных) до первых измерений
+    private static final double INITIAL_NANOS_PER_UNIT = 0.5;
+
+    // Вес нового измерения в скользящем среднем стоимости
+    private static final double COST_SMOOTHING = 0.2;
+
+    private final ForkJoinPool pool;              // Пул потоков для параллельного поиска
+    private final int chunkRows;                  // Размер блока в строках
+    private final long parallelThresholdNanos;    // Порог перехода к параллельному выполнению
+
+    private volatile double nanosPerUnit = INITIAL_NANOS_PER_UNIT; // Оценка стоимости единицы работы
+
+    // Статистика запросов
+    private final LatencyHistogram latency = new LatencyHistogram();   // Время выполнения запросов
+    private final LongAdder parallelQueries = new LongAdder();         // Запросы, выполненные параллельно
+    private final LongAdder parallelElapsedNanos = new LongAdder();    // Время параллельных запросов
+    private final LongAdder parallelBusyNanos = new LongAdder();       // Работа потоков в параллельных запросах
+    private final LongAdder scannedRows = new LongAdder();             // Просмотрено строк каталога
+
+    /**
+     * Создает исполнитель на общем пуле ForkJoinPool с параметрами по умолчанию.
+     */
+    public ParallelSearchExecutor() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_ROWS, DEFAULT_PARALLEL_THRESHOLD_NANOS);
+    }
+
+    /**
+     * Создает исполнитель с заданными параметрами.
+     * @param pool пул потоков (не может быть null)
+     * @param chunkRows количество строк в блоке (больше 0)
+     * @param parallelThresholdNanos ожидаемое время, начиная с которого поиск выполняется параллельно
+     * @throws IllegalArgumentException если параметры некорректны
+     */
+    public ParallelSearchExecutor(ForkJoinPool pool, int chunkRows, long parallelThresholdNanos) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Пул потоков не может быть null");
+        }
+        if (chunkRows <= 0) {
+            throw new IllegalArgumentException("Размер блока должен быть положительным числом");
+        }
+        this.pool = pool;
+        this.chunkRows = chunkRows;
+        this.parallelThresholdNanos = parallelThresholdNanos;
+    }
+
+    /**
+     * Выполняет перебор всех строк каталога.
+     * @param rowCount количество строк
+     * @param workUnits оценка объема работы (например, размер просматриваемых данных в байтах)
+     * @param scan перебор диапазона строк
+     * @return номера найденных строк в порядке возрастания
+     */
+    public int[] execute(int rowCount, long workUnits, RangeScan scan) {
+        long start = System.nanoTime();
+        int chunks = Math.max(1, (rowCount + chunkRows - 1) / chunkRows);
+        long estimatedNanos = (long) (workUnits * nanosPerUnit);
+        boolean parallel = chunks > 1
+                && pool.getParallelism() > 1
+                && estimatedNanos >= parallelThresholdNanos;
+        SearchExecutionEvent event = SearchExecutionEvent.start(rowCount, estimatedNanos);
+
+        int[] rows;
+        long busyNanos;
+        if (parallel) {
+            int[][] chunkHits = new int[chunks][];
+            AtomicLong busy = new AtomicLong();
+            pool.invoke(new ChunkTask(scan, rowCount, 0, chunks, chunkHits, busy));
+            rows = merge(chunkHits);
+            busyNanos = busy.get();
+        } else {
+            RowBuffer buffer = new RowBuffer();
+            scan.scan(0, rowCount, buffer);
+            rows = buffer.toArray();
+            busyNanos = System.nanoTime() - start;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        updateCost(workUnits, busyNanos);
+        latency.record(elapsed);
+        scannedRows.add(rowCount);
+        if (parallel) {
+            parallelQueries.increment();
+            parallelElapsedNanos.add(elapsed);
+            parallelBusyNanos.add(busyNanos);
+        }
+        event.end(parallel, parallel ? chunks : 1, parallel ? Math.min(chunks, pool.getParallelism()) : 1,
+                busyNanos, rows.length);
+        return rows;
+    }
+
+    @Override
+    public long getQueryCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getParallelQueryCount() {
+        return parallelQueries.sum();
+    }
+
+    @Override
+    public long getScannedRows() {
+        return scannedRows.sum();
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.getValueAtPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.getValueAtPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.getMax() / 1000.0;
+    }
+
+    @Override
+    public double getEffectiveParallelism() {
+        long elapsed = parallelElapsedNanos.sum();
+        return elapsed == 0 ? 1.0 : (double) parallelBusyNanos.sum() / elapsed;
+    }
+
+    @Override
+    public double getNanosPerUnit() {
+        return nanosPerUnit;
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        parallelQueries.reset();
+        parallelElapsedNanos.reset();
+        parallelBusyNanos.reset();
+        scannedRows.reset();
+    }
+
+    /**
+     * Уточняет оценку стоимости единицы работы по фактическому времени запроса.
+     */
+    private void updateCost(long workUnits, long busyNanos) {
+        if (workUnits <= 0) {
+            return;
+        }
+        double observed = (double) busyNanos / workUnits;
+        nanosPerUnit = nanosPerUnit * (1 - COST_SMOOTHING) + observed * COST_SMOOTHING;
+    }
+
+    /**
+     * Объединяет результаты блоков в порядке их следования.
+     */
+    private static int[] merge(int[][] chunkHits) {
+        int total = 0;
+        for (int[] hits : chunkHits) {
+            total += hits.length;
+        }
+        int[] result = new int[total];
+        int pos = 0;
+        for (int[] hits : chunkHits) {
+            System.arraycopy(hits, 0, result, pos, hits.length);
+            pos += hits.length;
+        }
+        return result;
+    }
+
+    /**
+     * Задача обработки диапазона блоков [fromChunk, toChunk).
+     * Делится пополам, пока не останется один блок.
+     */
+    @SuppressWarnings("serial") // Задачи пула не сериализуются
+    private final class ChunkTask extends RecursiveAction {
+        private final RangeScan scan;
+        private final int rowCount;
+        private final int fromChunk;
+        private final int toChunk;
+        private final int[][] chunkHits;
+        private final AtomicLong busy;
+
+        ChunkTask(RangeScan scan, int rowCount, int fromChunk, int toChunk, int[][] chunkHits, AtomicLong busy) {
+            this.scan = scan;
+            this.rowCount = rowCount;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.chunkHits = chunkHits;
+            this.busy = busy;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int mid = (fromChunk + toChunk) >>> 1;
+                invokeAll(new ChunkTask(scan, rowCount, fromChunk, mid, chunkHits, busy),
+                        new ChunkTask(scan, rowCount, mid, toChunk, chunkHits, busy));
+                return;
+            }
+            long start = System.nanoTime();
+            int fromRow = fromChunk * chunkRows;
+            int toRow = Math.min(rowCount, fromRow + chunkRows);
+            RowBuffer buffer = new RowBuffer();
+            scan.scan(fromRow, toRow, buffer);
+            chunkHits[fromChunk] = buffer.toArray();
+            busy.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Растущий буфер номеров строк без упаковки в Integer.
+     */
+    private static final class RowBuffer implements IntConsumer {
+        private int[] rows = new int[16];
+        private int size;
+
+        @Override
+        public void accept(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.library.search;
+
+/**
+ * Статистика исполнителя поиска по каталогу, публикуемая через JMX.
+ * Задержки приводятся в микросекундах.
+ */
+public interface ParallelSearchExecutorMBean {
+
+    // Количество выполненных запросов
+    long getQueryCount();
+
+    // Количество запросов, выполненных параллельно
+    long getParallelQueryCount();
+
+    // Всего просмотрено строк каталога
+    long getScannedRows();
+
+    // Медиана времени выполнения запроса
+    double getP50Micros();
+
+    // 99-й перцентиль времени выполнения запроса
+    double getP99Micros();
+
+    // Наибольшее время выполнения запроса
+    double getMaxMicros();
+
+    // Средняя степень параллелизма параллельных запросов: суммарная работа потоков, деленная на время запроса
+    double getEffectiveParallelism();
+
+    // Текущая оценка стоимости единицы работы (нс на байт данных)
+    double getNanosPerUnit();
+
+    // Сбросить статистику
+    void reset();
+}
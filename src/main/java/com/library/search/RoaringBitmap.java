@@ -0,0 +1,523 @@
+package com.library.search;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Сжатое множество неотрицательных целых чисел (идентификаторов книг) в стиле Roaring.
+ * Числа делятся на блоки по старшим 16 битам; каждый блок хранится либо отсортированным
+ * массивом младших 16 бит (до 4096 элементов), либо битовой картой на 65536 бит.
+ * Так разреженные множества занимают мало памяти, а плотные обрабатываются
+ * побитовыми операциями над словами long.
+ * Класс не потокобезопасен: синхронизацию обеспечивает владелец.
+ */
+public final class RoaringBitmap {
+    // Максимальный размер блока-массива; больше - блок переводится в битовую карту
+    private static final int ARRAY_LIMIT = 4096;
+
+    private char[] keys = new char[4];                 // Старшие 16 бит блоков по возрастанию
+    private Container[] containers = new Container[4]; // Блоки в порядке ключей
+    private int size;                                   // Количество блоков
+
+    /**
+     * Создает множество из перечисленных чисел.
+     * @param values неотрицательные числа
+     * @return новое множество
+     */
+    public static RoaringBitmap of(int... values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Добавляет число в множество.
+     * @param value неотрицательное число
+     * @throws IllegalArgumentException если число отрицательное
+     */
+    public void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Отрицательные значения не поддерживаются: " + value);
+        }
+        char key = (char) (value >>> 16);
+        int index = findKey(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        containers[index] = containers[index].add((char) value);
+    }
+
+    /**
+     * Удаляет число из множества.
+     * @param value число
+     */
+    public void remove(int value) {
+        if (value < 0) {
+            return;
+        }
+        int index = findKey((char) (value >>> 16));
+        if (index < 0) {
+            return;
+        }
+        Container container = containers[index].remove((char) value);
+        if (container.cardinality() == 0) {
+            removeContainer(index);
+        } else {
+            containers[index] = container;
+        }
+    }
+
+    /**
+     * @param value число
+     * @return true, если число входит в множество
+     */
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = findKey((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * @return количество чисел в множестве
+     */
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    /**
+     * @return true, если множество пусто
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Удаляет все числа из множества.
+     */
+    public void clear() {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return независимая копия множества
+     */
+    public RoaringBitmap copy() {
+        RoaringBitmap copy = new RoaringBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(4, size));
+        copy.containers = new Container[copy.keys.length];
+        for (int i = 0; i < size; i++) {
+            copy.containers[i] = containers[i].copy();
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Добавляет в множество все числа другого множества (объединение на месте).
+     * @param other добавляемое множество
+     */
+    public void addAll(RoaringBitmap other) {
+        for (int j = 0; j < other.size; j++) {
+            int index = findKey(other.keys[j]);
+            if (index < 0) {
+                insertContainer(-index - 1, other.keys[j], other.containers[j].copy());
+            } else {
+                containers[index] = containers[index].or(other.containers[j]);
+            }
+        }
+    }
+
+    /**
+     * Пересечение двух множеств.
+     * @return новое множество с числами, входящими в оба множества
+     */
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container container = a.containers[i].and(b.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendContainer(a.keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Объединение двух множеств.
+     * @return новое множество с числами, входящими хотя бы в одно из множеств
+     */
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j >= b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.appendContainer(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (i >= a.size || a.keys[i] > b.keys[j]) {
+                result.appendContainer(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Размер пересечения двух множеств без построения самого пересечения.
+     * @return количество чисел, входящих в оба множества
+     */
+    public static int andCardinality(RoaringBitmap a, RoaringBitmap b) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                total += a.containers[i].andCardinality(b.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Передает потребителю все числа множества по возрастанию.
+     * @param consumer получатель чисел
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * @return все числа множества по возрастанию
+     */
+    public int[] toArray() {
+        int[] result = new int[cardinality()];
+        int[] pos = {0};
+        forEach(value -> result[pos[0]++] = value);
+        return result;
+    }
+
+    private int findKey(char key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else if (keys[mid] > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void appendContainer(char key, Container container) {
+        insertContainer(size, key, container);
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    /**
+     * Блок из 65536 возможных значений младших 16 бит.
+     * Изменяющие операции возвращают блок, который нужно сохранить вместо текущего
+     * (при переполнении массив превращается в битовую карту и наоборот).
+     */
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract void forEach(int high, IntConsumer consumer);
+
+        abstract Container copy();
+
+        abstract BitmapContainer toBitmap();
+    }
+
+    /**
+     * Разреженный блок: отсортированный массив значений.
+     */
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality >= ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            Container result = other.copy();
+            for (int i = 0; i < cardinality; i++) {
+                result = result.add(values[i]);
+            }
+            return result;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(4, cardinality)), cardinality);
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+    }
+
+    /**
+     * Плотный блок: битовая карта из 1024 слов long.
+     */
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            this(new long[1024], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            words[value >>> 6] = after;
+            if (before != after) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            long after = before & ~(1L << value);
+            words[value >>> 6] = after;
+            if (before != after) {
+                cardinality--;
+            }
+            return cardinality <= ARRAY_LIMIT ? toArrayContainer() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[1024];
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                result[i] = words[i] & otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            BitmapContainer bitmap = new BitmapContainer(result, count);
+            return count <= ARRAY_LIMIT ? bitmap.toArrayContainer() : bitmap;
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] otherWords = other.toBitmap().words;
+            long[] result = new long[1024];
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                result[i] = words[i] | otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            return new BitmapContainer(result, count);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                count += Long.bitCount(words[i] & otherWords[i]);
+            }
+            return count;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return this;
+        }
+
+        private ArrayContainer toArrayContainer() {
+            char[] values = new char[Math.max(4, cardinality)];
+            int[] count = {0};
+            forEach(0, value -> values[count[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.library.search;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Приведение текста к поисковому ключу.
+ * Ключ вычисляется один раз при записи книги и хранится рядом с исходным значением,
+ * поэтому при поиске сравниваются уже подготовленные строки.
+ * Этапы нормализации:
+ * <ol>
+ *     <li>NFKC - совместимые символы и лигатуры заменяются каноническими;</li>
+ *     <li>полное свертывание регистра (ß -> ss, ς -> σ и т.п.);</li>
+ *     <li>замена «ё» на «е»;</li>
+ *     <li>схлопывание последовательностей пробельных символов в один пробел и обрезка краев.</li>
+ * </ol>
+ */
+public final class SearchNormalizer {
+
+    private SearchNormalizer() {
+    }
+
+    /**
+     * Возвращает поисковый ключ для строки.
+     * @param value исходная строка (null считается пустой строкой)
+     * @return нормализованный ключ
+     */
+    public static String normalize(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String text = Normalizer.normalize(value, Normalizer.Form.NFKC);
+        // Полное свертывание регистра: через верхний регистр раскрываются многосимвольные отображения
+        text = text.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+        // После смены регистра могут появиться несоставленные последовательности
+        text = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        return unifyAndCollapse(text);
+    }
+
+    /**
+     * Заменяет «ё» на «е» и схлопывает пробельные символы за один проход.
+     */
+    private static String unifyAndCollapse(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                pendingSpace = result.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                result.append(' ');
+                pendingSpace = false;
+            }
+            result.append(c == 'ё' ? 'е' : c);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package com.library.search;
+
+import java.util.Arrays;
+
+/**
+ * Отбор K лучших строк по оценке с помощью ограниченной min-кучи.
+ * В памяти хранится не более K кандидатов: корень кучи - худший из отобранных,
+ * и новая строка попадает в кучу, только если она лучше корня.
+ * Строка и оценка упаковываются в одно значение long, поэтому куча не создает объектов.
+ * При равной оценке выше ставится строка с меньшим номером (порядок каталога).
+ * Класс не потокобезопасен.
+ */
+public final class TopKCollector {
+    private final long[] heap; // Min-куча упакованных значений (оценка, строка)
+    private int size;          // Количество отобранных строк
+
+    /**
+     * Создает коллектор.
+     * @param k максимальное количество отбираемых строк
+     * @throws IllegalArgumentException если k не положительно
+     */
+    public TopKCollector(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Количество результатов должно быть положительным числом");
+        }
+        this.heap = new long[k];
+    }
+
+    /**
+     * Предлагает строку в результат.
+     * @param row номер строки (неотрицательный)
+     * @param score оценка строки (неотрицательная, больше - лучше)
+     */
+    public void offer(int row, int score) {
+        long key = ((long) score << 31) | (Integer.MAX_VALUE - row);
+        if (size < heap.length) {
+            heap[size] = key;
+            siftUp(size++);
+        } else if (key > heap[0]) {
+            heap[0] = key;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * @return количество отобранных строк (не больше K)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return номера отобранных строк от лучшей к худшей
+     */
+    public int[] rowsByRank() {
+        long[] keys = Arrays.copyOf(heap, size);
+        Arrays.sort(keys);
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = rowOf(keys[size - 1 - i]);
+        }
+        return rows;
+    }
+
+    /**
+     * @return номера отобранных строк по возрастанию
+     */
+    public int[] rowsInOrder() {
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = rowOf(heap[i]);
+        }
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    private static int rowOf(long key) {
+        return Integer.MAX_VALUE - (int) (key & Integer.MAX_VALUE);
+    }
+
+    private void siftUp(int index) {
+        long key = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = key;
+    }
+
+    private void siftDown(int index) {
+        long key = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (key <= heap[child]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = key;
+    }
+}
@@ -0,0 +1,113 @@
+package com.library.search;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Поиск подстроки в массиве байт UTF-8.
+ * Кандидаты отбираются по одному байту образца сразу для 8 байт
+ * (SWAR: одно 64-битное слово за итерацию), затем каждый кандидат
+ * проверяется побайтно. Для коротких диапазонов и при отключении
+ * векторного режима используется скалярный алгоритм.
+ */
+public final class Utf8SubstringScanner {
+    // Системное свойство для принудительного скалярного режима (например, для сравнения результатов)
+    public static final String SCALAR_PROPERTY = "library.search.scalar";
+
+    // Чтение 8 байт массива как одного long (порядок байт фиксирован, чтобы позиции считались одинаково)
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    // Диапазоны короче этого значения выгоднее просматривать скалярно
+    private static final int SWAR_MIN_LENGTH = 16;
+
+    private static final boolean SCALAR_ONLY = Boolean.getBoolean(SCALAR_PROPERTY);
+
+    private Utf8SubstringScanner() {
+    }
+
+    /**
+     * Ищет первое вхождение образца в диапазоне [from, to).
+     * @param haystack массив, в котором выполняется поиск
+     * @param from начальная позиция (включительно)
+     * @param to конечная позиция (не включительно)
+     * @param needle образец (не пустой)
+     * @return позиция начала вхождения или -1, если вхождений нет
+     */
+    public static int indexOf(byte[] haystack, int from, int to, byte[] needle) {
+        if (SCALAR_ONLY || to - from < SWAR_MIN_LENGTH) {
+            return indexOfScalar(haystack, from, to, needle);
+        }
+        return indexOfSwar(haystack, from, to, needle);
+    }
+
+    /**
+     * Скалярный поиск: побайтное сравнение первого байта и проверка остатка.
+     * Используется как запасной вариант и как эталон для проверки результатов.
+     */
+    public static int indexOfScalar(byte[] haystack, int from, int to, byte[] needle) {
+        byte first = needle[0];
+        int last = to - needle.length;
+        for (int i = from; i <= last; i++) {
+            if (haystack[i] == first && matchesAt(haystack, i, needle, 1)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Поиск с отбором кандидатов по 8 байт за раз.
+     * Кандидаты отбираются по последнему байту образца: в кириллице первые байты символов
+     * (0xD0/0xD1) почти одинаковы, а последний байт различает символы.
+     * Для каждого слова вычисляется маска байтов, равных опорному байту;
+     * ложноположительные срабатывания маски отсекаются последующей проверкой.
+     */
+    static int indexOfSwar(byte[] haystack, int from, int to, byte[] needle) {
+        int anchor = needle.length - 1;
+        long pattern = (needle[anchor] & 0xFFL) * LOW_BITS;
+        int last = to - needle.length;
+        // Позиция опорного байта пробегает диапазон [from + anchor, last + anchor]
+        int i = from + anchor;
+        int lastAnchor = last + anchor;
+
+        // Основной цикл: целые слова, целиком лежащие внутри массива
+        while (i <= lastAnchor && i + Long.BYTES <= haystack.length) {
+            long word = (long) LONG_VIEW.get(haystack, i) ^ pattern;
+            long mask = (word - LOW_BITS) & ~word & HIGH_BITS;
+            while (mask != 0) {
+                int candidate = i + (Long.numberOfTrailingZeros(mask) >>> 3) - anchor;
+                if (candidate > last) {
+                    return -1;
+                }
+                // Маска может содержать ложные срабатывания, поэтому проверяется весь образец
+                if (matchesAt(haystack, candidate, needle, 0)) {
+                    return candidate;
+                }
+                mask &= mask - 1;
+            }
+            i += Long.BYTES;
+        }
+
+        // Хвост, в который не помещается целое слово
+        int tail = i - anchor;
+        return tail <= last ? indexOfScalar(haystack, tail, to, needle) : -1;
+    }
+
+    /**
+     * Проверяет совпадение образца с массивом начиная с указанной позиции.
+     * @param start индекс байта образца, с которого начинается сравнение
+     */
+    private static boolean matchesAt(byte[] haystack, int pos, byte[] needle, int start) {
+        for (int j = start; j < needle.length; j++) {
+            if (haystack[pos + j] != needle[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
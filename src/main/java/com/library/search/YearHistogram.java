@@ -0,0 +1,173 @@
+package com.library.search;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Распределение книг по годам и десятилетиям публикации.
+ * Хранятся только годы, в которых есть книги: отсортированный массив годов, счетчики
+ * и накопленные суммы. Количество книг за год, десятилетие или произвольный диапазон лет
+ * вычисляется двоичным поиском, а объем памяти зависит от числа различных годов,
+ * а не от разброса их значений (ошибочный год 20190 не приводит к массиву на 18 тысяч ячеек).
+ * Объект неизменяем.
+ */
+public final class YearHistogram {
+    private static final YearHistogram EMPTY = new YearHistogram(new int[0], new int[0]);
+
+    private final int[] years;        // Различные годы публикации по возрастанию
+    private final int[] counts;       // Количество книг за год years[i]
+    private final long[] cumulative;  // cumulative[i] - количество книг за годы до years[i]
+
+    private YearHistogram(int[] years, int[] counts) {
+        this.years = years;
+        this.counts = counts;
+        this.cumulative = new long[counts.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            cumulative[i + 1] = cumulative[i] + counts[i];
+        }
+    }
+
+    /**
+     * Строит гистограмму по количеству книг за каждый год.
+     * @param countsByYear год публикации -> количество книг
+     * @return гистограмма
+     */
+    public static YearHistogram of(Map<Integer, Integer> countsByYear) {
+        if (countsByYear.isEmpty()) {
+            return EMPTY;
+        }
+        SortedMap<Integer, Integer> sorted = new TreeMap<>(countsByYear);
+        int[] years = new int[sorted.size()];
+        int[] counts = new int[sorted.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : sorted.entrySet()) {
+            years[i] = entry.getKey();
+            counts[i] = entry.getValue();
+            i++;
+        }
+        return new YearHistogram(years, counts);
+    }
+
+    /**
+     * Строит гистограмму по годам публикации книг.
+     * @param sortedYears годы публикации всех книг по возрастанию
+     * @return гистограмма
+     */
+    static YearHistogram ofSorted(int[] sortedYears) {
+        if (sortedYears.length == 0) {
+            return EMPTY;
+        }
+        int distinct = 1;
+        for (int i = 1; i < sortedYears.length; i++) {
+            if (sortedYears[i] != sortedYears[i - 1]) {
+                distinct++;
+            }
+        }
+        int[] years = new int[distinct];
+        int[] counts = new int[distinct];
+        int bucket = 0;
+        years[0] = sortedYears[0];
+        for (int year : sortedYears) {
+            if (year != years[bucket]) {
+                years[++bucket] = year;
+            }
+            counts[bucket]++;
+        }
+        return new YearHistogram(years, counts);
+    }
+
+    /**
+     * @param year год публикации
+     * @return количество книг, изданных в этом году
+     */
+    public int count(int year) {
+        int index = Arrays.binarySearch(years, year);
+        return index >= 0 ? counts[index] : 0;
+    }
+
+    /**
+     * @param fromYear первый год диапазона (включительно)
+     * @param toYear последний год диапазона (включительно)
+     * @return количество книг, изданных в диапазоне лет
+     */
+    public long countBetween(int fromYear, int toYear) {
+        if (fromYear > toYear) {
+            return 0;
+        }
+        return cumulative[upperBound(toYear)] - cumulative[lowerBound(fromYear)];
+    }
+
+    /**
+     * @param decade первый год десятилетия (например, 1960)
+     * @return количество книг, изданных в этом десятилетии
+     */
+    public long countInDecade(int decade) {
+        int start = FacetEngine.decadeOf(decade);
+        return countBetween(start, start + 9);
+    }
+
+    /**
+     * @return общее количество книг
+     */
+    public long total() {
+        return cumulative[counts.length];
+    }
+
+    /**
+     * @return год публикации -> количество книг (только годы, в которых есть книги)
+     */
+    public SortedMap<Integer, Integer> byYear() {
+        SortedMap<Integer, Integer> result = new TreeMap<>();
+        for (int i = 0; i < years.length; i++) {
+            result.put(years[i], counts[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return первый год десятилетия -> количество книг (только десятилетия, в которых есть книги)
+     */
+    public SortedMap<Integer, Long> byDecade() {
+        SortedMap<Integer, Long> result = new TreeMap<>();
+        for (int i = 0; i < years.length; i++) {
+            result.merge(FacetEngine.decadeOf(years[i]), (long) counts[i], Long::sum);
+        }
+        return result;
+    }
+
+    /**
+     * @return первая позиция с годом не меньше year
+     */
+    private int lowerBound(int year) {
+        int low = 0;
+        int high = years.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (years[mid] < year) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return первая позиция с годом больше year
+     */
+    private int upperBound(int year) {
+        int low = 0;
+        int high = years.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (years[mid] <= year) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
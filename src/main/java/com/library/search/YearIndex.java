@@ -0,0 +1,87 @@
+package com.library.search;
+
+import com.library.database.entities.Book;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Индекс каталога по году публикации в памяти.
+ * Номера строк каталога упорядочены по году (при равенстве - по номеру строки), годы хранятся
+ * в отдельном массиве int, поэтому выборка за диапазон лет - два двоичных поиска и непрерывный
+ * участок массива. Индекс хранит номера строк, а не книги: сами книги берутся из каталога
+ * (например, {@link BookScanIndex}), поэтому замена книги без изменения года и состава
+ * каталога не требует перестроения. Индекс строится по снимку каталога и не изменяется.
+ */
+public final class YearIndex {
+    private final int[] years;            // Годы публикации по возрастанию
+    private final int[] rows;             // Номера строк каталога в том же порядке
+    private final YearHistogram histogram;
+
+    private YearIndex(int[] years, int[] rows) {
+        this.years = years;
+        this.rows = rows;
+        this.histogram = YearHistogram.ofSorted(years);
+    }
+
+    /**
+     * Строит индекс по книгам каталога.
+     * @param catalog книги каталога (номер строки - позиция в списке)
+     * @return построенный индекс
+     */
+    public static YearIndex build(List<Book> catalog) {
+        // Год и позиция в каталоге упаковываются в long: сортировка примитивов без компаратора
+        long[] keys = new long[catalog.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (long) catalog.get(i).getPublicationYear() << 32 | i;
+        }
+        Arrays.sort(keys);
+
+        int[] years = new int[keys.length];
+        int[] rows = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            years[i] = (int) (keys[i] >>> 32);
+            rows[i] = (int) keys[i];
+        }
+        return new YearIndex(years, rows);
+    }
+
+    /**
+     * Возвращает строки каталога с книгами, изданными в диапазоне лет, по возрастанию года.
+     * @param fromYear первый год (включительно)
+     * @param toYear последний год (включительно)
+     * @return номера строк каталога
+     */
+    public int[] between(int fromYear, int toYear) {
+        if (fromYear > toYear) {
+            return new int[0];
+        }
+        int from = lowerBound(fromYear);
+        int to = toYear == Integer.MAX_VALUE ? years.length : lowerBound(toYear + 1);
+        return Arrays.copyOfRange(rows, from, to);
+    }
+
+    /**
+     * @return гистограмма по годам и десятилетиям для книг индекса
+     */
+    public YearHistogram histogram() {
+        return histogram;
+    }
+
+    /**
+     * @return первая позиция с годом не меньше year
+     */
+    private int lowerBound(int year) {
+        int low = 0;
+        int high = years.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (years[mid] < year) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,78 @@
+package com.library.services;
+
+import com.library.database.entities.Book;
+import com.library.query.BookQuery;
+import com.library.search.Completion;
+import com.library.search.FacetCounts;
+import com.library.search.YearHistogram;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Асинхронный вариант {@link BookService}.
+ * Каждая операция возвращает {@link CompletableFuture}, который завершается результатом
+ * синхронной операции или ее исключением (обернутым в CompletionException).
+ */
+public interface AsyncBookService {
+    // Получить все книги
+    CompletableFuture<List<Book>> getAllBooks();
+
+    // Найти книгу по ID
+    CompletableFuture<Book> getBookById(int id);
+
+    // Добавить новую книгу
+    CompletableFuture<Void> addBook(Book book);
+
+    // Обновить данные книги
+    CompletableFuture<Void> updateBook(Book book);
+
+    // Удалить книгу по ID
+    CompletableFuture<Void> deleteBook(int id);
+
+    // Взять книгу в аренду
+    CompletableFuture<Void> borrowBook(int bookId, int userId);
+
+    // Вернуть книгу в библиотеку
+    CompletableFuture<Void> returnBook(int bookId);
+
+    // Поиск книг по названию
+    CompletableFuture<List<Book>> searchByTitle(String title);
+
+    // Поиск книг по автору
+    CompletableFuture<List<Book>> searchByAuthor(String author);
+
+    // Лучшие совпадения по названию: не более limit книг, самые релевантные первыми
+    CompletableFuture<List<Book>> searchByTitle(String title, int limit);
+
+    // Лучшие совпадения по автору: не более limit книг, самые релевантные первыми
+    CompletableFuture<List<Book>> searchByAuthor(String author, int limit);
+
+    // Поиск книг по ISBN
+    CompletableFuture<List<Book>> searchByIsbn(String isbn);
+
+    // Поиск по составному запросу (несколько условий, сортировка, лимит)
+    CompletableFuture<List<Book>> findBooks(BookQuery query);
+
+    // Передать книги по составному запросу потребителю по мере чтения (без накопления в памяти)
+    CompletableFuture<Void> forEachBook(BookQuery query, Consumer<Book> consumer);
+
+    // Книги, изданные в диапазоне лет (по возрастанию года)
+    CompletableFuture<List<Book>> findBooksByYearRange(int fromYear, int toYear);
+
+    // Распределение книг по годам и десятилетиям публикации
+    CompletableFuture<YearHistogram> getYearHistogram();
+
+    // Поиск с опечатками по словам названия и автора (лучшие совпадения первыми)
+    CompletableFuture<List<Book>> fuzzySearch(String query, int maxEdits);
+
+    // Подсказки по началу названия или имени автора (самые популярные первыми)
+    CompletableFuture<List<Completion>> autocomplete(String prefix, int limit);
+
+    // Количество книг по авторам, десятилетиям и доступности во всем каталоге
+    CompletableFuture<FacetCounts> getFacetCounts();
+
+    // Количество книг по авторам, десятилетиям и доступности среди указанных книг
+    CompletableFuture<FacetCounts> getFacetCounts(Collection<Book> books);
+}
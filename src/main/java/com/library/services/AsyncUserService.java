@@ -0,0 +1,31 @@
+package com.library.services;
+
+import com.library.database.entities.User;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Асинхронный вариант {@link UserService}.
+ * Каждая операция возвращает {@link CompletableFuture}, который завершается результатом
+ * синхронной операции или ее исключением (обернутым в CompletionException).
+ */
+public interface AsyncUserService {
+    // Получить список всех пользователей
+    CompletableFuture<List<User>> getAllUsers();
+
+    // Передать всех пользователей потребителю по мере чтения (без накопления в памяти)
+    CompletableFuture<Void> forEachUser(Consumer<User> consumer);
+
+    // Найти пользователя по ID
+    CompletableFuture<User> getUserById(int id);
+
+    // Добавить нового пользователя
+    CompletableFuture<Void> addUser(User user);
+
+    // Обновить данные пользователя
+    CompletableFuture<Void> updateUser(User user);
+
+    // Удалить пользователя по ID
+    CompletableFuture<Void> deleteUser(int id);
+}
@@ -1,7 +1,13 @@
 package com.library.services;
 
 import com.library.database.entities.Book;
+import com.library.query.BookQuery;
+import com.library.search.Completion;
+import com.library.search.FacetCounts;
+import com.library.search.YearHistogram;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Сервис для управления книгами в библиотеке.
@@ -36,6 +42,36 @@ public interface BookService {
     // Поиск книг по автору
     List<Book> searchByAuthor(String author);
 
+    // Лучшие совпадения по названию: не более limit книг, самые релевантные первыми
+    List<Book> searchByTitle(String title, int limit);
+
+    // Лучшие совпадения по автору: не более limit книг, самые релевантные первыми
+    List<Book> searchByAuthor(String author, int limit);
+
     // Поиск книг по ISBN
     List<Book> searchByIsbn(String isbn);
+
+    // Поиск по составному запросу (несколько условий, сортировка, лимит)
+    List<Book> findBooks(BookQuery query);
+
+    // Передать книги по составному запросу потребителю по мере чтения (без накопления в памяти)
+    void forEachBook(BookQuery query, Consumer<Book> consumer);
+
+    // Книги, изданные в диапазоне лет (по возрастанию года)
+    List<Book> findBooksByYearRange(int fromYear, int toYear);
+
+    // Распределение книг по годам и десятилетиям публикации
+    YearHistogram getYearHistogram();
+
+    // Поиск с опечатками по словам названия и автора (лучшие совпадения первыми)
+    List<Book> fuzzySearch(String query, int maxEdits);
+
+    // Подсказки по началу названия или имени автора (самые популярные первыми)
+    List<Completion> autocomplete(String prefix, int limit);
+
+    // Количество книг по авторам, десятилетиям и доступности во всем каталоге
+    FacetCounts getFacetCounts();
+
+    // Количество книг по авторам, десятилетиям и доступности среди указанных книг
+    FacetCounts getFacetCounts(Collection<Book> books);
 }
@@ -0,0 +1,29 @@
+package com.library.services;
+
+import com.library.database.entities.Book;
+
+/**
+ * Получатель уведомлений об изменениях каталога книг.
+ * Позволяет поддерживать производные структуры (счетчики, индексы) в актуальном
+ * состоянии без повторного чтения всего каталога. Уведомления строятся по журналу
+ * изменений базы данных, то есть приходят только о зафиксированных изменениях.
+ */
+public interface CatalogListener {
+    /**
+     * Книга добавлена в каталог.
+     * @param book сохраненная книга (с присвоенным ID)
+     */
+    void bookAdded(Book book);
+
+    /**
+     * Данные книги изменены (включая выдачу и возврат).
+     * @param book книга с новыми данными
+     */
+    void bookUpdated(Book book);
+
+    /**
+     * Книга удалена из каталога.
+     * @param bookId идентификатор удаленной книги
+     */
+    void bookDeleted(int bookId);
+}
@@ -2,6 +2,7 @@ package com.library.services;
 
 import com.library.database.entities.User;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Сервис для работы с пользователями библиотеки.
@@ -11,6 +12,9 @@ public interface UserService {
     // Получить список всех пользователей
     List<User> getAllUsers();
 
+    // Передать всех пользователей потребителю по мере чтения (без накопления в памяти)
+    void forEachUser(Consumer<User> consumer);
+
     // Найти пользователя по ID
     User getUserById(int id);
 
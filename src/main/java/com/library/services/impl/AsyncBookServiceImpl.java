@@ -0,0 +1,137 @@
+package com.library.services.impl;
+
+import com.library.database.entities.Book;
+import com.library.query.BookQuery;
+import com.library.search.Completion;
+import com.library.search.FacetCounts;
+import com.library.search.YearHistogram;
+import com.library.services.AsyncBookService;
+import com.library.services.BookService;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Реализация асинхронного сервиса книг поверх синхронного {@link BookService}.
+ * Операции выполняются в виртуальных потоках {@link AsyncTaskExecutor}
+ * с ограничением числа одновременных обращений к базе данных.
+ */
+public class AsyncBookServiceImpl implements AsyncBookService {
+    private final BookService bookService; // Синхронный сервис, выполняющий операции
+    private final AsyncTaskExecutor executor; // Виртуальные потоки и ограничение доступа к БД
+
+    /**
+     * Конструктор сервиса.
+     * @param bookService синхронный сервис (не может быть null)
+     * @param executor исполнитель асинхронных операций (не может быть null)
+     * @throws IllegalArgumentException если аргументы равны null
+     */
+    public AsyncBookServiceImpl(BookService bookService, AsyncTaskExecutor executor) {
+        if (bookService == null || executor == null) {
+            throw new IllegalArgumentException("Сервис и исполнитель не могут быть null");
+        }
+        this.bookService = bookService;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> getAllBooks() {
+        return executor.supply(() -> bookService.getAllBooks());
+    }
+
+    @Override
+    public CompletableFuture<Book> getBookById(int id) {
+        return executor.supply(() -> bookService.getBookById(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> addBook(Book book) {
+        return executor.run(() -> bookService.addBook(book));
+    }
+
+    @Override
+    public CompletableFuture<Void> updateBook(Book book) {
+        return executor.run(() -> bookService.updateBook(book));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteBook(int id) {
+        return executor.run(() -> bookService.deleteBook(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> borrowBook(int bookId, int userId) {
+        return executor.run(() -> bookService.borrowBook(bookId, userId));
+    }
+
+    @Override
+    public CompletableFuture<Void> returnBook(int bookId) {
+        return executor.run(() -> bookService.returnBook(bookId));
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> searchByTitle(String title) {
+        return executor.supply(() -> bookService.searchByTitle(title));
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> searchByAuthor(String author) {
+        return executor.supply(() -> bookService.searchByAuthor(author));
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> searchByTitle(String title, int limit) {
+        return executor.supply(() -> bookService.searchByTitle(title, limit));
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> searchByAuthor(String author, int limit) {
+        return executor.supply(() -> bookService.searchByAuthor(author, limit));
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> searchByIsbn(String isbn) {
+        return executor.supply(() -> bookService.searchByIsbn(isbn));
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> findBooks(BookQuery query) {
+        return executor.supply(() -> bookService.findBooks(query));
+    }
+
+    @Override
+    public CompletableFuture<Void> forEachBook(BookQuery query, Consumer<Book> consumer) {
+        return executor.run(() -> bookService.forEachBook(query, consumer));
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> findBooksByYearRange(int fromYear, int toYear) {
+        return executor.supply(() -> bookService.findBooksByYearRange(fromYear, toYear));
+    }
+
+    @Override
+    public CompletableFuture<YearHistogram> getYearHistogram() {
+        return executor.supply(() -> bookService.getYearHistogram());
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> fuzzySearch(String query, int maxEdits) {
+        return executor.supply(() -> bookService.fuzzySearch(query, maxEdits));
+    }
+
+    @Override
+    public CompletableFuture<List<Completion>> autocomplete(String prefix, int limit) {
+        return executor.supply(() -> bookService.autocomplete(prefix, limit));
+    }
+
+    @Override
+    public CompletableFuture<FacetCounts> getFacetCounts() {
+        return executor.supply(() -> bookService.getFacetCounts());
+    }
+
+    @Override
+    public CompletableFuture<FacetCounts> getFacetCounts(Collection<Book> books) {
+        return executor.supply(() -> bookService.getFacetCounts(books));
+    }
+}
@@ -0,0 +1,128 @@
+package com.library.services.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Исполнитель асинхронных операций сервисов.
+ * Каждая операция выполняется в отдельном виртуальном потоке, поэтому тысячи
+ * одновременных запросов не требуют тысячи потоков ОС. Число операций, одновременно
+ * обращающихся к базе данных, ограничено семафором: остальные ждут разрешения,
+ * не занимая поток-носитель.
+ */
+public class AsyncTaskExecutor implements AutoCloseable {
+    // Ограничение по умолчанию: одно соединение SQLite выполняет запросы последовательно,
+    // больше нескольких одновременных обращений только увеличивает очередь внутри драйвера
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    private final ExecutorService executor;        // Виртуальный поток на каждую операцию
+    private final Semaphore permits;               // Разрешения на обращение к базе данных
+    private final int maxConcurrency;
+    private final AtomicInteger inFlight = new AtomicInteger(); // Принятые и не завершенные операции
+
+    /**
+     * Создает исполнитель с ограничением по умолчанию.
+     */
+    public AsyncTaskExecutor() {
+        this(DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * Создает исполнитель.
+     * @param maxConcurrency максимальное число операций, одновременно работающих с базой данных
+     * @throws IllegalArgumentException если maxConcurrency не положительно
+     */
+    public AsyncTaskExecutor(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Ограничение параллельности должно быть положительным числом");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("library-async-", 0).factory());
+    }
+
+    /**
+     * Запускает операцию асинхронно.
+     * Исключение операции завершает результат исключительно (обернутым в {@link CompletionException});
+     * после {@link #close()} результат сразу завершается {@link RejectedExecutionException}.
+     * @param operation операция сервиса
+     * @return результат операции
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> operation) {
+        inFlight.incrementAndGet();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException("Операция прервана в ожидании доступа к базе данных", e);
+                }
+                try {
+                    return operation.get();
+                } finally {
+                    permits.release();
+                }
+            }, executor).whenComplete((result, error) -> inFlight.decrementAndGet());
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet(); // Исполнитель закрыт
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Запускает операцию без результата асинхронно.
+     * @param operation операция сервиса
+     * @return завершение операции
+     */
+    public CompletableFuture<Void> run(Runnable operation) {
+        return supply(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return количество принятых и еще не завершенных операций
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return количество операций, ожидающих доступа к базе данных
+     */
+    public int getQueued() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * @return максимальное число операций, одновременно работающих с базой данных
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Прекращает прием операций и ожидает завершения уже принятых (не дольше 30 секунд).
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.library.services.impl;
+
+import com.library.database.entities.User;
+import com.library.services.AsyncUserService;
+import com.library.services.UserService;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Реализация асинхронного сервиса пользователей поверх синхронного {@link UserService}.
+ * Операции выполняются в виртуальных потоках {@link AsyncTaskExecutor}
+ * с ограничением числа одновременных обращений к базе данных.
+ */
+public class AsyncUserServiceImpl implements AsyncUserService {
+    private final UserService userService; // Синхронный сервис, выполняющий операции
+    private final AsyncTaskExecutor executor; // Виртуальные потоки и ограничение доступа к БД
+
+    /**
+     * Конструктор сервиса.
+     * @param userService синхронный сервис (не может быть null)
+     * @param executor исполнитель асинхронных операций (не может быть null)
+     * @throws IllegalArgumentException если аргументы равны null
+     */
+    public AsyncUserServiceImpl(UserService userService, AsyncTaskExecutor executor) {
+        if (userService == null || executor == null) {
+            throw new IllegalArgumentException("Сервис и исполнитель не могут быть null");
+        }
+        this.userService = userService;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<List<User>> getAllUsers() {
+        return executor.supply(() -> userService.getAllUsers());
+    }
+
+    @Override
+    public CompletableFuture<Void> forEachUser(Consumer<User> consumer) {
+        return executor.run(() -> userService.forEachUser(consumer));
+    }
+
+    @Override
+    public CompletableFuture<User> getUserById(int id) {
+        return executor.supply(() -> userService.getUserById(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> addUser(User user) {
+        return executor.run(() -> userService.addUser(user));
+    }
+
+    @Override
+    public CompletableFuture<Void> updateUser(User user) {
+        return executor.run(() -> userService.updateUser(user));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteUser(int id) {
+        return executor.run(() -> userService.deleteUser(id));
+    }
+}
@@ -3,25 +3,123 @@ package com.library.services.impl;
 import com.library.database.entities.Book;
 import com.library.exceptions.BookNotFoundException;
 import com.library.exceptions.DatabaseException;
+import com.library.metrics.CacheAccessEvent;
+import com.library.query.BookQuery;
+import com.library.repositories.BookChanges;
 import com.library.repositories.BookRepository;
+import com.library.search.AutocompleteEngine;
+import com.library.search.BitmapIndex;
+import com.library.search.BookScanIndex;
+import com.library.search.Completion;
+import com.library.search.FacetCounts;
+import com.library.search.FacetEngine;
+import com.library.search.FuzzySearchEngine;
+import com.library.search.ParallelSearchExecutor;
+import com.library.search.RoaringBitmap;
+import com.library.search.TopKCollector;
+import com.library.search.YearHistogram;
+import com.library.search.YearIndex;
 import com.library.services.BookService;
+import com.library.services.CatalogListener;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 /**
  * Реализация сервиса для работы с книгами.
  * Обеспечивает бизнес-логику работы с книгами библиотеки.
+ * <p>
+ * Поиск по подстроке, ранжирование и выборка по годам выполняются по каталогу в памяти
+ * ({@link BookScanIndex}). Каталог синхронизируется с журналом изменений каталога, который
+ * ведет сама база данных: перед каждым чтением сравнивается номер последнего изменения
+ * и дочитываются только изменившиеся книги. Поэтому учитываются изменения из любого источника
+ * (импорт, генератор, пакетная обработка, другие процессы), а выдача и возврат книги
+ * заменяют ее на месте, без перестроения индексов поиска.
  */
 public class BookServiceImpl implements BookService {
+    // Максимальное количество результатов нечеткого поиска
+    private static final int FUZZY_RESULT_LIMIT = 50;
+    // Бюджет времени на один нечеткий поиск (50 мс)
+    private static final long FUZZY_BUDGET_NANOS = 50_000_000L;
+    // Наибольшее число кандидатов из битового индекса, передаваемое в SQL списком идентификаторов
+    private static final int ID_FILTER_LIMIT = 10_000;
+    // Изменений журнала, после которого каталог в памяти перечитывается целиком, а не по книгам
+    private static final int CHANGE_BATCH_LIMIT = 10_000;
+    // Последних записей журнала изменений, которые не удаляются (как и при обслуживании базы)
+    private static final long CHANGE_FEED_RETAIN = 100_000;
+    // Записей журнала изменений, удаляемых одним запросом
+    private static final int CHANGE_FEED_PRUNE_STEP = 10_000;
+
     private final BookRepository bookRepository;  // Репозиторий для работы с книгами
+    private final BookRepository catalog;         // Источник зафиксированного состояния каталога для памяти
+    private final ParallelSearchExecutor searchExecutor; // Исполнитель перебора каталога
+    private final AutocompleteEngine autocomplete;        // Подсказки по началу названия и автора
+    private final FuzzySearchEngine fuzzy;                // Поиск с опечатками
+    private final FacetEngine facets = new FacetEngine(); // Счетчики фасетов каталога
+    private final BitmapIndex bitmaps = new BitmapIndex(); // Битовый индекс по доступности и году
+    private final List<CatalogListener> listeners; // Структуры, обновляемые по журналу изменений
+    // Обновление каталога в памяти выполняет один поток за раз
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile long appliedChangeId;        // Последнее изменение журнала, учтенное в каталоге в памяти
+    private long prunedBefore;                    // Журнал очищен до этого номера (под refreshLock)
+    private volatile long yearsChangedAt;         // Последнее изменение, сменившее годы или состав каталога
+    private volatile BookScanIndex searchIndex;   // Каталог в памяти для поиска (null - еще не загружен)
+    private volatile CatalogYears yearIndex;      // Индекс по году публикации (null - требуется перестроение)
+    private volatile CachedHistogram yearHistogram; // Распределение по годам, пока каталог не загружен
+
+    /**
+     * Индекс по году, построенный по каталогу в памяти после изменения журнала changeId.
+     */
+    private record CatalogYears(BookScanIndex catalog, long changeId, YearIndex index) {
+    }
+
+    /**
+     * Распределение по годам и номер изменения журнала, на момент которого оно посчитано.
+     */
+    private record CachedHistogram(long changeId, YearHistogram histogram) {
+    }
 
     /**
      * Конструктор сервиса.
      * @param bookRepository репозиторий книг (не может быть null)
      */
     public BookServiceImpl(BookRepository bookRepository) {
+        this(bookRepository, new ParallelSearchExecutor());
+    }
+
+    /**
+     * Конструктор сервиса с собственным исполнителем поиска.
+     * @param bookRepository репозиторий книг (не может быть null)
+     * @param searchExecutor исполнитель перебора каталога (не может быть null)
+     */
+    public BookServiceImpl(BookRepository bookRepository, ParallelSearchExecutor searchExecutor) {
+        this(bookRepository, bookRepository, searchExecutor);
+    }
+
+    /**
+     * Конструктор сервиса с отдельным источником каталога в памяти.
+     * Источник должен видеть только зафиксированные изменения (отдельное соединение с базой):
+     * через общее соединение видны изменения транзакции, открытой другим потоком, и после
+     * ее отката в каталоге в памяти остались бы откаченные изменения.
+     * @param bookRepository репозиторий книг (не может быть null)
+     * @param catalog репозиторий для загрузки и обновления каталога в памяти (не может быть null)
+     * @param searchExecutor исполнитель перебора каталога (не может быть null)
+     */
+    public BookServiceImpl(BookRepository bookRepository, BookRepository catalog,
+                           ParallelSearchExecutor searchExecutor) {
         this.bookRepository = bookRepository;
+        this.catalog = catalog;
+        this.searchExecutor = searchExecutor;
+        this.autocomplete = new AutocompleteEngine();
+        this.fuzzy = new FuzzySearchEngine(this::catalogSnapshot);
+        this.listeners = List.of(facets, bitmaps, autocomplete);
     }
 
     /**
@@ -92,60 +190,232 @@ public class BookServiceImpl implements BookService {
     }
 
     /**
-     * Поиск книг по названию (регистронезависимый).
+     * Поиск книг по названию (без учета регистра, «ё»/«е» и лишних пробелов).
      * @param title часть названия для поиска
      * @return список найденных книг
      */
     @Override
     public List<Book> searchByTitle(String title) {
-        return bookRepository.findAll().stream()
-                .filter(b -> b.getTitle().toLowerCase().contains(title.toLowerCase()))
-                .collect(Collectors.toList());
+        return scan(BookScanIndex.Field.TITLE, title);
     }
 
     /**
-     * Поиск книг по автору (регистронезависимый).
+     * Поиск книг по автору (без учета регистра, «ё»/«е» и лишних пробелов).
      * @param author часть имени автора для поиска
      * @return список найденных книг
      */
     @Override
     public List<Book> searchByAuthor(String author) {
-        return bookRepository.findAll().stream()
-                .filter(b -> b.getAuthor().toLowerCase().contains(author.toLowerCase()))
-                .collect(Collectors.toList());
+        return scan(BookScanIndex.Field.AUTHOR, author);
+    }
+
+    /**
+     * Ранжированный поиск по названию: полное совпадение выше совпадения начала,
+     * начало слова выше подстроки, при равенстве выше чаще выдаваемые книги.
+     * @param title часть названия для поиска
+     * @param limit максимальное количество результатов
+     * @return не более limit книг, лучшие первыми
+     */
+    @Override
+    public List<Book> searchByTitle(String title, int limit) {
+        return rankedScan(BookScanIndex.Field.TITLE, title, limit);
+    }
+
+    /**
+     * Ранжированный поиск по автору (порядок как в {@link #searchByTitle(String, int)}).
+     * @param author часть имени автора для поиска
+     * @param limit максимальное количество результатов
+     * @return не более limit книг, лучшие первыми
+     */
+    @Override
+    public List<Book> searchByAuthor(String author, int limit) {
+        return rankedScan(BookScanIndex.Field.AUTHOR, author, limit);
     }
 
     /**
      * Поиск книг по ISBN (регистронезависимый).
+     * Выполняется поиском по уникальному индексу ISBN; регистр в ISBN имеет значение
+     * только для контрольного символа «X», поэтому проверяются варианты в обоих регистрах.
      * @param isbn ISBN для поиска
      * @return список найденных книг
      */
     @Override
     public List<Book> searchByIsbn(String isbn) {
-        return bookRepository.findAll().stream()
-                .filter(b -> b.getIsbn().equalsIgnoreCase(isbn))
-                .collect(Collectors.toList());
+        if (isbn == null || isbn.isBlank()) {
+            return List.of();
+        }
+        Set<String> variants = new LinkedHashSet<>(List.of(isbn.trim(), isbn.trim().toUpperCase(), isbn.trim().toLowerCase()));
+        List<Book> result = new ArrayList<>();
+        for (String variant : variants) {
+            result.addAll(bookRepository.findByQuery(BookQuery.builder().isbn(variant).build()));
+        }
+        return result;
+    }
+
+    /**
+     * Поиск по составному запросу. Выполняется одним запросом к репозиторию.
+     * Условия на доступность и год сначала вычисляются по битовому индексу: если подходящих
+     * книг нет, база данных не читается, а небольшое множество кандидатов передается
+     * в запрос списком идентификаторов. Перед этим индекс приводится к журналу изменений
+     * базы данных, поэтому учитываются и изменения в обход сервиса (импорт, генератор,
+     * другие процессы). Если изменения в этот момент применяет другой поток, индекс
+     * не используется и условия проверяет только запрос к базе данных.
+     * @param query составной запрос
+     * @return найденные книги
+     */
+    @Override
+    public List<Book> findBooks(BookQuery query) {
+        if (query.getAvailable() == null && query.getYearFrom() == null && query.getYearTo() == null) {
+            return bookRepository.findByQuery(query);
+        }
+        if (!syncBitmaps()) {
+            return bookRepository.findByQuery(query);
+        }
+        RoaringBitmap candidates = bitmaps.select(query.getAvailable(), query.getYearFrom(), query.getYearTo());
+        if (candidates.isEmpty() || (query.getId() != null && !candidates.contains(query.getId()))) {
+            return List.of();
+        }
+        if (query.getIds() == null && candidates.cardinality() <= ID_FILTER_LIMIT) {
+            query = query.toBuilder().idIn(candidates.toArray()).build();
+        }
+        return bookRepository.findByQuery(query);
+    }
+
+    /**
+     * Книги, изданные в диапазоне лет.
+     * Если каталог уже загружен в память для поиска, выборка выполняется по индексу года в памяти,
+     * иначе - одним запросом к репозиторию по индексу базы данных.
+     * @param fromYear первый год (включительно)
+     * @param toYear последний год (включительно)
+     * @return книги по возрастанию года
+     */
+    @Override
+    public List<Book> findBooksByYearRange(int fromYear, int toYear) {
+        if (searchIndex == null) {
+            CacheAccessEvent.start("yearIndex").miss(0);
+            return bookRepository.findByPublicationYearBetween(fromYear, toYear);
+        }
+        BookScanIndex index = currentCatalog();
+        return index.booksAt(yearIndex(index).between(fromYear, toYear));
+    }
+
+    /**
+     * Распределение книг по годам и десятилетиям публикации.
+     * Количество за год, десятилетие или диапазон лет вычисляется за логарифмическое время;
+     * сама гистограмма пересчитывается только после изменения каталога: по индексу года,
+     * если каталог загружен в память, иначе одним запросом к репозиторию.
+     * @return гистограмма по годам публикации
+     */
+    @Override
+    public YearHistogram getYearHistogram() {
+        CacheAccessEvent event = CacheAccessEvent.start("yearHistogram");
+        if (searchIndex != null) {
+            YearHistogram histogram = yearIndex(currentCatalog()).histogram();
+            event.hit(histogram.total());
+            return histogram;
+        }
+        long latest = catalog.getLastChangeId();
+        CachedHistogram cached = yearHistogram;
+        if (cached != null && cached.changeId() == latest) {
+            event.hit(cached.histogram().total());
+            return cached.histogram();
+        }
+        YearHistogram histogram = YearHistogram.of(catalog.countByPublicationYear());
+        yearHistogram = new CachedHistogram(latest, histogram);
+        event.miss(histogram.total());
+        return histogram;
+    }
+
+    /**
+     * Передает книги по составному запросу потребителю по мере чтения из репозитория.
+     * @param query составной запрос
+     * @param consumer получатель книг
+     */
+    @Override
+    public void forEachBook(BookQuery query, Consumer<Book> consumer) {
+        bookRepository.forEachByQuery(query, consumer);
+    }
+
+    /**
+     * Поиск с опечатками: для каждого слова запроса в названии или авторе книги должно быть
+     * слово, отличающееся не более чем на maxEdits правок (вставка, удаление, замена символа).
+     * Индекс возвращает идентификаторы, а книги берутся из каталога в памяти, поэтому
+     * доступность в результате актуальна. После изменения названий, авторов или состава
+     * каталога индекс перестраивается в фоне, а до тех пор запросы обслуживает прежний.
+     * @param query поисковый запрос
+     * @param maxEdits допустимое число правок на слово
+     * @return найденные книги, начиная с наиболее близких к запросу
+     */
+    @Override
+    public List<Book> fuzzySearch(String query, int maxEdits) {
+        CacheAccessEvent event = CacheAccessEvent.start("fuzzyIndex");
+        boolean built = fuzzy.isBuilt();
+        int[] ids = fuzzy.search(query, maxEdits, FUZZY_RESULT_LIMIT, FUZZY_BUDGET_NANOS);
+        BookScanIndex index = currentCatalog();
+        if (built) {
+            event.hit(0);
+        } else {
+            event.miss(index.size());
+        }
+        List<Book> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            int row = index.rowOf(id);
+            if (row >= 0) { // Книга удалена после построения индекса
+                result.add(index.bookAt(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Фасеты по всему каталогу: количество книг по авторам, десятилетиям и доступности.
+     * Перед чтением счетчики приводятся к журналу изменений базы данных, поэтому учитывают
+     * и изменения в обход сервиса.
+     * @return значения фасетов (берутся из поддерживаемых счетчиков)
+     */
+    @Override
+    public FacetCounts getFacetCounts() {
+        return syncedFacets().counts();
+    }
+
+    /**
+     * Фасеты, ограниченные набором книг, например результатом поиска.
+     * @param books книги, по которым считаются фасеты
+     * @return значения фасетов
+     */
+    @Override
+    public FacetCounts getFacetCounts(Collection<Book> books) {
+        return syncedFacets().counts(books);
+    }
+
+    /**
+     * Подсказки по началу названия или имени автора.
+     * Перед ответом подсказки приводятся к журналу изменений: выдача книги сразу поднимает
+     * вес ее названия и автора, остальные изменения учитываются после фонового перестроения.
+     * @param prefix введенное начало строки
+     * @param limit максимальное количество подсказок
+     * @return подсказки в порядке убывания популярности
+     */
+    @Override
+    public List<Completion> autocomplete(String prefix, int limit) {
+        refresh();
+        if (!autocomplete.isLoaded()) {
+            loadFromCatalog(autocomplete::isLoaded, autocomplete::load);
+        }
+        return autocomplete.complete(prefix, limit);
     }
 
     /**
      * Взять книгу в аренду.
+     * Проверка доступности и выдача выполняются одним условным обновлением,
+     * поэтому при одновременных запросах книгу получит только один читатель.
      * @param bookId идентификатор книги
      * @param userId идентификатор пользователя
      * @throws RuntimeException если книга не найдена или уже взята
      */
     @Override
     public void borrowBook(int bookId, int userId) {
-        try {
-            Book book = bookRepository.findById(bookId);
-            if (!book.isAvailable()) {
-                throw new IllegalStateException("Книга уже взята в аренду");
-            }
-
-            book.setAvailable(false);
-            bookRepository.update(book);
-        } catch (BookNotFoundException e) {
-            throw new RuntimeException("Книга с ID " + bookId + " не найдена", e);
-        }
+        changeAvailability(bookId, false, "Книга уже взята в аренду");
     }
 
     /**
@@ -155,16 +425,302 @@ public class BookServiceImpl implements BookService {
      */
     @Override
     public void returnBook(int bookId) {
+        changeAvailability(bookId, true, "Книга не была взята в аренду");
+    }
+
+    /**
+     * Атомарно переводит книгу в состояние available.
+     * @param conflictMessage сообщение, если книга уже находится в этом состоянии
+     */
+    private void changeAvailability(int bookId, boolean available, String conflictMessage) {
         try {
-            Book book = bookRepository.findById(bookId);
-            if (book.isAvailable()) {
-                throw new IllegalStateException("Книга не была взята в аренду");
+            if (!bookRepository.compareAndSetAvailable(bookId, !available, available)) {
+                bookRepository.findById(bookId); // Отличаем отсутствие книги от неподходящего состояния
+                throw new IllegalStateException(conflictMessage);
             }
-
-            book.setAvailable(true);
-            bookRepository.update(book);
         } catch (BookNotFoundException e) {
             throw new RuntimeException("Книга с ID " + bookId + " не найдена", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Перебирает каталог и возвращает книги, поле которых содержит подстроку.
+     * Порядок результатов совпадает с порядком книг в каталоге.
+     */
+    private List<Book> scan(BookScanIndex.Field field, String query) {
+        byte[] needle = BookScanIndex.encodeQuery(query);
+        BookScanIndex index = currentCatalog();
+        int[] rows = searchExecutor.execute(index.size(), index.columnBytes(field),
+                (fromRow, toRow, hits) -> index.scan(field, needle, fromRow, toRow, hits));
+        return index.booksAt(rows);
+    }
+
+    /**
+     * Перебирает каталог и отбирает limit лучших совпадений.
+     * Каждый блок перебора оставляет не больше limit кандидатов в своей куче,
+     * окончательный отбор выполняется по кандидатам всех блоков.
+     */
+    private List<Book> rankedScan(BookScanIndex.Field field, String query, int limit) {
+        byte[] needle = BookScanIndex.encodeQuery(query);
+        BookScanIndex index = currentCatalog();
+        int[] candidates = searchExecutor.execute(index.size(), index.columnBytes(field), (fromRow, toRow, hits) -> {
+            TopKCollector chunkTop = new TopKCollector(limit);
+            index.scan(field, needle, fromRow, toRow, row -> chunkTop.offer(row, index.score(field, needle, row)));
+            for (int row : chunkTop.rowsInOrder()) {
+                hits.accept(row);
+            }
+        });
+        TopKCollector top = new TopKCollector(limit);
+        for (int row : candidates) {
+            top.offer(row, index.score(field, needle, row));
+        }
+        return index.booksAt(top.rowsByRank());
+    }
+
+    /**
+     * Приводит счетчики фасетов к журналу изменений, загружая их из каталога в памяти
+     * при первом обращении. Если изменения в этот момент применяет другой поток,
+     * используются счетчики на момент последнего примененного изменения.
+     */
+    private FacetEngine syncedFacets() {
+        refresh();
+        CacheAccessEvent event = CacheAccessEvent.start("facets");
+        if (!facets.isLoaded()) {
+            event.miss(loadFromCatalog(facets::isLoaded, facets::load));
+            return facets;
+        }
+        event.hit(0);
+        return facets;
+    }
+
+    /**
+     * Приводит битовый индекс к журналу изменений, загружая его из каталога в памяти
+     * при первом обращении.
+     * @return true, если индекс учитывает все зафиксированные изменения
+     */
+    private boolean syncBitmaps() {
+        boolean synced = refresh();
+        loadedBitmaps();
+        return synced;
+    }
+
+    /**
+     * Возвращает битовый индекс, загружая его из каталога в памяти при первом обращении.
+     * Дальше индекс обновляется по уведомлениям о зафиксированных изменениях.
+     */
+    private BitmapIndex loadedBitmaps() {
+        CacheAccessEvent event = CacheAccessEvent.start("bitmaps");
+        if (!bitmaps.isLoaded()) {
+            event.miss(loadFromCatalog(bitmaps::isLoaded, bitmaps::load));
+            return bitmaps;
+        }
+        event.hit(0);
+        return bitmaps;
+    }
+
+    /**
+     * Загружает производную структуру из каталога в памяти под блокировкой обновления:
+     * пока она держится, изменения журнала не применяются, и ни одно из них не будет
+     * пропущено или учтено дважды.
+     * @return количество загруженных книг (0, если структуру уже загрузил другой поток)
+     */
+    private int loadFromCatalog(BooleanSupplier loaded, Consumer<List<Book>> loader) {
+        currentCatalog();
+        refreshLock.lock();
+        try {
+            if (loaded.getAsBoolean()) {
+                return 0;
+            }
+            List<Book> books = searchIndex.books();
+            loader.accept(books);
+            return books.size();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Приводит каталог в памяти к последнему изменению журнала.
+     * @return каталог в памяти
+     */
+    private BookScanIndex currentCatalog() {
+        refresh();
+        return searchIndex;
+    }
+
+    /**
+     * Копия книг каталога в памяти для построения индекса нечеткого поиска (вызывается в фоновом потоке).
+     */
+    private List<Book> catalogSnapshot() {
+        return currentCatalog().books();
+    }
+
+    /**
+     * Возвращает индекс по году для каталога, строя его при первом обращении после изменения
+     * состава каталога или годов публикации.
+     */
+    private YearIndex yearIndex(BookScanIndex index) {
+        CacheAccessEvent event = CacheAccessEvent.start("yearIndex");
+        CatalogYears years = yearIndex;
+        if (years == null || years.catalog() != index || years.changeId() < yearsChangedAt) {
+            // Номер изменения читается до книг: построенный во время замены книг индекс будет признан устаревшим
+            long changeId = appliedChangeId;
+            years = new CatalogYears(index, changeId, YearIndex.build(index.books()));
+            yearIndex = years;
+            event.miss(index.size());
+        } else {
+            event.hit(0);
+        }
+        return years.index();
+    }
+
+    /**
+     * Приводит каталог в памяти к последнему изменению журнала изменений каталога.
+     * Если номер последнего изменения не больше учтенного, каталог актуален. Иначе один поток
+     * дочитывает изменившиеся книги (или весь каталог при первом обращении и после большого
+     * числа изменений); остальные, как и подсказки во время перестроения, не ждут его
+     * и используют текущую версию каталога, а ждут только первой загрузки. Поиск не
+     * блокируется: выдача и возврат заменяют книги на месте, остальные изменения
+     * публикуют новый индекс.
+     * @return true, если каталог в памяти учитывает все изменения, зафиксированные до вызова;
+     *         false, если используется текущая версия, а изменения применяет другой поток
+     */
+    private boolean refresh() {
+        CacheAccessEvent event = CacheAccessEvent.start("searchIndex");
+        long latest = catalog.getLastChangeId();
+        BookScanIndex index = searchIndex;
+        if (index != null && latest <= appliedChangeId) {
+            event.hit(index.size());
+            return true;
+        }
+        if (index == null) {
+            refreshLock.lock();
+        } else if (!refreshLock.tryLock()) {
+            // Каталог уже обновляет другой поток: до публикации его результата используется текущая версия
+            event.hit(index.size());
+            return false;
+        }
+        try {
+            index = searchIndex;
+            if (index == null) {
+                event.miss(reload());
+            } else if (latest > appliedChangeId) {
+                event.miss(applyChanges(index));
+            } else {
+                event.hit(index.size());
+            }
+            pruneChanges();
+            return true;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Загружает каталог целиком. Номер изменения читается до книг: изменения, сделанные
+     * во время загрузки, будут применены повторно, что ничего не меняет.
+     * @return количество загруженных книг
+     */
+    private int reload() {
+        long latest = catalog.getLastChangeId();
+        List<Book> books = new ArrayList<>(catalog.findAll());
+        books.sort(Comparator.comparingInt(Book::getId));
+        yearsChangedAt = latest;
+        searchIndex = BookScanIndex.build(books);
+        // Уведомления о пропущенных изменениях не восстановить: загруженные структуры строятся заново
+        if (facets.isLoaded()) {
+            facets.load(books);
+        }
+        if (bitmaps.isLoaded()) {
+            bitmaps.load(books);
+        }
+        if (autocomplete.isLoaded()) {
+            autocomplete.load(books);
+        }
+        appliedChangeId = latest;
+        prunedBefore = 0;  // База могла быть заменена: номера журнала начинаются заново
+        fuzzy.scheduleRebuild();
+        return books.size();
+    }
+
+    /**
+     * Удаляет записи журнала изменений старше учтенного изменения за вычетом
+     * {@value #CHANGE_FEED_RETAIN} последних. Журнал очищается здесь, а не только при
+     * обслуживании базы в периоды простоя: иначе он растет без ограничений в режимах
+     * без простоя (пакетная обработка, импорт, выгрузка) и при постоянной нагрузке.
+     * Запрос выполняется, когда накопилось не меньше {@value #CHANGE_FEED_PRUNE_STEP}
+     * записей. Читатель, отставший больше чем на сохраняемое окно (другой процесс),
+     * перечитывает каталог целиком. Ошибка очистки не прерывает чтение.
+     */
+    private void pruneChanges() {
+        long keepFrom = appliedChangeId - CHANGE_FEED_RETAIN;
+        if (keepFrom - prunedBefore < CHANGE_FEED_PRUNE_STEP) {
+            return;
+        }
+        try {
+            int deleted;
+            do {
+                deleted = bookRepository.deleteChangesBefore(keepFrom, CHANGE_FEED_PRUNE_STEP);
+            } while (deleted == CHANGE_FEED_PRUNE_STEP);
+            prunedBefore = keepFrom;
+        } catch (DatabaseException e) {
+            System.err.println("Не удалось очистить журнал изменений каталога: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Применяет изменения журнала после последнего учтенного. Выдача, возврат и другие
+     * изменения без смены названия и автора заменяют книги на месте; остальные изменения
+     * строят новый индекс поиска без повторной нормализации неизмененных книг.
+     * @return количество прочитанных книг
+     */
+    private int applyChanges(BookScanIndex index) {
+        BookChanges changes = catalog.findChangesSince(appliedChangeId, CHANGE_BATCH_LIMIT);
+        if (changes == null) {
+            return reload();
+        }
+        boolean yearsChanged = changes.deleted().length > 0;
+        boolean[] added = new boolean[changes.changed().size()];
+        for (int i = 0; i < added.length; i++) {
+            Book book = changes.changed().get(i);
+            int row = index.rowOf(book.getId());
+            added[i] = row < 0;
+            yearsChanged |= added[i] || index.bookAt(row).getPublicationYear() != book.getPublicationYear();
+        }
+        BookScanIndex updated = index.apply(changes.changed(), changes.deleted());
+        boolean rebuilt = updated != index;
+        if (yearsChanged || rebuilt) {
+            yearsChangedAt = changes.lastChangeId();
+        }
+        searchIndex = updated;
+        // Номер изменения публикуется последним: увидевший его поток получит и обновленные структуры
+        notifyListeners(changes, added);
+        appliedChangeId = changes.lastChangeId();
+        if (rebuilt) {
+            fuzzy.scheduleRebuild();
+        }
+        return changes.changed().size() + changes.deleted().length;
+    }
+
+    /**
+     * Передает получателям изменения журнала. Журнал содержит только зафиксированные
+     * изменения, поэтому откаченная транзакция (например, блок пакетной обработки)
+     * не оставляет следов в производных структурах.
+     * @param added признак новой книги для каждой книги из changes.changed()
+     */
+    private void notifyListeners(BookChanges changes, boolean[] added) {
+        for (CatalogListener listener : listeners) {
+            for (int i = 0; i < added.length; i++) {
+                Book book = changes.changed().get(i);
+                if (added[i]) {
+                    listener.bookAdded(book);
+                } else {
+                    listener.bookUpdated(book);
+                }
+            }
+            for (int bookId : changes.deleted()) {
+                listener.bookDeleted(bookId);
+            }
+        }
+    }
+}
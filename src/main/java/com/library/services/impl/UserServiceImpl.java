@@ -4,6 +4,7 @@ import com.library.database.entities.User;
 import com.library.repositories.UserRepository;
 import com.library.services.UserService;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Реализация сервиса для работы с пользователями.
@@ -30,6 +31,15 @@ public class UserServiceImpl implements UserService {
         return userRepository.findAll();
     }
 
+    /**
+     * Передать всех пользователей потребителю по мере чтения из базы данных.
+     * @param consumer получатель пользователей
+     */
+    @Override
+    public void forEachUser(Consumer<User> consumer) {
+        userRepository.forEach(consumer);
+    }
+
     /**
      * Найти пользователя по идентификатору.
      * @param id уникальный идентификатор пользователя